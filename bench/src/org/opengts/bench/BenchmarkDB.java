@@ -0,0 +1,146 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Embedded (in-memory) Derby database used by the ingest benchmarks
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Initializes an in-memory embedded Derby database containing the GTS tables, and
+*** a single benchmark Account/Device.  All benchmarks in a JVM fork share the same
+*** database.
+**/
+
+public class BenchmarkDB
+{
+
+    // ------------------------------------------------------------------------
+
+    public  static final String ACCOUNT_ID      = "bench";
+    public  static final String DEVICE_ID       = "bench01";
+    public  static final String UNIQUE_ID       = "352000000000001";
+
+    private static final String DERBY_URL       = "jdbc:derby:memory:gtsbench;create=true";
+
+    private static final long   BASE_TIME_SEC   = 1262304000L; // 2010/01/01 00:00:00 GMT
+
+    // ------------------------------------------------------------------------
+
+    private static boolean didInit = false;
+
+    /**
+    *** Initializes the runtime configuration (quiet logging) without a database
+    **/
+    public static void initConfig()
+    {
+        synchronized (BenchmarkDB.class) {
+            RTConfig.setBoolean(RTKey.LOG_INCL_DATE, false);
+            RTConfig.setBoolean(RTKey.LOG_INCL_STACKFRAME, false);
+            Print.setLogLevel(Print.LOG_WARN);
+            Print.setLogHeaderLevel(Print.LOG_WARN);
+        }
+    }
+
+    /**
+    *** Initializes the embedded database, tables, and benchmark Account/Device
+    *** @throws DBException if the database could not be initialized
+    **/
+    public static void init()
+        throws DBException
+    {
+        synchronized (BenchmarkDB.class) {
+            if (BenchmarkDB.didInit) {
+                return;
+            }
+            BenchmarkDB.initConfig();
+
+            /* embedded Derby */
+            RTConfig.setString(RTKey.DB_PROVIDER, "derby");
+            RTConfig.setString(RTKey.DB_URL     , DERBY_URL);
+            RTConfig.setString(RTKey.DB_URL_DB  , DERBY_URL);
+            RTConfig.setString(RTKey.DB_NAME    , "gtsbench");
+
+            /* create tables */
+            DBConfig.addTableFactories();
+            for (DBFactory<?> fact : DBAdmin.getTableFactoryMap().values()) {
+                if (!fact.tableExists()) {
+                    fact.createTable();
+                }
+            }
+
+            /* Account/Device */
+            Account account = Account.getAccount(ACCOUNT_ID);
+            if (account == null) {
+                account = Account.createNewAccount(null, ACCOUNT_ID, "");
+            }
+            if (!Device.exists(ACCOUNT_ID, DEVICE_ID)) {
+                Device.createNewDevice(account, DEVICE_ID, UNIQUE_ID);
+            }
+
+            BenchmarkDB.didInit = true;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static long eventCount = 0L;
+
+    /**
+    *** Returns the next unique event timestamp.  Inserted events must have distinct
+    *** timestamps, since the timestamp is part of the EventData primary key.
+    *** @return The next event timestamp (seconds)
+    **/
+    public static long nextEventTime()
+    {
+        synchronized (BenchmarkDB.class) {
+            return BASE_TIME_SEC + (BenchmarkDB.eventCount++);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the benchmark Account
+    *** @return The benchmark Account
+    **/
+    public static Account getAccount()
+        throws DBException
+    {
+        BenchmarkDB.init();
+        return Account.getAccount(ACCOUNT_ID);
+    }
+
+    /**
+    *** Gets the benchmark Device
+    *** @return The benchmark Device
+    **/
+    public static Device getDevice()
+        throws DBException
+    {
+        return Device.getDevice(BenchmarkDB.getAccount(), DEVICE_ID);
+    }
+
+}
@@ -0,0 +1,81 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  DBRecord field get/set benchmarks
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.opengts.util.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Benchmarks EventData field access through the typed accessors and the generic
+*** DBRecord field-value methods (no database access)
+**/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DBRecordFieldBenchmark
+{
+
+    private EventData evdb  = null;
+    private double    speed = 0.0;
+
+    @Setup
+    public void setup()
+    {
+        BenchmarkDB.initConfig();
+        EventData.Key evKey = new EventData.Key(BenchmarkDB.ACCOUNT_ID, BenchmarkDB.DEVICE_ID, 
+            BenchmarkDB.nextEventTime(), StatusCodes.STATUS_LOCATION);
+        this.evdb = evKey.getDBRecord();
+        this.evdb.setGeoPoint(new GeoPoint(33.5, -118.2));
+    }
+
+    @Benchmark
+    public void typedSetGet(Blackhole bh)
+    {
+        this.speed = (this.speed + 1.0) % 200.0;
+        this.evdb.setSpeedKPH(this.speed);
+        this.evdb.setHeading(this.speed);
+        bh.consume(this.evdb.getSpeedKPH());
+        bh.consume(this.evdb.getHeading());
+        bh.consume(this.evdb.getLatitude());
+    }
+
+    @Benchmark
+    public void fieldValueSetGet(Blackhole bh)
+    {
+        this.speed = (this.speed + 1.0) % 200.0;
+        this.evdb.setFieldValue(EventData.FLD_speedKPH, new Double(this.speed));
+        this.evdb.setFieldValue(EventData.FLD_address , "1234 Main St");
+        bh.consume(this.evdb.getFieldValue(EventData.FLD_speedKPH));
+        bh.consume(this.evdb.getFieldValue(EventData.FLD_address));
+    }
+
+}
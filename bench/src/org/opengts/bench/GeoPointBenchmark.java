@@ -0,0 +1,89 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  GeoPoint distance/bearing benchmarks
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.opengts.util.*;
+
+/**
+*** Benchmarks GeoPoint distance and heading calculations over a fixed (seeded) set of points
+**/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeoPointBenchmark
+{
+
+    private static final int POINT_COUNT = 1024;
+
+    private GeoPoint points[] = null;
+    private int      index    = 0;
+
+    @Setup
+    public void setup()
+    {
+        Random rand = new Random(1234L); // fixed seed for reproducible results
+        this.points = new GeoPoint[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            double lat =   33.0 + (rand.nextDouble() * 2.0);
+            double lon = -118.0 + (rand.nextDouble() * 2.0);
+            this.points[i] = new GeoPoint(lat, lon);
+        }
+    }
+
+    private GeoPoint nextPoint()
+    {
+        this.index = (this.index + 1) & (POINT_COUNT - 1);
+        return this.points[this.index];
+    }
+
+    @Benchmark
+    public double metersToPoint()
+    {
+        return this.nextPoint().metersToPoint(this.nextPoint());
+    }
+
+    @Benchmark
+    public double headingToPoint()
+    {
+        return this.nextPoint().headingToPoint(this.nextPoint());
+    }
+
+    @Benchmark
+    public void distanceAndHeading(Blackhole bh)
+    {
+        GeoPoint gp1 = this.nextPoint();
+        GeoPoint gp2 = this.nextPoint();
+        bh.consume(gp1.kilometersToPoint(gp2));
+        bh.consume(gp1.headingToPoint(gp2));
+    }
+
+}
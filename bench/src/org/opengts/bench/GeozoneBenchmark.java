@@ -0,0 +1,123 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Geozone containment benchmarks
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+
+/**
+*** Benchmarks Geozone containment checks, both on in-memory Geozone instances, and
+*** through the Account Geozone lookup (embedded Derby database)
+**/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeozoneBenchmark
+{
+
+    private static final int POINT_COUNT    = 1024;
+    private static final int ZONE_COUNT     = 100;
+
+    private Geozone  radiusZone     = null;
+    private Geozone  polygonZone    = null;
+    private GeoPoint points[]       = null;
+    private int      index          = 0;
+
+    @Setup
+    public void setup()
+        throws DBException
+    {
+        BenchmarkDB.init();
+        Random rand = new Random(5678L); // fixed seed for reproducible results
+
+        /* test points */
+        this.points = new GeoPoint[POINT_COUNT];
+        for (int i = 0; i < POINT_COUNT; i++) {
+            this.points[i] = new GeoPoint(33.0 + rand.nextDouble(), -118.5 + rand.nextDouble());
+        }
+
+        /* in-memory zones */
+        this.radiusZone = new Geozone(new Geozone.Key(BenchmarkDB.ACCOUNT_ID, "radius", 0));
+        this.radiusZone.setZoneType(Geozone.GeozoneType.POINT_RADIUS);
+        this.radiusZone.setRadius(5000);
+        this.radiusZone.setGeoPoints(new GeoPoint[] { new GeoPoint(33.5, -118.0) });
+        this.polygonZone = new Geozone(new Geozone.Key(BenchmarkDB.ACCOUNT_ID, "polygon", 0));
+        this.polygonZone.setZoneType(Geozone.GeozoneType.POLYGON);
+        this.polygonZone.setGeoPoints(new GeoPoint[] {
+            new GeoPoint(33.2, -118.4),
+            new GeoPoint(33.8, -118.3),
+            new GeoPoint(33.7, -117.6),
+            new GeoPoint(33.1, -117.7)
+        });
+
+        /* stored zones */
+        if (!Geozone.exists(BenchmarkDB.ACCOUNT_ID, "z0", 0)) {
+            Account account = BenchmarkDB.getAccount();
+            for (int z = 0; z < ZONE_COUNT; z++) {
+                Geozone gz = Geozone.getGeozone(account, "z" + z, 0, true);
+                gz.setZoneType(Geozone.GeozoneType.POINT_RADIUS);
+                gz.setRadius(500 + rand.nextInt(2000));
+                gz.setGeoPoints(new GeoPoint[] { new GeoPoint(33.0 + rand.nextDouble(), -118.5 + rand.nextDouble()) });
+                gz.setReverseGeocode(true);
+                gz.setDescription("Zone " + z);
+                gz.save();
+            }
+        }
+
+    }
+
+    private GeoPoint nextPoint()
+    {
+        this.index = (this.index + 1) & (POINT_COUNT - 1);
+        return this.points[this.index];
+    }
+
+    @Benchmark
+    public boolean containsPoint_radius()
+    {
+        return this.radiusZone.containsPoint(this.nextPoint());
+    }
+
+    @Benchmark
+    public boolean containsPoint_polygon()
+    {
+        return this.polygonZone.containsPoint(this.nextPoint());
+    }
+
+    @Benchmark
+    public Geozone accountGeozoneLookup()
+    {
+        return Geozone.getGeozone(BenchmarkDB.ACCOUNT_ID, null, this.nextPoint(), true);
+    }
+
+}
@@ -0,0 +1,146 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Device ingest path benchmarks (embedded Derby database)
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.db.*;
+import org.opengts.db.tables.*;
+import org.opengts.servers.*;
+import org.opengts.servers.template.TrackClientPacketHandler;
+
+/**
+*** Benchmarks the device ingest path against an in-memory embedded Derby database:
+*** <ul>
+*** <li>GPSEvent construction (Device lookup by unique-id)</li>
+*** <li>Device.insertEventData (EventData insert and Device field updates)</li>
+*** <li>TrackClientPacketHandler.getHandlePacket (ASCII packet parse, Device lookup,
+***     and EventData insert)</li>
+*** </ul>
+*** Each inserted event is given a distinct timestamp (see BenchmarkDB.nextEventTime).
+*** Each benchmark is run with and without the shared Account cache.
+**/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class IngestBenchmark
+{
+
+    /* shared Account cache ("Account.cache") */
+    @Param({ "false", "true" })
+    public boolean                      accountCache;
+
+    private Device                      device  = null;
+    private TrackClientPacketHandler    handler = null;
+    private double                      lat     = 33.5;
+    private double                      lon     = -118.2;
+
+    @Setup
+    public void setup()
+        throws DBException
+    {
+        BenchmarkDB.init();
+        RTConfig.setBoolean(DBConfig.PROP_Account_cache, this.accountCache);
+        this.device  = BenchmarkDB.getDevice();
+        this.handler = new TrackClientPacketHandler();
+        this.handler.sessionStarted(null, true, true);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.handler.sessionTerminated(null, 0L, 0L);
+    }
+
+    /* move slightly on each event */
+    private GeoPoint nextPoint()
+    {
+        this.lat += 0.0001;
+        this.lon += 0.0001;
+        if (this.lat > 34.0) { this.lat = 33.0; }
+        if (this.lon > -117.5) { this.lon = -118.5; }
+        return new GeoPoint(this.lat, this.lon);
+    }
+
+    /* NMEA style "DDMM.mmmm" */
+    private static String formatDegMin(double deg)
+    {
+        deg = Math.abs(deg);
+        int    d = (int)deg;
+        double m = (deg - (double)d) * 60.0;
+        return d + StringTools.format(m, "00.0000");
+    }
+
+    /* template DATA_FORMAT_OPTION 4 packet */
+    private byte[] nextPacket()
+    {
+        DateTime dt = new DateTime(BenchmarkDB.nextEventTime(), DateTime.getGMTTimeZone());
+        GeoPoint gp = this.nextPoint();
+        StringBuffer sb = new StringBuffer();
+        sb.append("$GPRMC,");
+        sb.append(BenchmarkDB.UNIQUE_ID).append(",");
+        sb.append(dt.gmtFormat("HHmmss")).append(".000,A,");
+        sb.append(formatDegMin(gp.getLatitude())).append(",N,");
+        sb.append(formatDegMin(gp.getLongitude())).append(",W,");
+        sb.append("25.5,90.0,");
+        sb.append(dt.gmtFormat("ddMMyy"));
+        return sb.toString().getBytes();
+    }
+
+    @Benchmark
+    public GPSEvent gpsEventConstruct()
+    {
+        GPSEvent gpsEvent = new GPSEvent(null, null, 0, BenchmarkDB.UNIQUE_ID);
+        gpsEvent.setTimestamp(BenchmarkDB.nextEventTime());
+        gpsEvent.setStatusCode(StatusCodes.STATUS_LOCATION);
+        gpsEvent.setGeoPoint(this.nextPoint());
+        gpsEvent.setSpeedKPH(25.5);
+        return gpsEvent;
+    }
+
+    @Benchmark
+    public boolean deviceInsertEventData()
+    {
+        EventData.Key evKey = new EventData.Key(BenchmarkDB.ACCOUNT_ID, BenchmarkDB.DEVICE_ID, 
+            BenchmarkDB.nextEventTime(), StatusCodes.STATUS_LOCATION);
+        EventData evdb = evKey.getDBRecord();
+        evdb.setGeoPoint(this.nextPoint());
+        evdb.setSpeedKPH(25.5);
+        evdb.setHeading(90.0);
+        return this.device.insertEventData(evdb);
+    }
+
+    @Benchmark
+    public byte[] handlePacket()
+    {
+        return this.handler.getHandlePacket(this.nextPacket());
+    }
+
+}
@@ -0,0 +1,185 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  NMEA-0183 sentence parsing benchmarks
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.io.File;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.opengts.util.*;
+
+/**
+*** Benchmarks parsing of $GPRMC/$GPGGA sentences (including checksum validation).<br>
+*** The "log" benchmarks parse a recorded NMEA-0183 log one 1Hz epoch (the records
+*** from one $GPRMC up to the next) per operation, using either the String records,
+*** or the byte[] parse mode over a single reused Nmea0183 instance.  The log is read
+*** from the "logFile" parameter (one record per line), or a 1Hz $GPRMC/$GPGGA/$GPVTG
+*** log is generated if not specified:
+*** <pre>
+***   ant bench -Dbench.include=Nmea0183Benchmark -Dbench.args="-p logFile=/tmp/gps.nmea -prof gc"
+*** </pre>
+**/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class Nmea0183Benchmark
+{
+
+    private static final String GPRMC   = "$GPRMC,023000.000,A,3130.0577,N,11811.7421,W,0.53,208.37,210507,,*15";
+    private static final String GPGGA   = "$GPGGA,023000.000,3130.0577,N,11811.7421,W,1,08,0.9,545.4,M,46.9,M,,*49";
+    private static final String GPS[]   = new String[] { GPRMC, GPGGA };
+    private static final byte   GPRMC_BYTES[] = StringTools.getBytes(GPRMC);
+
+    @Param({""})
+    public String               logFile     = "";
+
+    private String              logRcds[][] = null;    // [epoch][record]
+    private byte                logBytes[]  = null;
+    private int                 logOfs[]    = null;    // epoch offset in 'logBytes'
+    private int                 logLen[]    = null;    // epoch length in 'logBytes'
+    private int                 logNdx      = 0;
+    private Nmea0183            nmea        = new Nmea0183();
+
+    @Setup
+    public void setup()
+    {
+        String log = StringTools.isBlank(this.logFile)?
+            Nmea0183Benchmark.generateLog(600) : 
+            StringTools.toStringValue(FileTools.readFile(new File(this.logFile)));
+        String lines[] = StringTools.parseString(log, "\r\n");
+
+        /* split into epochs */
+        Vector<Vector<String>> epochs = new Vector<Vector<String>>();
+        Vector<String>         rcds   = null;
+        for (int i = 0; i < lines.length; i++) {
+            String r = lines[i].trim();
+            if (!r.startsWith("$")) { continue; }
+            if ((rcds == null) || r.startsWith(Nmea0183.DNAME_GPRMC)) {
+                rcds = new Vector<String>();
+                epochs.add(rcds);
+            }
+            rcds.add(r);
+        }
+        if (epochs.isEmpty()) {
+            throw new RuntimeException("No NMEA-0183 records found: " + this.logFile);
+        }
+
+        /* String records, and byte[] offsets */
+        StringBuffer sb = new StringBuffer();
+        this.logRcds = new String[epochs.size()][];
+        this.logOfs  = new int[epochs.size()];
+        this.logLen  = new int[epochs.size()];
+        for (int e = 0; e < this.logRcds.length; e++) {
+            Vector<String> v = epochs.get(e);
+            this.logRcds[e] = v.toArray(new String[v.size()]);
+            this.logOfs[e]  = sb.length();
+            for (int r = 0; r < this.logRcds[e].length; r++) {
+                sb.append(this.logRcds[e][r]).append("\r\n");
+            }
+            this.logLen[e]  = sb.length() - this.logOfs[e];
+        }
+        this.logBytes = StringTools.getBytes(sb);
+
+    }
+
+    /* generate 1Hz $GPRMC/$GPGGA/$GPVTG log */
+    private static String generateLog(int seconds)
+    {
+        StringBuffer sb = new StringBuffer();
+        long   ts  = 1317600000L; // 2011/10/03 00:00:00 GMT
+        double lat = 31.5, lon = -118.2, kph = 55.0, hdg = 45.0;
+        for (int s = 0; s < seconds; s++, ts++) {
+            DateTime dt = new DateTime(ts, DateTime.GMT);
+            GeoPoint gp = new GeoPoint(lat + (s * 0.0001), lon + (s * 0.0001));
+            String hms = dt.format("HHmmss") + ".00";
+            String la  = gp.getLatitudeString(GeoPoint.SFORMAT_NMEA,null);
+            String lo  = gp.getLongitudeString(GeoPoint.SFORMAT_NMEA,null);
+            String kn  = StringTools.format(kph * Nmea0183.KNOTS_PER_KILOMETER,"0.00");
+            String hd  = StringTools.format(hdg,"0.0");
+            sb.append(checksum("$GPRMC," + hms + ",A," + la + "," + lo + "," + kn + "," + hd + "," + dt.format("ddMMyy") + ",13.1,E,A")).append("\r\n");
+            sb.append(checksum("$GPGGA," + hms + "," + la + "," + lo + ",1,08,0.9,545.4,M,46.9,M,,")).append("\r\n");
+            sb.append(checksum("$GPVTG," + hd + ",T,,M," + kn + ",N," + StringTools.format(kph,"0.0") + ",K")).append("\r\n");
+        }
+        return sb.toString();
+    }
+
+    private static String checksum(String rcd)
+    {
+        return rcd + "*" + StringTools.toHexString(Nmea0183.calcXORChecksum(rcd,false),8);
+    }
+
+    @Benchmark
+    public GeoPoint parseGPRMC()
+    {
+        return new Nmea0183(GPRMC).getGeoPoint();
+    }
+
+    @Benchmark
+    public double parseGPGGA()
+    {
+        return new Nmea0183(GPGGA).getAltitudeMeters();
+    }
+
+    @Benchmark
+    public long parseGPRMC_GPGGA()
+    {
+        return new Nmea0183(GPS).getFixtime();
+    }
+
+    @Benchmark
+    public long parseGPRMC_bytes()
+    {
+        byte b[] = GPRMC_BYTES;
+        this.nmea.clear();
+        this.nmea.parse(b, 0, b.length, false);
+        return this.nmea.getFixtime();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* one epoch per operation, String records */
+    @Benchmark
+    public long parseLogStrings()
+    {
+        String rcds[] = this.logRcds[this.logNdx];
+        this.logNdx = (this.logNdx + 1) % this.logRcds.length;
+        return new Nmea0183(rcds).getFixtime();
+    }
+
+    /* one epoch per operation, byte[] parse mode (reused instance) */
+    @Benchmark
+    public long parseLogBytes()
+    {
+        int e = this.logNdx;
+        this.logNdx = (this.logNdx + 1) % this.logOfs.length;
+        this.nmea.clear();
+        this.nmea.parseRecords(this.logBytes, this.logOfs[e], this.logLen[e], false);
+        return this.nmea.getFixtime();
+    }
+
+}
@@ -0,0 +1,137 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  ASCII packet field parsing benchmarks (String vs. ByteFieldParser)
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.opengts.util.*;
+import org.opengts.servers.template.TrackClientPacketHandler;
+
+/**
+*** Benchmarks parsing the fields of the template server ASCII packet formats (no
+*** database access), comparing the String based parsing (String conversion, split,
+*** substring, Double.parseDouble, DateTime) against the in-place <code>ByteFieldParser</code>
+*** used by <code>TrackClientPacketHandler</code>.<br>
+*** Per-packet allocation is reported by the JMH GC profiler ("gc.alloc.rate.norm"):
+*** <pre>
+***   ant bench -Dbench.include=PacketParseBenchmark -Dbench.args="-prof gc"
+*** </pre>
+**/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PacketParseBenchmark
+{
+
+    private static final byte   ASCII_4[]   = "$GPRMC,ABC123456,014804.000,A,3330.1234,N,11812.5678,W,25.5,90.0,180411".getBytes();
+    private static final byte   RTPROPS[]   = "mid=ABC123456 ts=1254100914 code=0xF020 gps=39.1234/-142.1234 kph=45.6 dir=123 alt=1234 odom=1234.5".getBytes();
+
+    private static final String RTP_MODEMID[]   = new String[] { "mid"  , "modemid"  };
+    private static final String RTP_TIMESTAMP[] = new String[] { "ts"   , "timestamp"};
+    private static final String RTP_GEOPOINT[]  = new String[] { "gps"  , "geopoint" };
+    private static final String RTP_SPEED[]     = new String[] { "kph"  , "speed"    };
+    private static final String RTP_HEADING[]   = new String[] { "dir"  , "heading"  };
+
+    private static final long   EPOCH_DAY       = DateTime.getDayNumberFromDate(1970, 1, 1);
+
+    private ByteFieldParser     parser      = new ByteFieldParser();
+    private String              lastModemID = null;
+    private double              gpsPair[]   = new double[2];
+
+    // ------------------------------------------------------------------------
+
+    /* format 4: String fields */
+    @Benchmark
+    public double stringASCII_4()
+    {
+        String s = StringTools.toStringValue(ASCII_4).trim();
+        String fld[] = StringTools.parseString(s, ',');
+        String modemID = fld[1].toLowerCase();
+        long hhmmss = (long)Double.parseDouble(fld[2]);
+        long ddmmyy = Long.parseLong(fld[10]);
+        boolean validGPS = fld[3].equals("A");
+        double speedKPH = StringTools.parseDouble(fld[8], 0.0);
+        DateTime dt = new DateTime(DateTime.getGMTTimeZone(),
+            (int)(ddmmyy % 100L) + 2000, (int)((ddmmyy / 100L) % 100L), (int)(ddmmyy / 10000L),
+            (int)(hhmmss / 10000L), (int)((hhmmss / 100L) % 100L), (int)(hhmmss % 100L));
+        double lat = TrackClientPacketHandler.getposition(fld[4], fld[5]);
+        double lon = TrackClientPacketHandler.getposition(fld[6], fld[7]);
+        return lat + lon + speedKPH + dt.getTimeSec() + modemID.length() + (validGPS? 1 : 0);
+    }
+
+    /* format 4: ByteFieldParser */
+    @Benchmark
+    public double bytesASCII_4()
+    {
+        ByteFieldParser fld = this.parser;
+        fld.parse(ASCII_4, 0, ASCII_4.length, ',');
+        String modemID = fld.getString(1, true, this.lastModemID);
+        this.lastModemID = modemID;
+        long daySec = fld.getHHMMSS(2);
+        long ddmmyy = fld.getLong(10, 0L);
+        boolean validGPS = fld.equals(3, "A", false);
+        double speedKPH = fld.getDouble(8, 0.0);
+        long dayNum = DateTime.getDayNumberFromDate(
+            (int)(ddmmyy % 100L) + 2000, (int)((ddmmyy / 100L) % 100L), (int)(ddmmyy / 10000L));
+        long fixtime = ((dayNum - EPOCH_DAY) * DateTime.DaySeconds(1)) + daySec;
+        double lat = fld.getNmeaCoordinate(4, 5);
+        double lon = fld.getNmeaCoordinate(6, 7);
+        return lat + lon + speedKPH + fixtime + modemID.length() + (validGPS? 1 : 0);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* format 9: RTProperties */
+    @Benchmark
+    public double stringRTProps()
+    {
+        RTProperties rtp = new RTProperties(StringTools.toStringValue(RTPROPS).trim());
+        String   mobileID = rtp.getString(RTP_MODEMID,   null);
+        long     fixtime  = rtp.getLong(  RTP_TIMESTAMP, 0L);
+        double   speedKPH = rtp.getDouble(RTP_SPEED,     0.0);
+        double   heading  = rtp.getDouble(RTP_HEADING,   0.0);
+        GeoPoint gp       = new GeoPoint(rtp.getString(RTP_GEOPOINT, null));
+        return gp.getLatitude() + gp.getLongitude() + speedKPH + heading + fixtime + mobileID.length();
+    }
+
+    /* format 9: ByteFieldParser */
+    @Benchmark
+    public double bytesRTProps()
+    {
+        ByteFieldParser rtp = this.parser;
+        rtp.parse(RTPROPS, 0, RTPROPS.length, ' ');
+        String   mobileID = rtp.getString(RTP_MODEMID,   false, this.lastModemID);
+        this.lastModemID  = mobileID;
+        long     fixtime  = rtp.getLong(  RTP_TIMESTAMP, 0L);
+        double   speedKPH = rtp.getDouble(RTP_SPEED,     0.0);
+        double   heading  = rtp.getDouble(RTP_HEADING,   0.0);
+        rtp.getDoublePair(RTP_GEOPOINT, this.gpsPair);
+        return this.gpsPair[0] + this.gpsPair[1] + speedKPH + heading + fixtime + mobileID.length();
+    }
+
+}
@@ -0,0 +1,176 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  ServerSocketThread TCP session framing benchmarks (loopback socket)
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.opengts.util.*;
+
+/**
+*** Benchmarks the blocking <code>ServerSocketThread</code> session framing over a
+*** loopback TCP connection.  Each operation writes a batch of packets to the session
+*** and waits until the packet handler has received all of them:
+*** <ul>
+*** <li>textPackets: ASCII lines, framed on the line terminator</li>
+*** <li>binaryPackets: fixed length binary packets, framed by 'getActualPacketLength'</li>
+*** </ul>
+*** The session idle/packet timeouts are enabled, as they are for the device servers.
+*** Results are reported in packets per second.
+**/
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ServerSocketBenchmark
+{
+
+    private static final int    BATCH           = 1000;
+    private static final byte   TEXT_PACKET[]   = "$GPRMC,ABC123456,014804.000,A,3330.1234,N,11812.5678,W,25.5,90.0,180411\r\n".getBytes();
+    private static final byte   BINARY_PACKET[] = new byte[32];
+
+    // ------------------------------------------------------------------------
+
+    /* counts received packets */
+    public static class CountingHandler
+        extends AbstractClientPacketHandler
+    {
+        private static final Object lock    = new Object();
+        private static long         count   = 0L;
+        public static boolean       binary  = false;
+        public static long getCount() {
+            synchronized (lock) { return count; }
+        }
+        public static void waitFor(long n) throws InterruptedException {
+            synchronized (lock) {
+                while (count < n) { lock.wait(5000L); }
+            }
+        }
+        public int getActualPacketLength(byte packet[], int packetLen) {
+            return binary? BINARY_PACKET.length : PACKET_LEN_LINE_TERMINATOR;
+        }
+        public boolean terminateSession() {
+            return false;
+        }
+        public byte[] getHandlePacket(byte pkt[]) {
+            synchronized (lock) {
+                count++;
+                lock.notifyAll();
+            }
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* loopback session (server listener and client connection) */
+    public static abstract class Session
+    {
+        private ServerSocketThread  server  = null;
+        private Socket              client  = null;
+        private OutputStream        output  = null;
+        private byte                batch[] = null;
+
+        protected void start(boolean binary)
+            throws IOException
+        {
+            Print.setLogLevel(Print.LOG_WARN);
+            CountingHandler.binary = binary;
+            ServerSocket ss = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            this.server = new ServerSocketThread(ss);
+            this.server.setTextPackets(!binary);
+            this.server.setMinimumPacketLength(1);
+            this.server.setMaximumPacketLength(600);
+            this.server.setIdleTimeout(60000L);
+            this.server.setPacketTimeout(10000L);
+            this.server.setClientPacketHandlerClass(CountingHandler.class);
+            this.server.start();
+            this.client = new Socket("127.0.0.1", ss.getLocalPort());
+            this.client.setTcpNoDelay(true);
+            this.output = this.client.getOutputStream();
+            byte pkt[] = binary? BINARY_PACKET : TEXT_PACKET;
+            this.batch = new byte[pkt.length * BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                System.arraycopy(pkt, 0, this.batch, i * pkt.length, pkt.length);
+            }
+        }
+
+        @TearDown
+        public void tearDown()
+            throws IOException
+        {
+            if (this.client != null) { this.client.close(); }
+            if (this.server != null) { this.server.shutdown(); }
+        }
+
+        /* write a batch, and wait for all packets to be handled */
+        public long sendBatch()
+            throws IOException, InterruptedException
+        {
+            long expect = CountingHandler.getCount() + BATCH;
+            this.output.write(this.batch);
+            this.output.flush();
+            CountingHandler.waitFor(expect);
+            return expect;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TextSession
+        extends Session
+    {
+        @Setup
+        public void setup() throws IOException { super.start(false); }
+    }
+
+    @State(Scope.Thread)
+    public static class BinarySession
+        extends Session
+    {
+        @Setup
+        public void setup() throws IOException { super.start(true); }
+    }
+
+    // ------------------------------------------------------------------------
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long textPackets(TextSession s)
+        throws IOException, InterruptedException
+    {
+        return s.sendBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long binaryPackets(BinarySession s)
+        throws IOException, InterruptedException
+    {
+        return s.sendBatch();
+    }
+
+}
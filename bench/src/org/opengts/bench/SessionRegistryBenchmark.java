@@ -0,0 +1,160 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Active session lookup benchmarks (list scan vs. ClientSessionRegistry)
+// ----------------------------------------------------------------------------
+package org.opengts.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.net.InetAddress;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.opengts.util.*;
+
+/**
+*** Benchmarks finding the session of one device among a large number of active
+*** sessions, comparing a synchronized scan of the active session list (calling
+*** <code>equalsSessionID</code> on each session) against the indexed lookups of
+*** the <code>ClientSessionRegistry</code>.
+**/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SessionRegistryBenchmark
+{
+
+    private static final String ACCOUNT = "demo";
+
+    // ------------------------------------------------------------------------
+
+    /* session handler stub */
+    public static class StubHandler
+        extends AbstractClientPacketHandler
+    {
+        private String sessionID = null;
+        public StubHandler(String sessionID) {
+            this.sessionID = sessionID;
+        }
+        protected String getSessionID() {
+            return this.sessionID;
+        }
+        public byte[] getHandlePacket(byte pkt[]) {
+            return null;
+        }
+    }
+
+    /* session stub (one per simulated TCP connection) */
+    public static class StubSession
+        implements ServerSocketThread.SessionInfo
+    {
+        public int getLocalPort() { return 0; }
+        public boolean isTCP() { return true; }
+        public boolean isUDP() { return false; }
+        public int getAvailableBytes() { return 0; }
+        public InetAddress getInetAddress() { return null; }
+        public int getRemotePort() { return 0; }
+        public boolean tcpWrite(byte data[]) { return true; }
+        public long getReadByteCount() { return 0L; }
+        public long getWriteByteCount() { return 0L; }
+    }
+
+    // ------------------------------------------------------------------------
+
+    @Param({ "1000", "30000" })
+    public int sessions;
+
+    private java.util.List<ClientPacketHandler> sessionList = null;
+    private java.util.List<ServerSocketThread.SessionInfo> sessionInfoList = null;
+    private String  deviceIDs[] = null;
+    private int     next        = 0;
+
+    @Setup
+    public void setup()
+    {
+        Print.setLogLevel(Print.LOG_WARN);
+        this.sessionList = new Vector<ClientPacketHandler>();
+        this.sessionInfoList = new ArrayList<ServerSocketThread.SessionInfo>();
+        this.deviceIDs   = new String[this.sessions];
+        for (int i = 0; i < this.sessions; i++) {
+            String devID = "dev" + i;
+            StubHandler cph = new StubHandler(devID);
+            StubSession si  = new StubSession();
+            cph.setSessionInfo(si);
+            this.deviceIDs[i] = devID;
+            this.sessionList.add(cph);
+            this.sessionInfoList.add(si);
+            ClientSessionRegistry.addSession(null, si, cph);
+            ClientSessionRegistry.setSessionID(si, devID);
+            ClientSessionRegistry.setSessionDevice(si, "uid" + i, ACCOUNT, devID);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        for (ServerSocketThread.SessionInfo si : this.sessionInfoList) {
+            ClientSessionRegistry.removeSession(si);
+        }
+    }
+
+    private String _nextDeviceID()
+    {
+        // stride through the sessions (uniform position within the list)
+        this.next = (this.next + 7919) % this.deviceIDs.length;
+        return this.deviceIDs[this.next];
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* synchronized scan of the active session list */
+    @Benchmark
+    public ClientPacketHandler scanSessionList()
+    {
+        String sessionID = this._nextDeviceID();
+        synchronized (this.sessionList) {
+            for (ClientPacketHandler cph : this.sessionList) {
+                if (cph.equalsSessionID(sessionID)) {
+                    return cph;
+                }
+            }
+        }
+        return null;
+    }
+
+    /* registry lookup by session ID */
+    @Benchmark
+    public ClientPacketHandler registryBySessionID()
+    {
+        return ClientSessionRegistry.getSessionBySessionID(this._nextDeviceID());
+    }
+
+    /* registry lookup by account/device */
+    @Benchmark
+    public ClientPacketHandler registryByDevice()
+    {
+        return ClientSessionRegistry.getSessionByDevice(ACCOUNT, this._nextDeviceID());
+    }
+
+}
@@ -0,0 +1,31 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+/**
+*** JMH benchmarks for the device ingest path.<br>
+*** These sources are not part of the server jars.  They are compiled and run by the
+*** "bench" Ant target, which requires the JMH jars (jmh-core, jmh-generator-annprocess,
+*** jopt-simple, commons-math3) in "jlib/jmh", and the Apache Derby embedded driver in
+*** "jlib/jdbc.derby".  For example:<br>
+*** <pre>
+***   ant bench
+***   ant bench -Dbench.include=GeoPointBenchmark -Dbench.forks=1
+*** </pre>
+*** Results are written to "build/bench/jmh-result.json".
+**/
+package org.opengts.bench;
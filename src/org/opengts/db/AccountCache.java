@@ -0,0 +1,340 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Shared in-memory Account cache (with PrivateLabel/ReverseGeocodeProvider handles)
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+import org.opengts.geocoder.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** <code>AccountCache</code> holds one shared Account record per account, so that the
+*** Device/EventData/User records created by a device communication server (see
+*** <code>AccountRecord.getAccount</code>) do not each re-read the Account from the
+*** database.<br>
+*** Each cached account is held as an immutable <code>AccountHandle</code>, which also
+*** holds the Account's resolved <code>BasicPrivateLabel</code> and
+*** <code>ReverseGeocodeProvider</code>.  The cached Account is a shared, read-only
+*** snapshot (field changes are rejected, and update throws a DBException).  Code which
+*** modifies an Account must load its own copy with <code>Account.getAccount</code>.<br>
+*** A cached Account is dropped when it is inserted/updated/deleted by this process.  Once
+*** "Account.cache.ttlSec" seconds have elapsed since it was last checked, the Account
+*** 'lastUpdateTime' is read from the database, and the Account is reloaded if it has
+*** changed (changes made by other processes).<br>
+*** Enabled with the runtime property "Account.cache".
+**/
+
+public class AccountCache
+{
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the shared Account cache is enabled
+    *** @return True if the shared Account cache is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_Account_cache,false);
+    }
+
+    private static long getTTLMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_Account_cache_ttlSec,60L) * 1000L;
+    }
+
+    private static int getMaxSize()
+    {
+        return RTConfig.getInt(DBConfig.PROP_Account_cache_maxAccounts,1000);
+    }
+
+    private static String _key(String acctID)
+    {
+        return acctID.toLowerCase();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Immutable handle to a shared Account snapshot, and its resolved PrivateLabel
+    *** and ReverseGeocodeProvider
+    **/
+    public static class AccountHandle
+    {
+        private Account                 account         = null;
+        private BasicPrivateLabel       privateLabel    = null;
+        private ReverseGeocodeProvider  revGeocoder     = null;
+        private long                    lastUpdateTime  = 0L;
+        private AccountHandle(Account acct) {
+            acct.setSharedSnapshot();
+            this.account        = acct;
+            this.privateLabel   = acct.getPrivateLabel(); // does not return null
+            this.revGeocoder    = this.privateLabel.getReverseGeocodeProvider(); // may be null
+            this.lastUpdateTime = acct.getLastUpdateTime();
+        }
+        /* the shared (read-only) Account */
+        public Account getAccount() {
+            return this.account;
+        }
+        /* the Account PrivateLabel (does not return null) */
+        public BasicPrivateLabel getPrivateLabel() {
+            return this.privateLabel;
+        }
+        /* the Account PrivateLabel default ReverseGeocodeProvider (may be null) */
+        public ReverseGeocodeProvider getReverseGeocodeProvider() {
+            return this.revGeocoder;
+        }
+        /* the event notification RuleFactory (may be null) */
+        public RuleFactory getRuleFactory() {
+            return Device.getRuleFactory(); // process-wide
+        }
+        /* the Account 'lastUpdateTime' at the time this snapshot was loaded */
+        public long getLastUpdateTime() {
+            return this.lastUpdateTime;
+        }
+    }
+
+    /**
+    *** Cached account entry
+    **/
+    private static class CacheEntry
+    {
+        private String                  accountID       = null;
+        private volatile AccountHandle  handle          = null;
+        private volatile long           checkTimeMS     = 0L;
+        private volatile long           accessTimeMS    = 0L;
+        public CacheEntry(String acctID) {
+            this.accountID = acctID;
+        }
+        // -- return the current handle, checking for Account changes if the TTL has expired
+        public AccountHandle getHandle() {
+            long nowMS = DateTime.getCurrentTimeMillis();
+            this.accessTimeMS = nowMS;
+            AccountHandle ah = this.handle;
+            if ((ah != null) && ((nowMS - this.checkTimeMS) < AccountCache.getTTLMS())) {
+                return ah; // lock-free read of current snapshot
+            }
+            return this._refresh(nowMS);
+        }
+        private synchronized AccountHandle _refresh(long nowMS) {
+            AccountHandle ah = this.handle;
+            if ((ah != null) && ((nowMS - this.checkTimeMS) < AccountCache.getTTLMS())) {
+                return ah; // refreshed by another thread
+            }
+            if (ah != null) {
+                long updTime = AccountCache._getLastUpdateTime(this.accountID);
+                if (updTime == ah.getLastUpdateTime()) {
+                    this.checkTimeMS = nowMS;
+                    return ah; // unchanged
+                } else
+                if (updTime == -2L) {
+                    // error (already logged), keep current snapshot until next check
+                    this.checkTimeMS = nowMS;
+                    return ah;
+                }
+                // changed (or deleted), reload
+            }
+            try {
+                Account acct = Account.getAccount(this.accountID);
+                this.handle = (acct != null)? new AccountHandle(acct) : null;
+                this.checkTimeMS = nowMS;
+                if (acct != null) {
+                    Print.logDebug("Loaded Account cache: %s", this.accountID);
+                }
+            } catch (DBException dbe) {
+                // may be caused by "java.net.ConnectException: Connection refused: connect"
+                Print.logError("Account cache load error: " + this.accountID + " [" + dbe + "]");
+                if (ah != null) {
+                    this.checkTimeMS = nowMS; // keep current snapshot until next check
+                }
+            }
+            return this.handle;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static ConcurrentHashMap<String,CacheEntry> accountMap = new ConcurrentHashMap<String,CacheEntry>();
+
+    /**
+    *** Gets the cache entry for the specified account (creating it if necessary)
+    **/
+    private static CacheEntry _getEntry(String acctID)
+    {
+        String key = _key(acctID);
+        CacheEntry ce = accountMap.get(key);
+        if (ce == null) {
+            CacheEntry newCE = new CacheEntry(acctID);
+            ce = accountMap.putIfAbsent(key, newCE);
+            if (ce == null) {
+                ce = newCE;
+                AccountCache._evict(key);
+            }
+        }
+        return ce;
+    }
+
+    /**
+    *** Removes the least recently used entries while the cache exceeds its maximum size
+    **/
+    private static void _evict(String keepKey)
+    {
+        int maxSize = AccountCache.getMaxSize();
+        while ((maxSize > 0) && (accountMap.size() > maxSize)) {
+            String lruKey = null;
+            long   lruMS  = Long.MAX_VALUE;
+            for (Map.Entry<String,CacheEntry> me : accountMap.entrySet()) {
+                long accMS = me.getValue().accessTimeMS;
+                if (!me.getKey().equals(keepKey) && (accMS < lruMS)) {
+                    lruKey = me.getKey();
+                    lruMS  = accMS;
+                }
+            }
+            if (lruKey == null) {
+                break;
+            }
+            accountMap.remove(lruKey);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the cached AccountHandle for the specified account
+    *** @param acctID  The account ID
+    *** @return The AccountHandle, or null if the cache is disabled, or the Account does not exist
+    **/
+    public static AccountHandle getAccountHandle(String acctID)
+    {
+        if (StringTools.isBlank(acctID) || !AccountCache.isEnabled()) {
+            return null;
+        }
+        CacheEntry ce = AccountCache._getEntry(acctID);
+        AccountHandle ah = ce.getHandle();
+        if (ah == null) {
+            // do not retain non-existent accounts
+            accountMap.remove(_key(acctID), ce);
+        }
+        return ah;
+    }
+
+    /**
+    *** Gets the shared (read-only) Account for the specified account ID
+    *** @param acctID  The account ID
+    *** @return The shared Account, or null if the cache is disabled, or the Account does not exist
+    **/
+    public static Account getAccount(String acctID)
+    {
+        AccountHandle ah = AccountCache.getAccountHandle(acctID);
+        return (ah != null)? ah.getAccount() : null;
+    }
+
+    /**
+    *** Loads the specified Account for read-only use.  Returns the shared Account if the
+    *** cache is enabled, otherwise reads the Account from the database.
+    *** @param acctID  The account ID
+    *** @return The Account, or null if the Account does not exist
+    *** @throws DBException if a database error occurs
+    **/
+    public static Account loadAccount(String acctID)
+        throws DBException
+    {
+        if (AccountCache.isEnabled()) {
+            Account acct = AccountCache.getAccount(acctID);
+            if (acct != null) {
+                return acct;
+            }
+        }
+        return Account.getAccount(acctID);
+    }
+
+    /**
+    *** Removes the specified account from the cache.  The Account will be reloaded on
+    *** the next lookup.
+    *** @param acctID  The account ID
+    **/
+    public static void invalidate(String acctID)
+    {
+        if (!StringTools.isBlank(acctID)) {
+            accountMap.remove(_key(acctID));
+        }
+    }
+
+    /**
+    *** Removes all accounts from the cache
+    **/
+    public static void invalidateAll()
+    {
+        accountMap.clear();
+    }
+
+    /**
+    *** Gets the number of cached accounts
+    *** @return The number of cached accounts
+    **/
+    public static int size()
+    {
+        return accountMap.size();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the Account 'lastUpdateTime' from the database, -1 if the Account does
+    *** not exist, or -2 if an error occurred
+    **/
+    private static long _getLastUpdateTime(String acctID)
+    {
+        // SELECT lastUpdateTime FROM Account WHERE (accountID='account')
+        DBWhere dwh = new DBWhere(Account.getFactory());
+        StringBuffer sb = new StringBuffer();
+        sb.append("SELECT ").append(DBProvider.translateColumnName(Account.FLD_lastUpdateTime));
+        sb.append(" FROM ").append(Account.TABLE_NAME());
+        sb.append(dwh.WHERE(dwh.EQ(Account.FLD_accountID,acctID)));
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(sb.toString());
+            rs   = stmt.getResultSet();
+            return rs.next()? rs.getLong(1) : -1L;
+        } catch (SQLException sqe) {
+            Print.logError("Account cache state error: " + sqe);
+            return -2L;
+        } catch (DBException dbe) {
+            Print.logError("Account cache state error: " + dbe);
+            return -2L;
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+    }
+
+}
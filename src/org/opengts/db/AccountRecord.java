@@ -363,6 +363,15 @@ public class AccountRecord<RT extends DBRecord>
             return (Account)((Object)this);
         }
 
+        /* shared Account cache (also replaces an outdated shared snapshot) */
+        if (((this.account == null) || this.account.isSharedSnapshot()) && AccountCache.isEnabled()) {
+            Account acct = AccountCache.getAccount(this.getAccountID());
+            if (acct != null) {
+                this.account = acct;
+                return this.account;
+            }
+        }
+
         /* get/return Account */
         if (this.account == null) {
             String acctID = this.getAccountID();
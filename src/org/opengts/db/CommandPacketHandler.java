@@ -269,7 +269,56 @@ public abstract class CommandPacketHandler
 
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
-    
+
+    /* return the active TCP session for the specified device (null if not connected) */
+    public static ClientPacketHandler getDeviceSession(Device device)
+    {
+        if (device == null) {
+            return null;
+        }
+        ClientPacketHandler cph = ClientSessionRegistry.getSessionByDevice(device.getAccountID(), device.getDeviceID());
+        if (cph == null) {
+            cph = ClientSessionRegistry.getSessionByUniqueID(device.getUniqueID());
+        }
+        return cph;
+    }
+
+    /* write the specified bytes to the active TCP session of the specified device */
+    public static boolean writeToDeviceSession(Device device, byte data[])
+    {
+        ServerSocketThread.SessionInfo si = null;
+        if (device != null) {
+            si = ClientSessionRegistry.getSessionInfoByDevice(device.getAccountID(), device.getDeviceID());
+            if (si == null) {
+                si = ClientSessionRegistry.getSessionInfoByUniqueID(device.getUniqueID());
+            }
+        }
+        if (si == null) {
+            Print.logWarn("Device not connected: " + ((device != null)? device.getDeviceID() : "?"));
+            return false;
+        }
+        return si.tcpWrite(data); // write through the session (handler may be shared)
+    }
+
+    /* write the specified bytes to the active TCP sessions of all devices in the specified group */
+    // returns the number of device sessions written
+    public static int writeToDeviceGroupSessions(String accountID, String groupID, byte data[])
+    {
+        OrderedSet<String> devList = null;
+        try {
+            devList = DeviceGroup.getDeviceIDsForGroup(accountID, groupID, null, false);
+        } catch (DBException dbe) {
+            Print.logException("Unable to read DeviceGroup: " + accountID + "/" + groupID, dbe);
+            return 0;
+        }
+        int count = ClientSessionRegistry.writeToDevices(accountID, devList, data);
+        Print.logInfo("DeviceGroup " + accountID + "/" + groupID + ": sent to " + count + " of " + ListTools.size(devList) + " devices");
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
     /* validate email address */
     public static boolean validateAddress(String addr)
     {
@@ -297,6 +297,62 @@ public class DBConfig
     **/
     public static final String PROP_Device_checkNotifySelector          = "Device.checkNotifySelector";
 
+    /**
+    *** Runtime Configuration Property<br>
+    *** Cache Device records in memory, and write per-event Device field changes behind<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_Device_stateCache                   = "Device.stateCache";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum time (seconds) a changed cached Device may remain unwritten<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_stateCache_flushSec          = "Device.stateCache.flushSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Time (seconds) after which a cached Device is reloaded from the database<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_stateCache_expireSec         = "Device.stateCache.expireSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of cached Devices<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_Device_stateCache_maxSize           = "Device.stateCache.maxSize";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Resolve device unique-ids from an in-memory unique-id directory<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_Device_uniqueIdDirectory           = "Device.uniqueIdDirectory";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Interval (seconds) between unique-id directory refreshes<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_uniqueIdDirectory_refreshSec = "Device.uniqueIdDirectory.refreshSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Time (seconds) an unknown unique-id is remembered<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Device_uniqueIdDirectory_unknownExpireSec = "Device.uniqueIdDirectory.unknownExpireSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of remembered unknown unique-ids<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_Device_uniqueIdDirectory_unknownMaxSize = "Device.uniqueIdDirectory.unknownMaxSize";
+
     // -------
 
     /**
@@ -331,6 +387,70 @@ public class DBConfig
     **/
     public static final String PROP_EventData_logMissingColumns         = "EventData.logMissingColumns";
 
+    /**
+    *** Runtime Configuration Property<br>
+    *** Queue inserted EventData records for batched (multi-row) insertion<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_EventData_batchInsert               = "EventData.batchInsert";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Wait for batched EventData records to be committed before returning (defaults to 'true')<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_EventData_batchInsert_waitForCommit = "EventData.batchInsert.waitForCommit";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum time (milliseconds) to wait for a batched EventData record to be committed
+    *** (a record still queued when this expires is removed from the queue, and is not inserted)<br>
+    *** Type: Long
+    **/
+    public static final String PROP_EventData_batchInsert_commitTimeout = "EventData.batchInsert.commitTimeoutMS";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Delete old EventData records in bounded chunks (see EventRetention)<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_EventData_retention_chunked         = "EventData.retention.chunked";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of EventData records deleted per retention chunk<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_EventData_retention_chunkSize       = "EventData.retention.chunkSize";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Time (milliseconds) to pause between retention chunks<br>
+    *** Type: Long
+    **/
+    public static final String PROP_EventData_retention_throttleMS      = "EventData.retention.throttleMS";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of devices processed concurrently by the retention engine<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_EventData_retention_threads         = "EventData.retention.threads";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Drop whole EventData time-range partitions (MySQL/PostgreSQL) when deleting for all accounts<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_EventData_retention_dropPartitions  = "EventData.retention.dropPartitions";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Interval (seconds) between retention progress log messages<br>
+    *** Type: Long
+    **/
+    public static final String PROP_EventData_retention_progressSec     = "EventData.retention.progressSec";
+
     // -------
 
     /**
@@ -354,6 +474,89 @@ public class DBConfig
     **/
     public static final String PROP_Geozone_dftRadius_sweptPointRadius  = "Geozone.dftRadius.sweptPointRadius";
 
+    /**
+    *** Runtime Configuration Property<br>
+    *** Use an in-memory per-account spatial index for Geozone point-in-zone lookups<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_Geozone_spatialIndex                = "Geozone.spatialIndex";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Interval (seconds) between checks for Geozone table changes made outside of this process<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Geozone_spatialIndex_refreshSec     = "Geozone.spatialIndex.refreshSec";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Use a shared per-account in-memory cache for StatusCode lookups<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_StatusCode_cache                    = "StatusCode.cache";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Interval (seconds) between checks for StatusCode table changes made outside of this process<br>
+    *** Type: Long
+    **/
+    public static final String PROP_StatusCode_cache_refreshSec         = "StatusCode.cache.refreshSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of accounts held in the StatusCode cache<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_StatusCode_cache_maxAccounts        = "StatusCode.cache.maxAccounts";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Use a shared in-memory cache of Account records (and their PrivateLabel)<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_Account_cache                       = "Account.cache";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Interval (seconds) after which a cached Account is checked for changes made outside of this process<br>
+    *** Type: Long
+    **/
+    public static final String PROP_Account_cache_ttlSec                = "Account.cache.ttlSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of Accounts held in the Account cache<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_Account_cache_maxAccounts           = "Account.cache.maxAccounts";
+
+    // -------
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Use an in-memory per-account index for User device authorization checks<br>
+    *** Type: Boolean
+    **/
+    public static final String PROP_User_authorizationIndex             = "User.authorizationIndex";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Interval (seconds) between checks for Device/DeviceList/GroupList changes made outside of this process<br>
+    *** Type: Long
+    **/
+    public static final String PROP_User_authorizationIndex_refreshSec  = "User.authorizationIndex.refreshSec";
+
+    /**
+    *** Runtime Configuration Property<br>
+    *** Maximum number of accounts held in the User authorization index<br>
+    *** Type: Integer
+    **/
+    public static final String PROP_User_authorizationIndex_maxAccounts = "User.authorizationIndex.maxAccounts";
+
     // -------
     
     /**
@@ -508,10 +711,38 @@ public class DBConfig
         new RTKey.Entry(PROP_Device_invalidSpeed_action         , ""                            , "Invalid Speed Action"),
         new RTKey.Entry(PROP_Device_invalidSpeed_maximumKPH     , 0.0                           , "Future Date Maximm Seconds"),
         new RTKey.Entry(PROP_Device_maximumOdometerKM           , 1000000.0                     , "Maximum Odometer value"),
+        new RTKey.Entry(PROP_Device_stateCache                  , false                         , "Device write-behind state cache"),
+        new RTKey.Entry(PROP_Device_stateCache_flushSec         , 30L                           , "Device state cache flush interval"),
+        new RTKey.Entry(PROP_Device_stateCache_expireSec        , 600L                          , "Device state cache expiration"),
+        new RTKey.Entry(PROP_Device_stateCache_maxSize          , 20000                         , "Device state cache maximum size"),
+        new RTKey.Entry(PROP_Device_uniqueIdDirectory           , false                         , "Device unique-id directory"),
+        new RTKey.Entry(PROP_Device_uniqueIdDirectory_refreshSec, 60L                           , "Device unique-id directory refresh interval"),
+        new RTKey.Entry(PROP_Device_uniqueIdDirectory_unknownExpireSec, 300L                    , "Device unique-id directory unknown expiration"),
+        new RTKey.Entry(PROP_Device_uniqueIdDirectory_unknownMaxSize, 50000                     , "Device unique-id directory unknown maximum size"),
         new RTKey.Entry(PROP_EventData_keyedCreationTime        , false                         , "Keyed 'EventData.creationTime'"),
+        new RTKey.Entry(PROP_EventData_batchInsert              , false                         , "Batched EventData insertion"),
+        new RTKey.Entry(PROP_EventData_batchInsert_waitForCommit, true                          , "Wait for batched EventData commit"),
+        new RTKey.Entry(PROP_EventData_batchInsert_commitTimeout, 30000L                        , "Batched EventData commit timeout"),
+        new RTKey.Entry(PROP_EventData_retention_chunked        , false                         , "Chunked EventData retention deletes"),
+        new RTKey.Entry(PROP_EventData_retention_chunkSize      , 5000                          , "EventData retention chunk size"),
+        new RTKey.Entry(PROP_EventData_retention_throttleMS     , 250L                          , "EventData retention chunk pause"),
+        new RTKey.Entry(PROP_EventData_retention_threads        , 2                             , "EventData retention concurrency"),
+        new RTKey.Entry(PROP_EventData_retention_dropPartitions , false                         , "EventData retention partition drop"),
+        new RTKey.Entry(PROP_EventData_retention_progressSec    , 30L                           , "EventData retention progress interval"),
         new RTKey.Entry(PROP_Geozone_dftRadius_pointRadius      , 3000                          , "Default Point Radius"),
         new RTKey.Entry(PROP_Geozone_dftRadius_polygon          , 500                           , "Default Polygon Radius"),
         new RTKey.Entry(PROP_Geozone_dftRadius_sweptPointRadius , 1000                          , "Default SweptPoint Radius"),
+        new RTKey.Entry(PROP_Geozone_spatialIndex               , false                         , "Geozone in-memory spatial index"),
+        new RTKey.Entry(PROP_Geozone_spatialIndex_refreshSec    , 60L                           , "Geozone spatial index refresh interval"),
+        new RTKey.Entry(PROP_StatusCode_cache                   , false                         , "Shared StatusCode cache"),
+        new RTKey.Entry(PROP_StatusCode_cache_refreshSec        , 60L                           , "StatusCode cache refresh interval"),
+        new RTKey.Entry(PROP_StatusCode_cache_maxAccounts       , 1000                          , "StatusCode cache maximum accounts"),
+        new RTKey.Entry(PROP_Account_cache                      , false                         , "Shared Account cache"),
+        new RTKey.Entry(PROP_Account_cache_ttlSec               , 60L                           , "Account cache change check interval"),
+        new RTKey.Entry(PROP_Account_cache_maxAccounts          , 1000                          , "Account cache maximum accounts"),
+        new RTKey.Entry(PROP_User_authorizationIndex            , false                         , "User device authorization index"),
+        new RTKey.Entry(PROP_User_authorizationIndex_refreshSec , 60L                           , "User authorization index refresh interval"),
+        new RTKey.Entry(PROP_User_authorizationIndex_maxAccounts, 1000                          , "User authorization index maximum accounts"),
         new RTKey.Entry(PROP_RuleList_includeGroupRules         , false                         , "Include DeviceGroup rules"),
         new RTKey.Entry(PROP_FuelRegister_installFuelManager    , false                         , "Install FuelRegister/FuelManager"),
         new RTKey.Entry(PROP_FuelRegister_levelIncreaseThreshold, 0.03                          , "FuelLevel 'increase' threshold"),
@@ -2088,7 +2088,7 @@ public class DCServerFactory
         try {
 
             /* get Account */
-            Account account = Account.getAccount(accountID);
+            Account account = AccountCache.loadAccount(accountID); // shared, if enabled
             if (account == null) {
                 Print.logWarn("!!!AccountID not found!: " + accountID);
                 return null;
@@ -2171,6 +2171,10 @@ public class DCServerFactory
         String uniqueID = "";
         try {
 
+            /* recently reported as not found? */
+            String firstID = ListTools.isEmpty(prefix)? modemID : (prefix[0] + modemID);
+            boolean wasUnknown = DeviceDirectory.isUnknown(firstID);
+
             /* load device record */
             if (ListTools.isEmpty(prefix)) {
                 uniqueID = modemID;
@@ -2191,6 +2195,11 @@ public class DCServerFactory
 
             /* not found? */
             if (device == null) {
+                if (wasUnknown) {
+                    // already reported (and saved to UnassignedDevices)
+                    Print.logDebug("UniqueID not found (unknown): " + uniqueID);
+                    return null;
+                }
                 Print.logWarn("!!!UniqueID not found!: " + uniqueID);
                 if (saveUnassigned) {
                     DCServerFactory.addUnassignedDevice(serverID, modemID, ipAddress, isDuplex, geoPoint, null/*data*/);
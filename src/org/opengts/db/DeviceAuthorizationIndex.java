@@ -0,0 +1,626 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  In-memory per-account index of User device authorizations
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** <code>DeviceAuthorizationIndex</code> answers <code>User.isAuthorizedDevice</code> and
+*** <code>User.getAuthorizedDeviceIDs</code> from an in-memory snapshot of the account
+*** Device, DeviceList, and GroupList tables, rather than querying the DeviceList table
+*** once for each of the User's groups.<br>
+*** Each Device of the account is assigned an ordinal (in 'deviceID' order).  Each
+*** DeviceGroup membership is held as a <code>BitSet</code> of device ordinals, and the
+*** set of devices authorized for a User is the union of the sets of the User's groups
+*** (computed once per User per snapshot), so that an authorization check is a single
+*** bit test.<br>
+*** The snapshot is dropped when a Device, DeviceList, or GroupList record of the account
+*** is inserted/updated/deleted by this process.  Every "User.authorizationIndex.refreshSec"
+*** seconds, the snapshot is reloaded if the account Device/DeviceList row counts,
+*** DeviceList maximum 'lastUpdateTime', or GroupList contents (row count and a hash of
+*** the userID/groupID rows) have changed (changes made by other processes).<br>
+*** Enabled with the runtime property "User.authorizationIndex".
+**/
+
+public class DeviceAuthorizationIndex
+{
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the User device authorization index is enabled
+    *** @return True if the User device authorization index is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_User_authorizationIndex,false);
+    }
+
+    private static long _getRefreshMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_User_authorizationIndex_refreshSec,60L) * 1000L;
+    }
+
+    private static String _key(String id)
+    {
+        return (id != null)? id.toLowerCase() : "";
+    }
+
+    private static boolean _isGroupAll(String groupID)
+    {
+        return DeviceGroup.DEVICE_GROUP_ALL.equalsIgnoreCase(groupID);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Devices authorized for a single User (immutable once built)
+    **/
+    private static class UserAuth
+    {
+        private String                      groupIDs[]  = null;  // GroupList groups (groupID order)
+        private boolean                     allDevices  = false; // has group 'all'
+        private BitSet                      deviceSet   = null;  // union of group device ordinals
+        private volatile OrderedSet<String> activeIDs   = null;  // built on first use
+        private volatile OrderedSet<String> allIDs      = null;  // built on first use
+        public UserAuth(String groupIDs[], boolean allDevices, BitSet deviceSet) {
+            this.groupIDs   = groupIDs;
+            this.allDevices = allDevices;
+            this.deviceSet  = deviceSet;
+        }
+        public boolean hasGroups() {
+            return (this.groupIDs.length > 0);
+        }
+    }
+
+    /**
+    *** Device/DeviceList/GroupList snapshot of a single account (immutable once loaded,
+    *** except for the lazily computed per-User authorizations)
+    **/
+    private static class Snapshot
+    {
+        private String                  deviceIDs[]     = null; // by ordinal
+        private int                     deviceCount     = 0;    // ordinals below this exist in the Device table
+        private Map<String,Integer>     ordinalMap      = null; // lowercase deviceID => ordinal
+        private BitSet                  activeSet       = null; // active Device ordinals
+        private Map<String,int[]>       groupMap        = null; // lowercase groupID => member ordinals (deviceID order)
+        private Map<String,BitSet>      groupSetMap     = null; // lowercase groupID => member ordinals
+        private Map<String,String[]>    userGroupMap    = null; // lowercase userID => groupIDs (groupID order)
+        private ConcurrentHashMap<String,UserAuth> userAuthMap = new ConcurrentHashMap<String,UserAuth>();
+        private volatile OrderedSet<String> activeIDs   = null;
+        private volatile OrderedSet<String> allIDs      = null;
+        // -- return the device ordinal, or -1 if the device is not known
+        public int getOrdinal(String deviceID) {
+            Integer ord = this.ordinalMap.get(_key(deviceID));
+            return (ord != null)? ord.intValue() : -1;
+        }
+        // -- return the (cached) authorization for the specified user
+        public UserAuth getUserAuth(String userID) {
+            String userKey = _key(userID);
+            UserAuth ua = this.userAuthMap.get(userKey);
+            if (ua == null) {
+                String groupIDs[] = this.userGroupMap.get(userKey);
+                if (groupIDs == null) { groupIDs = new String[0]; }
+                boolean all = false;
+                BitSet devSet = new BitSet(this.deviceIDs.length);
+                for (int g = 0; g < groupIDs.length; g++) {
+                    if (_isGroupAll(groupIDs[g])) {
+                        all = true;
+                    } else {
+                        BitSet grpSet = this.groupSetMap.get(_key(groupIDs[g]));
+                        if (grpSet != null) {
+                            devSet.or(grpSet);
+                        }
+                    }
+                }
+                ua = new UserAuth(groupIDs, all, devSet);
+                this.userAuthMap.put(userKey, ua);
+            }
+            return ua;
+        }
+        // -- return the member ordinals of the specified group, in 'getDeviceIDsForGroup' order
+        private int[] _getGroupOrdinals(String groupID) {
+            if (_isGroupAll(groupID)) {
+                int ord[] = new int[this.deviceCount];
+                for (int i = 0; i < ord.length; i++) { ord[i] = i; }
+                return ord;
+            } else {
+                int ord[] = this.groupMap.get(_key(groupID));
+                return (ord != null)? ord : new int[0];
+            }
+        }
+        // -- return the IDs of all account devices (Device table order)
+        public OrderedSet<String> getAccountDeviceIDs(boolean inclInactv) {
+            OrderedSet<String> ids = inclInactv? this.allIDs : this.activeIDs;
+            if (ids == null) {
+                ids = this._getDeviceIDs(new String[] { DeviceGroup.DEVICE_GROUP_ALL }, inclInactv);
+                if (inclInactv) { this.allIDs = ids; } else { this.activeIDs = ids; }
+            }
+            return ids;
+        }
+        // -- return the IDs of all devices authorized by the user groups
+        public OrderedSet<String> getUserDeviceIDs(UserAuth ua, boolean inclInactv) {
+            OrderedSet<String> ids = inclInactv? ua.allIDs : ua.activeIDs;
+            if (ids == null) {
+                ids = this._getDeviceIDs(ua.groupIDs, inclInactv);
+                if (inclInactv) { ua.allIDs = ids; } else { ua.activeIDs = ids; }
+            }
+            return ids;
+        }
+        // -- return the devices of the specified groups, in the same order as adding the
+        // -  devices of each group (see DeviceGroup.getDeviceIDsForGroup) to an OrderedSet
+        private OrderedSet<String> _getDeviceIDs(String groupIDs[], boolean inclInactv) {
+            // OrderedSet moves a re-added entry to the end, so each device is placed at
+            // its last occurrence: scan backwards, keep the first occurrence, then reverse.
+            java.util.List<String> list = new ArrayList<String>();
+            BitSet seen = new BitSet(this.deviceIDs.length);
+            for (int g = groupIDs.length - 1; g >= 0; g--) {
+                int ord[] = this._getGroupOrdinals(groupIDs[g]);
+                for (int i = ord.length - 1; i >= 0; i--) {
+                    int o = ord[i];
+                    if (seen.get(o)) {
+                        continue;
+                    } else
+                    if (!inclInactv && !this.activeSet.get(o)) {
+                        continue; // inactive, or not in the Device table
+                    }
+                    seen.set(o);
+                    list.add(this.deviceIDs[o]);
+                }
+            }
+            Collections.reverse(list);
+            return new OrderedSet<String>(list);
+        }
+    }
+
+    /**
+    *** Index state of a single account
+    **/
+    private static class AccountIndex
+    {
+        private String              accountID   = null;
+        private volatile Snapshot   snapshot    = null;
+        private long                state[]     = null;
+        private volatile long       checkTimeMS = 0L;
+        public AccountIndex(String acctID) {
+            this.accountID = acctID;
+        }
+        // -- return the current snapshot, reloading if the account tables have changed
+        public Snapshot getSnapshot()
+            throws DBException
+        {
+            long nowMS = System.currentTimeMillis();
+            Snapshot snap = this.snapshot;
+            if ((snap != null) && ((nowMS - this.checkTimeMS) < _getRefreshMS())) {
+                return snap; // lock-free read of current snapshot
+            }
+            return this._refresh(nowMS);
+        }
+        private synchronized Snapshot _refresh(long nowMS)
+            throws DBException
+        {
+            if ((this.snapshot != null) && ((nowMS - this.checkTimeMS) < _getRefreshMS())) {
+                return this.snapshot; // refreshed by another thread
+            }
+            long st[] = DeviceAuthorizationIndex._getAccountState(this.accountID);
+            if (st == null) {
+                if (this.snapshot != null) {
+                    this.checkTimeMS = nowMS;
+                    return this.snapshot; // error (already logged), keep current snapshot
+                }
+                throw new DBException("Unable to read User authorization index state: " + this.accountID);
+            } else
+            if ((this.snapshot != null) && Arrays.equals(st,this.state)) {
+                this.checkTimeMS = nowMS;
+                return this.snapshot; // unchanged
+            }
+            this.snapshot    = DeviceAuthorizationIndex._loadSnapshot(this.accountID);
+            this.state       = st;
+            this.checkTimeMS = nowMS;
+            return this.snapshot;
+        }
+        // -- return the current snapshot without checking for changes (may be null)
+        public Snapshot peekSnapshot() {
+            return this.snapshot;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* access-ordered, so that the least recently used accounts are evicted first */
+    private static Map<String,AccountIndex> accountIndexMap = new LinkedHashMap<String,AccountIndex>(64, 0.75F, true);
+
+    /**
+    *** Gets the (refreshed) snapshot for the specified account
+    **/
+    private static Snapshot _getSnapshot(String acctID)
+        throws DBException
+    {
+        String acctKey = _key(acctID);
+        AccountIndex ai = null;
+        synchronized (accountIndexMap) {
+            ai = accountIndexMap.get(acctKey);
+            if (ai == null) {
+                ai = new AccountIndex(acctID);
+                accountIndexMap.put(acctKey, ai);
+                int maxSize = RTConfig.getInt(DBConfig.PROP_User_authorizationIndex_maxAccounts,1000);
+                if (maxSize > 0) {
+                    for (Iterator<String> i = accountIndexMap.keySet().iterator(); i.hasNext() && (accountIndexMap.size() > maxSize);) {
+                        if (!i.next().equals(acctKey)) {
+                            i.remove();
+                        }
+                    }
+                }
+            }
+        }
+        return ai.getSnapshot();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified device is authorized for the specified User.  Same
+    *** result as the (non-indexed) <code>User.isAuthorizedDevice</code>.
+    *** @param user      The User
+    *** @param deviceID  The device ID
+    *** @return True if the device is authorized for the User
+    *** @throws DBException if the account index could not be loaded
+    **/
+    public static boolean isAuthorizedDevice(User user, String deviceID)
+        throws DBException
+    {
+        if ((user == null) || StringTools.isBlank(deviceID)) {
+            return false;
+        }
+        Snapshot snap = DeviceAuthorizationIndex._getSnapshot(user.getAccountID());
+        UserAuth ua = snap.getUserAuth(user.getUserID());
+        if (!ua.hasGroups()) {
+            return user.getDefaultDeviceAuthorization();
+        } else
+        if (ua.allDevices) {
+            // always authorized for group 'all'
+            return true;
+        } else {
+            int ord = snap.getOrdinal(deviceID);
+            if ((ord >= 0) && ua.deviceSet.get(ord)) {
+                return true;
+            }
+            // does not exist in any authorized group
+            Print.logInfo("Not authorized device for user '%s': %s", user.getUserID(), deviceID);
+            return false;
+        }
+    }
+
+    /**
+    *** Gets the IDs of all devices authorized for the specified User.  Same result (and
+    *** order) as the (non-indexed) <code>User.getAuthorizedDeviceIDs</code>.
+    *** @param user        The User
+    *** @param inclInactv  True to include inactive devices
+    *** @return The authorized device IDs (a new set, which may be modified by the caller)
+    *** @throws DBException if the account index could not be loaded
+    **/
+    public static OrderedSet<String> getAuthorizedDeviceIDs(User user, boolean inclInactv)
+        throws DBException
+    {
+        if (user == null) {
+            return new OrderedSet<String>();
+        }
+        Snapshot snap = DeviceAuthorizationIndex._getSnapshot(user.getAccountID());
+        UserAuth ua = snap.getUserAuth(user.getUserID());
+        if (ua.hasGroups()) {
+            // The user is authorized to all Devices in the listed groups
+            return new OrderedSet<String>(snap.getUserDeviceIDs(ua, inclInactv));
+        } else
+        if (user.getDefaultDeviceAuthorization()) {
+            // all devices are authorized
+            return new OrderedSet<String>(snap.getAccountDeviceIDs(inclInactv));
+        } else {
+            // no devices are authorized
+            return new OrderedSet<String>();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Removes the specified account from the index.  The account will be reloaded on
+    *** the next authorization check.
+    *** @param acctID  The account ID
+    **/
+    public static void invalidate(String acctID)
+    {
+        if (acctID != null) {
+            synchronized (accountIndexMap) {
+                accountIndexMap.remove(_key(acctID));
+            }
+        }
+    }
+
+    /**
+    *** Called after a Device record has been updated.  The account is removed from the
+    *** index if the device is not yet indexed, or its 'isActive' state has changed.
+    *** @param acctID    The account ID
+    *** @param deviceID  The device ID
+    *** @param isActive  The Device 'isActive' state
+    **/
+    public static void deviceDidUpdate(String acctID, String deviceID, boolean isActive)
+    {
+        if ((acctID == null) || !DeviceAuthorizationIndex.isEnabled()) {
+            return;
+        }
+        AccountIndex ai = null;
+        synchronized (accountIndexMap) {
+            ai = accountIndexMap.get(_key(acctID));
+        }
+        Snapshot snap = (ai != null)? ai.peekSnapshot() : null;
+        if (snap != null) {
+            int ord = snap.getOrdinal(deviceID);
+            if ((ord < 0) || (ord >= snap.deviceCount) || (snap.activeSet.get(ord) != isActive)) {
+                DeviceAuthorizationIndex.invalidate(acctID);
+            }
+        }
+    }
+
+    /**
+    *** Gets the number of indexed accounts
+    *** @return The number of indexed accounts
+    **/
+    public static int size()
+    {
+        synchronized (accountIndexMap) {
+            return accountIndexMap.size();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Loads the Device/DeviceList/GroupList snapshot for the specified account
+    **/
+    private static Snapshot _loadSnapshot(String acctID)
+        throws DBException
+    {
+        java.util.List<String> devIDs = new ArrayList<String>();
+        Map<String,Integer> ordMap = new HashMap<String,Integer>();
+        BitSet activeSet = new BitSet();
+        Map<String,java.util.List<Integer>> grpLists = new HashMap<String,java.util.List<Integer>>();
+        Map<String,java.util.List<String>> userLists = new HashMap<String,java.util.List<String>>();
+        int deviceCount = 0;
+
+        DBConnection dbc = null;
+        Statement   stmt = null;
+        ResultSet     rs = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+
+            /* devices */
+            // DBSelect: SELECT deviceID,isActive FROM Device WHERE (accountID='acct') ORDER BY deviceID
+            DBSelect<Device> devSel = new DBSelect<Device>(Device.getFactory());
+            devSel.setSelectedFields(Device.FLD_deviceID, Device.FLD_isActive);
+            DBWhere devWh = devSel.createDBWhere();
+            devSel.setWhere(devWh.WHERE(devWh.EQ(Device.FLD_accountID,acctID)));
+            devSel.setOrderByFields(Device.FLD_deviceID);
+            stmt = dbc.execute(devSel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String devID = rs.getString(Device.FLD_deviceID);
+                String devKey = _key(devID);
+                if (!ordMap.containsKey(devKey)) {
+                    int ord = devIDs.size();
+                    ordMap.put(devKey, new Integer(ord));
+                    devIDs.add(devID);
+                    if (rs.getInt(Device.FLD_isActive) != 0) {
+                        activeSet.set(ord);
+                    }
+                }
+            }
+            rs.close();   rs   = null;
+            stmt.close(); stmt = null;
+            deviceCount = devIDs.size();
+
+            /* group membership */
+            // DBSelect: SELECT groupID,deviceID FROM DeviceList WHERE (accountID='acct') ORDER BY groupID,deviceID
+            DBSelect<DeviceList> grpSel = new DBSelect<DeviceList>(DeviceList.getFactory());
+            grpSel.setSelectedFields(DeviceList.FLD_groupID, DeviceList.FLD_deviceID);
+            DBWhere grpWh = grpSel.createDBWhere();
+            grpSel.setWhere(grpWh.WHERE(grpWh.EQ(DeviceList.FLD_accountID,acctID)));
+            grpSel.setOrderByFields(DeviceList.FLD_groupID, DeviceList.FLD_deviceID);
+            stmt = dbc.execute(grpSel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String grpKey = _key(rs.getString(DeviceList.FLD_groupID));
+                String devID  = rs.getString(DeviceList.FLD_deviceID);
+                Integer ord   = ordMap.get(_key(devID));
+                if (ord == null) {
+                    // DeviceList entry without a Device record (never 'active')
+                    ord = new Integer(devIDs.size());
+                    ordMap.put(_key(devID), ord);
+                    devIDs.add(devID);
+                }
+                java.util.List<Integer> members = grpLists.get(grpKey);
+                if (members == null) {
+                    members = new ArrayList<Integer>();
+                    grpLists.put(grpKey, members);
+                }
+                members.add(ord);
+            }
+            rs.close();   rs   = null;
+            stmt.close(); stmt = null;
+
+            /* user groups */
+            // DBSelect: SELECT userID,groupID FROM GroupList WHERE (accountID='acct') ORDER BY userID,groupID
+            DBSelect<GroupList> usrSel = new DBSelect<GroupList>(GroupList.getFactory());
+            usrSel.setSelectedFields(GroupList.FLD_userID, GroupList.FLD_groupID);
+            DBWhere usrWh = usrSel.createDBWhere();
+            usrSel.setWhere(usrWh.WHERE(usrWh.EQ(GroupList.FLD_accountID,acctID)));
+            usrSel.setOrderByFields(GroupList.FLD_userID, GroupList.FLD_groupID);
+            stmt = dbc.execute(usrSel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String userKey = _key(rs.getString(GroupList.FLD_userID));
+                java.util.List<String> groups = userLists.get(userKey);
+                if (groups == null) {
+                    groups = new ArrayList<String>();
+                    userLists.put(userKey, groups);
+                }
+                groups.add(rs.getString(GroupList.FLD_groupID));
+            }
+
+        } catch (SQLException sqe) {
+            throw new DBException("Loading User authorization index", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+
+        /* build snapshot */
+        Snapshot snap = new Snapshot();
+        snap.deviceIDs    = devIDs.toArray(new String[devIDs.size()]);
+        snap.deviceCount  = deviceCount;
+        snap.ordinalMap   = ordMap;
+        snap.activeSet    = activeSet;
+        snap.groupMap     = new HashMap<String,int[]>();
+        snap.groupSetMap  = new HashMap<String,BitSet>();
+        for (Map.Entry<String,java.util.List<Integer>> me : grpLists.entrySet()) {
+            java.util.List<Integer> members = me.getValue();
+            int    ord[]  = new int[members.size()];
+            BitSet grpSet = new BitSet(snap.deviceIDs.length);
+            for (int i = 0; i < ord.length; i++) {
+                ord[i] = members.get(i).intValue();
+                grpSet.set(ord[i]);
+            }
+            snap.groupMap.put(me.getKey(), ord);
+            snap.groupSetMap.put(me.getKey(), grpSet);
+        }
+        snap.userGroupMap = new HashMap<String,String[]>();
+        for (Map.Entry<String,java.util.List<String>> me : userLists.entrySet()) {
+            java.util.List<String> groups = me.getValue();
+            snap.userGroupMap.put(me.getKey(), groups.toArray(new String[groups.size()]));
+        }
+        Print.logDebug("Loaded User authorization index: %s [devices=%d, groups=%d, users=%d]",
+            acctID, deviceCount, snap.groupMap.size(), snap.userGroupMap.size());
+        return snap;
+
+    }
+
+    /**
+    *** Returns the account Device row count, active Device row count, DeviceList row count,
+    *** DeviceList maximum 'lastUpdateTime', GroupList row count, and GroupList content hash
+    *** (or null if an error occurred).<br>
+    *** The GroupList rows are read and hashed, since a User may be moved between groups
+    *** without changing the GroupList row count.
+    **/
+    private static long[] _getAccountState(String acctID)
+    {
+        long state[] = new long[6];
+
+        // SELECT COUNT(*) FROM Device WHERE (accountID='account')
+        DBWhere devWh = new DBWhere(Device.getFactory());
+        StringBuffer devSB = new StringBuffer();
+        devSB.append("SELECT ").append(DBProvider.FLD_COUNT());
+        devSB.append(" FROM ").append(Device.TABLE_NAME());
+        devSB.append(devWh.WHERE(devWh.EQ(Device.FLD_accountID,acctID)));
+
+        // SELECT COUNT(*) FROM Device WHERE ((accountID='account') AND (isActive!=0))
+        DBWhere actWh = new DBWhere(Device.getFactory());
+        StringBuffer actSB = new StringBuffer();
+        actSB.append("SELECT ").append(DBProvider.FLD_COUNT());
+        actSB.append(" FROM ").append(Device.TABLE_NAME());
+        actSB.append(actWh.WHERE_(actWh.AND(
+            actWh.EQ(Device.FLD_accountID,acctID),
+            actWh.NE(Device.FLD_isActive,0)
+        )));
+
+        // SELECT COUNT(*),MAX(lastUpdateTime) FROM DeviceList WHERE (accountID='account')
+        DBWhere grpWh = new DBWhere(DeviceList.getFactory());
+        StringBuffer grpSB = new StringBuffer();
+        grpSB.append("SELECT ").append(DBProvider.FLD_COUNT());
+        grpSB.append(",MAX(").append(DBProvider.translateColumnName(DeviceList.FLD_lastUpdateTime)).append(")");
+        grpSB.append(" FROM ").append(DeviceList.TABLE_NAME());
+        grpSB.append(grpWh.WHERE(grpWh.EQ(DeviceList.FLD_accountID,acctID)));
+
+        // SELECT userID,groupID FROM GroupList WHERE (accountID='account') ORDER BY userID,groupID
+        DBSelect<GroupList> usrSel = new DBSelect<GroupList>(GroupList.getFactory());
+        usrSel.setSelectedFields(GroupList.FLD_userID, GroupList.FLD_groupID);
+        DBWhere usrWh = usrSel.createDBWhere();
+        usrSel.setWhere(usrWh.WHERE(usrWh.EQ(GroupList.FLD_accountID,acctID)));
+        usrSel.setOrderByFields(GroupList.FLD_userID, GroupList.FLD_groupID);
+
+        String sql[] = new String[] { devSB.toString(), actSB.toString(), grpSB.toString() };
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            int s = 0;
+            for (int q = 0; q < sql.length; q++) {
+                stmt = dbc.execute(sql[q]);
+                rs   = stmt.getResultSet();
+                int cols = (q == 2)? 2 : 1;
+                boolean row = rs.next();
+                for (int c = 1; c <= cols; c++) {
+                    state[s++] = row? rs.getLong(c) : 0L;
+                }
+                rs.close();   rs   = null;
+                stmt.close(); stmt = null;
+            }
+            // GroupList row count and content hash (FNV-1a, 64-bit)
+            long count = 0L;
+            long hash  = 0xCBF29CE484222325L;
+            stmt = dbc.execute(usrSel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String row = _key(rs.getString(GroupList.FLD_userID)) + "/" + _key(rs.getString(GroupList.FLD_groupID)) + "\n";
+                for (int i = 0; i < row.length(); i++) {
+                    hash ^= row.charAt(i);
+                    hash *= 0x100000001B3L;
+                }
+                count++;
+            }
+            rs.close();   rs   = null;
+            stmt.close(); stmt = null;
+            state[s++] = count;
+            state[s++] = hash;
+            return state;
+        } catch (SQLException sqe) {
+            Print.logError("User authorization index state error: " + sqe);
+            return null;
+        } catch (DBException dbe) {
+            Print.logError("User authorization index state error: " + dbe);
+            return null;
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+    }
+
+}
@@ -0,0 +1,508 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Shared in-memory unique-id to Device/Transport directory
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** <code>DeviceDirectory</code> maps each (prefixed) unique-id to the account/device (or
+*** account/transport) key which owns it, so that a device communication server can
+*** resolve a modem-id without a "uniqueID" query for each configured unique-id prefix.<br>
+*** The directory is loaded with a single scan of the Device (and Transport) table, and is
+*** refreshed every "Device.uniqueIdDirectory.refreshSec" seconds by reading only those
+*** records whose "lastUpdateTime" has changed since the previous refresh.<br>
+*** Unique-ids which are not found in the database are remembered for
+*** "Device.uniqueIdDirectory.unknownExpireSec" seconds, so that repeated connections
+*** from unknown devices do not query the database (or UnassignedDevices) each time.<br>
+*** Enabled with the runtime property "Device.uniqueIdDirectory".
+**/
+
+public class DeviceDirectory
+{
+
+    // ------------------------------------------------------------------------
+
+    /* records updated shortly before a refresh may not yet have been committed */
+    private static final long   REFRESH_OVERLAP_SEC = 5L;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the unique-id directory is enabled
+    *** @return True if the unique-id directory is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_Device_uniqueIdDirectory,false);
+    }
+
+    private static long getRefreshMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_Device_uniqueIdDirectory_refreshSec,60L) * 1000L;
+    }
+
+    private static long getUnknownExpireMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_Device_uniqueIdDirectory_unknownExpireSec,300L) * 1000L;
+    }
+
+    private static int getUnknownMaxSize()
+    {
+        return RTConfig.getInt(DBConfig.PROP_Device_uniqueIdDirectory_unknownMaxSize,50000);
+    }
+
+    private static String _key(String acctID, String id)
+    {
+        return acctID + "/" + id;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Directory entry
+    **/
+    public static class Entry
+    {
+        private String  accountID   = null;
+        private String  deviceID    = null;
+        private String  transportID = null;
+        private String  uniqueID    = null;
+        private Entry(String acctID, String devID, String xportID, String uniqID) {
+            this.accountID   = acctID;
+            this.deviceID    = devID;
+            this.transportID = xportID;
+            this.uniqueID    = uniqID;
+        }
+        public String getAccountID() {
+            return this.accountID;
+        }
+        public String getDeviceID() {
+            return this.deviceID;
+        }
+        public String getTransportID() {
+            return this.transportID;
+        }
+        public boolean isTransport() {
+            return (this.transportID != null);
+        }
+        private String getKey() {
+            return _key(this.accountID, this.isTransport()? this.transportID : this.deviceID);
+        }
+        /**
+        *** Loads the Device referenced by this entry
+        *** @return The Device, or null if the Device no longer exists, or if the loaded
+        ***         Device/Transport no longer has the unique-id of this entry
+        **/
+        public Device loadDevice()
+            throws DBException
+        {
+            Account account = AccountCache.loadAccount(this.accountID);
+            Device  dev     = null;
+            if (account == null) {
+                return null;
+            } else
+            if (this.isTransport()) {
+                dev = Transport.loadDeviceByTransportID(account, this.transportID);
+            } else {
+                dev = Device.getDevice(account, this.deviceID);
+            }
+            if ((dev != null) && !this.uniqueID.equals(dev.getDataTransport().getUniqueID())) {
+                // unique-id changed since the directory was last refreshed
+                Print.logWarn("Stale DeviceDirectory entry: " + this.uniqueID + " ==> " + this);
+                return null;
+            }
+            return dev;
+        }
+        public String toString() {
+            return this.isTransport()? (this.getKey() + " [transport]") : this.getKey();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static Map<String,Entry>    uniqueIdMap     = new HashMap<String,Entry>();   // uniqueID ==> Entry
+    private static Map<String,String>   deviceKeyMap    = new HashMap<String,String>();  // account/device ==> uniqueID
+    private static Map<String,String>   xportKeyMap     = new HashMap<String,String>();  // account/transport ==> uniqueID
+    /* insertion-ordered, so that the oldest unknown unique-ids are trimmed first */
+    private static Map<String,Long>     unknownMap      = new LinkedHashMap<String,Long>(); // uniqueID ==> expiration
+    private static boolean              didLoad         = false;
+    private static long                 lastRefreshSec  = 0L;
+    private static Thread               refreshThread   = null;
+
+    /**
+    *** Loads the directory (if not already loaded) and starts the background refresh thread.
+    *** Device communication servers may call this method at startup, otherwise the
+    *** directory is loaded on first use.
+    **/
+    public static void startup()
+    {
+        if (DeviceDirectory.isEnabled()) {
+            DeviceDirectory._checkLoaded();
+        }
+    }
+
+    private static void _checkLoaded()
+    {
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            if (DeviceDirectory.didLoad) {
+                return;
+            }
+            // loaded while synchronized, so that concurrent first lookups wait for the scan
+            DeviceDirectory._reload();
+            DeviceDirectory.didLoad = true;
+            DeviceDirectory.refreshThread = new Thread("DeviceDirectory_refresh") {
+                public void run() {
+                    while (true) {
+                        try { Thread.sleep(DeviceDirectory.getRefreshMS()); } catch (InterruptedException ie) {}
+                        DeviceDirectory.refresh();
+                    }
+                }
+            };
+            DeviceDirectory.refreshThread.setDaemon(true);
+            DeviceDirectory.refreshThread.start();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Reads the account/id/unique-id columns of the specified table
+    *** @param fact      The Device or Transport table factory
+    *** @param idFld     The Device-ID or Transport-ID field name
+    *** @param sinceSec  Only read records updated at/after this time, or '0' to read all
+    ***                  records with a non-blank unique-id
+    *** @return A list of {accountID, id, uniqueID} rows
+    **/
+    private static <T extends DBRecord<T>> java.util.List<String[]> _readUniqueIDs(DBFactory<T> fact,
+        String idFld, long sinceSec)
+        throws DBException
+    {
+        java.util.List<String[]> rows = new Vector<String[]>();
+
+        /* select */
+        // DBSelect: SELECT accountID,<idFld>,uniqueID FROM <table> WHERE (lastUpdateTime>=<since>)
+        // DBSelect: SELECT accountID,<idFld>,uniqueID FROM <table> WHERE (uniqueID!='')
+        DBSelect<T> dsel = new DBSelect<T>(fact);
+        dsel.setSelectedFields(Device.FLD_accountID, idFld, Device.FLD_uniqueID);
+        DBWhere dwh = dsel.createDBWhere();
+        if (sinceSec > 0L) {
+            dsel.setWhere(dwh.WHERE_(dwh.GE(DBRecord.FLD_lastUpdateTime,sinceSec)));
+        } else {
+            dsel.setWhere(dwh.WHERE_(dwh.NE(Device.FLD_uniqueID,"")));
+        }
+
+        /* read */
+        DBConnection dbc = null;
+        Statement   stmt = null;
+        ResultSet     rs = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(dsel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String acctID = rs.getString(Device.FLD_accountID);
+                String id     = rs.getString(idFld);
+                String uniqID = rs.getString(Device.FLD_uniqueID);
+                rows.add(new String[] { acctID, id, StringTools.trim(uniqID) });
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Reading unique-ids: " + fact.getUntranslatedTableName(), sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+
+        return rows;
+    }
+
+    /**
+    *** Reloads the entire directory (must be synchronized on 'uniqueIdMap')
+    **/
+    private static void _reload()
+    {
+        long startSec = DateTime.getCurrentTimeSec();
+        try {
+            java.util.List<String[]> devRows   = DeviceDirectory._readUniqueIDs(Device.getFactory(), Device.FLD_deviceID, 0L);
+            java.util.List<String[]> xportRows = Transport.isTransportQueryEnabled()?
+                DeviceDirectory._readUniqueIDs(Transport.getFactory(), Transport.FLD_transportID, 0L) : null;
+            DeviceDirectory.uniqueIdMap.clear();
+            DeviceDirectory.deviceKeyMap.clear();
+            DeviceDirectory.xportKeyMap.clear();
+            for (String r[] : devRows) {
+                DeviceDirectory._putDevice(r[0], r[1], r[2]);
+            }
+            if (xportRows != null) {
+                for (String r[] : xportRows) {
+                    DeviceDirectory._putTransport(r[0], r[1], r[2]);
+                }
+            }
+            DeviceDirectory.lastRefreshSec = startSec;
+            Print.logInfo("DeviceDirectory loaded " + DeviceDirectory.uniqueIdMap.size() + " unique-ids");
+        } catch (DBException dbe) {
+            // retried at the next refresh
+            Print.logError("Unable to load DeviceDirectory: " + dbe);
+            DeviceDirectory.lastRefreshSec = 0L;
+        }
+    }
+
+    /**
+    *** Reads the Device (and Transport) records which have changed since the last refresh,
+    *** and updates the directory.  The directory is reloaded if records have been deleted.
+    **/
+    public static void refresh()
+    {
+        if (!DeviceDirectory.isEnabled()) {
+            return;
+        }
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            if (DeviceDirectory.lastRefreshSec <= 0L) {
+                DeviceDirectory._reload();
+                return;
+            }
+        }
+        try {
+            long startSec, sinceSec;
+            synchronized (DeviceDirectory.uniqueIdMap) {
+                startSec = DateTime.getCurrentTimeSec();
+                sinceSec = Math.max(DeviceDirectory.lastRefreshSec - REFRESH_OVERLAP_SEC, 1L);
+            }
+            java.util.List<String[]> devRows   = DeviceDirectory._readUniqueIDs(Device.getFactory(), Device.FLD_deviceID, sinceSec);
+            java.util.List<String[]> xportRows = Transport.isTransportQueryEnabled()?
+                DeviceDirectory._readUniqueIDs(Transport.getFactory(), Transport.FLD_transportID, sinceSec) : null;
+            DBWhere dwh = new DBWhere(Device.getFactory());
+            long devCount = Device.getFactory().getRecordCount(dwh.WHERE_(dwh.NE(Device.FLD_uniqueID,"")));
+            synchronized (DeviceDirectory.uniqueIdMap) {
+                for (String r[] : devRows) {
+                    DeviceDirectory._putDevice(r[0], r[1], r[2]);
+                }
+                if (xportRows != null) {
+                    for (String r[] : xportRows) {
+                        DeviceDirectory._putTransport(r[0], r[1], r[2]);
+                    }
+                }
+                if (devCount != (long)DeviceDirectory.deviceKeyMap.size()) {
+                    // Devices have been deleted (or the count is otherwise out of sync)
+                    DeviceDirectory._reload();
+                } else {
+                    DeviceDirectory.lastRefreshSec = startSec;
+                }
+            }
+        } catch (DBException dbe) {
+            // retried at the next refresh
+            Print.logError("Unable to refresh DeviceDirectory: " + dbe);
+        }
+    }
+
+    /**
+    *** Sets the unique-id of the specified Device (must be synchronized on 'uniqueIdMap')
+    **/
+    private static void _putDevice(String acctID, String devID, String uniqID)
+    {
+        String key    = _key(acctID, devID);
+        String oldUID = DeviceDirectory.deviceKeyMap.remove(key);
+        if (oldUID != null) {
+            Entry e = DeviceDirectory.uniqueIdMap.get(oldUID);
+            if ((e != null) && !e.isTransport() && key.equals(e.getKey())) {
+                DeviceDirectory.uniqueIdMap.remove(oldUID);
+            }
+        }
+        if (!StringTools.isBlank(uniqID)) {
+            DeviceDirectory.deviceKeyMap.put(key, uniqID);
+            Entry e = DeviceDirectory.uniqueIdMap.get(uniqID);
+            if ((e == null) || !e.isTransport()) {
+                // Transport entries take precedence (as in "Transport.loadDeviceByUniqueID")
+                DeviceDirectory.uniqueIdMap.put(uniqID, new Entry(acctID, devID, null, uniqID));
+            }
+            DeviceDirectory.unknownMap.remove(uniqID);
+        }
+    }
+
+    /**
+    *** Sets the unique-id of the specified Transport (must be synchronized on 'uniqueIdMap')
+    **/
+    private static void _putTransport(String acctID, String xportID, String uniqID)
+    {
+        String key    = _key(acctID, xportID);
+        String oldUID = DeviceDirectory.xportKeyMap.remove(key);
+        if (oldUID != null) {
+            Entry e = DeviceDirectory.uniqueIdMap.get(oldUID);
+            if ((e != null) && e.isTransport() && key.equals(e.getKey())) {
+                DeviceDirectory.uniqueIdMap.remove(oldUID);
+            }
+        }
+        if (!StringTools.isBlank(uniqID)) {
+            DeviceDirectory.xportKeyMap.put(key, uniqID);
+            DeviceDirectory.uniqueIdMap.put(uniqID, new Entry(acctID, null, xportID, uniqID));
+            DeviceDirectory.unknownMap.remove(uniqID);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the directory entry for the specified unique-id
+    *** @param uniqueID  The unique-id (including any prefix)
+    *** @return The directory entry, or null if the unique-id is not in the directory
+    **/
+    public static Entry getEntry(String uniqueID)
+    {
+        if (StringTools.isBlank(uniqueID) || !DeviceDirectory.isEnabled()) {
+            return null;
+        } else
+        if (UniqueXID.isUniqueQueryEnabled()) {
+            // UniqueXID entries take precedence, and are not included in this directory
+            return null;
+        }
+        DeviceDirectory._checkLoaded();
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            return DeviceDirectory.uniqueIdMap.get(uniqueID);
+        }
+    }
+
+    /**
+    *** Removes the directory entry for the specified unique-id (typically called when
+    *** the referenced Device no longer exists)
+    *** @param uniqueID  The unique-id
+    **/
+    public static void removeEntry(String uniqueID)
+    {
+        if (StringTools.isBlank(uniqueID)) {
+            return;
+        }
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            Entry e = DeviceDirectory.uniqueIdMap.remove(uniqueID);
+            if (e != null) {
+                Map<String,String> keyMap = e.isTransport()? DeviceDirectory.xportKeyMap : DeviceDirectory.deviceKeyMap;
+                if (uniqueID.equals(keyMap.get(e.getKey()))) {
+                    keyMap.remove(e.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+    *** Adds the specified Device, located in the database by its own unique-id
+    *** @param uniqueID  The unique-id used to locate the Device
+    *** @param dev       The Device
+    **/
+    public static void putDevice(String uniqueID, Device dev)
+    {
+        if ((dev == null) || StringTools.isBlank(uniqueID) || !DeviceDirectory.isEnabled()) {
+            return;
+        } else
+        if (!uniqueID.equals(dev.getUniqueID())) {
+            // located via a Transport/UniqueXID record
+            return;
+        }
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            if (DeviceDirectory.didLoad) {
+                DeviceDirectory._putDevice(dev.getAccountID(), dev.getDeviceID(), uniqueID);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified unique-id was recently found not to exist
+    *** @param uniqueID  The unique-id
+    *** @return True if the unique-id is known not to exist
+    **/
+    public static boolean isUnknown(String uniqueID)
+    {
+        if (StringTools.isBlank(uniqueID) || !DeviceDirectory.isEnabled()) {
+            return false;
+        }
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            Long expire = DeviceDirectory.unknownMap.get(uniqueID);
+            if (expire == null) {
+                return false;
+            } else
+            if (expire.longValue() > DateTime.getCurrentTimeMillis()) {
+                return true;
+            } else {
+                DeviceDirectory.unknownMap.remove(uniqueID);
+                return false;
+            }
+        }
+    }
+
+    /**
+    *** Records that the specified unique-id does not exist
+    *** @param uniqueID  The unique-id
+    **/
+    public static void putUnknown(String uniqueID)
+    {
+        if (StringTools.isBlank(uniqueID) || !DeviceDirectory.isEnabled()) {
+            return;
+        }
+        long expireMS = DeviceDirectory.getUnknownExpireMS();
+        if (expireMS <= 0L) {
+            return;
+        }
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            DeviceDirectory.unknownMap.remove(uniqueID); // re-insert at end
+            DeviceDirectory.unknownMap.put(uniqueID, new Long(DateTime.getCurrentTimeMillis() + expireMS));
+            int maxSize = DeviceDirectory.getUnknownMaxSize();
+            if (maxSize > 0) {
+                for (Iterator<String> i = DeviceDirectory.unknownMap.keySet().iterator();
+                    i.hasNext() && (DeviceDirectory.unknownMap.size() > maxSize);) {
+                    i.next();
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of unique-ids in the directory
+    *** @return The number of unique-ids in the directory
+    **/
+    public static int getSize()
+    {
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            return DeviceDirectory.uniqueIdMap.size();
+        }
+    }
+
+    /**
+    *** Gets the number of remembered unknown unique-ids
+    *** @return The number of remembered unknown unique-ids
+    **/
+    public static int getUnknownSize()
+    {
+        synchronized (DeviceDirectory.uniqueIdMap) {
+            return DeviceDirectory.unknownMap.size();
+        }
+    }
+
+}
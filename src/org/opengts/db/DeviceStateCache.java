@@ -0,0 +1,435 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Shared in-memory Device cache with write-behind of per-event Device changes
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** <code>DeviceStateCache</code> holds the Device records used by a device communication
+*** server, keyed by account/device and by unique-id, so that subsequent sessions from
+*** the same device reuse the in-memory Device state rather than reloading the Device
+*** record from the database.<br>
+*** Per-event Device field changes ("Device.updateChangedEventFields") made to a cached
+*** Device are coalesced and written to the database by a background thread at most
+*** "Device.stateCache.flushSec" seconds after the first change, when the session ends
+*** ("flushDevice"), or when the JVM exits.  The changed field values are copied when
+*** they are recorded, and are written from a separate Device instance, so the flush
+*** never reads or modifies the cached Device while a session is updating it.<br>
+*** Enabled with the runtime property "Device.stateCache".
+**/
+
+public class DeviceStateCache
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final long   FLUSH_CHECK_MS      = 1000L;
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the Device state cache is enabled
+    *** @return True if the Device state cache is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_Device_stateCache,false);
+    }
+
+    private static long getFlushIntervalMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_Device_stateCache_flushSec,30L) * 1000L;
+    }
+
+    private static long getExpireMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_Device_stateCache_expireSec,600L) * 1000L;
+    }
+
+    private static int getMaxSize()
+    {
+        return RTConfig.getInt(DBConfig.PROP_Device_stateCache_maxSize,20000);
+    }
+
+    private static String _key(String acctID, String devID)
+    {
+        return acctID + "/" + devID;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Cached Device entry
+    **/
+    private static class CacheEntry
+    {
+        private Device      device      = null;
+        private String      uniqueID    = null;
+        private long        loadTimeMS  = 0L;
+        private Map<String,Object> dirtyValues = null; // null if unchanged
+        private boolean     isActive    = true;
+        private long        dirtyTimeMS = 0L;
+        public CacheEntry(Device dev, String uniqueID) {
+            this.device     = dev;
+            this.uniqueID   = !StringTools.isBlank(uniqueID)? uniqueID : dev.getUniqueID();
+            this.loadTimeMS = DateTime.getCurrentTimeMillis();
+        }
+        public boolean isExpired(long nowMS, long expireMS) {
+            return (expireMS > 0L) && ((nowMS - this.loadTimeMS) >= expireMS);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* access-ordered, so that the least recently used entries are evicted first */
+    private static Map<String,CacheEntry>   deviceMap       = new LinkedHashMap<String,CacheEntry>(256, 0.75F, true);
+    private static Map<String,String>       uniqueIdMap     = new HashMap<String,String>();
+    private static Thread                   flushThread     = null;
+
+    /**
+    *** Starts the background flush thread and JVM shutdown hook (if not already started)
+    **/
+    private static void _startFlushThread()
+    {
+        // must be called while synchronized on 'deviceMap'
+        if (DeviceStateCache.flushThread == null) {
+            DeviceStateCache.flushThread = new Thread("DeviceStateCache_flush") {
+                public void run() {
+                    while (true) {
+                        try { Thread.sleep(FLUSH_CHECK_MS); } catch (InterruptedException ie) {}
+                        DeviceStateCache._flushDirty(DeviceStateCache.getFlushIntervalMS());
+                    }
+                }
+            };
+            DeviceStateCache.flushThread.setDaemon(true);
+            DeviceStateCache.flushThread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread("DeviceStateCache_shutdown") {
+                public void run() {
+                    DeviceStateCache.flushAll();
+                }
+            });
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the cached Device for the specified account/device
+    *** @param acctID  The account-id
+    *** @param devID   The device-id
+    *** @return The cached Device, or null if not cached (or expired)
+    **/
+    public static Device getDevice(String acctID, String devID)
+    {
+        if (StringTools.isBlank(acctID) || StringTools.isBlank(devID) || !DeviceStateCache.isEnabled()) {
+            return null;
+        }
+        return DeviceStateCache._getDevice(_key(acctID,devID));
+    }
+
+    /**
+    *** Gets the cached Device for the specified unique-id
+    *** @param uniqueID  The Device unique-id
+    *** @return The cached Device, or null if not cached (or expired)
+    **/
+    public static Device getDeviceByUniqueID(String uniqueID)
+    {
+        if (StringTools.isBlank(uniqueID) || !DeviceStateCache.isEnabled()) {
+            return null;
+        }
+        String key = null;
+        synchronized (DeviceStateCache.deviceMap) {
+            key = DeviceStateCache.uniqueIdMap.get(uniqueID);
+        }
+        return (key != null)? DeviceStateCache._getDevice(key) : null;
+    }
+
+    private static Device _getDevice(String key)
+    {
+        CacheEntry expired = null;
+        synchronized (DeviceStateCache.deviceMap) {
+            CacheEntry ce = DeviceStateCache.deviceMap.get(key);
+            if (ce == null) {
+                return null;
+            } else
+            if (!ce.isExpired(DateTime.getCurrentTimeMillis(),DeviceStateCache.getExpireMS())) {
+                return ce.device;
+            }
+            // expired: remove, so that the Device is reloaded from the database
+            expired = DeviceStateCache._remove(key);
+        }
+        DeviceStateCache._flushEntry(expired);
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Adds the specified (newly loaded) Device to the cache.  If the Device is already
+    *** cached, the previously cached instance is returned, so that all sessions share the
+    *** same in-memory Device state.
+    *** @param dev       The Device loaded from the database
+    *** @param uniqueID  The unique-id used to locate the Device (may differ from the
+    ***                  Device unique-id if located via a Transport record), or null
+    ***                  to use the Device unique-id
+    *** @return The cached Device instance (the specified Device if the cache is disabled)
+    **/
+    public static Device putDevice(Device dev, String uniqueID)
+    {
+        if ((dev == null) || !DeviceStateCache.isEnabled()) {
+            return dev;
+        }
+        String key = _key(dev.getAccountID(), dev.getDeviceID());
+        java.util.List<CacheEntry> evicted = null;
+        Device rtnDev = dev;
+        synchronized (DeviceStateCache.deviceMap) {
+            CacheEntry ce = DeviceStateCache.deviceMap.get(key);
+            if ((ce != null) && !ce.isExpired(DateTime.getCurrentTimeMillis(),DeviceStateCache.getExpireMS())) {
+                rtnDev = ce.device;
+            } else {
+                if (ce != null) {
+                    evicted = new Vector<CacheEntry>();
+                    evicted.add(DeviceStateCache._remove(key));
+                }
+                ce = new CacheEntry(dev, uniqueID);
+                DeviceStateCache.deviceMap.put(key, ce);
+                if (!StringTools.isBlank(ce.uniqueID)) {
+                    DeviceStateCache.uniqueIdMap.put(ce.uniqueID, key);
+                }
+                DeviceStateCache._startFlushThread();
+                /* trim to maximum size (least recently used first) */
+                int maxSize = DeviceStateCache.getMaxSize();
+                if ((maxSize > 0) && (DeviceStateCache.deviceMap.size() > maxSize)) {
+                    if (evicted == null) { evicted = new Vector<CacheEntry>(); }
+                    int trimCount = DeviceStateCache.deviceMap.size() - maxSize;
+                    java.util.List<String> trimKeys = new Vector<String>();
+                    for (Iterator<String> ki = DeviceStateCache.deviceMap.keySet().iterator(); ki.hasNext() && (trimKeys.size() < trimCount);) {
+                        String k = ki.next();
+                        if (!k.equals(key)) {
+                            trimKeys.add(k);
+                        }
+                    }
+                    for (String k : trimKeys) {
+                        evicted.add(DeviceStateCache._remove(k));
+                    }
+                }
+            }
+        }
+        if (evicted != null) {
+            for (CacheEntry e : evicted) {
+                DeviceStateCache._flushEntry(e);
+            }
+        }
+        return rtnDev;
+    }
+
+    /**
+    *** Removes the entry for the specified key (must be synchronized on 'deviceMap')
+    **/
+    private static CacheEntry _remove(String key)
+    {
+        CacheEntry ce = DeviceStateCache.deviceMap.remove(key);
+        if ((ce != null) && (ce.uniqueID != null) && key.equals(DeviceStateCache.uniqueIdMap.get(ce.uniqueID))) {
+            DeviceStateCache.uniqueIdMap.remove(ce.uniqueID);
+        }
+        return ce;
+    }
+
+    /**
+    *** Removes the specified Device from the cache, writing any pending changes first
+    *** (typically called when the cached Device no longer matches the unique-id used to
+    *** locate it)
+    *** @param dev  The cached Device
+    **/
+    public static void removeDevice(Device dev)
+    {
+        if ((dev == null) || !DeviceStateCache.isEnabled()) {
+            return;
+        }
+        String key = _key(dev.getAccountID(), dev.getDeviceID());
+        CacheEntry ce = null;
+        synchronized (DeviceStateCache.deviceMap) {
+            ce = DeviceStateCache.deviceMap.get(key);
+            if ((ce == null) || (ce.device != dev)) {
+                return;
+            }
+            DeviceStateCache._remove(key);
+        }
+        DeviceStateCache._flushEntry(ce);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Records the specified changed fields of a cached Device, to be written to the
+    *** database later.
+    *** @param dev   The Device
+    *** @param flds  The changed field names
+    *** @return True if the changes were recorded, false if the Device is not the cached
+    ***         instance (in which case the caller should update the Device immediately)
+    **/
+    public static boolean markDirty(Device dev, Set<String> flds)
+    {
+        if ((dev == null) || (flds == null) || !DeviceStateCache.isEnabled()) {
+            return false;
+        }
+        String key = _key(dev.getAccountID(), dev.getDeviceID());
+        /* copy the changed values (on the thread which changed them) */
+        Map<String,Object> vals = new HashMap<String,Object>();
+        for (String f : flds) {
+            vals.put(f, dev.getFieldValue(f));
+        }
+        boolean active = dev.getIsActive();
+        synchronized (DeviceStateCache.deviceMap) {
+            CacheEntry ce = DeviceStateCache.deviceMap.get(key);
+            if ((ce == null) || (ce.device != dev)) {
+                return false;
+            }
+            if (ce.dirtyValues == null) {
+                ce.dirtyValues = new HashMap<String,Object>();
+                ce.dirtyTimeMS = DateTime.getCurrentTimeMillis();
+            }
+            ce.dirtyValues.putAll(vals);
+            ce.isActive = active;
+            return true;
+        }
+    }
+
+    /**
+    *** Writes any pending changes for the specified Device to the database
+    *** (typically called at the end of a device session)
+    *** @param dev  The Device
+    *** @return True if there were no errors
+    **/
+    public static boolean flushDevice(Device dev)
+    {
+        if ((dev == null) || !DeviceStateCache.isEnabled()) {
+            return true;
+        }
+        String key = _key(dev.getAccountID(), dev.getDeviceID());
+        CacheEntry ce = null;
+        synchronized (DeviceStateCache.deviceMap) {
+            ce = DeviceStateCache.deviceMap.get(key);
+        }
+        if ((ce == null) || (ce.device != dev)) {
+            return true;
+        }
+        return DeviceStateCache._flushEntry(ce);
+    }
+
+    /**
+    *** Writes all pending Device changes to the database
+    **/
+    public static void flushAll()
+    {
+        DeviceStateCache._flushDirty(-1L);
+    }
+
+    /**
+    *** Writes the changes of all Devices which have been changed for at least the
+    *** specified time
+    **/
+    private static void _flushDirty(long minAgeMS)
+    {
+        java.util.List<CacheEntry> dirty = new Vector<CacheEntry>();
+        long nowMS = DateTime.getCurrentTimeMillis();
+        synchronized (DeviceStateCache.deviceMap) {
+            for (CacheEntry ce : DeviceStateCache.deviceMap.values()) {
+                if ((ce.dirtyValues != null) && ((nowMS - ce.dirtyTimeMS) >= minAgeMS)) {
+                    dirty.add(ce);
+                }
+            }
+        }
+        for (CacheEntry ce : dirty) {
+            DeviceStateCache._flushEntry(ce);
+        }
+    }
+
+    /**
+    *** Writes the pending changes of the specified entry to the database.<br>
+    *** The copied field values are written from a new Device instance, rather than the
+    *** cached Device, which session threads may be modifying concurrently.
+    **/
+    private static boolean _flushEntry(CacheEntry ce)
+    {
+        if (ce == null) {
+            return true;
+        }
+        Map<String,Object> vals = null;
+        boolean active = true;
+        synchronized (DeviceStateCache.deviceMap) {
+            vals   = ce.dirtyValues;
+            active = ce.isActive;
+            ce.dirtyValues = null;
+        }
+        if (vals == null) {
+            return true;
+        }
+        String acctID = ce.device.getAccountID();
+        String devID  = ce.device.getDeviceID();
+        try {
+            Device dev = new Device.Key(acctID, devID).getDBRecord(); // not read from the DB
+            dev.setIsActive(active); // for 'recordDidUpdate', not updated unless changed
+            for (String f : vals.keySet()) {
+                dev.setFieldValue(f, vals.get(f));
+            }
+            dev.update(new HashSet<String>(vals.keySet()));
+            return true;
+        } catch (Throwable th) { // DBException
+            Print.logError("Unable to update Device: " + acctID + "/" + devID + " [" + th + "]");
+            // retain changed values for the next flush (newer values take precedence)
+            synchronized (DeviceStateCache.deviceMap) {
+                if (ce.dirtyValues == null) {
+                    ce.dirtyValues = vals;
+                    ce.dirtyTimeMS = DateTime.getCurrentTimeMillis();
+                } else {
+                    for (String f : vals.keySet()) {
+                        if (!ce.dirtyValues.containsKey(f)) {
+                            ce.dirtyValues.put(f, vals.get(f));
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of cached Devices
+    *** @return The number of cached Devices
+    **/
+    public static int getSize()
+    {
+        synchronized (DeviceStateCache.deviceMap) {
+            return DeviceStateCache.deviceMap.size();
+        }
+    }
+
+}
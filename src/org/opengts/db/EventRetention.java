@@ -0,0 +1,700 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Chunked/throttled EventData retention (old event deletion)
+// ----------------------------------------------------------------------------
+package org.opengts.db;
+
+import java.lang.*;
+import java.util.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+import org.opengts.dbtools.*;
+
+import org.opengts.db.tables.*;
+
+/**
+*** <code>EventRetention</code> deletes old EventData records in bounded chunks.<br>
+*** Rather than a single unbounded "DELETE ... WHERE timestamp&lt;oldTime" per device, the
+*** records of each device are deleted in timestamp ranges containing at most
+*** "EventData.retention.chunkSize" records, pausing "EventData.retention.throttleMS"
+*** between chunks, so that each delete holds its locks (and undo log) only briefly.
+*** The devices of an account (or of all accounts) are processed concurrently by at most
+*** "EventData.retention.threads" threads, and progress (records deleted, records per
+*** second) is logged every "EventData.retention.progressSec" seconds.<br>
+*** When deleting for all accounts, and "EventData.retention.dropPartitions" is true, the
+*** EventData table is partitioned by range on "timestamp" (MySQL "PARTITION BY RANGE", or
+*** PostgreSQL declarative partitioning), then partitions containing only records prior to
+*** the deletion time are dropped before the remaining records are deleted in chunks.
+*** (partitioning of the EventData table must be configured by the database administrator).
+**/
+
+public class EventRetention
+{
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if Device/EventData old event deletion should use the chunked
+    *** retention engine
+    *** @return True if old event deletion is chunked
+    **/
+    public static boolean isChunkedDelete()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_EventData_retention_chunked,false);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Progress accumulator shared by all retention threads
+    **/
+    private static class Progress
+    {
+        private long    startMS         = 0L;
+        private long    lastLogMS       = 0L;
+        private long    logIntervMS     = 0L;
+        private long    deleteCount     = 0L;
+        private int     deviceCount     = 0;
+        private int     deviceTotal     = 0;
+        public Progress(int deviceTotal, long logIntervMS) {
+            this.startMS     = System.currentTimeMillis();
+            this.lastLogMS   = this.startMS;
+            this.logIntervMS = logIntervMS;
+            this.deviceTotal = deviceTotal;
+        }
+        public synchronized void addDeleted(long count) {
+            this.deleteCount += count;
+            long nowMS = System.currentTimeMillis();
+            if ((this.logIntervMS > 0L) && ((nowMS - this.lastLogMS) >= this.logIntervMS)) {
+                this.lastLogMS = nowMS;
+                Print.logInfo("Retention progress: " + this.toString());
+            }
+        }
+        public synchronized void deviceDone() {
+            this.deviceCount++;
+        }
+        public synchronized long getDeleteCount() {
+            return this.deleteCount;
+        }
+        public synchronized String toString() {
+            long   elapsedMS = Math.max(System.currentTimeMillis() - this.startMS, 1L);
+            double rps       = ((double)this.deleteCount * 1000.0) / (double)elapsedMS;
+            return this.deleteCount + " deleted, " +
+                this.deviceCount + "/" + this.deviceTotal + " devices, " +
+                StringTools.format(rps,"0.0") + " rows/sec, " +
+                (elapsedMS / 1000L) + " sec";
+        }
+    }
+
+    /**
+    *** Device retention job
+    **/
+    private static class DeviceJob
+    {
+        public String   accountID   = null;
+        public String   deviceID    = null;
+        public long     oldTime     = 0L;
+        public DeviceJob(String acctID, String devID, long oldTime) {
+            this.accountID = acctID;
+            this.deviceID  = devID;
+            this.oldTime   = oldTime;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private int         chunkSize       = 5000;
+    private long        throttleMS      = 250L;
+    private int         maxThreads      = 2;
+    private boolean     dropPartitions  = false;
+    private long        progressMS      = 30000L;
+
+    private volatile boolean stopped    = false;
+
+    /**
+    *** Constructor (initialized from the runtime configuration)
+    **/
+    public EventRetention()
+    {
+        super();
+        this.setChunkSize(RTConfig.getInt(DBConfig.PROP_EventData_retention_chunkSize,5000));
+        this.setThrottleMS(RTConfig.getLong(DBConfig.PROP_EventData_retention_throttleMS,250L));
+        this.setMaxThreads(RTConfig.getInt(DBConfig.PROP_EventData_retention_threads,2));
+        this.setDropPartitions(RTConfig.getBoolean(DBConfig.PROP_EventData_retention_dropPartitions,false));
+        this.progressMS = RTConfig.getLong(DBConfig.PROP_EventData_retention_progressSec,30L) * 1000L;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the maximum number of records deleted per chunk
+    *** @param size  The chunk size
+    **/
+    public void setChunkSize(int size)
+    {
+        this.chunkSize = (size > 0)? size : 5000;
+    }
+
+    /**
+    *** Gets the maximum number of records deleted per chunk
+    *** @return The chunk size
+    **/
+    public int getChunkSize()
+    {
+        return this.chunkSize;
+    }
+
+    /**
+    *** Sets the time to pause between chunks
+    *** @param ms  The pause time (milliseconds)
+    **/
+    public void setThrottleMS(long ms)
+    {
+        this.throttleMS = (ms > 0L)? ms : 0L;
+    }
+
+    /**
+    *** Gets the time to pause between chunks
+    *** @return The pause time (milliseconds)
+    **/
+    public long getThrottleMS()
+    {
+        return this.throttleMS;
+    }
+
+    /**
+    *** Sets the maximum number of devices processed concurrently
+    *** @param max  The maximum number of threads
+    **/
+    public void setMaxThreads(int max)
+    {
+        this.maxThreads = (max > 0)? max : 1;
+    }
+
+    /**
+    *** Gets the maximum number of devices processed concurrently
+    *** @return The maximum number of threads
+    **/
+    public int getMaxThreads()
+    {
+        return this.maxThreads;
+    }
+
+    /**
+    *** Sets whether whole time-range partitions should be dropped when deleting for all
+    *** accounts
+    *** @param drop  True to drop partitions
+    **/
+    public void setDropPartitions(boolean drop)
+    {
+        this.dropPartitions = drop;
+    }
+
+    /**
+    *** Returns true if whole time-range partitions are dropped when deleting for all
+    *** accounts
+    *** @return True to drop partitions
+    **/
+    public boolean getDropPartitions()
+    {
+        return this.dropPartitions;
+    }
+
+    /**
+    *** Requests that any retention currently in progress stop after the current chunk
+    **/
+    public void stop()
+    {
+        this.stopped = true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Deletes the events of a single device prior to the specified time
+    *** @param acctID   The Account ID
+    *** @param devID    The Device ID
+    *** @param oldTime  Events prior to this time (exclusive) will be deleted
+    *** @return The number of events deleted
+    *** @throws DBException if a database error occurs
+    **/
+    public long deleteOldEvents(String acctID, String devID, long oldTime)
+        throws DBException
+    {
+        if (StringTools.isBlank(acctID) || StringTools.isBlank(devID)) {
+            throw new DBException("AccountID/DeviceID not specified");
+        } else
+        if (oldTime <= 0L) {
+            throw new DBException("Invalid 'priorTo' timestamp specified: " + oldTime);
+        }
+        this.stopped = false;
+        Progress progress = new Progress(1, this.progressMS);
+        this._deleteDeviceEvents(new DeviceJob(acctID, devID, oldTime), progress);
+        progress.deviceDone();
+        return progress.getDeleteCount();
+    }
+
+    /**
+    *** Deletes the events of all devices of an account prior to the specified time
+    *** @param acctID   The Account ID
+    *** @param oldTime  Events prior to this time (exclusive) will be deleted
+    *** @return The number of events deleted
+    *** @throws DBException if a database error occurs
+    **/
+    public long deleteOldEvents(String acctID, long oldTime)
+        throws DBException
+    {
+        if (StringTools.isBlank(acctID)) {
+            throw new DBException("AccountID not specified");
+        } else
+        if (oldTime <= 0L) {
+            throw new DBException("Invalid 'priorTo' timestamp specified: " + oldTime);
+        }
+        java.util.List<DeviceJob> jobs = new Vector<DeviceJob>();
+        this._addAccountJobs(jobs, acctID, oldTime);
+        return this._runJobs(jobs, "Account " + acctID);
+    }
+
+    /**
+    *** Deletes the events of all devices of all accounts prior to the specified time.
+    *** If enabled, time-range partitions containing only records prior to the specified
+    *** time are dropped first.
+    *** @param oldTime  Events prior to this time (exclusive) will be deleted
+    *** @return The number of events deleted (approximate, if partitions were dropped)
+    *** @throws DBException if a database error occurs
+    **/
+    public long deleteOldEvents(long oldTime)
+        throws DBException
+    {
+        if (oldTime <= 0L) {
+            throw new DBException("Invalid 'priorTo' timestamp specified: " + oldTime);
+        }
+
+        /* drop partitions */
+        long partCount = 0L;
+        if (this.dropPartitions) {
+            partCount = this.dropPartitionsPriorTo(oldTime);
+        }
+
+        /* delete remaining */
+        java.util.List<DeviceJob> jobs = new Vector<DeviceJob>();
+        for (String acctID : Account.getAllAccounts()) {
+            this._addAccountJobs(jobs, acctID, oldTime);
+        }
+        return partCount + this._runJobs(jobs, "All accounts");
+
+    }
+
+    /**
+    *** Deletes the events of all accounts which are older than the account "retained
+    *** event age".  Accounts which do not specify a retained event age are skipped.
+    *** @return The number of events deleted
+    *** @throws DBException if a database error occurs
+    **/
+    public long deleteRetainedEvents()
+        throws DBException
+    {
+        long nowSec = DateTime.getCurrentTimeSec();
+        java.util.List<DeviceJob> jobs = new Vector<DeviceJob>();
+        for (String acctID : Account.getAllAccounts()) {
+            Account account = Account.getAccount(acctID);
+            long ageSec = (account != null)? account.getRetainedEventAge() : 0L;
+            if (ageSec > 0L) {
+                this._addAccountJobs(jobs, acctID, nowSec - ageSec);
+            }
+        }
+        return this._runJobs(jobs, "Retained event age");
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* add a job for each device of the specified account */
+    private void _addAccountJobs(java.util.List<DeviceJob> jobs, String acctID, long oldTime)
+        throws DBException
+    {
+        OrderedSet<String> devIDs = Device.getDeviceIDsForAccount(acctID, null/*User*/, true/*inclInactv*/);
+        for (String devID : devIDs) {
+            jobs.add(new DeviceJob(acctID, devID, oldTime));
+        }
+    }
+
+    /* run the specified jobs on at most 'maxThreads' threads */
+    private long _runJobs(final java.util.List<DeviceJob> jobs, String desc)
+        throws DBException
+    {
+        this.stopped = false;
+        final Progress progress = new Progress(jobs.size(), this.progressMS);
+        final DBException error[] = new DBException[1];
+        Print.logInfo("Retention start: " + desc + " (" + jobs.size() + " devices)");
+
+        /* start threads */
+        int threadCount = Math.max(Math.min(this.maxThreads, jobs.size()), 1);
+        Thread threads[] = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread("EventRetention_" + (t + 1)) {
+                public void run() {
+                    for (;;) {
+                        DeviceJob job = null;
+                        synchronized (jobs) {
+                            if (jobs.isEmpty() || (error[0] != null)) { break; }
+                            job = jobs.remove(0);
+                        }
+                        try {
+                            EventRetention.this._deleteDeviceEvents(job, progress);
+                            progress.deviceDone();
+                        } catch (DBException dbe) {
+                            synchronized (jobs) {
+                                if (error[0] == null) { error[0] = dbe; }
+                            }
+                            break;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        /* wait for completion */
+        for (int t = 0; t < threadCount; t++) {
+            try { threads[t].join(); } catch (InterruptedException ie) { /*ignore*/ }
+        }
+        Print.logInfo("Retention done: " + desc + " - " + progress);
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return progress.getDeleteCount();
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* delete the events of a single device in chunks */
+    private void _deleteDeviceEvents(DeviceJob job, Progress progress)
+        throws DBException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+        for (;!this.stopped;) {
+
+            /* end time of the next chunk */
+            long chunkEnd = this._getChunkEndTime(job);
+            if (chunkEnd < 0L) {
+                // no more events prior to 'oldTime'
+                break;
+            }
+
+            /* delete chunk */
+            // DBDelete: DELETE FROM EventData WHERE ((accountID='acct') AND (deviceID='dev') AND (timestamp<=chunkEnd))
+            DBDelete ddel = new DBDelete(fact);
+            DBWhere  dwh  = ddel.createDBWhere();
+            ddel.setWhere(dwh.WHERE_(
+                dwh.AND(
+                    dwh.EQ(EventData.FLD_accountID,job.accountID),
+                    dwh.EQ(EventData.FLD_deviceID ,job.deviceID),
+                    dwh.LE(EventData.FLD_timestamp,chunkEnd)
+                )
+            ));
+            int delCount = 0;
+            DBConnection dbc  = null;
+            Statement    stmt = null;
+            try {
+                dbc  = DBConnection.getDefaultConnection();
+                stmt = dbc.createStatement();
+                delCount = stmt.executeUpdate(ddel.toString());
+            } catch (SQLException sqe) {
+                throw new DBException("Deleting old EventData records", sqe);
+            } finally {
+                if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+                DBConnection.release(dbc);
+            }
+            progress.addDeleted(delCount);
+
+            /* last chunk? */
+            if ((chunkEnd >= (job.oldTime - 1L)) || (delCount <= 0)) {
+                break;
+            }
+
+            /* throttle */
+            if (this.throttleMS > 0L) {
+                try { Thread.sleep(this.throttleMS); } catch (InterruptedException ie) { /*ignore*/ }
+            }
+
+        }
+    }
+
+    /* return the largest timestamp within the next chunk of events, or -1 if there are no events */
+    private long _getChunkEndTime(DeviceJob job)
+        throws DBException
+    {
+        DBFactory<EventData> fact = EventData.getFactory();
+
+        /* select timestamps */
+        // DBSelect: SELECT timestamp FROM EventData WHERE ((accountID='acct') AND (deviceID='dev') AND (timestamp<oldTime)) ORDER BY timestamp [OFFSET chunkSize-1] LIMIT 1|chunkSize
+        DBSelect<EventData> dsel = new DBSelect<EventData>(fact);
+        dsel.setSelectedFields(EventData.FLD_timestamp);
+        DBWhere dwh = dsel.createDBWhere();
+        dsel.setWhere(dwh.WHERE_(
+            dwh.AND(
+                dwh.EQ(EventData.FLD_accountID,job.accountID),
+                dwh.EQ(EventData.FLD_deviceID ,job.deviceID),
+                dwh.LT(EventData.FLD_timestamp,job.oldTime)
+            )
+        ));
+        dsel.setOrderByFields(EventData.FLD_timestamp);
+        boolean useOffset = dsel.supportsOffset();
+        if (useOffset) {
+            // only the last timestamp of the chunk is needed
+            dsel.setOffset(this.chunkSize - 1);
+            dsel.setLimit(1);
+        } else {
+            dsel.setLimit(this.chunkSize);
+        }
+
+        /* read */
+        long lastTime = -1L;
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(dsel.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                lastTime = rs.getLong(1);
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Reading EventData retention chunk", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+
+        /* fewer than 'chunkSize' events remaining */
+        if (useOffset && (lastTime < 0L)) {
+            // the remaining events (if any) are all deleted by the final chunk
+            lastTime = job.oldTime - 1L;
+        }
+        return lastTime;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Drops the EventData time-range partitions which contain only records prior to the
+    *** specified time.  Supported for MySQL ("PARTITION BY RANGE (timestamp)") and
+    *** PostgreSQL ("PARTITION BY RANGE (timestamp)") only.
+    *** @param oldTime  Partitions whose upper bound is at or before this time are dropped
+    *** @return The (approximate) number of records in the dropped partitions
+    *** @throws DBException if a database error occurs
+    **/
+    public long dropPartitionsPriorTo(long oldTime)
+        throws DBException
+    {
+        int dbID = DBProvider.getProvider().getID();
+        String tableName = EventData.getFactory().getTranslatedTableName();
+
+        /* partition query */
+        String sql = null;
+        if (dbID == DBProvider.DB_MYSQL) {
+            // PARTITION_DESCRIPTION is the "VALUES LESS THAN" bound
+            sql = "SELECT PARTITION_NAME,PARTITION_DESCRIPTION,TABLE_ROWS FROM information_schema.PARTITIONS" +
+                " WHERE TABLE_SCHEMA='" + DBProvider.getDBName() + "' AND TABLE_NAME='" + tableName + "'" +
+                " AND PARTITION_METHOD LIKE 'RANGE%' AND PARTITION_EXPRESSION LIKE '%" + EventData.FLD_timestamp + "%'" +
+                " ORDER BY PARTITION_ORDINAL_POSITION";
+        } else
+        if (dbID == DBProvider.DB_POSTGRESQL) {
+            // relpartbound is "FOR VALUES FROM (<lo>) TO (<hi>)"
+            sql = "SELECT c.relname,pg_get_expr(c.relpartbound,c.oid),c.reltuples FROM pg_inherits i" +
+                " JOIN pg_class c ON c.oid=i.inhrelid JOIN pg_class p ON p.oid=i.inhparent" +
+                " WHERE lower(p.relname)=lower('" + tableName + "')" +
+                " AND pg_get_partkeydef(p.oid) ILIKE 'RANGE%" + EventData.FLD_timestamp + "%'";
+        } else {
+            Print.logWarn("Partition drop not supported by DB provider: " + DBProvider.getProviderName());
+            return 0L;
+        }
+
+        /* find partitions */
+        java.util.List<String> dropNames = new Vector<String>();
+        long rowCount = 0L;
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(sql);
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                String name  = rs.getString(1);
+                String bound = rs.getString(2);
+                long   rows  = rs.getLong(3);
+                if (dbID == DBProvider.DB_POSTGRESQL) {
+                    int p = (bound != null)? bound.toUpperCase().indexOf(" TO (") : -1;
+                    bound = (p >= 0)? StringTools.replace(bound.substring(p + 5),"'","") : null;
+                    bound = (bound != null)? StringTools.replace(bound,")","").trim() : null;
+                }
+                long upper = StringTools.parseLong(bound, -1L); // "MAXVALUE" ==> -1
+                if ((upper > 0L) && (upper <= oldTime)) {
+                    dropNames.add(name);
+                    rowCount += Math.max(rows, 0L);
+                }
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Reading EventData partitions", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+        if (dropNames.isEmpty()) {
+            Print.logInfo("No EventData partitions prior to " + oldTime);
+            return 0L;
+        }
+
+        /* drop partitions */
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            if (dbID == DBProvider.DB_MYSQL) {
+                // ALTER TABLE EventData DROP PARTITION p0,p1,...
+                dbc.executeUpdate("ALTER TABLE " + tableName + " DROP PARTITION " + StringTools.join(dropNames,","));
+            } else {
+                for (String name : dropNames) {
+                    dbc.executeUpdate("DROP TABLE \"" + name + "\"");
+                }
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Dropping EventData partitions", sqe);
+        } finally {
+            DBConnection.release(dbc);
+        }
+        Print.logInfo("Dropped EventData partitions: " + StringTools.join(dropNames,",") + " (~" + rowCount + " rows)");
+        return rowCount;
+
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final String ARG_ACCOUNT[]   = new String[] { "account"  , "acct"    };
+    private static final String ARG_DEVICE[]    = new String[] { "device"   , "dev"     };
+    private static final String ARG_PRIOR_TO[]  = new String[] { "priorTo"  , "before"  };
+    private static final String ARG_RETAINED[]  = new String[] { "retained"             };
+    private static final String ARG_CHUNK[]     = new String[] { "chunk"                };
+    private static final String ARG_THROTTLE[]  = new String[] { "throttle"             };
+    private static final String ARG_THREADS[]   = new String[] { "threads"              };
+    private static final String ARG_PARTITION[] = new String[] { "partitions"           };
+
+    private static void usage()
+    {
+        Print.sysPrintln("Usage:");
+        Print.sysPrintln("  java ... " + EventRetention.class.getName() + " {options}");
+        Print.sysPrintln("Options:");
+        Print.sysPrintln("  -account=<id>|ALL           Account ID (or all accounts)");
+        Print.sysPrintln("  -device=<id>                Device ID (optional)");
+        Print.sysPrintln("  -priorTo=<time>             Delete events before time (YYYY/MM/DD or epoch)");
+        Print.sysPrintln("  -retained                   Delete events older than each account 'retained event age'");
+        Print.sysPrintln("  -chunk=<count>              Records deleted per chunk");
+        Print.sysPrintln("  -throttle=<ms>              Pause between chunks");
+        Print.sysPrintln("  -threads=<count>            Devices processed concurrently");
+        Print.sysPrintln("  -partitions                 Drop whole partitions (all accounts only)");
+        System.exit(1);
+    }
+
+    public static void main(String argv[])
+    {
+        DBConfig.cmdLineInit(argv,true);  // main
+        String acctID = RTConfig.getString(ARG_ACCOUNT, "");
+        String devID  = RTConfig.getString(ARG_DEVICE , "");
+
+        /* retention engine */
+        EventRetention er = new EventRetention();
+        if (RTConfig.hasProperty(ARG_CHUNK)) {
+            er.setChunkSize(RTConfig.getInt(ARG_CHUNK,er.getChunkSize()));
+        }
+        if (RTConfig.hasProperty(ARG_THROTTLE)) {
+            er.setThrottleMS(RTConfig.getLong(ARG_THROTTLE,er.getThrottleMS()));
+        }
+        if (RTConfig.hasProperty(ARG_THREADS)) {
+            er.setMaxThreads(RTConfig.getInt(ARG_THREADS,er.getMaxThreads()));
+        }
+        if (RTConfig.hasProperty(ARG_PARTITION)) {
+            er.setDropPartitions(RTConfig.getBoolean(ARG_PARTITION,false));
+        }
+
+        /* retained event age */
+        if (RTConfig.getBoolean(ARG_RETAINED,false)) {
+            try {
+                long count = er.deleteRetainedEvents();
+                Print.sysPrintln("Deleted " + count + " events");
+                System.exit(0);
+            } catch (DBException dbe) {
+                Print.logException("Retention error", dbe);
+                System.exit(99);
+            }
+        }
+
+        /* prior-to time */
+        String priorTo = RTConfig.getString(ARG_PRIOR_TO, "");
+        long oldTime = -1L;
+        if (StringTools.isBlank(priorTo)) {
+            Print.logError("'-priorTo' time not specified");
+            usage();
+        } else
+        if (priorTo.indexOf("/") >= 0) {
+            try {
+                DateTime dt = DateTime.parseArgumentDate(priorTo, DateTime.getGMTTimeZone(), false);
+                oldTime = (dt != null)? dt.getTimeSec() : -1L;
+            } catch (DateTime.DateParseException dpe) {
+                oldTime = -1L;
+            }
+        } else {
+            oldTime = StringTools.parseLong(priorTo, -1L);
+        }
+        if (oldTime <= 0L) {
+            Print.logError("Invalid '-priorTo' time: " + priorTo);
+            usage();
+        }
+
+        /* delete */
+        try {
+            long count = 0L;
+            if (StringTools.isBlank(acctID)) {
+                Print.logError("Account-ID not specified");
+                usage();
+            } else
+            if (acctID.equalsIgnoreCase("ALL")) {
+                count = er.deleteOldEvents(oldTime);
+            } else
+            if (!StringTools.isBlank(devID)) {
+                count = er.deleteOldEvents(acctID, devID, oldTime);
+            } else {
+                count = er.deleteOldEvents(acctID, oldTime);
+            }
+            Print.sysPrintln("Deleted " + count + " events");
+        } catch (DBException dbe) {
+            Print.logException("Retention error", dbe);
+            System.exit(99);
+        }
+        System.exit(0);
+
+    }
+
+}
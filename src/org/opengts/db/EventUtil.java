@@ -252,17 +252,11 @@ public class EventUtil
     }
     */
     
-    private boolean writeEvents_CSV(PrintWriter pwout, 
-        Account account, Collection<Device> devList, 
-        boolean allTags, TimeZone dispTmz, 
-        char csvSep, boolean inclHeader, BasicPrivateLabel privLabel)
-        throws IOException
+    /* return the EventData fields included in CSV output */
+    private String[] getFields_CSV(boolean allTags)
     {
-
-        /* fields to place in CSV format */
-        String evFields[] = null;
         if (allTags) {
-            evFields = new String[] {
+            return new String[] {
                 EventData.FLD_deviceID,
                 // --
                 EventData.FLD_timestamp,
@@ -290,7 +284,7 @@ public class EventUtil
                 EventData.FLD_coolantTemp,
             };
         } else {
-            evFields = new String[] {
+            return new String[] {
                 EventData.FLD_deviceID,
                 // --
                 EventData.FLD_timestamp,
@@ -303,6 +297,17 @@ public class EventUtil
                 EventData.FLD_address,
             };
         }
+    }
+
+    private boolean writeEvents_CSV(PrintWriter pwout, 
+        Account account, Collection<Device> devList, 
+        boolean allTags, TimeZone dispTmz, 
+        char csvSep, boolean inclHeader, BasicPrivateLabel privLabel)
+        throws IOException
+    {
+
+        /* fields to place in CSV format */
+        String evFields[] = this.getFields_CSV(allTags);
 
         /* write events */
         return this.writeEvents_CSV_fields(pwout, 
@@ -1063,6 +1068,31 @@ public class EventUtil
         }
     }
 
+    private void writeEvents_XML_DeviceTag(PrintWriter pwout, 
+        Device dev, boolean startTag)
+        throws IOException
+    {
+        boolean isSoapRequest = false;
+        String PFX1 = XMLTools.PREFIX(isSoapRequest, 1);
+        String PFX2 = XMLTools.PREFIX(isSoapRequest, 2);
+        if (startTag) {
+            this.write(pwout, PFX1);
+            this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Device,
+                XMLTools.ATTR("id",dev.getDeviceID()),
+                false/*endTag*/,true/*newLine*/));
+            // <Description><![CDATA[Description]]></Description>
+            this.write(pwout, PFX2);
+            this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Description,
+                null,
+                false/*endTag*/,false/*newLine*/));
+            this.write(pwout, XMLTools.CDATA(isSoapRequest,dev.getDescription()));
+            this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Description,true));
+        } else {
+            this.write(pwout, PFX1);
+            this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Device,true));
+        }
+    }
+
     private boolean writeEvents_XML(PrintWriter pwout, 
         Account account, Collection<Device> devList, 
         boolean allTags, TimeZone dispTmz,
@@ -1084,13 +1114,10 @@ public class EventUtil
 
         /* header */
         this.writeEvents_XML_TopTag(pwout, account, tzStr, true/*startTag*/, oldFormat);
-        String PFX1 = XMLTools.PREFIX(isSoapRequest, 1);
-        String PFX2 = XMLTools.PREFIX(isSoapRequest, 2);
 
         /* list device event data */
         if (!ListTools.isEmpty(devList)) {
             for (Device dev : devList) {
-                String deviceID = dev.getDeviceID();
 
                 /* check account ID */
                 if (!dev.getAccountID().equals(accountID)) {
@@ -1107,17 +1134,7 @@ public class EventUtil
 
                 /* Device start tag */
                 if (!oldFormat) {
-                    this.write(pwout, PFX1);
-                    this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Device,
-                        XMLTools.ATTR("id",deviceID),
-                        false/*endTag*/,true/*newLine*/));
-                    // <Description><![CDATA[Description]]></Description>
-                    this.write(pwout, PFX2);
-                    this.write(pwout, XMLTools.startTAG(isSoapRequest,TAG_Description,
-                        null,
-                        false/*endTag*/,false/*newLine*/));
-                    this.write(pwout, XMLTools.CDATA(isSoapRequest,dev.getDescription()));
-                    this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Description,true));
+                    this.writeEvents_XML_DeviceTag(pwout, dev, true/*startTag*/);
                 }
 
                 /* Device events */
@@ -1141,8 +1158,7 @@ public class EventUtil
 
                 /* Device end tag */
                 if (!oldFormat) {
-                    this.write(pwout, PFX1);
-                    this.write(pwout, XMLTools.endTAG(isSoapRequest,TAG_Device,true));
+                    this.writeEvents_XML_DeviceTag(pwout, dev, false/*startTag*/);
                 }
                 
             }
@@ -1574,6 +1590,419 @@ public class EventUtil
 
     // ------------------------------------------------------------------------
 
+    // ------------------------------------------------------------------------
+    // Streaming output: events are formatted to the PrintWriter as they are read
+    // from the database, and are not retained.
+
+    /* number of events written between PrintWriter flushes */
+    private static final int    STREAM_FLUSH_COUNT      = 250;
+
+    /**
+    *** EventData record handler which formats each event directly to the output
+    *** PrintWriter as it is read from the database.
+    **/
+    private abstract class EventStreamWriter
+        implements DBRecordHandler<EventData>
+    {
+
+        protected PrintWriter       pwout       = null;
+        protected Account           account     = null;
+        protected String            accountID   = null;
+        protected BasicPrivateLabel privLabel   = null;
+        protected Device            device      = null;
+        protected int               devCount    = 0;    // events written for current device
+        protected long              totalCount  = 0L;   // events written for all devices
+        protected boolean           aborted     = false;
+
+        public EventStreamWriter(PrintWriter pwout, Account account, BasicPrivateLabel privLabel)
+        {
+            this.pwout     = pwout;
+            this.account   = account;
+            this.accountID = account.getAccountID();
+            this.privLabel = privLabel;
+        }
+
+        public void startDevice(Device dev)
+            throws IOException
+        {
+            this.device   = dev;
+            this.devCount = 0;
+        }
+
+        public void endDevice()
+            throws IOException
+        {
+            this.device = null;
+        }
+
+        public int handleDBRecord(EventData ev)
+            throws DBException
+        {
+
+            /* same account? */
+            if (!ev.getAccountID().equals(this.accountID)) {
+                // mismatched AccountID
+                return DBRH_SKIP;
+            }
+            ev.setAccount(this.account);
+            ev.setDevice(this.device);
+
+            /* write event */
+            try {
+                this.writeEvent(ev);
+            } catch (IOException ioe) {
+                Print.logError("Unable to write event: " + ioe);
+                this.aborted = true;
+                return DBRH_STOP;
+            }
+            this.devCount++;
+            this.totalCount++;
+
+            /* periodic flush */
+            if ((this.totalCount % STREAM_FLUSH_COUNT) == 0L) {
+                EventUtil.this.flush(this.pwout);
+                if ((this.pwout != null) && this.pwout.checkError()) {
+                    // output closed (ie. client disconnected)
+                    Print.logWarn("Output stream closed, aborting event stream");
+                    this.aborted = true;
+                    return DBRH_STOP;
+                }
+            }
+
+            /* do not retain event */
+            return DBRH_SKIP;
+
+        }
+
+        public boolean isAborted()
+        {
+            return this.aborted;
+        }
+
+        public abstract void writeHeader()
+            throws IOException;
+
+        public abstract void writeEvent(EventData ev)
+            throws IOException;
+
+        public abstract void writeTrailer()
+            throws IOException;
+
+    }
+
+    /* CSV event stream */
+    private class EventStreamWriter_CSV
+        extends EventStreamWriter
+    {
+        private String   evFields[] = null;
+        private TimeZone dispTmz    = null;
+        private String   dateFmt    = null;
+        private String   timeFmt    = null;
+        private char     csvSep     = ',';
+        public EventStreamWriter_CSV(PrintWriter pwout, Account account,
+            boolean allTags, TimeZone dispTmz, char csvSep,
+            BasicPrivateLabel privLabel)
+        {
+            super(pwout, account, privLabel);
+            this.evFields = EventUtil.this.getFields_CSV(allTags);
+            this.dispTmz  = (dispTmz != null)? dispTmz : account.getTimeZone(null);
+            this.dateFmt  = account.getDateFormat();
+            this.timeFmt  = account.getTimeFormat();
+            this.csvSep   = csvSep;
+        }
+        public void writeHeader() throws IOException {
+            EventUtil.this.write(this.pwout, EventUtil.this.formatHeader_CSV(this.evFields,this.csvSep) + "\n");
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            String rcd = EventUtil.this.formatEventData_CSV(ev, this.evFields,
+                this.dispTmz, this.dateFmt, this.timeFmt, this.csvSep) + "\n";
+            EventUtil.this.write(this.pwout, rcd);
+        }
+        public void writeTrailer() throws IOException {
+            // no trailer
+        }
+    }
+
+    /* XML event stream */
+    private class EventStreamWriter_XML
+        extends EventStreamWriter
+    {
+        private boolean  allTags    = false;
+        private boolean  oldFormat  = false;
+        public EventStreamWriter_XML(PrintWriter pwout, Account account,
+            boolean allTags, boolean oldFormat,
+            BasicPrivateLabel privLabel)
+        {
+            super(pwout, account, privLabel);
+            this.allTags   = allTags;
+            this.oldFormat = oldFormat;
+        }
+        public void writeHeader() throws IOException {
+            String tzStr = this.account.getTimeZone();
+            if (StringTools.isBlank(tzStr)) {
+                tzStr = DateTime.GMT_TIMEZONE;
+            }
+            EventUtil.this.writeEvents_XML_TopTag(this.pwout, this.account, tzStr, true/*startTag*/, this.oldFormat);
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            if ((this.devCount == 0) && !this.oldFormat) {
+                // Device start tag (deferred until the first event is available)
+                EventUtil.this.writeEvents_XML_DeviceTag(this.pwout, this.device, true/*startTag*/);
+            }
+            EventUtil.this.writeEvents_XML_Event(this.pwout,
+                this.device, ev,
+                2, this.allTags,
+                this.privLabel, this.oldFormat);
+        }
+        public void endDevice() throws IOException {
+            if ((this.devCount > 0) && !this.oldFormat) {
+                EventUtil.this.writeEvents_XML_DeviceTag(this.pwout, this.device, false/*startTag*/);
+            }
+            super.endDevice();
+        }
+        public void writeTrailer() throws IOException {
+            EventUtil.this.writeEvents_XML_TopTag(this.pwout, null, null, false/*startTag*/, this.oldFormat);
+        }
+    }
+
+    /* JSON event stream */
+    // The JSON formatter must know whether an event is the last in its list (to omit the
+    // trailing comma), so a single event is held back until the next one arrives.
+    private class EventStreamWriter_JSON
+        extends EventStreamWriter
+    {
+        private boolean   allTags    = false;
+        private int       lastDevNdx = -1;
+        private int       devNdx     = 0;
+        private EventData pendingEv  = null;
+        public EventStreamWriter_JSON(PrintWriter pwout, Account account,
+            boolean allTags, int deviceCount,
+            BasicPrivateLabel privLabel)
+        {
+            super(pwout, account, privLabel);
+            this.allTags    = allTags;
+            this.lastDevNdx = deviceCount - 1;
+        }
+        public void writeHeader() throws IOException {
+            String tzStr = this.account.getTimeZone();
+            if (StringTools.isBlank(tzStr)) {
+                tzStr = DateTime.GMT_TIMEZONE;
+            }
+            String PFX0 = "";
+            String PFX1 = StringTools.replicateString(JSON_INDENT,1);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX0,"{"           , null, true);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX1,"Account"     , this.accountID, false);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX1,"Account_desc", this.account.getDescription(), false);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX1,"TimeZone"    , tzStr, false);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX1,"DeviceList"  , "[", true);
+        }
+        public void startDevice(Device dev) throws IOException {
+            super.startDevice(dev);
+            String PFX2 = StringTools.replicateString(JSON_INDENT,2);
+            String PFX3 = StringTools.replicateString(JSON_INDENT,3);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX2,"{", null, true);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX3,"Device"     , dev.getDeviceID(), false);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX3,"Device_desc", dev.getDescription(), false);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX3,"EventData"  , "[", true);
+            this.pendingEv = null;
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            if (this.pendingEv != null) {
+                EventUtil.this.writeEvents_JSON_Event(this.pwout, this.devCount - 1, this.pendingEv, false/*isLast*/, 4, this.allTags, this.privLabel);
+            }
+            this.pendingEv = ev;
+        }
+        public void endDevice() throws IOException {
+            if (this.pendingEv != null) {
+                EventUtil.this.writeEvents_JSON_Event(this.pwout, this.devCount - 1, this.pendingEv, true/*isLast*/, 4, this.allTags, this.privLabel);
+                this.pendingEv = null;
+            }
+            String PFX2 = StringTools.replicateString(JSON_INDENT,2);
+            String PFX3 = StringTools.replicateString(JSON_INDENT,3);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX3,"]", null, true);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX2,"}", null, (this.devNdx++ == this.lastDevNdx));
+            super.endDevice();
+        }
+        public void writeTrailer() throws IOException {
+            String PFX0 = "";
+            String PFX1 = StringTools.replicateString(JSON_INDENT,1);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX1,"]", null, true);
+            EventUtil.this.writeKeyValue_JSON(this.pwout,PFX0,"}", null, true);
+        }
+    }
+
+    /* BML event stream */
+    private class EventStreamWriter_BML
+        extends EventStreamWriter
+    {
+        public EventStreamWriter_BML(PrintWriter pwout, Account account,
+            BasicPrivateLabel privLabel)
+        {
+            super(pwout, account, privLabel);
+        }
+        public void writeHeader() throws IOException {
+            EventUtil.this.write(this.pwout, "<lbs>\n");
+        }
+        public void writeEvent(EventData ev) throws IOException {
+            EventUtil.this.write(this.pwout, "<location lon=\""+ev.getLongitude()+"\" lat=\""+ev.getLatitude()+"\"");
+            EventUtil.this.write(this.pwout, " label=\""+ev.getDeviceID()+"\"");
+            EventUtil.this.write(this.pwout, " description=\""+ev.getAddress()+"\"");
+            EventUtil.this.write(this.pwout, "/>\n");
+        }
+        public void writeTrailer() throws IOException {
+            EventUtil.this.write(this.pwout, "</lbs>\n");
+        }
+    }
+
+    /**
+    *** Writes the events for the specified devices within the specified time range to
+    *** the OutputStream, optionally GZIP compressing the output as it is written.  The
+    *** OutputStream is not closed.
+    *** @param out        The OutputStream
+    *** @param gzip       True to GZIP compress the output
+    *** @param account    The Account
+    *** @param devList    The list of Devices
+    *** @param startTime  The range start time (seconds)
+    *** @param endTime    The range end time (seconds)
+    *** @param limit      The maximum number of events per device (<=0 for no limit)
+    *** @param formatEnum The output format (FORMAT_CSV, FORMAT_XML, FORMAT_JSON, ...)
+    *** @param allTags    True to include all event fields
+    *** @param dispTmz    The display TimeZone
+    *** @param privLabel  The BasicPrivateLabel
+    *** @return True if the events were written
+    **/
+    public boolean streamEvents(OutputStream out, boolean gzip,
+        Account account, Collection<Device> devList,
+        long startTime, long endTime, long limit,
+        int formatEnum, boolean allTags, TimeZone dispTmz,
+        BasicPrivateLabel privLabel)
+        throws IOException, DBException
+    {
+        if (out == null) {
+            return false;
+        } else
+        if (gzip) {
+            java.util.zip.GZIPOutputStream gzOut = ZipTools.openGZIPOutputStream(out);
+            PrintWriter pwout = new PrintWriter(new OutputStreamWriter(gzOut, StringTools.CharEncoding_UTF_8));
+            boolean rtn = this.streamEvents(pwout,
+                account, devList,
+                startTime, endTime, limit,
+                formatEnum, allTags, dispTmz,
+                privLabel);
+            pwout.flush();
+            gzOut.finish();
+            return rtn;
+        } else {
+            PrintWriter pwout = new PrintWriter(out);
+            boolean rtn = this.streamEvents(pwout,
+                account, devList,
+                startTime, endTime, limit,
+                formatEnum, allTags, dispTmz,
+                privLabel);
+            pwout.flush();
+            return rtn;
+        }
+    }
+
+    /**
+    *** Writes the events for the specified devices within the specified time range to
+    *** the PrintWriter.  Events are read from the database with a forward-only cursor
+    *** and formatted as they arrive, so memory use does not depend on the size of the
+    *** time range.  Any events saved in the Device instances are ignored.
+    *** @param pwout      The PrintWriter
+    *** @param account    The Account
+    *** @param devList    The list of Devices
+    *** @param startTime  The range start time (seconds)
+    *** @param endTime    The range end time (seconds)
+    *** @param limit      The maximum number of events per device (<=0 for no limit)
+    *** @param formatEnum The output format (FORMAT_CSV, FORMAT_XML, FORMAT_JSON, ...)
+    *** @param allTags    True to include all event fields
+    *** @param dispTmz    The display TimeZone
+    *** @param privLabel  The BasicPrivateLabel
+    *** @return True if the events were written
+    **/
+    public boolean streamEvents(PrintWriter pwout,
+        Account account, Collection<Device> devList,
+        long startTime, long endTime, long limit,
+        int formatEnum, boolean allTags, TimeZone dispTmz,
+        BasicPrivateLabel privLabel)
+        throws IOException, DBException
+    {
+
+        /* account/devices required */
+        if ((account == null) || (devList == null)) {
+            return false;
+        }
+        String accountID = account.getAccountID();
+
+        /* devices owned by account */
+        java.util.List<Device> acctDevList = new Vector<Device>();
+        for (Device dev : devList) {
+            if (dev.getAccountID().equals(accountID)) {
+                acctDevList.add(dev);
+            }
+        }
+
+        /* event writer */
+        EventStreamWriter esw = null;
+        switch (formatEnum) {
+            case FORMAT_TXT:
+            case FORMAT_CSV:
+                esw = new EventStreamWriter_CSV(pwout, account,
+                    allTags, dispTmz, ',', privLabel);
+                break;
+            case FORMAT_XML:
+            case FORMAT_XMLOLD:
+                esw = new EventStreamWriter_XML(pwout, account,
+                    allTags, (formatEnum == FORMAT_XMLOLD), privLabel);
+                break;
+            case FORMAT_JSON:
+            case FORMAT_JSONX:
+                esw = new EventStreamWriter_JSON(pwout, account,
+                    allTags, acctDevList.size(), privLabel);
+                break;
+            case FORMAT_BML:
+                esw = new EventStreamWriter_BML(pwout, account,
+                    privLabel);
+                break;
+            default:
+                Print.logError("Unrecognized data format: " + formatEnum);
+                return false;
+        }
+
+        /* write events */
+        // -- one cursor connection is used for all devices
+        DBConnection cursorConn = DBRecordIterator.openCursorConnection();
+        try {
+            esw.writeHeader();
+            for (Device dev : acctDevList) {
+                esw.startDevice(dev);
+                EventData.streamRangeEvents(cursorConn,
+                    accountID, dev.getDeviceID(),
+                    startTime, endTime,
+                    null/*statusCodes*/,
+                    false/*validGPS*/,
+                    limit, true/*ascending*/,
+                    null/*addtnlSelect*/,
+                    esw);
+                esw.endDevice();
+                if (esw.isAborted()) {
+                    return false;
+                }
+            }
+            esw.writeTrailer();
+        } finally {
+            cursorConn.closeConnection();
+        }
+
+        /* flush (output may not occur until the PrintWriter is flushed) */
+        this.flush(pwout);
+        return true;
+
+    }
+
+    // ------------------------------------------------------------------------
+
     public boolean writeEvents(OutputStream out, 
         Account account, Collection<Device> devList,
         int formatEnum, boolean allTags, TimeZone tmz,
@@ -1581,10 +2010,12 @@ public class EventUtil
         throws IOException
     {
         PrintWriter pwout = (out != null)? new PrintWriter(out) : null;
-        return this.writeEvents(pwout, 
+        boolean rtn = this.writeEvents(pwout, 
             account, devList,
             formatEnum, allTags, tmz,
             privLabel);
+        this.flush(pwout); // not all formats flush
+        return rtn;
     }
     
     public boolean writeEvents(PrintWriter pwout, 
@@ -1720,6 +2151,7 @@ public class EventUtil
     private static final String ARG_GEOZONE[] = new String[] { "geozone"            };
     private static final String ARG_GEOCODE[] = new String[] { "rg"     , "geocode" };
     private static final String ARG_UPDATE[]  = new String[] { "update" , "upd"     };
+    private static final String ARG_GZIP[]    = new String[] { "gzip"   , "gz"      };
 
     private static void usage()
     {
@@ -1732,6 +2164,7 @@ public class EventUtil
         Print.logInfo("  -events=<from>,<to>[,<limit>]  Write events in specified range to output file");
         Print.logInfo("  -format=[csv|kml]              Event output format");
         Print.logInfo("  -output=<file>                 Event output file");
+        Print.logInfo("  -gzip                          GZIP compress the event output");
         Print.logInfo("  -geozone=<from>,<to> [-update] Look for matching geozones for account/device");
         Print.logInfo("  -geocode=<from>,<to> [-update] Apply reverse-geocode to addresses");
         Print.logInfo("  -update                        Update matching geozone/address");
@@ -1825,31 +2258,48 @@ public class EventUtil
                 System.exit(1);
             }
 
-            /* extract records */
-            // this assumes that the number of returned records is reasonable and fits in memory
+            /* output format */
+            int outFmt = EventUtil.parseOutputFormat(RTConfig.getString(ARG_FORMAT,null),FORMAT_CSV);
+            boolean gzip = RTConfig.getBoolean(ARG_GZIP,false);
+            EventUtil evUtil = new EventUtil();
+            java.util.List<Device> devVector = new Vector<Device>();
+            devVector.add(devList[0]);
+
+            /* output records */
             try {
-                EventData evList[] = null;
                 if ((startTime <= 0L) && (endTime <= 0L)) {
-                    evList = devList[0].getLatestEvents(limit, false);
+                    // last events: this assumes that the number of returned records is reasonable and fits in memory
+                    EventData evList[] = devList[0].getLatestEvents(limit, false);
+                    devList[0].setSavedRangeEvents(evList);
+                    OutputStream out = gzip? ZipTools.openGZIPOutputStream(fos) : fos;
+                    boolean ok = evUtil.writeEvents(out, 
+                        acct, devVector,
+                        outFmt, allTags, null/*timezone*/,
+                        privLabel);
+                    if (gzip) {
+                        ((java.util.zip.GZIPOutputStream)out).finish();
+                    }
+                    if (!ok) {
+                        Print.logError("Error writing events");
+                        EventUtil.closeOutputStream(fos);
+                        System.exit(1);
+                    }
                 } else {
-                    evList = devList[0].getRangeEvents(startTime, endTime, false, EventData.LimitType.FIRST, limit);
+                    // range events: streamed from the database
+                    boolean ok = evUtil.streamEvents(fos, gzip,
+                        acct, devVector,
+                        startTime, endTime, limit,
+                        outFmt, allTags, null/*timezone*/,
+                        privLabel);
+                    if (!ok) {
+                        Print.logError("Error writing events");
+                        EventUtil.closeOutputStream(fos);
+                        System.exit(1);
+                    }
                 }
-                devList[0].setSavedRangeEvents(evList);
             } catch (DBException dbe) {
                 dbe.printException();
                 System.exit(99);
-            }
-
-            /* output records */
-            int outFmt = EventUtil.parseOutputFormat(RTConfig.getString(ARG_FORMAT,null),FORMAT_CSV);
-            EventUtil evUtil = new EventUtil();
-            try {
-                java.util.List<Device> devVector = new Vector<Device>();
-                devVector.add(devList[0]);
-                evUtil.writeEvents(fos, 
-                    acct, devVector,
-                    outFmt, allTags, null/*timezone*/,
-                    privLabel);
             } catch (IOException t) {
                 Print.logException("Error writing events", t);
                 System.exit(1);
@@ -909,6 +909,9 @@ public class Account
         public DBFactory<Account> getFactory() {
             return Account.getFactory();
         }
+        protected void recordDidDelete() {
+            AccountCache.invalidate((String)this.getFieldValue(FLD_accountID));
+        }
     }
 
     /* factory constructor */
@@ -941,6 +944,45 @@ public class Account
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Marks this Account as the shared snapshot held by the AccountCache.  The Account
+    *** is made read-only: field changes are rejected, and insert/update/reload throw
+    *** a DBException (load a separate copy with "Account.getAccount" instead).
+    **/
+    public void setSharedSnapshot()
+    {
+        this.setReadOnly();
+    }
+
+    /**
+    *** Returns true if this Account is the shared (read-only) snapshot held by the AccountCache
+    *** @return True if this Account is a shared snapshot
+    **/
+    public boolean isSharedSnapshot()
+    {
+        return this.isReadOnly();
+    }
+
+    /**
+    *** Callback after record has been be inserted into the table
+    **/
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        AccountCache.invalidate(this.getAccountID());
+    }
+
+    /**
+    *** Callback after record has been be updated in the table
+    **/
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        AccountCache.invalidate(this.getAccountID());
+    }
+
+    // ------------------------------------------------------------------------
+
     /* table description */
     public static String getTableDescription(Locale loc)
     {
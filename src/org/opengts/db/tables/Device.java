@@ -916,6 +916,9 @@ public class Device // Asset
         public DBFactory<Device> getFactory() {
             return Device.getFactory();
         }
+        protected void recordDidDelete() {
+            DeviceAuthorizationIndex.invalidate((String)this.getFieldValue(FLD_accountID));
+        }
     }
 
     /* factory constructor */
@@ -2455,6 +2458,15 @@ public class Device // Asset
 
         /* update Account */
         Account account = this.getAccount();
+        if ((account != null) && account.isSharedSnapshot()) {
+            // the shared AccountCache snapshot is read-only, update a private copy
+            try {
+                account = Account.getAccount(this.getAccountID());
+            } catch (DBException dbe) {
+                Print.logException("Unable to read Account for 'ping' count", dbe);
+                account = null;
+            }
+        }
         if (account != null) {
             account.incrementPingCount(pingTime, reload, update);
         }
@@ -3316,6 +3328,27 @@ public class Device // Asset
         super.setRuntimeDefaultValues();
     }
 
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Callback after record has been be inserted into the table
+    **/
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        DeviceAuthorizationIndex.invalidate(this.getAccountID());
+    }
+
+    /**
+    *** Callback after record has been be updated in the table
+    **/
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        // only drops the index if the 'isActive' state has changed
+        DeviceAuthorizationIndex.deviceDidUpdate(this.getAccountID(), this.getDeviceID(), this.getIsActive());
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -3707,8 +3740,10 @@ public class Device // Asset
         try {
             Set<String> updFields = evdb.updateAddress(true/*fastOnly*/);
             if (updFields != null) {
-                BasicPrivateLabel privLabel = this.getAccount().getPrivateLabel();
-                ReverseGeocodeProvider rgp = privLabel.getReverseGeocodeProvider();
+                AccountCache.AccountHandle ah = AccountCache.getAccountHandle(this.getAccountID()); // null if disabled
+                ReverseGeocodeProvider rgp = (ah != null)?
+                    ah.getReverseGeocodeProvider() :
+                    this.getAccount().getPrivateLabel().getReverseGeocodeProvider();
                 String rgName = (rgp != null)? rgp.getName() : "???";
                 Print.logInfo("EventData address: [%s/%s:%s] %s: %s",
                     this.getAccountID(), this.getDeviceID(), rgName,
@@ -3733,16 +3768,29 @@ public class Device // Asset
         //}
 
         /* save EventData record */
-        try {
-            evdb.save(); // insert();
-            // may be re-saved after deferred reverse-geocode
-        } catch (DBException dbe) {
-            // save failed
-            Print.logError("EventData save failed: " + dbe);
-            return false;
+        if ((extUpdate == EXT_UPDATE_NONE) && EventData.isBatchInsertEnabled()) {
+            // queue for batched insertion
+            // (records which will be re-saved by a background process are inserted immediately)
+            if (!evdb.batchInsert()) {
+                Print.logError("EventData batch insert failed: " + evdb.getRecordKey());
+                return false;
+            }
+        } else {
+            try {
+                evdb.save(); // insert();
+                // may be re-saved after deferred reverse-geocode
+            } catch (DBException dbe) {
+                // save failed
+                Print.logError("EventData save failed: " + dbe);
+                return false;
+            }
         }
 
         /* background processes */
+        if ((extUpdate == EXT_UPDATE_ADDRESS) && evdb.queueAddressUpdate()) {
+            // queued to the asynchronous reverse-geocode pipeline
+            Print.logDebug("Address update queued for reverse-geocode pipeline");
+        } else
         if (extUpdate != EXT_UPDATE_NONE) {
             // queue for background processing
             final int extUpd = extUpdate;
@@ -3868,6 +3916,11 @@ public class Device // Asset
             throw new DBException("Invalid 'priorTo' timestamp specified: " + priorToTime);
         }
 
+        /* chunked delete */
+        if (EventRetention.isChunkedDelete()) {
+            return (new EventRetention()).deleteOldEvents(this.getAccountID(), this.getDeviceID(), priorToTime);
+        }
+
         /* starting event count */
         long delEventCount = this.getEventCount(-1L, priorToTime - 1L);
 
@@ -4014,19 +4067,28 @@ public class Device // Asset
     public void updateChangedEventFields()
         throws DBException
     {
-        this.update(_createChangedFieldsSet((String[])null));
+        this._updateChangedEventFields(_createChangedFieldsSet((String[])null));
     }
 
     public void updateChangedEventFields(Set<String> flds)
         throws DBException
     {
-        this.update(_createChangedFieldsSet(flds));
+        this._updateChangedEventFields(_createChangedFieldsSet(flds));
     }
 
     public void updateChangedEventFields(String... flds)
         throws DBException
     {
-        this.update(_createChangedFieldsSet(flds));
+        this._updateChangedEventFields(_createChangedFieldsSet(flds));
+    }
+
+    private void _updateChangedEventFields(Set<String> updFields)
+        throws DBException
+    {
+        // cached Devices are written behind by the DeviceStateCache
+        if (!DeviceStateCache.markDirty(this, updFields)) {
+            this.update(updFields);
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -4121,6 +4183,7 @@ public class Device // Asset
     // are either displayed on a map, or in a report.  Access to this cache does not need
     // to be synchronized since all status code lookups will occur within the same thread.
     // This cache is temporary and is garbage collected along with this Device record.
+    // (This cache is bypassed when the shared "StatusCode.cache" is enabled)
 
     private Map<Integer,StatusCode> statusCodeMap = null;
 
@@ -4128,6 +4191,11 @@ public class Device // Asset
     public StatusCode getStatusCode(int code)
     {
 
+        /* shared cache */
+        if (StatusCode.isCacheEnabled()) {
+            return StatusCode.findStatusCode(this.getAccountID(), this.getDeviceID(), code);
+        }
+
         /* create map */
         if (this.statusCodeMap == null) {
             this.statusCodeMap = new HashMap<Integer,StatusCode>();
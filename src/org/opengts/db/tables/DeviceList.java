@@ -69,6 +69,9 @@ public class DeviceList
         public DBFactory<DeviceList> getFactory() {
             return DeviceList.getFactory();
         }
+        protected void recordDidDelete() {
+            DeviceAuthorizationIndex.invalidate((String)this.getFieldValue(FLD_accountID));
+        }
     }
     
     /* factory constructor */
@@ -148,6 +151,26 @@ public class DeviceList
         //super.setRuntimeDefaultValues();
     }
 
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Callback after record has been be inserted into the table
+    **/
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        DeviceAuthorizationIndex.invalidate(this.getAccountID());
+    }
+
+    /**
+    *** Callback after record has been be updated in the table
+    **/
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        DeviceAuthorizationIndex.invalidate(this.getAccountID());
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -1946,50 +1946,203 @@ public class EventData
             privLabel.popRTProperties();    // remove from stack
         }
         if (rg != null) {
-            Set<String> updFields = new HashSet<String>();
-            if (rg.hasFullAddress()) {
-                this.setAddress(rg.getFullAddress());                   // FLD_address
-                updFields.add(EventData.FLD_address);
-            }
-            if (rg.hasStreetAddress()) {
-                this.setStreetAddress(rg.getStreetAddress());           // FLD_streetAddress
-                updFields.add(EventData.FLD_streetAddress);
-            }
-            if (rg.hasCity()) {
-                this.setCity(rg.getCity());                             // FLD_city
-                updFields.add(EventData.FLD_city);
-            }
-            if (rg.hasStateProvince()) {
-                this.setStateProvince(rg.getStateProvince());           // FLD_stateProvince
-                updFields.add(EventData.FLD_stateProvince);
+            return this.setReverseGeocode(rg);
+        }
+
+        /* still no address after all of this */
+        Print.logInfo("No RG Address found ["+rgp.getName()+"]: " + gp);
+        return null;
+        
+    }
+
+    /**
+    *** Queues this (previously saved) EventData record for asynchronous reverse-geocoding
+    *** using the ReverseGeocodeQueue pipeline.  When the address becomes available, the
+    *** address fields are set and the record is queued for a batched table update.
+    *** @return True if the request was queued, false if the pipeline is disabled or
+    ***         the queue remained full (the caller should perform the update otherwise)
+    **/
+    public boolean queueAddressUpdate()
+    {
+
+        /* pipeline enabled? */
+        if (!ReverseGeocodeQueue.isEnabled() || !this.isValidGeoPoint()) {
+            return false;
+        }
+
+        /* get ReverseGeocodeProvider */
+        Account acct = this.getAccount();
+        if (acct == null) {
+            return false;
+        }
+        BasicPrivateLabel privLabel = acct.getPrivateLabel();
+        ReverseGeocodeProvider rgp = privLabel.getReverseGeocodeProvider();
+        if ((rgp == null) || !rgp.isEnabled()) {
+            return false;
+        }
+
+        /* submit */
+        final EventData evdb = this;
+        final String rgName = rgp.getName();
+        ReverseGeocodeQueue.Listener listener = new ReverseGeocodeQueue.Listener() {
+            public void reverseGeocodeCompleted(GeoPoint gp, ReverseGeocode rg) {
+                if (evdb.setReverseGeocode(rg) != null) {
+                    EventData.queueAddressBatchUpdate(evdb);
+                } else {
+                    Print.logInfo("No RG Address found ["+rgName+"]: " + gp);
+                }
             }
-            if (rg.hasPostalCode()) {
-                this.setPostalCode(rg.getPostalCode());                 // FLD_postalCode
-                updFields.add(EventData.FLD_postalCode);
+        };
+        return ReverseGeocodeQueue.getInstance().submit(rgp, this.getGeoPoint(), 
+            privLabel.getLocaleString(), privLabel.getRTProperties(), listener);
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static final int            ADDRESS_BATCH_SIZE      = 100;
+    private static final long           ADDRESS_BATCH_DELAY_MS  = 1000L;
+
+    private static final Set<String>    ADDRESS_FIELD_SET       = ListTools.toSet(new String[] {
+        FLD_address,
+        FLD_streetAddress,
+        FLD_city,
+        FLD_stateProvince,
+        FLD_postalCode,
+        FLD_country,
+        FLD_subdivision,
+        FLD_speedLimitKPH,
+        FLD_isTollRoad
+    }, new HashSet<String>());
+
+    private static java.util.List<EventData>    addressUpdateQueue  = new LinkedList<EventData>();
+    private static Thread                       addressUpdateThread = null;
+
+    /**
+    *** Queues the specified EventData record for a batched update of the address fields
+    *** @param evdb  The EventData record
+    **/
+    private static void queueAddressBatchUpdate(EventData evdb)
+    {
+        synchronized (EventData.addressUpdateQueue) {
+            EventData.addressUpdateQueue.add(evdb);
+            if (EventData.addressUpdateThread == null) {
+                EventData.addressUpdateThread = new Thread("EventData_addressUpdate") {
+                    public void run() {
+                        while (true) {
+                            EventData._flushAddressUpdates(true);
+                        }
+                    }
+                };
+                EventData.addressUpdateThread.setDaemon(true);
+                EventData.addressUpdateThread.start();
+                Runtime.getRuntime().addShutdownHook(new Thread("EventData_addressUpdate_shutdown") {
+                    public void run() {
+                        EventData._flushAddressUpdates(false);
+                    }
+                });
             }
-            if (rg.hasCountryCode()) {
-                this.setCountry(rg.getCountryCode());                   // FLD_country
-                updFields.add(EventData.FLD_country);
+            if (EventData.addressUpdateQueue.size() >= ADDRESS_BATCH_SIZE) {
+                EventData.addressUpdateQueue.notify();
             }
-            if (rg.hasSubdivision()) {
-                this.setSubdivision(rg.getSubdivision());               // FLD_subdivision
-                updFields.add(EventData.FLD_subdivision);
+        }
+    }
+
+    /**
+    *** Writes queued address updates to the table, in batches
+    *** @param wait  True to wait for a full batch (or the maximum delay)
+    **/
+    private static void _flushAddressUpdates(boolean wait)
+    {
+
+        /* next batch */
+        java.util.List<EventData> list = new Vector<EventData>();
+        synchronized (EventData.addressUpdateQueue) {
+            if (wait) {
+                while (EventData.addressUpdateQueue.isEmpty()) {
+                    try { EventData.addressUpdateQueue.wait(); } catch (InterruptedException ie) {}
+                }
+                if (EventData.addressUpdateQueue.size() < ADDRESS_BATCH_SIZE) {
+                    // allow the batch to fill
+                    try { EventData.addressUpdateQueue.wait(ADDRESS_BATCH_DELAY_MS); } catch (InterruptedException ie) {}
+                }
             }
-            if (rg.hasSpeedLimitKPH()) {
-                this.setSpeedLimitKPH(rg.getSpeedLimitKPH());           // FLD_speedLimitKPH
-                updFields.add(EventData.FLD_speedLimitKPH);
+            while (!EventData.addressUpdateQueue.isEmpty()) {
+                list.add(EventData.addressUpdateQueue.remove(0));
             }
-            if (rg.hasIsTollRoad()) {
-                this.setIsTollRoad(rg.getIsTollRoad());                 // FLD_isTollRoad
-                updFields.add(EventData.FLD_isTollRoad);
+        }
+
+        /* update */
+        for (int i = 0; i < list.size(); i += ADDRESS_BATCH_SIZE) {
+            java.util.List<EventData> batch = list.subList(i, Math.min(i + ADDRESS_BATCH_SIZE, list.size()));
+            try {
+                DBRecord.updateRecords(batch, ADDRESS_FIELD_SET);
+                Print.logDebug("EventData address batch update: " + batch.size());
+            } catch (DBException dbe) {
+                // batch failed, fallback to individual updates
+                Print.logError("EventData address batch update failed: " + dbe);
+                for (EventData evdb : batch) {
+                    try {
+                        evdb.update(ADDRESS_FIELD_SET);
+                    } catch (DBException dbe2) {
+                        Print.logError("EventData update error: " + dbe2);
+                    }
+                }
             }
-            return !updFields.isEmpty()? updFields : null;
         }
 
-        /* still no address after all of this */
-        Print.logInfo("No RG Address found ["+rgp.getName()+"]: " + gp);
-        return null;
-        
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the address fields from the specified ReverseGeocode
+    *** @param rg  The ReverseGeocode
+    *** @return The set of updated field names, or null if no fields were updated
+    **/
+    public Set<String> setReverseGeocode(ReverseGeocode rg)
+    {
+        if (rg == null) {
+            return null;
+        }
+        Set<String> updFields = new HashSet<String>();
+        if (rg.hasFullAddress()) {
+            this.setAddress(rg.getFullAddress());                   // FLD_address
+            updFields.add(EventData.FLD_address);
+        }
+        if (rg.hasStreetAddress()) {
+            this.setStreetAddress(rg.getStreetAddress());           // FLD_streetAddress
+            updFields.add(EventData.FLD_streetAddress);
+        }
+        if (rg.hasCity()) {
+            this.setCity(rg.getCity());                             // FLD_city
+            updFields.add(EventData.FLD_city);
+        }
+        if (rg.hasStateProvince()) {
+            this.setStateProvince(rg.getStateProvince());           // FLD_stateProvince
+            updFields.add(EventData.FLD_stateProvince);
+        }
+        if (rg.hasPostalCode()) {
+            this.setPostalCode(rg.getPostalCode());                 // FLD_postalCode
+            updFields.add(EventData.FLD_postalCode);
+        }
+        if (rg.hasCountryCode()) {
+            this.setCountry(rg.getCountryCode());                   // FLD_country
+            updFields.add(EventData.FLD_country);
+        }
+        if (rg.hasSubdivision()) {
+            this.setSubdivision(rg.getSubdivision());               // FLD_subdivision
+            updFields.add(EventData.FLD_subdivision);
+        }
+        if (rg.hasSpeedLimitKPH()) {
+            this.setSpeedLimitKPH(rg.getSpeedLimitKPH());           // FLD_speedLimitKPH
+            updFields.add(EventData.FLD_speedLimitKPH);
+        }
+        if (rg.hasIsTollRoad()) {
+            this.setIsTollRoad(rg.getIsTollRoad());                 // FLD_isTollRoad
+            updFields.add(EventData.FLD_isTollRoad);
+        }
+        return !updFields.isEmpty()? updFields : null;
     }
 
     // ------------------------------------------------------------------------
@@ -4379,6 +4532,63 @@ public class EventData
         //}
     }
 
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+    // Batched insertion
+
+    /**
+    *** Returns true if EventData records should be queued for batched insertion
+    *** @return True if batched insertion is enabled
+    **/
+    public static boolean isBatchInsertEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_EventData_batchInsert,false);
+    }
+
+    /**
+    *** Gets the EventData batched insertion queue
+    *** @return The EventData DBInsertQueue
+    **/
+    public static DBInsertQueue<EventData> getInsertQueue()
+    {
+        return DBInsertQueue.getInsertQueue(EventData.getFactory());
+    }
+
+    /**
+    *** Queues this EventData record for batched insertion.  If configured to wait
+    *** for the commit (the default), this method returns once the batch containing
+    *** this record has been written to the database.<br>
+    *** If the commit timeout expires while the record is still queued, the record is
+    *** removed from the queue (and will not be inserted).  If the record is already
+    *** being flushed, this method waits for the result of that flush.  Thus, when
+    *** waiting for the commit, a 'false' return means that the record was not inserted.
+    *** @return True if the record was inserted (or queued, if not waiting for commit)
+    **/
+    public boolean batchInsert()
+    {
+        DBInsertQueue<EventData> diq = EventData.getInsertQueue();
+        DBInsertQueue.Ticket<EventData> ticket = diq.add(this);
+        if (RTConfig.getBoolean(DBConfig.PROP_EventData_batchInsert_waitForCommit,true)) {
+            long timeoutMS = RTConfig.getLong(DBConfig.PROP_EventData_batchInsert_commitTimeout,30000L);
+            if (ticket.waitForCommit(timeoutMS)) {
+                return true;
+            } else
+            if (ticket.isDone()) {
+                return false; // insert failed
+            } else
+            if (diq.cancel(ticket)) {
+                Print.logWarn("EventData batch commit timeout, record not inserted: " + this);
+                return false;
+            } else {
+                // already taken by a flush, wait for its result
+                return ticket.waitForCommit(0L);
+            }
+        } else {
+            // write-behind: record will be inserted on the next flush
+            return true;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -4565,11 +4775,12 @@ public class EventData
 
         /* get events */
         EventData ed[] = null;
+        boolean locked = false;
         try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+            locked = DBProvider.lockTablesForRead(new String[] { TABLE_NAME() });
             ed = DBRecord.select(dsel, null); // select:DBSelect
         } finally {
-            DBProvider.unlockTables();
+            DBProvider.unlockTablesForRead(locked);
         }
 
         /* return result */
@@ -4586,11 +4797,12 @@ public class EventData
 
         /* get events */
         EventData ed[] = null;
+        boolean locked = false;
         try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+            locked = DBProvider.lockTablesForRead(new String[] { TABLE_NAME() });
             ed = DBRecord.select(dsel, rcdHandler);
         } finally {
-            DBProvider.unlockTables();
+            DBProvider.unlockTablesForRead(locked);
         }
 
         /* return result */
@@ -4715,13 +4927,14 @@ public class EventData
 
         /* get events */
         EventData ed[] = null;
+        boolean locked = false;
         try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+            locked = DBProvider.lockTablesForRead(new String[] { TABLE_NAME() });
             //ed = (EventData[])DBRecord.select(EventData.getFactory(), dsel.toString(false), rcdHandler);
             ed = DBRecord.select(dsel, rcdHandler); // select:DBSelect
             // 'ed' _may_ be empty if (rcdHandler != null)
         } finally {
-            DBProvider.unlockTables();
+            DBProvider.unlockTablesForRead(locked);
         }
         if (ed == null) {
             // no records
@@ -4744,6 +4957,89 @@ public class EventData
 
     }
 
+    /* stream range of EventData records to the specified handler (returns number of records read) */
+    // Records are read from a forward-only cursor on a separate DBConnection, and are
+    // passed to the handler as they arrive, so memory use is independent of the size of
+    // the range (the handler is free to perform other DB access).  Since the records are
+    // not collected, only a leading ('FIRST') limit is supported.
+    public static long streamRangeEvents(
+        String acctId,
+        String devId,
+        long timeStart, long timeEnd,
+        int statCode[],
+        boolean validGPS,
+        long limit, boolean ascending,
+        String addtnlSelect,
+        DBRecordHandler<EventData> rcdHandler)
+        throws DBException
+    {
+        return EventData.streamRangeEvents(
+            null/*cursorConn*/,
+            acctId, devId,
+            timeStart, timeEnd,
+            statCode,
+            validGPS,
+            limit, ascending,
+            addtnlSelect,
+            rcdHandler);
+    }
+
+    /* stream range of EventData records to the specified handler (returns number of records read) */
+    // Same as above, but reads the cursor on the specified connection (see
+    // "DBRecordIterator.openCursorConnection"), so that a caller streaming the events of
+    // several devices can reuse one connection.  If 'cursorConn' is null, a connection is
+    // opened and closed for this range.
+    public static long streamRangeEvents(
+        DBConnection cursorConn,
+        String acctId,
+        String devId,
+        long timeStart, long timeEnd,
+        int statCode[],
+        boolean validGPS,
+        long limit, boolean ascending,
+        String addtnlSelect,
+        DBRecordHandler<EventData> rcdHandler)
+        throws DBException
+    {
+
+        /* handler required */
+        if (rcdHandler == null) {
+            return 0L;
+        }
+
+        /* get record selector */
+        DBSelect<EventData> dsel = EventData._createRangeEventSelector(
+            acctId, devId,
+            timeStart, timeEnd,
+            statCode,
+            validGPS,
+            EventData.LimitType.FIRST, limit, ascending,
+            addtnlSelect);
+
+        /* invalid arguments? */
+        if (dsel == null) {
+            return 0L;
+        }
+
+        /* stream events */
+        long recordCount = 0L;
+        DBRecordIterator<EventData> dbi = new DBRecordIterator<EventData>(dsel, DBRecordIterator.MODE_CURSOR);
+        dbi.setCursorConnection(cursorConn);
+        try {
+            while (dbi.hasNext()) {
+                EventData ev = dbi.next();
+                recordCount++;
+                if (rcdHandler.handleDBRecord(ev) == DBRecordHandler.DBRH_STOP) {
+                    break;
+                }
+            }
+        } finally {
+            dbi.close();
+        }
+        return recordCount;
+
+    }
+
     /* return count in range of EventData records */
     public static long countRangeEvents(
         String acctId, String devId,
@@ -4771,11 +5067,12 @@ public class EventData
 
         /* count events */
         long recordCount = 0L;
+        boolean locked = false;
         try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+            locked = DBProvider.lockTablesForRead(new String[] { TABLE_NAME() });
             recordCount = DBRecord.getRecordCount(dsel);
         } finally {
-            DBProvider.unlockTables();
+            DBProvider.unlockTablesForRead(locked);
         }
         return recordCount;
 
@@ -4859,11 +5156,12 @@ public class EventData
 
         /* get events */
         EventData ed[] = null;
+        boolean locked = false;
         try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+            locked = DBProvider.lockTablesForRead(new String[] { TABLE_NAME() });
             ed = DBRecord.select(dsel, null/*rcdHandler*/); // select:DBSelect
         } finally {
-            DBProvider.unlockTables();
+            DBProvider.unlockTablesForRead(locked);
         }
         if (ed == null) {
             // no records
@@ -5031,6 +5329,11 @@ public class EventData
             throw new DBException("AccountID/DeviceID not specified");
         }
 
+        /* chunked delete */
+        if (EventRetention.isChunkedDelete()) {
+            return (new EventRetention()).deleteOldEvents(acctID, devID, oldTime);
+        }
+
         /* count events in range */
         long count = EventData.getRecordCount(acctID,devID,-1L,oldTime);
         if (count <= 0L) {
@@ -5800,7 +6103,7 @@ public class EventData
             EventData.LimitType.FIRST, 0L, true,
             null);
         try {
-            DBRecordIterator<EventData> dbi = new DBRecordIterator<EventData>(dsel);
+            DBRecordIterator<EventData> dbi = new DBRecordIterator<EventData>(dsel, DBRecordIterator.MODE_KEYSET);
             for (int rc = 1; dbi.hasNext(); rc++) {
                 EventData ed = dbi.next();
                 StringBuffer sb = new StringBuffer();
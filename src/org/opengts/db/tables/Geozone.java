@@ -299,6 +299,9 @@ public class Geozone
         public DBFactory<Geozone> getFactory() {
             return Geozone.getFactory();
         }
+        protected void recordDidDelete() {
+            Geozone.invalidateSpatialIndex((String)this.getFieldValue(FLD_accountID));
+        }
     }
 
     /* factory constructor */
@@ -2011,6 +2014,271 @@ public class Geozone
         return (gz != null)? gz.getDescription() : null;
     }
 
+    // ------------------------------------------------------------------------
+    // In-memory per-account Geozone spatial index
+
+    private static final double SPATIAL_CELL_SIZE_DEG   = 0.05;  // ~5.5km latitude
+    private static final int    SPATIAL_MAX_ZONE_CELLS  = 256;   // larger zones are always tested
+
+    /**
+    *** Returns true if the in-memory Geozone spatial index is enabled
+    *** @return True if the in-memory Geozone spatial index is enabled
+    **/
+    public static boolean isSpatialIndexEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_Geozone_spatialIndex,false);
+    }
+
+    /**
+    *** Per-account grid index of Geozone bounding boxes.  Geozones are held in
+    *** the same order as returned by the DB selection (priority, sortID), and
+    *** each grid cell holds the ascending indices of the Geozones which overlap 
+    *** that cell.  The index is reloaded when the account Geozone row count, or
+    *** maximum 'lastUpdateTime', changes.  The indexed Geozones are never modified,
+    *** and lookups return copies of them.
+    **/
+    private static class SpatialIndex
+    {
+        // -- immutable grid snapshot (replaced as a whole on reload)
+        private static class Grid {
+            public Geozone          zones[]     = null;
+            public Map<Long,int[]>  cellMap     = null;
+            public int              wideZones[] = null; // zones spanning too many cells
+            public Grid(Geozone zones[], Map<Long,int[]> cellMap, int wideZones[]) {
+                this.zones     = zones;
+                this.cellMap   = cellMap;
+                this.wideZones = wideZones;
+            }
+        }
+        private String              accountID   = null;
+        private volatile Grid       grid        = new Grid(new Geozone[0], new HashMap<Long,int[]>(), new int[0]);
+        private long                rowCount    = -1L;
+        private long                maxUpdTime  = -1L;
+        private long                checkTimeMS = 0L;
+        public SpatialIndex(String acctID) {
+            this.accountID = acctID;
+        }
+        // -- grid cell key
+        private static int _cell(double deg) {
+            return (int)Math.floor(deg / SPATIAL_CELL_SIZE_DEG);
+        }
+        private static Long _cellKey(int latCell, int lonCell) {
+            return new Long(((long)latCell << 32) | ((long)lonCell & 0xFFFFFFFFL));
+        }
+        // -- reload index if the account Geozones have changed
+        public synchronized void refresh(boolean force) {
+            long nowMS = System.currentTimeMillis();
+            long intvMS = RTConfig.getLong(DBConfig.PROP_Geozone_spatialIndex_refreshSec,60L) * 1000L;
+            if (!force && (this.rowCount >= 0L) && ((nowMS - this.checkTimeMS) < intvMS)) {
+                return;
+            }
+            this.checkTimeMS = nowMS;
+            long state[] = Geozone._getAccountZoneState(this.accountID);
+            if (state == null) {
+                return; // error (already logged), keep current index
+            } else
+            if (!force && (state[0] == this.rowCount) && (state[1] == this.maxUpdTime)) {
+                return; // unchanged
+            }
+            this._load(state);
+        }
+        private void _load(long state[]) {
+            DBSelect<Geozone> dsel = new DBSelect<Geozone>(Geozone.getFactory());
+            dsel.setWhere(Geozone.getWhereClause(this.accountID, null, -1, null, false, false));
+            if (Geozone.supportsPriority()) {
+                dsel.setOrderByFields(FLD_priority, FLD_sortID);
+            } else {
+                dsel.setOrderByFields(FLD_sortID);
+            }
+            Geozone gz[] = null;
+            try {
+                gz = DBRecord.select(dsel); // select:DBSelect
+            } catch (DBException dbe) {
+                Print.logError("Geozone spatial index load error: " + dbe);
+                return;
+            }
+            if (gz == null) { gz = new Geozone[0]; }
+            /* assign zones to grid cells */
+            Map<Long,java.util.List<Integer>> cells = new HashMap<Long,java.util.List<Integer>>();
+            java.util.List<Integer> wide = new Vector<Integer>();
+            for (int z = 0; z < gz.length; z++) {
+                int minLatC = _cell(gz[z].getMinLatitude());
+                int maxLatC = _cell(gz[z].getMaxLatitude());
+                int minLonC = _cell(gz[z].getMinLongitude());
+                int maxLonC = _cell(gz[z].getMaxLongitude());
+                long cellCnt = (long)(maxLatC - minLatC + 1) * (long)(maxLonC - minLonC + 1);
+                if ((cellCnt <= 0L) || (cellCnt > SPATIAL_MAX_ZONE_CELLS)) {
+                    wide.add(new Integer(z));
+                    continue;
+                }
+                for (int a = minLatC; a <= maxLatC; a++) {
+                    for (int o = minLonC; o <= maxLonC; o++) {
+                        Long key = _cellKey(a, o);
+                        java.util.List<Integer> list = cells.get(key);
+                        if (list == null) {
+                            list = new Vector<Integer>();
+                            cells.put(key, list);
+                        }
+                        list.add(new Integer(z));
+                    }
+                }
+            }
+            Map<Long,int[]> cellMap = new HashMap<Long,int[]>();
+            for (Long key : cells.keySet()) {
+                cellMap.put(key, _toIntArray(cells.get(key)));
+            }
+            this.grid       = new Grid(gz, cellMap, _toIntArray(wide));
+            this.rowCount   = state[0];
+            this.maxUpdTime = state[1];
+            Print.logDebug("Loaded Geozone spatial index: %s [zones=%d, cells=%d, wide=%d]",
+                this.accountID, gz.length, cellMap.size(), wide.size());
+        }
+        private static int[] _toIntArray(java.util.List<Integer> list) {
+            int a[] = new int[list.size()];
+            for (int i = 0; i < a.length; i++) { a[i] = list.get(i).intValue(); }
+            return a;
+        }
+        // -- return the Geozones whose bounding box contains the point (in DB selection order)
+        public Geozone[] getCandidates(GeoPoint gp, String zoneID, boolean reverseGeocodeOnly) {
+            Grid   grid = this.grid; // lock-free read of current snapshot
+            double lat  = gp.getLatitude();
+            double lon  = gp.getLongitude();
+            int cell[]  = grid.cellMap.get(_cellKey(_cell(lat),_cell(lon)));
+            if (cell == null) { cell = new int[0]; }
+            int wide[]  = grid.wideZones;
+            java.util.List<Geozone> list = new Vector<Geozone>();
+            int c = 0, w = 0;
+            while ((c < cell.length) || (w < wide.length)) {
+                // merge the two ascending index lists
+                int z;
+                if ((w >= wide.length) || ((c < cell.length) && (cell[c] < wide[w]))) {
+                    z = cell[c++];
+                } else {
+                    z = wide[w++];
+                }
+                Geozone gz = grid.zones[z]; // shared, read-only
+                if ((gz.getMinLatitude()  > lat) || (gz.getMaxLatitude()  < lat) ||
+                    (gz.getMinLongitude() > lon) || (gz.getMaxLongitude() < lon)   ) {
+                    continue; // outside bounding box
+                } else
+                if ((zoneID != null) && !zoneID.equals(gz.getGeozoneID())) {
+                    continue; // not the requested zone
+                } else
+                if (reverseGeocodeOnly && !gz.getReverseGeocode()) {
+                    continue; // not a reverse-geocode zone
+                }
+                Geozone copy = _copyZone(gz); // never hand out the cached instance
+                if (copy != null) {
+                    list.add(copy);
+                }
+            }
+            return list.toArray(new Geozone[list.size()]);
+        }
+        // -- return a copy of the cached Geozone, which the caller may modify
+        private static Geozone _copyZone(Geozone gz) {
+            Geozone.Key key = new Geozone.Key(gz.getAccountID(), gz.getGeozoneID(), gz.getSortID());
+            Geozone zone = key.getDBRecord();
+            try {
+                zone.setAllFieldValues(gz);
+            } catch (DBException dbe) {
+                // unlikely (same table)
+                Print.logException("Geozone copy error", dbe);
+                return null;
+            }
+            return zone;
+        }
+    }
+
+    private static Map<String,SpatialIndex> spatialIndexMap = new HashMap<String,SpatialIndex>();
+
+    /**
+    *** Gets the (refreshed) spatial index for the specified account
+    **/
+    private static SpatialIndex _getSpatialIndex(String acctID)
+    {
+        SpatialIndex ndx = null;
+        synchronized (spatialIndexMap) {
+            ndx = spatialIndexMap.get(acctID);
+            if (ndx == null) {
+                ndx = new SpatialIndex(acctID);
+                spatialIndexMap.put(acctID, ndx);
+            }
+        }
+        ndx.refresh(false);
+        return ndx;
+    }
+
+    /**
+    *** Invalidates the in-memory spatial index for the specified account.  The index
+    *** will be reloaded on the next Geozone lookup for this account.
+    *** @param acctID  The account ID
+    **/
+    public static void invalidateSpatialIndex(String acctID)
+    {
+        if (acctID != null) {
+            synchronized (spatialIndexMap) {
+                spatialIndexMap.remove(acctID);
+            }
+        }
+    }
+
+    /**
+    *** Returns the Geozone row count, and maximum 'lastUpdateTime', for the specified account
+    *** (or null if an error occurred)
+    **/
+    private static long[] _getAccountZoneState(String acctID)
+    {
+        // SELECT COUNT(*),MAX(lastUpdateTime) FROM Geozone WHERE (accountID='account')
+        DBWhere dwh = new DBWhere(Geozone.getFactory());
+        StringBuffer sb = new StringBuffer();
+        sb.append("SELECT ").append(DBProvider.FLD_COUNT());
+        sb.append(",MAX(").append(DBProvider.translateColumnName(FLD_lastUpdateTime)).append(")");
+        sb.append(" FROM ").append(TABLE_NAME());
+        sb.append(dwh.WHERE(dwh.EQ(FLD_accountID,acctID)));
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(sb.toString());
+            rs   = stmt.getResultSet();
+            long state[] = new long[] { 0L, 0L };
+            if (rs.next()) {
+                state[0] = rs.getLong(1);
+                state[1] = rs.getLong(2);
+            }
+            return state;
+        } catch (SQLException sqe) {
+            Print.logError("Geozone spatial index state error: " + sqe);
+            return null;
+        } catch (DBException dbe) {
+            Print.logError("Geozone spatial index state error: " + dbe);
+            return null;
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+    }
+
+    /**
+    *** Callback after record has been be inserted into the table
+    **/
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        Geozone.invalidateSpatialIndex(this.getAccountID());
+    }
+
+    /**
+    *** Callback after record has been be updated in the table
+    **/
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        Geozone.invalidateSpatialIndex(this.getAccountID());
+    }
+
     // ------------------------------------------------------------------------
     // return the Geozone in which the specified point resides
 
@@ -2036,37 +2304,41 @@ public class Geozone
             return null;
         }
 
-        /* where clause */
-        // DBSelect: [SELECT] WHERE <Where> ORDER BY geozoneID,sortID
-        DBSelect<Geozone> dsel = new DBSelect<Geozone>(Geozone.getFactory());
-        dsel.setWhere(Geozone.getWhereClause(
-            acctId,                     // accountID
-            zoneID,                     // geozoneID
-            -1,                         // sortID
-            gp,                         // GeoPoint
-            false,                      // clientUpload
-            reverseGeocodeOnly          // reverseGeocode
-            ));
-        if (Geozone.supportsPriority()) {
-            dsel.setOrderByFields(FLD_priority, FLD_sortID);
-        } else {
-            dsel.setOrderByFields(FLD_sortID);
-        }
-
         /* get Geozones */
         Geozone gz[] = null;
-        try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
-            //gz = (Geozone[])DBRecord.select(Geozone.getFactory(), dsel.toString(false));
-            gz = DBRecord.select(dsel); // select:DBSelect
-        } catch (DBException dbe) {
-            Print.logError("Geozone error: " + dbe);
-            return null;
-        } finally {
+        if (Geozone.isSpatialIndexEnabled()) {
+            // in-memory bounding-box candidates (same order as the DB selection below)
+            String zid = !StringTools.isBlank(zoneID)? zoneID : null;
+            gz = Geozone._getSpatialIndex(acctId).getCandidates(gp, zid, reverseGeocodeOnly);
+        } else {
+            // DBSelect: [SELECT] WHERE <Where> ORDER BY geozoneID,sortID
+            DBSelect<Geozone> dsel = new DBSelect<Geozone>(Geozone.getFactory());
+            dsel.setWhere(Geozone.getWhereClause(
+                acctId,                     // accountID
+                zoneID,                     // geozoneID
+                -1,                         // sortID
+                gp,                         // GeoPoint
+                false,                      // clientUpload
+                reverseGeocodeOnly          // reverseGeocode
+                ));
+            if (Geozone.supportsPriority()) {
+                dsel.setOrderByFields(FLD_priority, FLD_sortID);
+            } else {
+                dsel.setOrderByFields(FLD_sortID);
+            }
             try {
-                DBProvider.unlockTables();
+                DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+                //gz = (Geozone[])DBRecord.select(Geozone.getFactory(), dsel.toString(false));
+                gz = DBRecord.select(dsel); // select:DBSelect
             } catch (DBException dbe) {
-                // ignore
+                Print.logError("Geozone error: " + dbe);
+                return null;
+            } finally {
+                try {
+                    DBProvider.unlockTables();
+                } catch (DBException dbe) {
+                    // ignore
+                }
             }
         }
 
@@ -2126,36 +2398,39 @@ public class Geozone
             return null;
         }
 
-        /* where clause */
-        // DBSelect: [SELECT] WHERE <Where> ORDER BY geozoneID,sortID
-        DBSelect<Geozone> dsel = new DBSelect<Geozone>(Geozone.getFactory());
-        dsel.setWhere(Geozone.getWhereClause(
-            acctID,                     // accountID
-            null,                       // geozoneID
-            -1,                         // sortID
-            gp,                         // GeoPoint
-            false,                      // clientUpload
-            false                       // reverseGeocode
-            ));
-        if (Geozone.supportsPriority()) {
-            dsel.setOrderByFields(FLD_priority, FLD_sortID);
-        } else {
-            dsel.setOrderByFields(FLD_sortID);
-        }
-
         /* get Geozones */
         Geozone gz[] = null;
-        try {
-            DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
-            gz = DBRecord.select(dsel); // select:DBSelect
-        } catch (DBException dbe) {
-            Print.logError("Geozone error: " + dbe);
-            return null;
-        } finally {
+        if (Geozone.isSpatialIndexEnabled()) {
+            // in-memory bounding-box candidates (same order as the DB selection below)
+            gz = Geozone._getSpatialIndex(acctID).getCandidates(gp, null, false);
+        } else {
+            // DBSelect: [SELECT] WHERE <Where> ORDER BY geozoneID,sortID
+            DBSelect<Geozone> dsel = new DBSelect<Geozone>(Geozone.getFactory());
+            dsel.setWhere(Geozone.getWhereClause(
+                acctID,                     // accountID
+                null,                       // geozoneID
+                -1,                         // sortID
+                gp,                         // GeoPoint
+                false,                      // clientUpload
+                false                       // reverseGeocode
+                ));
+            if (Geozone.supportsPriority()) {
+                dsel.setOrderByFields(FLD_priority, FLD_sortID);
+            } else {
+                dsel.setOrderByFields(FLD_sortID);
+            }
             try {
-                DBProvider.unlockTables();
+                DBProvider.lockTables(new String[] { TABLE_NAME() }, null);
+                gz = DBRecord.select(dsel); // select:DBSelect
             } catch (DBException dbe) {
-                // ignore
+                Print.logError("Geozone error: " + dbe);
+                return null;
+            } finally {
+                try {
+                    DBProvider.unlockTables();
+                } catch (DBException dbe) {
+                    // ignore
+                }
             }
         }
 
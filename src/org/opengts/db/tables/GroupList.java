@@ -74,6 +74,9 @@ public class GroupList
         public DBFactory<GroupList> getFactory() {
             return GroupList.getFactory();
         }
+        protected void recordDidDelete() {
+            DeviceAuthorizationIndex.invalidate((String)this.getFieldValue(FLD_accountID));
+        }
     }
     
     /* factory constructor */
@@ -152,6 +155,26 @@ public class GroupList
         //super.setRuntimeDefaultValues();
     }
 
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Callback after record has been be inserted into the table
+    **/
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        DeviceAuthorizationIndex.invalidate(this.getAccountID());
+    }
+
+    /**
+    *** Callback after record has been be updated in the table
+    **/
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        DeviceAuthorizationIndex.invalidate(this.getAccountID());
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -41,6 +41,7 @@ package org.opengts.db.tables;
 
 import java.lang.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 import java.sql.*;
 
@@ -107,6 +108,9 @@ public class StatusCode
         public DBFactory<StatusCode> getFactory() {
             return StatusCode.getFactory();
         }
+        protected void recordDidDelete() {
+            StatusCode.invalidateCache((String)this.getFieldValue(FLD_accountID));
+        }
     }
     
     /* factory constructor */
@@ -285,10 +289,294 @@ public class StatusCode
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    // ------------------------------------------------------------------------
+    // Shared per-account StatusCode cache
+
+    /**
+    *** Returns true if the shared StatusCode cache is enabled
+    *** @return True if the shared StatusCode cache is enabled
+    **/
+    public static boolean isCacheEnabled()
+    {
+        return RTConfig.getBoolean(DBConfig.PROP_StatusCode_cache,false);
+    }
+
+    private static long _getCacheRefreshMS()
+    {
+        return RTConfig.getLong(DBConfig.PROP_StatusCode_cache_refreshSec,60L) * 1000L;
+    }
+
+    /**
+    *** All StatusCode records of an account, keyed by "deviceID/statusCode".  Lookups of
+    *** codes which are not defined for the account are answered from the same snapshot.
+    *** The cached StatusCodes are read-only.<br>
+    *** The snapshot is loaded by the first lookup for the account.  After that, the
+    *** background refresh thread reloads it when the account StatusCode row count, or
+    *** maximum 'lastUpdateTime', changes.  Lookups do not lock or query the database.
+    **/
+    private static class AccountCodes
+    {
+        private String                          accountID    = null;
+        private volatile Map<String,StatusCode> codeMap      = null; // null until loaded
+        private volatile long                   accessTimeMS = 0L;
+        private long                            rowCount     = -1L;
+        private long                            maxUpdTime   = -1L;
+        public AccountCodes(String acctID) {
+            this.accountID = acctID;
+        }
+        private static String _key(String devID, int code) {
+            return devID + "/" + code;
+        }
+        // -- return the current codes, loading them on first use
+        public Map<String,StatusCode> getCodes() {
+            this.accessTimeMS = DateTime.getCurrentTimeMillis();
+            Map<String,StatusCode> map = this.codeMap;
+            if (map != null) {
+                return map; // lock-free read of current snapshot
+            }
+            synchronized (this) {
+                if (this.codeMap == null) {
+                    long state[] = StatusCode._getAccountCodeState(this.accountID);
+                    Map<String,StatusCode> m = (state != null)? this._load(state) : null;
+                    // on error (already logged), answer "not defined" until the next refresh
+                    this.codeMap = (m != null)? m : new HashMap<String,StatusCode>();
+                }
+                return this.codeMap;
+            }
+        }
+        // -- reload codes if the account StatusCodes have changed (refresh thread)
+        public synchronized void refresh() {
+            if (this.codeMap == null) {
+                return; // not yet loaded
+            }
+            long state[] = StatusCode._getAccountCodeState(this.accountID);
+            if (state == null) {
+                return; // error (already logged), keep current codes
+            } else
+            if ((state[0] == this.rowCount) && (state[1] == this.maxUpdTime)) {
+                return; // unchanged
+            }
+            Map<String,StatusCode> m = this._load(state);
+            if (m != null) {
+                this.codeMap = m;
+            }
+        }
+        private Map<String,StatusCode> _load(long state[]) {
+            Map<String,StatusCode> map = new HashMap<String,StatusCode>();
+            if (state[0] > 0L) {
+                // DBSelect: SELECT * FROM StatusCode WHERE (accountID='acct')
+                DBSelect<StatusCode> dsel = new DBSelect<StatusCode>(StatusCode.getFactory());
+                DBWhere dwh = dsel.createDBWhere();
+                dsel.setWhere(dwh.WHERE_(dwh.EQ(StatusCode.FLD_accountID,this.accountID)));
+                StatusCode sc[] = null;
+                try {
+                    sc = DBRecord.select(dsel); // select:DBSelect
+                } catch (DBException dbe) {
+                    Print.logError("StatusCode cache load error: " + dbe);
+                    return null;
+                }
+                if (sc != null) {
+                    for (int i = 0; i < sc.length; i++) {
+                        sc[i].setReadOnly(); // shared by all lookup threads
+                        map.put(_key(sc[i].getDeviceID(),sc[i].getStatusCode()), sc[i]);
+                    }
+                }
+            }
+            this.rowCount   = state[0];
+            this.maxUpdTime = state[1];
+            Print.logDebug("Loaded StatusCode cache: %s [codes=%d]", this.accountID, map.size());
+            return map;
+        }
+        // -- return the cached StatusCode, or null if not defined
+        public StatusCode get(String devID, int code) {
+            return this.getCodes().get(_key(devID,code));
+        }
+    }
+
+    private static ConcurrentHashMap<String,AccountCodes> accountCodesMap = new ConcurrentHashMap<String,AccountCodes>();
+    private static Thread                                 cacheRefreshThread = null;
+
+    /**
+    *** Gets the cached StatusCodes for the specified account (creating the entry if necessary)
+    **/
+    private static AccountCodes _getAccountCodes(String acctID)
+    {
+        AccountCodes ac = accountCodesMap.get(acctID);
+        if (ac == null) {
+            AccountCodes newAC = new AccountCodes(acctID);
+            ac = accountCodesMap.putIfAbsent(acctID, newAC);
+            if (ac == null) {
+                ac = newAC;
+                StatusCode._evictAccountCodes(acctID);
+                StatusCode._startCacheRefreshThread();
+            }
+        }
+        return ac;
+    }
+
+    /**
+    *** Removes the least recently used accounts while the cache exceeds its maximum size
+    **/
+    private static void _evictAccountCodes(String keepAcctID)
+    {
+        int maxSize = RTConfig.getInt(DBConfig.PROP_StatusCode_cache_maxAccounts,1000);
+        while ((maxSize > 0) && (accountCodesMap.size() > maxSize)) {
+            String lruKey = null;
+            long   lruMS  = Long.MAX_VALUE;
+            for (Map.Entry<String,AccountCodes> me : accountCodesMap.entrySet()) {
+                long accMS = me.getValue().accessTimeMS;
+                if (!me.getKey().equals(keepAcctID) && (accMS < lruMS)) {
+                    lruKey = me.getKey();
+                    lruMS  = accMS;
+                }
+            }
+            if (lruKey == null) {
+                break;
+            }
+            accountCodesMap.remove(lruKey);
+        }
+    }
+
+    /**
+    *** Starts the background thread which checks the cached accounts for StatusCode
+    *** changes made by other processes (if not already started)
+    **/
+    private static synchronized void _startCacheRefreshThread()
+    {
+        if (StatusCode.cacheRefreshThread == null) {
+            StatusCode.cacheRefreshThread = new Thread("StatusCode_cacheRefresh") {
+                public void run() {
+                    while (true) {
+                        try { Thread.sleep(Math.max(StatusCode._getCacheRefreshMS(),1000L)); } catch (InterruptedException ie) {}
+                        for (AccountCodes ac : accountCodesMap.values()) {
+                            ac.refresh();
+                        }
+                    }
+                }
+            };
+            StatusCode.cacheRefreshThread.setDaemon(true);
+            StatusCode.cacheRefreshThread.start();
+        }
+    }
+
+    /**
+    *** Invalidates the cached StatusCodes for the specified account.  The StatusCodes
+    *** will be reloaded on the next lookup for this account.
+    *** @param acctID  The account ID
+    **/
+    public static void invalidateCache(String acctID)
+    {
+        if (acctID != null) {
+            accountCodesMap.remove(acctID.toLowerCase());
+        }
+    }
+
+    /**
+    *** Returns the StatusCode row count, and maximum 'lastUpdateTime', for the specified account
+    *** (or null if an error occurred)
+    **/
+    private static long[] _getAccountCodeState(String acctID)
+    {
+        // SELECT COUNT(*),MAX(lastUpdateTime) FROM StatusCode WHERE (accountID='account')
+        DBWhere dwh = new DBWhere(StatusCode.getFactory());
+        StringBuffer sb = new StringBuffer();
+        sb.append("SELECT ").append(DBProvider.FLD_COUNT());
+        sb.append(",MAX(").append(DBProvider.translateColumnName(FLD_lastUpdateTime)).append(")");
+        sb.append(" FROM ").append(TABLE_NAME());
+        sb.append(dwh.WHERE(dwh.EQ(FLD_accountID,acctID)));
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(sb.toString());
+            rs   = stmt.getResultSet();
+            long state[] = new long[] { 0L, 0L };
+            if (rs.next()) {
+                state[0] = rs.getLong(1);
+                state[1] = rs.getLong(2);
+            }
+            return state;
+        } catch (SQLException sqe) {
+            Print.logError("StatusCode cache state error: " + sqe);
+            return null;
+        } catch (DBException dbe) {
+            Print.logError("StatusCode cache state error: " + dbe);
+            return null;
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+    }
+
+    /**
+    *** Callback after record has been be inserted into the table
+    **/
+    protected void recordDidInsert()
+    {
+        super.recordDidInsert();
+        StatusCode.invalidateCache(this.getAccountID());
+    }
+
+    /**
+    *** Callback after record has been be updated in the table
+    **/
+    protected void recordDidUpdate()
+    {
+        super.recordDidUpdate();
+        StatusCode.invalidateCache(this.getAccountID());
+    }
+
+    /* return StatusCode from the shared cache (same search order as "findStatusCode") */
+    private static StatusCode _findCachedStatusCode(String accountID, String deviceID, int statusCode)
+    {
+
+        /* check account status codes */
+        if (!StringTools.isBlank(accountID)) {
+            AccountCodes ac = StatusCode._getAccountCodes(accountID.toLowerCase());
+
+            // first, try account/device
+            if (!StringTools.isBlank(deviceID)) {
+                StatusCode code = ac.get(deviceID.toLowerCase(), statusCode);
+                if (code != null) {
+                    return code;
+                }
+            }
+
+            // next, try just the account
+            StatusCode code = ac.get(ALL_DEVICES, statusCode);
+            if (code != null) {
+                return code;
+            }
+
+        }
+
+        /* check global status codes */
+        String sysAdmin = AccountRecord.getSystemAdminAccountID();
+        if (!StringTools.isBlank(sysAdmin)) {
+            StatusCode code = StatusCode._getAccountCodes(sysAdmin.toLowerCase()).get(ALL_DEVICES, statusCode);
+            if (code != null) {
+                return code;
+            }
+        }
+
+        /* not found */
+        return null;
+
+    }
+
+    // ------------------------------------------------------------------------
+
     /* return StatusCode */
     public static StatusCode findStatusCode(String accountID, String deviceID, int statusCode)
     {
 
+        /* shared cache */
+        if (StatusCode.isCacheEnabled()) {
+            return StatusCode._findCachedStatusCode(accountID, deviceID, statusCode);
+        }
+
         /* check account status codes */
         if (!StringTools.isBlank(accountID)) {
 
@@ -1467,6 +1467,63 @@ public class Transport
             return null; // just say it doesn't exist
         }
 
+        /* cached Device? */
+        if (DeviceStateCache.isEnabled()) {
+            Device dev = DeviceStateCache.getDeviceByUniqueID(uniqId);
+            if ((dev != null) && !UniqueXID.isUniqueQueryEnabled() &&
+                !uniqId.equals(dev.getDataTransport().getUniqueID())) {
+                // the cached Device/Transport unique-id has changed, reload from the DB
+                DeviceStateCache.removeDevice(dev);
+                dev = null;
+            }
+            if (dev == null) {
+                dev = DeviceStateCache.putDevice(Transport._loadDeviceByUniqueID(uniqId), uniqId);
+            }
+            return dev;
+        }
+
+        /* load Device */
+        return Transport._loadDeviceByUniqueID(uniqId);
+
+    }
+
+    private static Device _loadDeviceByUniqueID(String uniqId)
+        throws DBException
+    {
+
+        /* unique-id directory */
+        if (DeviceDirectory.isEnabled()) {
+            DeviceDirectory.Entry de = DeviceDirectory.getEntry(uniqId);
+            if (de != null) {
+                Device dev = de.loadDevice();
+                if (dev != null) {
+                    return dev;
+                }
+                // stale directory entry (Device deleted, or unique-id changed), try the full lookup below
+                DeviceDirectory.removeEntry(uniqId);
+            } else
+            if (DeviceDirectory.isUnknown(uniqId)) {
+                // recently found not to exist
+                return null;
+            }
+            Device dev = Transport._queryDeviceByUniqueID(uniqId);
+            if (dev != null) {
+                DeviceDirectory.putDevice(uniqId, dev);
+            } else {
+                DeviceDirectory.putUnknown(uniqId);
+            }
+            return dev;
+        }
+
+        /* query tables */
+        return Transport._queryDeviceByUniqueID(uniqId);
+
+    }
+
+    private static Device _queryDeviceByUniqueID(String uniqId)
+        throws DBException
+    {
+
         /* lookup UniqueXID entry? */
         if (UniqueXID.isUniqueQueryEnabled()) {
             UniqueXID uniqXp = null;
@@ -1586,7 +1643,7 @@ public class Transport
         }
 
         /* get account */
-        Account account = Account.getAccount(accountID); // may throw DBException
+        Account account = AccountCache.loadAccount(accountID); // may throw DBException
         if (account == null) {
             Print.logError("Account-ID does not exist: " + accountID);
             return null;
@@ -1067,6 +1067,8 @@ public class User
         } catch (Throwable th) { // DBException, SQLException
             Print.logException("Error deleting existing DeviceGroup entries from the User GroupList table", th);
             return false;
+        } finally {
+            DeviceAuthorizationIndex.invalidate(accountID);
         }
 
         /* add new entries */
@@ -1162,6 +1164,7 @@ public class User
             this.deviceGroupList = null;
             GroupList.Key grpListKey = new GroupList.Key(this.getAccountID(), this.getUserID(), groupID);
             grpListKey.delete(true);
+            DeviceAuthorizationIndex.invalidate(this.getAccountID());
         }
     }
 
@@ -1200,6 +1203,9 @@ public class User
     protected OrderedSet<String> getAuthorizedDeviceIDs(boolean inclInactv)
         throws DBException
     {
+        if (DeviceAuthorizationIndex.isEnabled()) {
+            return DeviceAuthorizationIndex.getAuthorizedDeviceIDs(this, inclInactv);
+        }
         java.util.List<String> groupList = this.getDeviceGroups(true/*refresh*/);
         if (!ListTools.isEmpty(groupList)) {
             // The user is authorized to all Devices in the listed groups (thus "User" can be null)
@@ -1227,6 +1233,9 @@ public class User
     {
         if (StringTools.isBlank(deviceID)) {
             return false;
+        } else
+        if (DeviceAuthorizationIndex.isEnabled()) {
+            return DeviceAuthorizationIndex.isAuthorizedDevice(this, deviceID);
         } else {
             java.util.List<String> groupList = this.getDeviceGroups(false/*refresh*/);
             if (ListTools.isEmpty(groupList)) {
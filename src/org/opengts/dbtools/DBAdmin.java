@@ -698,6 +698,10 @@ public class DBAdmin
                     } else {
                         Print.logWarn("Optional table not found: " + f.getUntranslatedTableName());
                     }
+                } else
+                if (DBProvider.isTableLockingEnabled()) {
+                    // detect storage engine (lock-free reads)
+                    DBProvider.isMVCCTable(f.getUntranslatedTableName());
                 }
             } catch (DBException dbe) {
                 // Message:   Table './gts/EventData' is marked as crashed and should be repaired
@@ -758,6 +762,10 @@ public class DBAdmin
     public  static final String ARG_VALIDATE[]  = new String[] { "validate"  };
     public  static final String ARG_LAST[]      = new String[] { "last"      };
     public  static final String ARG_OVERWRITE[] = new String[] { "overwrite" };
+    public  static final String ARG_THREADS[]   = new String[] { "threads"   , "loadThreads" };
+    public  static final String ARG_DEFER_IDX[] = new String[] { "deferIndexes" };
+    public  static final String ARG_CHUNKED[]   = new String[] { "chunked"   };
+    public  static final String ARG_GZIP[]      = new String[] { "gzip"      , "gz" };
     public  static final String ARG_BEAN[]      = new String[] { "bean"      };
   //public  static final String ARG_HIBXML[]    = new String[] { "hibxml"    };
   //public  static final String ARG_RELOAD[]    = new String[] { "reload"    };
@@ -971,7 +979,7 @@ public class DBAdmin
         */
 
         /* pre-check 'load' file */
-        // bin/exe DBAdmin -load=<Table> -dir=<Source_Dir> -overwrite
+        // bin/exe DBAdmin -load=<Table> -dir=<Source_Dir> -overwrite [-threads=<N> [-deferIndexes]]
         File   loadTableFiles[] = null;
         String loadTableNames[] = null;
         if (RTConfig.hasProperty(ARG_LOAD)) {
@@ -1009,16 +1017,22 @@ public class DBAdmin
                 } else {
                     // IE. "Geozone.csv"
                     String ext = loadTableNames[t].substring(p); // ==> ".csv"
+                    if (ext.equals(DBFactory._LOAD_EXT_GZ) || ext.equals(DBFactory._LOAD_EXT_MANIFEST)) {
+                        // IE. "EventData.txt.gz", "EventData.manifest"
+                        p = loadTableNames[t].indexOf('.');
+                    }
                     if (ext.equals(DBFactory._LOAD_EXT_CSV) || 
                         ext.equals(DBFactory._LOAD_EXT_TXT) || 
-                        ext.equals(DBFactory._LOAD_EXT_SQL)   ) {
+                        ext.equals(DBFactory._LOAD_EXT_SQL) ||
+                        ext.equals(DBFactory._LOAD_EXT_GZ)  ||
+                        ext.equals(DBFactory._LOAD_EXT_MANIFEST)) {
                         loadTableFiles[t] = new File(loadDir, loadTableNames[t]);
                         if (!loadTableFiles[t].isFile()) {
                             Print.logWarn("'Load' file not found: " + loadTableFiles[t]);
                             return DBAdminExec.WARN;
                         }
                     } else {
-                        Print.logError("Invalid 'load' file extension [expected txt|sql|csv]");
+                        Print.logError("Invalid 'load' file extension [expected txt|sql|csv|gz|manifest]");
                         return DBAdminExec.ERROR;
                     }
                     loadTableNames[t] = loadTableNames[t].substring(0,p);
@@ -1028,10 +1042,16 @@ public class DBAdmin
         // loadTableNames, loadTableFiles, [loadDir] now defined ...
 
         /* dump: dump table to flatfile */
-        // bin/exe DBAdmin -dump=<Table> -dir=<Destination_Dir>
+        // bin/exe DBAdmin -dump=<Table> -dir=<Destination_Dir> [-threads=<N> [-chunked] [-gzip]]
         String dumpTable = RTConfig.getString(ARG_DUMP,null);
         if (dumpTable != null) {
             execCmd++;
+            if (RTConfig.hasProperty(ARG_THREADS)) {
+                // parallel chunked dump
+                RTConfig.setInt(RTKey.DB_DUMP_THREADS, RTConfig.getInt(ARG_THREADS,0));
+            }
+            boolean dumpChunked = RTConfig.getBoolean(ARG_CHUNKED,false);
+            boolean dumpGzip    = RTConfig.getBoolean(ARG_GZIP,false);
             String dftExt = DBFactory._DUMP_EXT_TXT;
             // tables to dump
             java.util.List<String> tableList = new Vector<String>();
@@ -1104,8 +1124,21 @@ public class DBAdmin
                 DBFactory<? extends DBRecord> fact = DBAdmin.getTableFactory(utableName);
                 if (fact != null) {
                     try {
-                        DBSelect dbSel = new DBSelect(fact,where); // "unchecked call"
-                        fact.dumpTable(dumpFile, dbSel); // "unchecked conversion"
+                        if (dumpChunked || dumpGzip) {
+                            // chunk files and manifest, or a single gzip'ed file
+                            DBTableDumper dumper = new DBTableDumper(fact);
+                            dumper.setGzip(dumpGzip);
+                            if (dumpChunked) {
+                                String dotExt = dumpFile.getName().substring(utableName.length());
+                                File mf = dumper.dumpChunks(toDir, dotExt, where, null);
+                                Print.logInfo("Dump manifest: " + mf);
+                            } else {
+                                dumper.dumpStream(dumpFile, where, null);
+                            }
+                        } else {
+                            DBSelect dbSel = new DBSelect(fact,where); // "unchecked call"
+                            fact.dumpTable(dumpFile, dbSel); // "unchecked conversion"
+                        }
                     } catch (DBException dbe) {
                         Print.logException("Error dumping table: " + utableName, dbe);
                         return DBAdminExec.ERROR;
@@ -1145,6 +1178,13 @@ public class DBAdmin
         // bin/exe DBAdmin -dir=<Source_Dir> -load=<Table>
         if (!ListTools.isEmpty(loadTableFiles)) {
             execCmd++;
+            if (RTConfig.hasProperty(ARG_THREADS)) {
+                // parallel bulk loader
+                RTConfig.setInt(RTKey.DB_LOAD_THREADS, RTConfig.getInt(ARG_THREADS,0));
+            }
+            if (RTConfig.hasProperty(ARG_DEFER_IDX)) {
+                RTConfig.setBoolean(RTKey.DB_LOAD_DEFER_INDEXES, RTConfig.getBoolean(ARG_DEFER_IDX,false));
+            }
             for (int t = 0; t < loadTableFiles.length; t++) {
                 if (loadTableFiles[t].isFile()) {
                     DBFactory fact = DBAdmin.getTableFactory(loadTableNames[t]);
@@ -37,6 +37,12 @@ import java.util.*;
 import java.io.*;
 
 import java.sql.*; // DriverManager
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import javax.sql.DataSource;
 
 import org.opengts.util.*;
@@ -227,34 +233,305 @@ public class DBConnection
     // Thread-Safety: Currently, each thread gets a new dedicated connection map
 
     protected static Map<String,DBConnection>            dbConnectionMap  = null;
-    protected static Map<String,ArrayList<DBConnection>> dbConnectionPool = null;
+    protected static Map<String,ConnectionPool>          dbConnectionPool = null;
     protected static Collection<DBConnection>            dbConnectionList = null;
+    private   static volatile ConnectionPool             lastConnectionPool = null;
 
     /**
-    *** Gets the named connection
-    *** @param uri    The DBConnection name
+    *** <code>ConnectionPool</code> is a bounded pool of DBConnections for a single URI.
+    *** Checkout and return do not take a pool-wide lock: the number of connections is
+    *** bounded by a <code>Semaphore</code> with 'maxSize' permits (one permit is held
+    *** for each borrowed connection), and idle connections are held in a non-blocking
+    *** queue (least recently returned first).  A borrow which cannot obtain a permit
+    *** within 'maxWaitMS' fails (see <code>getDBConnection</code>).  Stale connections
+    *** (see <code>isConnectionTimeout</code>) are closed on borrow, and idle connections
+    *** above the minimum size are evicted after the configured idle time.  Physical
+    *** connections are never closed while holding a lock.
     **/
-    private static DBConnection _getDBConnection(String uri)
+    public static class ConnectionPool
     {
-        // "DBConnection.ConnectionPoolLock" lock required
-        if (uri == null) {
+        private static final long WAIT_HISTOGRAM_MS[] = new long[] { 1L, 10L, 100L, 1000L, 10000L };
+        private String                  uri             = null;
+        private int                     minSize         = 0;
+        private int                     maxSize         = 0;
+        private long                    maxWaitMS       = 0L;
+        private long                    idleSec         = 0L;
+        private Semaphore               borrowPermits   = null;
+        private ConcurrentLinkedQueue<DBConnection> idleQueue = new ConcurrentLinkedQueue<DBConnection>();
+        private AtomicInteger           idleCount       = new AtomicInteger(0);
+        private AtomicInteger           totalCount      = new AtomicInteger(0); // idle + borrowed
+        private AtomicInteger           borrowedCount   = new AtomicInteger(0);
+        private AtomicInteger           waitingCount    = new AtomicInteger(0);
+        private AtomicLong              lastEvictSec    = new AtomicLong(0L);
+        private AtomicLong              borrowTotal     = new AtomicLong(0L);
+        private AtomicLong              createTotal     = new AtomicLong(0L);
+        private AtomicLong              staleTotal      = new AtomicLong(0L);
+        private AtomicLong              evictTotal      = new AtomicLong(0L);
+        private AtomicLong              waitTotal       = new AtomicLong(0L);
+        private AtomicLong              waitTotalMS     = new AtomicLong(0L);
+        private AtomicLong              timeoutTotal    = new AtomicLong(0L);
+        private AtomicLongArray         waitHistogram   = new AtomicLongArray(WAIT_HISTOGRAM_MS.length + 1);
+        private ConnectionPool(String uri) {
+            this.uri       = uri;
+            this.maxSize   = Math.max(RTConfig.getInt(RTKey.DB_DBCONNECTION_POOL_MAX,50), 1);
+            this.minSize   = Math.min(Math.max(RTConfig.getInt(RTKey.DB_DBCONNECTION_POOL_MIN,2), 0), this.maxSize);
+            this.maxWaitMS = Math.max(RTConfig.getLong(RTKey.DB_DBCONNECTION_POOL_WAIT,10000L), 0L);
+            this.idleSec   = RTConfig.getLong(RTKey.DB_DBCONNECTION_POOL_IDLE,600L);
+            this.borrowPermits = new Semaphore(this.maxSize);
+        }
+        // -- checkout (returns null if no connection became available within 'maxWaitMS')
+        private DBConnection _borrow(String user, String pass) {
+            this._evictIdle(false);
+            if (!this.borrowPermits.tryAcquire()) {
+                // wait for a returned connection
+                long startMS = System.currentTimeMillis();
+                boolean acquired = false;
+                this.waitingCount.incrementAndGet();
+                try {
+                    acquired = this.borrowPermits.tryAcquire(this.maxWaitMS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    this.waitingCount.decrementAndGet();
+                }
+                long waitMS = System.currentTimeMillis() - startMS;
+                this.waitTotal.incrementAndGet();
+                this.waitTotalMS.addAndGet(waitMS);
+                int h = 0;
+                for (; (h < WAIT_HISTOGRAM_MS.length) && (waitMS >= WAIT_HISTOGRAM_MS[h]); h++);
+                this.waitHistogram.incrementAndGet(h);
+                if (!acquired) {
+                    this.timeoutTotal.incrementAndGet();
+                    Print.logWarn("DBConnection pool exhausted ["+this.uri+"] max="+this.maxSize+" (waited "+waitMS+" ms)");
+                    return null;
+                }
+            }
+            // permit held: reuse an idle connection, otherwise create a new one.
+            // (a connection is queued before its permit is released, so the idle queue
+            // is only empty here if fewer than 'maxSize' connections exist)
+            DBConnection dbc = this.idleQueue.poll();
+            if (dbc != null) {
+                this.idleCount.decrementAndGet();
+                if (dbc.isConnectionTimeout()) {
+                    // validate on borrow: discard stale physical connection (reopened on use)
+                    dbc.closeConnection();
+                    this.staleTotal.incrementAndGet();
+                }
+            } else {
+                dbc = this._create(user, pass);
+            }
+            this.borrowedCount.incrementAndGet();
+            this.borrowTotal.incrementAndGet();
+            return dbc;
+        }
+        private DBConnection _create(String user, String pass) {
+            // physical connection is opened on first use (see 'getConnection')
+            DBConnection dbc = new DBConnection(this.uri, user, pass);
+            dbc.threadName = StringTools.trim(Thread.currentThread().getName());
+            dbc.connPool   = this;
+            int size = this.totalCount.incrementAndGet();
+            this.createTotal.incrementAndGet();
+            DBConnection._addConnectionList(dbc);
+            Print.logDebug("New Connection [" + dbc.threadName + "] " + this.uri + " (pool size " + size + ")");
+            return dbc;
+        }
+        private void _discard(DBConnection dbc) {
+            dbc.closeConnection();
+            DBConnection._removeConnectionList(dbc);
+            this.totalCount.decrementAndGet();
+        }
+        // -- return (called without holding any lock)
+        private void _return(DBConnection dbc) {
+            this.borrowedCount.decrementAndGet();
+            this.idleQueue.offer(dbc);
+            this.idleCount.incrementAndGet();
+            this.borrowPermits.release(); // after the connection is available (see '_borrow')
+        }
+        // -- close idle connections above the minimum size
+        private void _evictIdle(boolean force) {
+            long nowSec  = DateTime.getCurrentTimeSec();
+            long lastSec = this.lastEvictSec.get();
+            if (!force && ((nowSec - lastSec) < 30L)) {
+                return;
+            } else
+            if (!this.lastEvictSec.compareAndSet(lastSec, nowSec) && !force) {
+                return; // another thread is evicting
+            }
+            // hold a permit, so that evicted connections are still counted against 'maxSize'
+            if (!this.borrowPermits.tryAcquire()) {
+                return; // all connections are borrowed
+            }
+            try {
+                // least recently returned connections are at the head of the idle queue
+                while (this.idleCount.get() > this.minSize) {
+                    DBConnection dbc = this.idleQueue.peek();
+                    if (dbc == null) {
+                        break;
+                    } else
+                    if (!force && ((nowSec - dbc.lastUseTime) <= this.idleSec)) {
+                        break;
+                    } else
+                    if (this.idleQueue.remove(dbc)) { // may have just been borrowed
+                        this.idleCount.decrementAndGet();
+                        this._discard(dbc);
+                        this.evictTotal.incrementAndGet();
+                    }
+                }
+            } finally {
+                this.borrowPermits.release();
+            }
+        }
+        /** Returns the pool URI **/
+        public String getUri() { return this.uri; }
+        /** Returns the minimum number of idle connections retained **/
+        public int getMinSize() { return this.minSize; }
+        /** Returns the maximum pool size **/
+        public int getMaxSize() { return this.maxSize; }
+        /** Returns the current number of connections (idle and borrowed) **/
+        public int getSize() { return this.totalCount.get(); }
+        /** Returns the current number of idle connections **/
+        public int getIdleCount() { return this.idleCount.get(); }
+        /** Returns the current number of borrowed connections **/
+        public int getBorrowedCount() { return this.borrowedCount.get(); }
+        /** Returns the current number of threads waiting for a connection **/
+        public int getWaitingCount() { return this.waitingCount.get(); }
+        /** Returns the total number of borrowed connections **/
+        public long getBorrowTotal() { return this.borrowTotal.get(); }
+        /** Returns the total number of borrows which had to wait **/
+        public long getWaitTotal() { return this.waitTotal.get(); }
+        /** Returns the total time (milliseconds) spent waiting for connections **/
+        public long getWaitTotalMS() { return this.waitTotalMS.get(); }
+        /** Returns the total number of borrows which timed out waiting **/
+        public long getTimeoutTotal() { return this.timeoutTotal.get(); }
+        /** Returns the wait time histogram bucket upper bounds (milliseconds) **/
+        public long[] getWaitHistogramLimitsMS() { return WAIT_HISTOGRAM_MS.clone(); }
+        /** Returns the wait time histogram counts (last bucket is above the last limit) **/
+        public long[] getWaitHistogram() {
+            long h[] = new long[this.waitHistogram.length()];
+            for (int i = 0; i < h.length; i++) { h[i] = this.waitHistogram.get(i); }
+            return h;
+        }
+        /** Close all idle connections above the minimum size **/
+        public void evictIdle() { this._evictIdle(true); }
+        /** Returns the pool statistics **/
+        public String toString() {
+            long waitHist[] = this.getWaitHistogram();
+            StringBuffer sb = new StringBuffer();
+            sb.append("DBConnectionPool[").append(this.uri).append("]");
+            sb.append(" size=").append(this.totalCount.get()).append("/").append(this.maxSize);
+            sb.append(" idle=").append(this.idleCount.get());
+            sb.append(" borrowed=").append(this.borrowedCount.get());
+            sb.append(" waiting=").append(this.waitingCount.get());
+            sb.append(" borrows=").append(this.borrowTotal.get());
+            sb.append(" created=").append(this.createTotal.get());
+            sb.append(" stale=").append(this.staleTotal.get());
+            sb.append(" evicted=").append(this.evictTotal.get());
+            sb.append(" timeouts=").append(this.timeoutTotal.get());
+            sb.append(" waits=").append(this.waitTotal.get());
+            sb.append(" waitMS=").append(this.waitTotalMS.get());
+            sb.append(" waitHist=[");
+            for (int h = 0; h < waitHist.length; h++) {
+                if (h > 0) { sb.append(","); }
+                sb.append((h < WAIT_HISTOGRAM_MS.length)? ("<"+WAIT_HISTOGRAM_MS[h]) : (">="+WAIT_HISTOGRAM_MS[h-1]));
+                sb.append("ms:").append(waitHist[h]);
+            }
+            sb.append("]");
+            return sb.toString();
+        }
+    }
+
+    /**
+    *** Adds a new DBConnection to the list of all DBConnections (see "closeAllConnections")
+    **/
+    private static void _addConnectionList(DBConnection dbc)
+    {
+        synchronized (DBConnection.ConnectionPoolLock) {
+            if (dbConnectionList == null) {
+                dbConnectionList = new Vector<DBConnection>();
+            }
+        }
+        dbConnectionList.add(dbc);
+    }
+
+    /**
+    *** Removes a closed DBConnection from the list of all DBConnections
+    **/
+    private static void _removeConnectionList(DBConnection dbc)
+    {
+        if (dbConnectionList != null) {
+            dbConnectionList.remove(dbc);
+        }
+    }
+
+    /**
+    *** Gets the connection pool for the specified URI (pooling mode only)
+    *** @param uri    The DBConnection URI
+    *** @param create True to create the pool if it does not already exist
+    *** @return The ConnectionPool, or null if pooling is disabled
+    **/
+    private static ConnectionPool _getConnectionPool(String uri, boolean create)
+    {
+        if ((uri == null) || !DBCONNECTION_POOL) {
             return null;
-        } else
-        if (DBCONNECTION_POOL) {
-            // Pooled Connections
+        }
+        ConnectionPool last = DBConnection.lastConnectionPool;
+        if ((last != null) && last.getUri().equals(uri)) {
+            // fast path (typically only a single URI is in use)
+            return last;
+        }
+        synchronized (DBConnection.ConnectionPoolLock) {
+            if (dbConnectionPool == null) {
+                if (!create) { return null; }
+                dbConnectionPool = new HashMap<String,ConnectionPool>();
+            }
+            ConnectionPool pool = dbConnectionPool.get(uri);
+            if ((pool == null) && create) {
+                pool = new ConnectionPool(uri);
+                dbConnectionPool.put(uri, pool);
+                Print.logDebug("DBConnection pool created: " + uri + " [max=" + pool.getMaxSize() + "]");
+            }
+            if (pool != null) {
+                DBConnection.lastConnectionPool = pool;
+            }
+            return pool;
+        }
+    }
+
+    /**
+    *** Gets the connection pool for the default URI (pooling mode only)
+    *** @return The ConnectionPool, or null if pooling is disabled
+    **/
+    public static ConnectionPool getDefaultConnectionPool()
+    {
+        return DBConnection._getConnectionPool(DBProvider.getDBUri(true), false);
+    }
+
+    /**
+    *** Returns the statistics for all connection pools (pooling mode only)
+    *** @return The connection pool statistics
+    **/
+    public static String getConnectionPoolStatistics()
+    {
+        StringBuffer sb = new StringBuffer();
+        synchronized (DBConnection.ConnectionPoolLock) {
             if (dbConnectionPool != null) {
-                ArrayList<DBConnection> dbcArray = dbConnectionPool.get(uri);
-                if (dbcArray != null) {
-                    for (int d = 0; d < dbcArray.size(); d++) {
-                        DBConnection dbc = dbcArray.get(d);
-                        if (dbc._getLockCount() <= 0) {
-                            dbcArray.remove(0);
-                            dbcArray.add(dbc);
-                            return dbc;
-                        }
-                    }
+                for (ConnectionPool pool : dbConnectionPool.values()) {
+                    if (sb.length() > 0) { sb.append("\n"); }
+                    sb.append(pool.toString());
                 }
             }
+        }
+        return sb.toString();
+    }
+
+    /**
+    *** Gets the named per-thread connection
+    *** @param uri    The DBConnection name
+    **/
+    private static DBConnection _getDBConnection(String uri)
+    {
+        // "DBConnection.ConnectionPoolLock" lock required
+        if (uri == null) {
             return null;
         } else {
             // ThreadLocal connections
@@ -263,7 +540,7 @@ public class DBConnection
     }
 
     /**
-    *** Saves a named DBConnection
+    *** Saves a named per-thread DBConnection
     *** @param dbc   The DBConnection
     **/
     protected static void _saveDBConnection(DBConnection dbc)
@@ -271,24 +548,11 @@ public class DBConnection
         // "DBConnection.ConnectionPoolLock" lock required
         if (dbc != null) {
             String uri = dbc.getUri();
-            if (DBCONNECTION_POOL) {
-                // Pooled Connections
-                if (dbConnectionPool == null) {
-                    dbConnectionPool = new HashMap<String,ArrayList<DBConnection>>();
-                }
-                ArrayList<DBConnection> dbcArray = dbConnectionPool.get(uri);
-                if (dbcArray == null) {
-                    dbcArray = new ArrayList<DBConnection>();
-                    dbConnectionPool.put(uri, dbcArray);
-                }
-                dbcArray.add(dbc);
-            } else {
-                // ThreadLocal connections
-                if (dbConnectionMap == null) {
-                    dbConnectionMap  = new ThreadLocalMap<String,DBConnection>();
-                }
-                dbConnectionMap.put(uri, dbc);
+            // ThreadLocal connections
+            if (dbConnectionMap == null) {
+                dbConnectionMap  = new ThreadLocalMap<String,DBConnection>();
             }
+            dbConnectionMap.put(uri, dbc);
             /* save list of DBConnections */
             if (dbConnectionList == null) {
                 dbConnectionList = new Vector<DBConnection>();
@@ -304,7 +568,11 @@ public class DBConnection
     {
         int closed = 0;
         if (dbConnectionList != null) {
-            for (DBConnection dbc : dbConnectionList) {
+            DBConnection dbcList[] = null;
+            synchronized (dbConnectionList) {
+                dbcList = dbConnectionList.toArray(new DBConnection[dbConnectionList.size()]);
+            }
+            for (DBConnection dbc : dbcList) {
                 if ((dbc != null) && !dbc.isConnectionClosed()) {
                     dbc.closeConnection();
                     closed++;
@@ -330,25 +598,43 @@ public class DBConnection
     public static DBConnection getDBConnection(String uri, String user, String pass)
     {
         if (uri != null) {
+            DBConnection snap = DBConnection.snapshotConnection.get();
+            if ((snap != null) && uri.equals(snap.getUri())) {
+                // consistent-read snapshot active in this thread
+                synchronized (snap._getLockObject()) {
+                    snap._lock(); // shared within this thread
+                }
+                return snap;
+            }
             DBConnection dbc = null;
             String dbConnMsg = null;
             Throwable previousLock = null;
-            synchronized (DBConnection.ConnectionPoolLock) {
-                dbc = DBConnection._getDBConnection(uri);
+            if (DBCONNECTION_POOL) {
+                // Pooled Connections (may wait if the pool is exhausted)
+                ConnectionPool pool = DBConnection._getConnectionPool(uri, true);
+                dbc = pool._borrow(user, pass);
                 if (dbc == null) {
-                    // new connection
-                    String threadName = Thread.currentThread().getName();
+                    // pool exhausted: the returned connection fails on use (SQLException)
                     dbc = new DBConnection(uri, user, pass);
-                    dbc.threadName = StringTools.trim(threadName);
-                    DBConnection._saveDBConnection(dbc);
-                    dbConnMsg = "New Connection [" + threadName + "] " + uri;
-                } else {
-                    // reused connection
-                    //if (DBCONNECTION_POOL) {
-                    //    dbConnMsg = "Reusing Connection [" + dbc.threadName + "] " + dbc.getUri();
-                    //}
+                    dbc.threadName    = StringTools.trim(Thread.currentThread().getName());
+                    dbc.poolExhausted = true;
+                }
+                synchronized (dbc._getLockObject()) {
+                    previousLock = dbc._lock();
+                }
+            } else {
+                synchronized (DBConnection.ConnectionPoolLock) {
+                    dbc = DBConnection._getDBConnection(uri);
+                    if (dbc == null) {
+                        // new connection
+                        String threadName = Thread.currentThread().getName();
+                        dbc = new DBConnection(uri, user, pass);
+                        dbc.threadName = StringTools.trim(threadName);
+                        DBConnection._saveDBConnection(dbc);
+                        dbConnMsg = "New Connection [" + threadName + "] " + uri;
+                    }
+                    previousLock = dbc._lock();
                 }
-                previousLock = dbc._lock();
             }
             if (dbConnMsg != null) {
                 Print.logDebug(dbConnMsg);
@@ -373,11 +659,113 @@ public class DBConnection
         return DBConnection.getDBConnection(uri, usr, pwd);
     }
     
+    // ------------------------------------------------------------------------
+    // Consistent-read snapshots
+    // While a snapshot is active, all default DBConnection requests from the same thread
+    // return a dedicated connection holding an open read-only transaction, so that all
+    // selections made by a multi-query report see the same database state.
+    // (MySQL: InnoDB tables only.  Note that "LOCK TABLES" commits the open transaction,
+    // so reads within a snapshot should use "DBProvider.lockTablesForRead")
+
+    private static ThreadLocal<DBConnection> snapshotConnection = new ThreadLocal<DBConnection>();
+
+    private int snapshotDepth = 0;
+
+    /**
+    *** Returns true if a consistent-read snapshot is active in the current thread
+    *** @return True if a snapshot is active
+    **/
+    public static boolean isSnapshotActive()
+    {
+        return (DBConnection.snapshotConnection.get() != null);
+    }
+
+    /**
+    *** Starts a consistent-read snapshot in the current thread.  Snapshots may be nested,
+    *** and each call to <code>beginSnapshot</code> must be paired with a call to
+    *** <code>endSnapshot</code> (in a 'finally' block).
+    *** @return True if a snapshot is active, false if not supported by the DBProvider
+    *** @throws DBException   If a database error occurs
+    **/
+    public static boolean beginSnapshot()
+        throws DBException
+    {
+
+        /* already active */
+        DBConnection snap = DBConnection.snapshotConnection.get();
+        if (snap != null) {
+            snap.snapshotDepth++;
+            return true;
+        }
+
+        /* supported? */
+        int dbid = DBProvider.getProvider().getID();
+        if (ALWAYS_NEW_CONNECTION || 
+            ((dbid != DBProvider.DB_MYSQL) && (dbid != DBProvider.DB_POSTGRESQL) && (dbid != DBProvider.DB_DERBY))) {
+            return false;
+        }
+
+        /* dedicated connection */
+        String uri = DBProvider.getDBUri(true);
+        snap = new DBConnection(uri, DBProvider.getDBUsername(), DBProvider.getDBPassword());
+        snap.threadName = StringTools.trim(Thread.currentThread().getName());
+        Statement stmt = null;
+        try {
+            Connection conn = snap.getConnection();
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            if (dbid == DBProvider.DB_MYSQL) {
+                // establish the snapshot now, rather than at the first read
+                stmt = conn.createStatement();
+                stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+        } catch (SQLException sqe) {
+            snap.closeConnection();
+            throw new DBException("Starting snapshot", sqe);
+        } finally {
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+        }
+        snap.snapshotDepth = 1;
+        DBConnection.snapshotConnection.set(snap);
+        return true;
+
+    }
+
+    /**
+    *** Ends the consistent-read snapshot started by <code>beginSnapshot</code>
+    **/
+    public static void endSnapshot()
+    {
+        DBConnection snap = DBConnection.snapshotConnection.get();
+        if (snap == null) {
+            // no active snapshot (or 'beginSnapshot' returned false)
+            return;
+        } else
+        if (--snap.snapshotDepth > 0) {
+            // nested
+            return;
+        }
+        DBConnection.snapshotConnection.set(null);
+        try {
+            Connection conn = snap.dbConnection;
+            if ((conn != null) && !conn.isClosed()) {
+                conn.commit(); // read-only
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException sqe) {
+            Print.logError("Ending snapshot: " + sqe);
+        } finally {
+            snap.closeConnection();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
     public static boolean isLocked(DBConnection dbc)
     {
         if (dbc != null) {
             int LC = 0;
-            synchronized (DBConnection.ConnectionPoolLock) {
+            synchronized (dbc._getLockObject()) {
                 LC = dbc._getLockCount();
             }
             return (LC > 0);
@@ -394,8 +782,14 @@ public class DBConnection
         //Print.logInfo("Releasing DBConnection ...");
         if (dbc != null) {
             boolean alreadyReleased = false;
-            synchronized (DBConnection.ConnectionPoolLock) {
+            boolean returnToPool    = false;
+            synchronized (dbc._getLockObject()) {
                 alreadyReleased = dbc._release();
+                returnToPool = !alreadyReleased && (dbc.connPool != null) && (dbc._getLockCount() == 0);
+            }
+            if (returnToPool) {
+                // return to pool (outside of the connection lock)
+                dbc.connPool._return(dbc);
             }
             //if (alreadyReleased) {
             //    Print.logStackTrace("DBConnection already released!");
@@ -419,6 +813,8 @@ public class DBConnection
     // ------------------------------------------------------------------------
 
     private String      threadName          = null;
+    private ConnectionPool connPool         = null;
+    private boolean     poolExhausted       = false;
     
     private String      dbUri               = null;
     
@@ -434,6 +830,8 @@ public class DBConnection
     private int         lockCount           = 0;
     private Throwable   lastLockTrace       = null;
 
+    private Map<String,PreparedStatement> preparedStmtMap = null;
+
     /**
     *** Constructor
     *** @param uri  The connection URI
@@ -457,12 +855,21 @@ public class DBConnection
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Gets the object guarding the lock count of this DBConnection (the connection
+    *** itself for pooled connections, otherwise the global connection lock)
+    **/
+    private Object _getLockObject()
+    {
+        return ((this.connPool != null) || this.poolExhausted)? (Object)this : DBConnection.ConnectionPoolLock;
+    }
+
     /**
     *** Gets the DBConnection lock count (should be either '0' or '1')
     **/
     private int _getLockCount()
     {
-        // "DBConnection.ConnectionPoolLock" lock required
+        // "_getLockObject()" lock required
         return this.lockCount;
     }
 
@@ -471,7 +878,7 @@ public class DBConnection
     **/
     private Throwable _lock()
     {
-        // "DBConnection.ConnectionPoolLock" lock required
+        // "_getLockObject()" lock required
         if (this.lockCount++ > 0) {
             // already locked
             if (DBCONNECTION_POOL) {
@@ -494,7 +901,7 @@ public class DBConnection
     **/
     private boolean _release()
     {
-        // "DBConnection.ConnectionPoolLock" lock required
+        // "_getLockObject()" lock required
         if (this.lockCount > 0) {
             // release lock
             this.lockCount--;
@@ -556,6 +963,9 @@ public class DBConnection
     public Connection getConnection()
         throws SQLException
     {
+        if (this.poolExhausted) {
+            throw new SQLException("DBConnection pool exhausted: " + this.getUri());
+        }
         if (this.isConnectionClosed()) {
 
             /* make sure connection is closed */
@@ -618,6 +1028,13 @@ public class DBConnection
     **/
     public void closeConnection()
     {
+        if (this.preparedStmtMap != null) {
+            // cached PreparedStatements are only valid for the connection which created them
+            for (PreparedStatement ps : this.preparedStmtMap.values()) {
+                try { ps.close(); } catch (Throwable th) {}
+            }
+            this.preparedStmtMap = null;
+        }
         if (this.dbConnection != null) {
             try {
                 if (!this.dbConnection.isClosed()) {
@@ -953,7 +1370,175 @@ public class DBConnection
 
     // ------------------------------------------------------------------------
 
-    /** 
+    /**
+    *** Returns the cached PreparedStatement for the specified parameterized SQL
+    *** statement (compiled on first use for this connection).  The returned 
+    *** PreparedStatement must not be closed by the caller.
+    *** @param sql  The parameterized SQL statement
+    *** @return The PreparedStatement
+    *** @throws SQLException  If an SQL error occurs
+    **/
+    public PreparedStatement prepareStatement(String sql)
+        throws SQLException
+    {
+        Connection conn = this.getConnection(); // may reconnect (clears cached statements)
+        if (this.preparedStmtMap == null) {
+            this.preparedStmtMap = new HashMap<String,PreparedStatement>();
+        }
+        PreparedStatement ps = this.preparedStmtMap.get(sql);
+        if (ps == null) {
+            ps = conn.prepareStatement(sql);
+            this.preparedStmtMap.put(sql, ps);
+        } else {
+            ps.clearParameters();
+        }
+        return ps;
+    }
+
+    /**
+    *** Execute the specified parameterized SQL update, binding the specified field values
+    *** @param psql     The parameterized SQL template
+    *** @param fldVals  The field values to bind
+    *** @return The number of rows updated
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public int executePreparedUpdate(DBPreparedSQL psql, DBFieldValues fldVals)
+        throws SQLException, DBException
+    {
+        if (ShowExecutedSQL) {
+            Print.logInfo("SQL(Prepared): " + psql.toString(fldVals));
+        }
+        try {
+            return this._executePreparedUpdate(psql, fldVals);
+        } catch (SQLException sqe) { // "Communication link failure: java.io.IOException"
+            String sqlMsg = StringTools.trim(sqe.getMessage());
+            if ((sqlMsg.indexOf("IOException" ) >= 0) ||
+                (sqlMsg.indexOf("EOFException") >= 0)   ) {
+                this.closeConnection();
+                return this._executePreparedUpdate(psql, fldVals);
+            } else {
+                throw sqe;
+            }
+        }
+    }
+
+    private int _executePreparedUpdate(DBPreparedSQL psql, DBFieldValues fldVals)
+        throws SQLException, DBException
+    {
+        try {
+            LastSQLExecuted = psql.getSQL();
+            PreparedStatement ps = this.prepareStatement(psql.getSQL());
+            psql.bind(ps, fldVals);
+            return ps.executeUpdate();
+        } catch (SQLException sqe) {
+            if (StringTools.className(sqe).equals("com.mysql.jdbc.CommunicationsException")) {
+                // MySQL: can occur if the server is not running, or server can't be found
+                throw new DBException("JDBC Error", sqe);
+            } else {
+                throw sqe;
+            }
+        }
+    }
+
+    /**
+    *** Execute the specified parameterized SQL query, binding the specified field values.
+    *** The returned ResultSet should be closed by the caller, but the statement must not.
+    *** @param psql     The parameterized SQL template
+    *** @param fldVals  The field values to bind
+    *** @return The returned ResultSet
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public ResultSet executePreparedQuery(DBPreparedSQL psql, DBFieldValues fldVals)
+        throws SQLException, DBException
+    {
+        if (ShowExecutedSQL) {
+            Print.logInfo("SQL(Prepared): " + psql.toString(fldVals));
+        }
+        try {
+            return this._executePreparedQuery(psql, fldVals);
+        } catch (SQLException sqe) { // "Communication link failure: java.io.IOException"
+            String sqlMsg = StringTools.trim(sqe.getMessage());
+            if ((sqlMsg.indexOf("IOException" ) >= 0) ||
+                (sqlMsg.indexOf("EOFException") >= 0)   ) {
+                this.closeConnection();
+                return this._executePreparedQuery(psql, fldVals);
+            } else {
+                throw sqe;
+            }
+        }
+    }
+
+    private ResultSet _executePreparedQuery(DBPreparedSQL psql, DBFieldValues fldVals)
+        throws SQLException, DBException
+    {
+        try {
+            LastSQLExecuted = psql.getSQL();
+            PreparedStatement ps = this.prepareStatement(psql.getSQL());
+            psql.bind(ps, fldVals);
+            return ps.executeQuery();
+        } catch (SQLException sqe) {
+            if (StringTools.className(sqe).equals("com.mysql.jdbc.CommunicationsException")) {
+                // MySQL: can occur if the server is not running, or server can't be found
+                throw new DBException("JDBC Error", sqe);
+            } else {
+                throw sqe;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Execute the specified SQL update statements as a single JDBC batch within
+    *** one transaction.  If any statement fails, the entire batch is rolled back.
+    *** @param sql  The array of SQL update statements to execute
+    *** @return The array of update counts returned by the JDBC driver
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public int[] executeBatch(String sql[])
+        throws SQLException, DBException
+    {
+        if (ListTools.isEmpty(sql)) {
+            return new int[0];
+        }
+        if (ShowExecutedSQL) {
+            for (int i = 0; i < sql.length; i++) {
+                Print.logInfo("SQL(Batch): " + sql[i]);
+            }
+        }
+        Connection conn = this.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        Statement stmt = null;
+        try {
+            LastSQLExecuted = sql[sql.length - 1];
+            if (autoCommit) { conn.setAutoCommit(false); }
+            stmt = conn.createStatement();
+            for (int i = 0; i < sql.length; i++) {
+                stmt.addBatch(sql[i]);
+            }
+            int rtn[] = stmt.executeBatch();
+            conn.commit();
+            return rtn;
+        } catch (SQLException sqe) {
+            try { conn.rollback(); } catch (Throwable th) {}
+            if (StringTools.className(sqe).equals("com.mysql.jdbc.CommunicationsException")) {
+                // MySQL: can occur if the server is not running, or server can't be found
+                throw new DBException("JDBC Error", sqe);
+            } else {
+                throw sqe;
+            }
+        } finally {
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            if (autoCommit) { try { conn.setAutoCommit(true); } catch (Throwable t) {} }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
     *** DEBUG: Main entry point used for testing/debugging
     *** @param argv  The command-line arguments
     **/
@@ -149,6 +149,8 @@ public class DBFactory<gDBR extends DBRecord>
     public    static final String  ARCHIVE_EXT_SQL          = "sql";
     public    static final String  ARCHIVE_EXT_TXT          = "txt";
     public    static final String  ARCHIVE_EXT_XML          = "xml";
+    public    static final String  ARCHIVE_EXT_GZ           = "gz";
+    public    static final String  ARCHIVE_EXT_MANIFEST     = "manifest";
 
     // ------------------------------------------------------------------------
     // XML
@@ -330,6 +332,7 @@ public class DBFactory<gDBR extends DBRecord>
     private OrderedMap<String,DBField>              fieldMap            = null;
     private boolean                                 fieldArrayReady     = false;
     private DBField                                 fieldArray[]        = null;     // optimization
+    private volatile DBFieldLayout                  fieldLayout         = null;
     
     private boolean                                 editable            = true;
     private boolean                                 viewable            = true;
@@ -341,6 +344,12 @@ public class DBFactory<gDBR extends DBRecord>
     
     private boolean                                 logMissingColumns   = true; // default log
 
+    private Object                                  preparedSQLLock     = new Object();
+    private DBPreparedSQL                           preparedInsert      = null;
+    private DBPreparedSQL                           preparedSelectByKey = null;
+    private DBPreparedSQL                           preparedExistsByKey = null;
+    private Map<String,DBPreparedSQL>               preparedUpdateMap   = null;
+
     // ------------------------------------------------------------------------
  
     /**
@@ -594,6 +603,7 @@ public class DBFactory<gDBR extends DBRecord>
             this.existingField = null;
             this.existingFieldMap = null;
         }
+        this.clearPreparedSQL();
     }
     
     /**
@@ -641,6 +651,185 @@ public class DBFactory<gDBR extends DBRecord>
         return this.existingField;
     }
 
+    // ------------------------------------------------------------------------
+    // PreparedStatement templates
+
+    private static int UsePreparedStatements = -1;
+
+    /**
+    *** Returns true if record insert/update/select-by-key operations should use
+    *** parameterized PreparedStatements (see RTKey.DB_PREPARED_STATEMENTS)
+    *** @return True if PreparedStatements should be used
+    **/
+    public static boolean usePreparedStatements()
+    {
+        if (UsePreparedStatements < 0) {
+            UsePreparedStatements = RTConfig.getBoolean(RTKey.DB_PREPARED_STATEMENTS,false)? 1 : 0;
+        }
+        return (UsePreparedStatements == 1);
+    }
+
+    /**
+    *** Sets the PreparedStatement state
+    *** @param usePS  True to use PreparedStatements for insert/update/select-by-key
+    **/
+    public static void setUsePreparedStatements(boolean usePS)
+    {
+        UsePreparedStatements = usePS? 1 : 0;
+    }
+
+    /**
+    *** Clears all cached PreparedStatement templates for this table
+    *** (compiled statements cached in each DBConnection are keyed by SQL text, and
+    *** will simply no longer be referenced)
+    **/
+    public void clearPreparedSQL()
+    {
+        synchronized (this.preparedSQLLock) {
+            this.preparedInsert      = null;
+            this.preparedSelectByKey = null;
+            this.preparedExistsByKey = null;
+            this.preparedUpdateMap   = null;
+        }
+    }
+
+    /**
+    *** Gets the parameterized "INSERT" template for this table.  Only existing columns
+    *** are included.  Returns null if this table contains an 'auto_increment' field.
+    *** @return The "INSERT" DBPreparedSQL template
+    *** @throws DBException   If a database error occurs
+    **/
+    public DBPreparedSQL getPreparedInsertSQL()
+        throws DBException
+    {
+        synchronized (this.preparedSQLLock) {
+            if (this.preparedInsert == null) {
+                // INSERT INTO <table> (<column>,...) VALUES (?,...)
+                Map<String,DBField> existingColumns = this.getExistingColumnMap(false);
+                DBField field[] = this.getFields();
+                java.util.List<DBField> bindList = new Vector<DBField>();
+                StringBuffer colSB = new StringBuffer();
+                StringBuffer valSB = new StringBuffer();
+                for (int i = 0; i < field.length; i++) {
+                    String fldName = field[i].getName();
+                    if (field[i].isAutoIncrement()) {
+                        return null; // auto-increment value must be returned by the text path
+                    } else
+                    if ((existingColumns == null) || existingColumns.containsKey(DBProvider.translateColumnName(fldName))) {
+                        if (!bindList.isEmpty()) { colSB.append(","); valSB.append(","); }
+                        colSB.append(fldName);
+                        valSB.append("?");
+                        bindList.add(field[i]);
+                    }
+                }
+                if (bindList.isEmpty()) {
+                    return null;
+                }
+                StringBuffer sb = new StringBuffer();
+                sb.append("INSERT INTO ").append(this.getTranslatedTableName());
+                sb.append(" (").append(colSB).append(")");
+                sb.append(" VALUES (").append(valSB).append(")");
+                this.preparedInsert = new DBPreparedSQL(sb.toString(), bindList.toArray(new DBField[bindList.size()]));
+            }
+            return this.preparedInsert;
+        }
+    }
+
+    /**
+    *** Gets the parameterized "UPDATE ... WHERE <full-primary-key>" template for
+    *** the specified fields
+    *** @param updFields  The (non-key) fields to update
+    *** @return The "UPDATE" DBPreparedSQL template
+    **/
+    public DBPreparedSQL getPreparedUpdateSQL(java.util.List<DBField> updFields)
+    {
+        if (ListTools.isEmpty(updFields)) {
+            return null;
+        }
+        StringBuffer mapKey = new StringBuffer();
+        for (DBField fld : updFields) {
+            mapKey.append(fld.getName()).append(",");
+        }
+        synchronized (this.preparedSQLLock) {
+            if (this.preparedUpdateMap == null) {
+                this.preparedUpdateMap = new HashMap<String,DBPreparedSQL>();
+            }
+            DBPreparedSQL ps = this.preparedUpdateMap.get(mapKey.toString());
+            if (ps == null) {
+                // UPDATE <table> SET <column>=?, ... WHERE (<key>=?) AND ...
+                DBField keyFlds[] = this.getKeyFields();
+                java.util.List<DBField> bindList = new Vector<DBField>(updFields);
+                StringBuffer sb = new StringBuffer();
+                sb.append("UPDATE ").append(this.getTranslatedTableName()).append(" SET ");
+                for (int i = 0; i < updFields.size(); i++) {
+                    if (i > 0) { sb.append(", "); }
+                    sb.append(updFields.get(i).getName()).append("=?");
+                }
+                sb.append(this._getPreparedKeyWhere(keyFlds));
+                bindList.addAll(Arrays.asList(keyFlds));
+                ps = new DBPreparedSQL(sb.toString(), bindList.toArray(new DBField[bindList.size()]));
+                this.preparedUpdateMap.put(mapKey.toString(), ps);
+            }
+            return ps;
+        }
+    }
+
+    /**
+    *** Gets the parameterized "SELECT * ... WHERE <full-primary-key>" template
+    *** @return The "SELECT" DBPreparedSQL template
+    **/
+    public DBPreparedSQL getPreparedSelectByKeySQL()
+    {
+        synchronized (this.preparedSQLLock) {
+            if (this.preparedSelectByKey == null) {
+                // SELECT * FROM <table> WHERE (<key>=?) AND ...
+                DBField keyFlds[] = this.getKeyFields();
+                StringBuffer sb = new StringBuffer();
+                sb.append("SELECT * FROM ").append(this.getTranslatedTableName());
+                sb.append(this._getPreparedKeyWhere(keyFlds));
+                this.preparedSelectByKey = new DBPreparedSQL(sb.toString(), keyFlds);
+            }
+            return this.preparedSelectByKey;
+        }
+    }
+
+    /**
+    *** Gets the parameterized "SELECT <first-key> ... WHERE <full-primary-key>"
+    *** template used for record existence checks
+    *** @return The existence check DBPreparedSQL template
+    **/
+    public DBPreparedSQL getPreparedExistsByKeySQL()
+    {
+        synchronized (this.preparedSQLLock) {
+            if (this.preparedExistsByKey == null) {
+                // SELECT <firstKey> FROM <table> WHERE (<key>=?) AND ...
+                DBField keyFlds[] = this.getKeyFields();
+                StringBuffer sb = new StringBuffer();
+                sb.append("SELECT ").append(keyFlds[0].getName());
+                sb.append(" FROM ").append(this.getTranslatedTableName());
+                sb.append(this._getPreparedKeyWhere(keyFlds));
+                this.preparedExistsByKey = new DBPreparedSQL(sb.toString(), keyFlds);
+            }
+            return this.preparedExistsByKey;
+        }
+    }
+
+    /**
+    *** Returns the parameterized primary key "WHERE" clause
+    **/
+    private String _getPreparedKeyWhere(DBField keyFlds[])
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(" WHERE ");
+        for (int i = 0; i < keyFlds.length; i++) {
+            if (i > 0) { sb.append(" AND "); }
+            sb.append("(").append(keyFlds[i].getName()).append("=?)");
+        }
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Validate all existing table columns against the list of defined table columns.
     *** Warnings will be printed to the console.
@@ -983,6 +1172,23 @@ public class DBFactory<gDBR extends DBRecord>
         return this.fieldArray;
     }
 
+    /**
+    *** Returns the slot-indexed field layout shared by all DBFieldValues of this DBFactory
+    *** @return The DBFieldLayout
+    **/
+    public DBFieldLayout getFieldLayout()
+    {
+        if (this.fieldLayout == null) {
+            DBField fld[] = this.getFields();
+            synchronized (this.fieldMap) {
+                if (this.fieldLayout == null) { // test again inside lock
+                    this.fieldLayout = new DBFieldLayout(fld);
+                }
+            }
+        }
+        return this.fieldLayout;
+    }
+
     /**
     *** Returns a set of DBFields defined by this DBFactory
     *** @param fieldNames  A set of field names representing fields to return (null for all)
@@ -2014,14 +2220,11 @@ public class DBFactory<gDBR extends DBRecord>
     // ------------------------------------------------------------------------
 
     /**
-    *** Recreates the alternate key index for the table represented by this DBFactory
+    *** Drops all existing alternate key indexes for the table represented by this DBFactory
     **/
-    public void recreateAlternateIndexes()
-        throws DBException
+    public void dropAlternateIndexes()
     {
         String utableName = this.getUntranslatedTableName();
-
-        /* drop all alternate indexes */
         try {
             DBTableIndexMap indexMap = DBProvider.getActualTableIndexMap(utableName);
             if (indexMap != null) {
@@ -2042,6 +2245,18 @@ public class DBFactory<gDBR extends DBRecord>
         } catch (DBException dbe) {
             Print.logWarn("Unable to retrieve index information: " + dbe.getMessage());
         }
+    }
+
+    /**
+    *** Recreates the alternate key index for the table represented by this DBFactory
+    **/
+    public void recreateAlternateIndexes()
+        throws DBException
+    {
+        String utableName = this.getUntranslatedTableName();
+
+        /* drop all alternate indexes */
+        this.dropAlternateIndexes();
 
         /* recreate alternate indexes */
         DBAlternateIndex altIndexes[] = this.getAlternateIndexes();
@@ -2125,6 +2340,8 @@ public class DBFactory<gDBR extends DBRecord>
     public    static final String _DUMP_EXT_SQL         = "." + ARCHIVE_EXT_SQL;
     public    static final String _DUMP_EXT_CSV         = "." + ARCHIVE_EXT_CSV;
     public    static final String _DUMP_EXT_XML         = "." + ARCHIVE_EXT_XML;
+    public    static final String _DUMP_EXT_GZ          = "." + ARCHIVE_EXT_GZ;
+    public    static final String _DUMP_EXT_MANIFEST    = "." + ARCHIVE_EXT_MANIFEST;
 
     public    static final int    DUMP_FORMAT_CSV       = 0;
     public    static final int    DUMP_FORMAT_SQL       = 1;
@@ -2176,16 +2393,19 @@ public class DBFactory<gDBR extends DBRecord>
 
             /* output format */
             String fn = toFile.getName();
-            int outputFmt = DUMP_FORMAT_CSV;
-            if (fn.endsWith(_DUMP_EXT_CSV)) {
-                outputFmt = DUMP_FORMAT_CSV;
-            } else 
-            if (fn.endsWith(_DUMP_EXT_XML)) {
-                outputFmt = DUMP_FORMAT_XML;
-            } else {
-                outputFmt = DUMP_FORMAT_SQL;
-            }
+            int outputFmt = DBFactory._getDumpFormat(fn);
             
+            /* parallel chunked dump (record order is not preserved) */
+            if (DBTableDumper.isParallelDump() && !fn.startsWith("stdout.") && !fn.startsWith("stderr.") &&
+                ((dsel == null) || (!dsel.hasLimit() && !dsel.hasOrderByFields()))) {
+                String where = ((dsel != null) && dsel.hasWhere())? dsel.getWhere() : null;
+                if ((where != null) && StringTools.startsWithIgnoreCase(where,"WHERE ")) {
+                    where = where.substring("WHERE ".length());
+                }
+                (new DBTableDumper(this)).dumpStream(toFile, where, fldn);
+                return;
+            }
+
             /* open output and dump */
             if (fn.startsWith("stdout.")) {
                 Print.logDebug("Output to STDOUT ...");
@@ -2249,32 +2469,7 @@ public class DBFactory<gDBR extends DBRecord>
 
             /* field header */
             sbData.setLength(0);
-            if (outFmt == DUMP_FORMAT_CSV) {
-                // .CSV format
-                for (int i = 0; i < fields.length; i++) {
-                    if (i > 0) { sbData.append(","); }
-                    sbData.append("\"" + fields[i].getName() + "\"");
-                }
-                sbData.append("\n");
-            } else
-            if (outFmt == DUMP_FORMAT_XML) {
-                // .XML format
-                sbData.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-                sbData.append("<" + TAG_Records);
-                    sbData.append(" " + ATTR_table + "=\"" + this.getUntranslatedTableName() + "\"");
-                    sbData.append(">\n");
-            } else
-            if (outFmt == DUMP_FORMAT_SQL) {
-                // .SQL format
-                sbData.append("# ");
-                for (int i = 0; i < fields.length; i++) {
-                    if (i > 0) { sbData.append(", "); }
-                    sbData.append(fields[i].getName());
-                }
-                sbData.append("\n");
-            } else {
-                // ??? format
-            }
+            this._dumpHeader(sbData, fields, outFmt);
             dumpOutStream.write(sbData.toString());
             sbData.setLength(0);
 
@@ -2298,62 +2493,13 @@ public class DBFactory<gDBR extends DBRecord>
                 recordCount++;
                 //Print.logInfo("Record #" + recordCount);
                 sbData.setLength(0);
-                if (outFmt == DUMP_FORMAT_CSV) {
-                    // .CSV format
-                    for (int i = 0; i < fields.length; i++) {
-                        if (i > 0) { sbData.append(","); }
-                        String n = fields[i].getName();
-                        Object r = fields[i].getResultSetValue(rs);
-                        String v = (r != null)? r.toString() : "";
-                      //String v = rs.getString(n);
-                        sbData.append(fields[i].getQValue(v));
-                    }
-                    sbData.append("\n");
-                } else
-                if (outFmt == DUMP_FORMAT_XML) {
-                    // .XML format
-                    int indent = 3;
-                    String prefix = StringTools.replicateString(" ", indent);
-                    sbData.append(prefix).append("<"+TAG_Record+" " + ATTR_sequence + "=\"" + recordCount + "\">\n");
-                    for (int i = 0; i < fields.length; i++) {
-                        String value = DBFieldValues.toStringValue(fields[i].getResultSetValue(rs));
-                        DBFactory.writeXML_DBField(sbData, 2*indent, fields[i], false/*inclInfo*/, value);
-                    }
-                    sbData.append(prefix).append("</"+TAG_Record+">\n");
-                } else
-                if (outFmt == DUMP_FORMAT_SQL) {
-                    // .SQL format
-                    for (int i = 0; i < fields.length; i++) {
-                        if (i > 0) { sbData.append(", "); }
-                        String n = fields[i].getName();
-                        Object r = fields[i].getResultSetValue(rs);
-                        String v = (r != null)? r.toString() : "";
-                      //String v = rs.getString(n);
-                        sbData.append(fields[i].getQValue(v));
-                    }
-                    sbData.append("\n");
-                } else {
-                    // ??? format
-                }
+                this._dumpRecord(sbData, fields, rs, recordCount, outFmt);
                 dumpOutStream.write(sbData.toString());
             }
 
             /* field footer */
             sbData.setLength(0);
-            if (outFmt == DUMP_FORMAT_CSV) {
-                // .CSV format
-                // (nothing need be done here)
-            } else
-            if (outFmt == DUMP_FORMAT_XML) {
-                // .XML format
-                sbData.append("</" + TAG_Records + ">\n");
-            } else
-            if (outFmt == DUMP_FORMAT_SQL) {
-                // .SQL format
-                // (nothing need be done here)
-            } else {
-                // ??? format
-            }
+            this._dumpFooter(sbData, outFmt);
             dumpOutStream.write(sbData.toString());
             dumpOutStream.flush();
 
@@ -2370,6 +2516,133 @@ public class DBFactory<gDBR extends DBRecord>
         }
         
     }
+
+    /**
+    *** Returns the dump output format for the specified file name
+    *** @param fn  The dump file name
+    *** @return The dump output format
+    **/
+    protected static int _getDumpFormat(String fn)
+    {
+        if (fn.endsWith(_DUMP_EXT_CSV)) {
+            return DUMP_FORMAT_CSV;
+        } else 
+        if (fn.endsWith(_DUMP_EXT_XML)) {
+            return DUMP_FORMAT_XML;
+        } else {
+            return DUMP_FORMAT_SQL;
+        }
+    }
+
+    /**
+    *** Appends the dump header for the specified output format
+    *** @param sbData  The destination StringBuffer
+    *** @param fields  The dumped fields
+    *** @param outFmt  The output format
+    **/
+    protected void _dumpHeader(StringBuffer sbData, DBField fields[], int outFmt)
+    {
+        if (outFmt == DUMP_FORMAT_CSV) {
+            // .CSV format
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) { sbData.append(","); }
+                sbData.append("\"" + fields[i].getName() + "\"");
+            }
+            sbData.append("\n");
+        } else
+        if (outFmt == DUMP_FORMAT_XML) {
+            // .XML format
+            sbData.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sbData.append("<" + TAG_Records);
+                sbData.append(" " + ATTR_table + "=\"" + this.getUntranslatedTableName() + "\"");
+                sbData.append(">\n");
+        } else
+        if (outFmt == DUMP_FORMAT_SQL) {
+            // .SQL format
+            sbData.append("# ");
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) { sbData.append(", "); }
+                sbData.append(fields[i].getName());
+            }
+            sbData.append("\n");
+        } else {
+            // ??? format
+        }
+    }
+
+    /**
+    *** Appends the current ResultSet row for the specified output format
+    *** @param sbData       The destination StringBuffer
+    *** @param fields       The dumped fields
+    *** @param rs           The ResultSet positioned at the row to dump
+    *** @param recordCount  The record sequence number
+    *** @param outFmt       The output format
+    *** @throws SQLException  If an SQL error occurs
+    **/
+    protected void _dumpRecord(StringBuffer sbData, DBField fields[], ResultSet rs, long recordCount, int outFmt)
+        throws SQLException
+    {
+        if (outFmt == DUMP_FORMAT_CSV) {
+            // .CSV format
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) { sbData.append(","); }
+                String n = fields[i].getName();
+                Object r = fields[i].getResultSetValue(rs);
+                String v = (r != null)? r.toString() : "";
+              //String v = rs.getString(n);
+                sbData.append(fields[i].getQValue(v));
+            }
+            sbData.append("\n");
+        } else
+        if (outFmt == DUMP_FORMAT_XML) {
+            // .XML format
+            int indent = 3;
+            String prefix = StringTools.replicateString(" ", indent);
+            sbData.append(prefix).append("<"+TAG_Record+" " + ATTR_sequence + "=\"" + recordCount + "\">\n");
+            for (int i = 0; i < fields.length; i++) {
+                String value = DBFieldValues.toStringValue(fields[i].getResultSetValue(rs));
+                DBFactory.writeXML_DBField(sbData, 2*indent, fields[i], false/*inclInfo*/, value);
+            }
+            sbData.append(prefix).append("</"+TAG_Record+">\n");
+        } else
+        if (outFmt == DUMP_FORMAT_SQL) {
+            // .SQL format
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) { sbData.append(", "); }
+                String n = fields[i].getName();
+                Object r = fields[i].getResultSetValue(rs);
+                String v = (r != null)? r.toString() : "";
+              //String v = rs.getString(n);
+                sbData.append(fields[i].getQValue(v));
+            }
+            sbData.append("\n");
+        } else {
+            // ??? format
+        }
+    }
+
+    /**
+    *** Appends the dump footer for the specified output format
+    *** @param sbData  The destination StringBuffer
+    *** @param outFmt  The output format
+    **/
+    protected void _dumpFooter(StringBuffer sbData, int outFmt)
+    {
+        if (outFmt == DUMP_FORMAT_CSV) {
+            // .CSV format
+            // (nothing need be done here)
+        } else
+        if (outFmt == DUMP_FORMAT_XML) {
+            // .XML format
+            sbData.append("</" + TAG_Records + ">\n");
+        } else
+        if (outFmt == DUMP_FORMAT_SQL) {
+            // .SQL format
+            // (nothing need be done here)
+        } else {
+            // ??? format
+        }
+    }
     
     // ------------------------------------------------------------------------
 
@@ -2379,10 +2652,10 @@ public class DBFactory<gDBR extends DBRecord>
     protected static class MySQLDumpReader
     {
         private int pushedByte = -1;
-        private FileInputStream fis = null;
+        private InputStream fis = null;
         public MySQLDumpReader(File file) throws IOException {
             super();
-            this.fis = new FileInputStream(file);
+            this.fis = DBFactory.openLoadStream(file);
         }
         public String readLineString() throws IOException {
             byte buff[] = this.readLineBytes();
@@ -2466,6 +2739,32 @@ public class DBFactory<gDBR extends DBRecord>
     public    static final String _LOAD_EXT_DUMP        = "." + ARCHIVE_EXT_DUMP;
     public    static final String _LOAD_EXT_SQL         = "." + ARCHIVE_EXT_SQL;
     public    static final String _LOAD_EXT_TXT         = "." + ARCHIVE_EXT_TXT;
+    public    static final String _LOAD_EXT_GZ          = "." + ARCHIVE_EXT_GZ;
+    public    static final String _LOAD_EXT_MANIFEST    = "." + ARCHIVE_EXT_MANIFEST;
+
+    protected static final int    LOAD_BUFFER_SIZE      = 1024 * 1024;
+
+    /**
+    *** Opens a buffered InputStream on the specified load file.  Files ending with
+    *** ".gz" are decompressed as they are read.
+    *** @param file  The load file
+    *** @return The InputStream
+    *** @throws IOException if the file could not be opened
+    **/
+    protected static InputStream openLoadStream(File file)
+        throws IOException
+    {
+        InputStream fis = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(_LOAD_EXT_GZ)) {
+                fis = new java.util.zip.GZIPInputStream(fis, 64 * 1024);
+            }
+            return new BufferedInputStream(fis, LOAD_BUFFER_SIZE);
+        } catch (IOException ioe) {
+            try { fis.close(); } catch (Throwable th) {}
+            throw ioe;
+        }
+    }
 
     /** 
     *** Loads the data in the specified file into the table represented by this DBFactory
@@ -2524,14 +2823,32 @@ public class DBFactory<gDBR extends DBRecord>
             throw new DBException("'From' file not specified");
         }
         String fn = fromFile.getName();
+        if (fn.endsWith(_LOAD_EXT_GZ)) {
+            // compressed ".dump.gz", ".txt.gz", ".csv.gz"
+            fn = fn.substring(0, fn.length() - _LOAD_EXT_GZ.length());
+        }
+
+        /* chunked dump manifest */
+        if (fn.endsWith(_LOAD_EXT_MANIFEST)) {
+            return (new DBTableDumper(this)).loadManifest(fromFile, validator, overwriteExisting);
+        }
+
+        /* parallel bulk loader? */
+        DBTableLoader bulk = DBTableLoader.isBulkLoad()? new DBTableLoader(this) : null;
         
         /* .CSV */
         if (fn.endsWith(_LOAD_EXT_CSV)) {
+            if (bulk != null) {
+                return bulk.loadTable(null, fromFile, true, validator, overwriteExisting);
+            }
             return this._loadTableCSV(fromFile, validator, overwriteExisting);
         }
         
         /* .DUMP */
         if (fn.endsWith(_LOAD_EXT_DUMP)) {
+            if (bulk != null) {
+                return bulk.loadTable(null, fromFile, false, validator, overwriteExisting);
+            }
             return this._loadTable(null, fromFile, validator, overwriteExisting);
         }
         
@@ -2540,14 +2857,20 @@ public class DBFactory<gDBR extends DBRecord>
             File sqlFile = fromFile;
             String fields[] = this.readSQLDumpColumns(sqlFile);
             File txtFile = new File(FileTools.removeExtension(fromFile.getPath()) + _LOAD_EXT_TXT);
+            if (bulk != null) {
+                return bulk.loadTable(fields, txtFile, false, validator, overwriteExisting);
+            }
             return this._loadTable(fields, txtFile, validator, overwriteExisting);
         }
         
         /* .TXT */
         if (fn.endsWith(_LOAD_EXT_TXT)) {
-            File sqlFile = new File(FileTools.removeExtension(fromFile.getPath()) + _LOAD_EXT_SQL);
+            File sqlFile = new File(FileTools.removeExtension(new File(fromFile.getParentFile(),fn).getPath()) + _LOAD_EXT_SQL);
             String fields[] = this.readSQLDumpColumns(sqlFile);
             File txtFile = fromFile;
+            if (bulk != null) {
+                return bulk.loadTable(fields, txtFile, false, validator, overwriteExisting);
+            }
             return this._loadTable(fields, txtFile, validator, overwriteExisting);
         }
         
@@ -2747,7 +3070,7 @@ public class DBFactory<gDBR extends DBRecord>
         
             /* open csv file */
             try {
-                fis = new FileInputStream(fromFile);
+                fis = DBFactory.openLoadStream(fromFile);
             } catch (IOException ioe) {
                 throw new DBException("Unable to open CSV file", ioe);
             }
@@ -2846,14 +3169,28 @@ public class DBFactory<gDBR extends DBRecord>
     **/
     private boolean _loadInsertRecord(String oldFieldNames[], String rowValues[], boolean overwriteExisting)
         throws DBException, SQLException, IOException
+    {
+        Set<String> fieldNameList = new HashSet<String>();
+        DBRecord<?> dbRcd = this._loadCreateRecord(oldFieldNames, rowValues, fieldNameList);
+        return this._loadSaveRecord(dbRcd, fieldNameList, overwriteExisting);
+    }
+
+    /**
+    *** Creates a record from the specified data, using the specified field layout
+    *** @param oldFieldNames  The column/field layout
+    *** @param rowValues      The values for the specifies columns/fields
+    *** @param fieldNameList  The set into which the non-key field names are placed
+    *** @return The created record (not yet inserted)
+    *** @throws DBException   If a database error occurs
+    **/
+    protected DBRecord<?> _loadCreateRecord(String oldFieldNames[], String rowValues[], Set<String> fieldNameList)
+        throws DBException
     {
         DBRecordKey<?> dbRcdKey  = this.createKey();   // may throw DBException
         DBFieldValues  dbFldVals = dbRcdKey.getFieldValues();
         DBRecord<?>    dbRcd     = dbRcdKey.getDBRecord();
 
         /* parse all field values */
-        boolean addedField = false;
-        Set<String> fieldNameList = new HashSet<String>();
         for (int i = 0; i < oldFieldNames.length; i++) {
             String fieldName = oldFieldNames[i];
             DBField dbFld = this.getField(fieldName);
@@ -2870,14 +3207,29 @@ public class DBFactory<gDBR extends DBRecord>
                 } else {
                     fieldNameList.add(fieldName);
                 }
-                addedField = true;
             } else {
                 // column does not exist in defined table (will be dropped)
             }
         }
+        return dbRcd;
+
+    }
+
+    /**
+    *** Inserts the specified loaded record, or updates the existing record if allowed
+    *** @param dbRcd          The record created by <code>_loadCreateRecord</code>
+    *** @param fieldNameList  The non-key field names to update
+    *** @param overwriteExisting  True to allow updating existing records
+    *** @return True if the opperation was succesful
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    protected boolean _loadSaveRecord(DBRecord<?> dbRcd, Set<String> fieldNameList, boolean overwriteExisting)
+        throws DBException, SQLException
+    {
 
         /* update/insert */
-        if (dbRcdKey.exists()) {
+        if (dbRcd.getRecordKey().exists()) {
 
             /* dissallow overwrite? */
             if (!overwriteExisting) {
@@ -1287,6 +1287,53 @@ public class DBField
         }
     }
 
+    /**
+    *** Binds the specified value for this field to the PreparedStatement parameter
+    *** at the specified index, based on the Java type of this field.
+    *** @param ps   The PreparedStatement
+    *** @param ndx  The parameter index (1-based)
+    *** @param v    The value to bind
+    *** @throws SQLException  If an SQL error occurs
+    **/
+    public void setStatementValue(PreparedStatement ps, int ndx, Object v)
+        throws SQLException
+    {
+        if (v instanceof DBFieldType) {
+            v = ((DBFieldType)v).getObject();
+        }
+        Class<?> jvc = this.getTypeClass();
+        if (jvc == String.class) {
+            ps.setString(ndx, DBFieldValues.toStringValue(v));
+        } else
+        if ((jvc == Integer.class) || (jvc == Integer.TYPE)) {
+            ps.setInt(ndx, (v instanceof Number)? ((Number)v).intValue() : StringTools.parseInt(DBFieldValues.toStringValue(v),0));
+        } else
+        if ((jvc == Long.class) || (jvc == Long.TYPE)) {
+            ps.setLong(ndx, (v instanceof Number)? ((Number)v).longValue() : StringTools.parseLong(DBFieldValues.toStringValue(v),0L));
+        } else
+        if ((jvc == Float.class) || (jvc == Float.TYPE)) {
+            ps.setFloat(ndx, (v instanceof Number)? ((Number)v).floatValue() : StringTools.parseFloat(DBFieldValues.toStringValue(v),0.0F));
+        } else
+        if ((jvc == Double.class) || (jvc == Double.TYPE)) {
+            ps.setDouble(ndx, (v instanceof Number)? ((Number)v).doubleValue() : StringTools.parseDouble(DBFieldValues.toStringValue(v),0.0));
+        } else
+        if ((jvc == Boolean.class) || (jvc == Boolean.TYPE)) {
+            // boolean columns are stored as TINYINT/SMALLINT
+            boolean b = (v instanceof Boolean)? ((Boolean)v).booleanValue() : StringTools.parseBoolean(DBFieldValues.toStringValue(v),false);
+            ps.setInt(ndx, b? 1 : 0);
+        } else
+        if ((jvc == Byte[].class) || (jvc == byte[].class)) {
+            ps.setBytes(ndx, (v instanceof byte[])? (byte[])v : DBField.parseBlobString(DBFieldValues.toStringValue(v)));
+        } else
+        if ((jvc == DateTime.class) && (v instanceof DateTime)) {
+            // stored in the UTC timezone (see "getResultSetValue")
+            String gmt = ((DateTime)v).format("yyyy-MM-dd HH:mm:ss", DateTime.getGMTTimeZone());
+            ps.setTimestamp(ndx, java.sql.Timestamp.valueOf(gmt));
+        } else {
+            ps.setString(ndx, DBFieldValues.toStringValue(v));
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
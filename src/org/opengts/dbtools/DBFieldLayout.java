@@ -0,0 +1,228 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Slot-indexed field layout shared by all DBFieldValues of a DBFactory
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBFieldLayout</code> assigns each DBField of a table a fixed ordinal, and a
+*** slot within the primitive value array appropriate for its type.  A single instance
+*** is shared (read-only) by all DBFieldValues instances of the same DBFactory, so that
+*** per-record field storage is reduced to a few arrays.
+**/
+
+public class DBFieldLayout
+{
+
+    // ------------------------------------------------------------------------
+
+    /* field value storage kinds */
+    public  static final int        KIND_OBJECT     = 0;    // Object[]  (String, byte[], DateTime, DBFieldType)
+    public  static final int        KIND_DOUBLE     = 1;    // double[]
+    public  static final int        KIND_FLOAT      = 2;    // double[]
+    public  static final int        KIND_LONG       = 3;    // long[]
+    public  static final int        KIND_INT        = 4;    // int[]
+    public  static final int        KIND_BOOLEAN    = 5;    // int[]
+
+    /**
+    *** Returns the storage kind for the specified DBField
+    *** @param fld  The DBField
+    *** @return The storage kind
+    **/
+    public static int getKind(DBField fld)
+    {
+        Class<?> jvc = fld.getTypeClass();
+        if ((jvc == Double.class) || (jvc == Double.TYPE)) {
+            return KIND_DOUBLE;
+        } else
+        if ((jvc == Float.class) || (jvc == Float.TYPE)) {
+            return KIND_FLOAT;
+        } else
+        if ((jvc == Long.class) || (jvc == Long.TYPE)) {
+            return KIND_LONG;
+        } else
+        if ((jvc == Integer.class) || (jvc == Integer.TYPE)) {
+            return KIND_INT;
+        } else
+        if ((jvc == Boolean.class) || (jvc == Boolean.TYPE)) {
+            return KIND_BOOLEAN;
+        } else {
+            return KIND_OBJECT;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private DBField                 fields[]        = null;
+    private Map<String,Integer>     indexMap        = null; // field name ==> ordinal
+    private Map<String,Integer>     columnMap       = null; // translated column name ==> ordinal
+    private Map<String,String>      caseMap         = null; // lower-case column name ==> column name
+    private int                     kind[]          = null;
+    private int                     slot[]          = null;
+
+    private int                     doubleCount     = 0;
+    private int                     longCount       = 0;
+    private int                     intCount        = 0;
+    private int                     objectCount     = 0;
+
+    /**
+    *** Constructor
+    *** @param fld  The DBFields of the table (in DBFactory order)
+    **/
+    public DBFieldLayout(DBField fld[])
+    {
+        int n = (fld != null)? fld.length : 0;
+        this.fields    = new DBField[n];
+        this.indexMap  = new HashMap<String,Integer>();
+        this.columnMap = new HashMap<String,Integer>();
+        this.caseMap   = new HashMap<String,String>();
+        this.kind      = new int[n];
+        this.slot      = new int[n];
+        for (int i = 0; i < n; i++) {
+            Integer ndx    = new Integer(i);
+            String  colName = DBProvider.translateColumnName(fld[i].getName());
+            this.fields[i] = fld[i];
+            this.indexMap.put(fld[i].getName(), ndx);
+            this.columnMap.put(colName, ndx);
+            this.caseMap.put(colName.toLowerCase(), colName);
+            this.kind[i]   = DBFieldLayout.getKind(fld[i]);
+            switch (this.kind[i]) {
+                case KIND_DOUBLE :
+                case KIND_FLOAT  : this.slot[i] = this.doubleCount++; break;
+                case KIND_LONG   : this.slot[i] = this.longCount++;   break;
+                case KIND_INT    :
+                case KIND_BOOLEAN: this.slot[i] = this.intCount++;    break;
+                default          : this.slot[i] = this.objectCount++; break;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the number of fields in this layout
+    *** @return The number of fields
+    **/
+    public int getFieldCount()
+    {
+        return this.fields.length;
+    }
+
+    /**
+    *** Gets the DBField at the specified ordinal
+    *** @param ndx  The field ordinal
+    *** @return The DBField
+    **/
+    public DBField getField(int ndx)
+    {
+        return this.fields[ndx];
+    }
+
+    /**
+    *** Gets the ordinal of the specified field name
+    *** @param fldName  The field name
+    *** @return The field ordinal, or -1 if the field does not exist
+    **/
+    public int getIndex(String fldName)
+    {
+        Integer ndx = (fldName != null)? this.indexMap.get(fldName) : null;
+        return (ndx != null)? ndx.intValue() : -1;
+    }
+
+    /**
+    *** Returns true if the specified (translated) column name exists
+    *** @param colName  The translated column name
+    *** @return True if the column exists
+    **/
+    public boolean hasColumn(String colName)
+    {
+        return (colName != null)? this.columnMap.containsKey(colName) : false;
+    }
+
+    /**
+    *** Converts the case-insensitive column name to the proper case
+    *** @param colName  The case-insensitive column name
+    *** @return The column name in proper case, or null if not found
+    **/
+    public String getColumnName(String colName)
+    {
+        return (colName != null)? this.caseMap.get(colName.toLowerCase()) : null;
+    }
+
+    /**
+    *** Gets the storage kind of the field at the specified ordinal
+    *** @param ndx  The field ordinal
+    *** @return The storage kind
+    **/
+    public int getKind(int ndx)
+    {
+        return this.kind[ndx];
+    }
+
+    /**
+    *** Gets the value array slot of the field at the specified ordinal
+    *** @param ndx  The field ordinal
+    *** @return The value array slot
+    **/
+    public int getSlot(int ndx)
+    {
+        return this.slot[ndx];
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the required size of the double[] value array
+    **/
+    public int getDoubleCount()
+    {
+        return this.doubleCount;
+    }
+
+    /**
+    *** Returns the required size of the long[] value array
+    **/
+    public int getLongCount()
+    {
+        return this.longCount;
+    }
+
+    /**
+    *** Returns the required size of the int[] value array
+    **/
+    public int getIntCount()
+    {
+        return this.intCount;
+    }
+
+    /**
+    *** Returns the required size of the Object[] value array
+    **/
+    public int getObjectCount()
+    {
+        return this.objectCount;
+    }
+
+}
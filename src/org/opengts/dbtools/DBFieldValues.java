@@ -51,7 +51,10 @@ import org.opengts.util.*;
 
 /**
 *** <code>DBFieldValues</code> is a container class for field/column values for
-*** a DBRecord.
+*** a DBRecord.<br>
+*** Values are stored in slot-indexed arrays (see <code>DBFieldLayout</code>), with
+*** double/float, long, and int/boolean values held in primitive arrays.  The typed
+*** accessors (ie. "getFieldDouble", "setFieldValue(String,double)") do not box values.
 **/
 
 public class DBFieldValues
@@ -73,22 +76,20 @@ public class DBFieldValues
     
     // ------------------------------------------------------------------------
     
-    private DBRecordKey                 recordKey = null;
-    private OrderedMap<String,Object>   valueMap  = null;
-    private OrderedMap<String,DBField>  fieldMap  = null;
-    private Map<String,String>          caseMap   = null; // order is not important
+    /* field value state */
+    private static final byte           STATE_UNSET     = 0;    // value not set
+    private static final byte           STATE_NULL      = 1;    // value explicitly set to null
+    private static final byte           STATE_VALUE     = 2;    // value set
     
-    private boolean                     mustExist = true;
-
-    /**
-    *** Constructor
-    **/
-    private DBFieldValues()
-    {
-        this.valueMap  = new OrderedMap<String,Object>();
-        this.fieldMap  = new OrderedMap<String,DBField>();
-        this.caseMap   = new HashMap<String,String>();
-    }
+    private DBRecordKey                 recordKey       = null;
+    private DBFieldLayout               layout          = null;
+    private byte                        state[]         = null; // by field ordinal
+    private double                      doubleVals[]    = null; // by slot
+    private long                        longVals[]      = null; // by slot
+    private int                         intVals[]       = null; // by slot
+    private Object                      objectVals[]    = null; // by slot
+    
+    private boolean                     mustExist       = true;
 
     /**
     *** Constructor
@@ -96,14 +97,13 @@ public class DBFieldValues
     **/
     public DBFieldValues(DBRecordKey rcdKey)
     {
-        this();
-        this.recordKey = rcdKey;
-        DBField fld[]  = rcdKey.getFields();
-        for (int i = 0; i < fld.length; i++) {
-            String fldName = DBProvider.translateColumnName(fld[i].getName());
-            this.fieldMap.put(fldName, fld[i]);
-            this.caseMap.put(fldName.toLowerCase(),fldName);
-        }
+        this.recordKey  = rcdKey;
+        this.layout     = rcdKey.getFactory().getFieldLayout();
+        this.state      = new byte[this.layout.getFieldCount()];
+        this.doubleVals = new double[this.layout.getDoubleCount()];
+        this.longVals   = new long[this.layout.getLongCount()];
+        this.intVals    = new int[this.layout.getIntCount()];
+        this.objectVals = new Object[this.layout.getObjectCount()];
     }
 
     // ------------------------------------------------------------------------
@@ -221,6 +221,11 @@ public class DBFieldValues
     public boolean _setFieldValue(DBField fld, Object newVal) 
     {
 
+        /* read-only record? */
+        if (this._isReadOnly(fld)) {
+            return false;
+        }
+
         /* validate Java type */
         if (newVal != null) {
             /* check Java types */
@@ -255,23 +260,209 @@ public class DBFieldValues
             }
         }
 
-        /* store value */
+        /* field ordinal */
         String fldName = fld.getName();
-        Object oldVal = this._getFieldValue(fldName, true);
-        this.valueMap.put(fldName, newVal);
+        int ndx = this.layout.getIndex(fldName);
+        if (ndx < 0) {
+            // not a field of this table
+            Print.logStackTrace("Field not found: " + fldName);
+            return false;
+        }
+
+        /* store value */
+        if (newVal == null) {
+            // an unset/null field is compared against its default value
+            boolean changed = (this.state[ndx] == STATE_VALUE) || (fld.getDefaultValue() != null);
+            this.state[ndx] = STATE_NULL;
+            if (this.layout.getKind(ndx) == DBFieldLayout.KIND_OBJECT) {
+                this.objectVals[this.layout.getSlot(ndx)] = null;
+            }
+            this._setChanged(fld, changed);
+        } else {
+            switch (this.layout.getKind(ndx)) {
+                case DBFieldLayout.KIND_DOUBLE:
+                case DBFieldLayout.KIND_FLOAT:
+                    return this._storeDouble(fld, ndx, ((Number)newVal).doubleValue());
+                case DBFieldLayout.KIND_LONG:
+                    return this._storeLong(fld, ndx, ((Number)newVal).longValue());
+                case DBFieldLayout.KIND_INT:
+                    return this._storeInt(fld, ndx, ((Number)newVal).intValue());
+                case DBFieldLayout.KIND_BOOLEAN:
+                    return this._storeInt(fld, ndx, ((Boolean)newVal).booleanValue()? 1 : 0);
+                default: {
+                    int    slot   = this.layout.getSlot(ndx);
+                    Object oldVal = (this.state[ndx] == STATE_VALUE)? this.objectVals[slot] : fld.getDefaultValue();
+                    this.objectVals[slot] = newVal;
+                    this.state[ndx] = STATE_VALUE;
+                    DBRecord<?> rcd = (this.recordKey != null)? this.recordKey._getDBRecord() : null;
+                    if (rcd != null) {
+                        rcd.setChanged(fldName, oldVal, newVal);
+                    } else
+                    if (!fld.isKeyField()) {
+                        // should not be setting a non-key field if there is no associated DBRecord
+                        Print.logStackTrace("DBRecordKey does not point to a DBRecord! ...");
+                    }
+                    break;
+                }
+            }
+        }
+
+        /* ok */
+        return true;
+    }
+
+    /**
+    *** Returns true (and displays an error) if the associated DBRecord is read-only
+    **/
+    private boolean _isReadOnly(DBField fld)
+    {
+        DBRecord<?> rcd = (this.recordKey != null)? this.recordKey._getDBRecord() : null;
+        if ((rcd != null) && rcd.isReadOnly()) {
+            Print.logStackTrace("Read-only record, field not set: " + this.getUntranslatedTableName() + "." + fld.getName());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+    *** Notifies the associated DBRecord that the specified field has changed
+    **/
+    private void _setChanged(DBField fld, boolean changed)
+    {
         DBRecord rcd = (this.recordKey != null)? this.recordKey._getDBRecord() : null;
         if (rcd != null) {
-            rcd.setChanged(fldName, oldVal, newVal);
+            if (changed) {
+                rcd.setChanged(fld.getName());
+            }
         } else
         if (!fld.isKeyField()) {
             // should not be setting a non-key field if there is no associated DBRecord
             Print.logStackTrace("DBRecordKey does not point to a DBRecord! ...");
         }
+    }
 
-        /* ok */
+    /**
+    *** Returns true if the specified primitive value differs from the default value of
+    *** the field (the previous value of a field which is unset, or set to null)
+    **/
+    private boolean _isChangedFromDefault(DBField fld, int ndx, double dblVal, long longVal)
+    {
+        Object dft = fld.getDefaultValue();
+        if (dft instanceof Boolean) {
+            return (((Boolean)dft).booleanValue()? 1L : 0L) != longVal;
+        } else
+        if (!(dft instanceof Number)) {
+            return true;
+        }
+        Number n = (Number)dft;
+        switch (this.layout.getKind(ndx)) {
+            case DBFieldLayout.KIND_DOUBLE : return (Double.doubleToLongBits(n.doubleValue()) != Double.doubleToLongBits(dblVal));
+            case DBFieldLayout.KIND_FLOAT  : return (Float.floatToIntBits(n.floatValue()) != Float.floatToIntBits((float)dblVal));
+            case DBFieldLayout.KIND_LONG   : return (n.longValue() != longVal);
+            case DBFieldLayout.KIND_INT    : return ((long)n.intValue() != longVal);
+            default                        : return true;
+        }
+    }
+
+    /**
+    *** Stores a double/float value in the specified field slot (no type checking)
+    **/
+    private boolean _storeDouble(DBField fld, int ndx, double val)
+    {
+        int slot = this.layout.getSlot(ndx);
+        if (this.layout.getKind(ndx) == DBFieldLayout.KIND_FLOAT) {
+            val = (double)((float)val);
+        }
+        boolean changed = (this.state[ndx] != STATE_VALUE)?
+            this._isChangedFromDefault(fld, ndx, val, 0L) :
+            (Double.doubleToLongBits(this.doubleVals[slot]) != Double.doubleToLongBits(val));
+        this.doubleVals[slot] = val;
+        this.state[ndx] = STATE_VALUE;
+        this._setChanged(fld, changed);
         return true;
     }
 
+    /**
+    *** Stores a long value in the specified field slot (no type checking)
+    **/
+    private boolean _storeLong(DBField fld, int ndx, long val)
+    {
+        int slot = this.layout.getSlot(ndx);
+        boolean changed = (this.state[ndx] != STATE_VALUE)?
+            this._isChangedFromDefault(fld, ndx, 0.0, val) :
+            (this.longVals[slot] != val);
+        this.longVals[slot] = val;
+        this.state[ndx] = STATE_VALUE;
+        this._setChanged(fld, changed);
+        return true;
+    }
+
+    /**
+    *** Stores an int/boolean value in the specified field slot (no type checking)
+    **/
+    private boolean _storeInt(DBField fld, int ndx, int val)
+    {
+        int slot = this.layout.getSlot(ndx);
+        boolean changed = (this.state[ndx] != STATE_VALUE)?
+            this._isChangedFromDefault(fld, ndx, 0.0, (long)val) :
+            (this.intVals[slot] != val);
+        this.intVals[slot] = val;
+        this.state[ndx] = STATE_VALUE;
+        this._setChanged(fld, changed);
+        return true;
+    }
+
+    /**
+    *** Sets a primitive value for the specified field name, without boxing if the 
+    *** field storage kind matches the value type.
+    *** @param fldName        The field name to set
+    *** @param requiredField  True to indicate that this field is required
+    *** @param kind           The storage kind of the specified value
+    *** @param dblVal         The double/float value (if kind is KIND_DOUBLE/KIND_FLOAT)
+    *** @param longVal        The long/int/boolean value (otherwise)
+    *** @return True if the field exists, false otherwise
+    **/
+    private boolean _setFieldPrimitive(String fldName, boolean requiredField, int kind, double dblVal, long longVal)
+    {
+
+        /* get/validate field */
+        DBField fld = this.getField(fldName);
+        if (fld == null) {
+            if (requiredField && !this.getIgnoreInvalidFields()) {
+                String tn = this.getUntranslatedTableName();
+                Print.logError("Field does not exist: " + tn + "." + fldName);
+            }
+            return false;
+        } else
+        if (this._isReadOnly(fld)) {
+            return false;
+        }
+
+        /* store directly if the field storage kind matches */
+        int ndx = this.layout.getIndex(fld.getName());
+        if ((ndx >= 0) && (this.layout.getKind(ndx) == kind)) {
+            switch (kind) {
+                case DBFieldLayout.KIND_DOUBLE :
+                case DBFieldLayout.KIND_FLOAT  : return this._storeDouble(fld, ndx, dblVal);
+                case DBFieldLayout.KIND_LONG   : return this._storeLong(fld, ndx, longVal);
+                case DBFieldLayout.KIND_INT    :
+                case DBFieldLayout.KIND_BOOLEAN: return this._storeInt(fld, ndx, (int)longVal);
+            }
+        }
+
+        /* otherwise, box and validate the type */
+        Object val = null;
+        switch (kind) {
+            case DBFieldLayout.KIND_DOUBLE : val = new Double(dblVal);           break;
+            case DBFieldLayout.KIND_FLOAT  : val = new Float((float)dblVal);     break;
+            case DBFieldLayout.KIND_LONG   : val = new Long(longVal);            break;
+            case DBFieldLayout.KIND_INT    : val = new Integer((int)longVal);    break;
+            case DBFieldLayout.KIND_BOOLEAN: val = new Boolean(longVal != 0L);   break;
+        }
+        return this._setFieldValue(fld, val);
+
+    }
+
     /**
     *** Sets the value for the specified optional field name
     *** @param fldName   The field name to set
@@ -324,7 +515,7 @@ public class DBFieldValues
     **/
     public boolean setOptionalFieldValue(String fldName, int val) 
     {
-        return this._setFieldValue(fldName, false, (Object)(new Integer(val)));
+        return this._setFieldPrimitive(fldName, false, DBFieldLayout.KIND_INT, 0.0, (long)val);
     }
 
     /**
@@ -335,7 +526,7 @@ public class DBFieldValues
     **/
     public boolean setFieldValue(String fldName, int val) 
     {
-        return this._setFieldValue(fldName, true, (Object)(new Integer(val)));
+        return this._setFieldPrimitive(fldName, true, DBFieldLayout.KIND_INT, 0.0, (long)val);
     }
 
     /**
@@ -346,9 +537,10 @@ public class DBFieldValues
     **/
     public boolean setOptionalFieldValue(String fldName, long val) 
     {
-        return this._setFieldValue(fldName, false, (Object)(new Long(val)));
+        return this._setFieldPrimitive(fldName, false, DBFieldLayout.KIND_LONG, 0.0, val);
     }
-          /**
+
+    /**
     *** Sets the value for the specified field name
     *** @param fldName  The field name to set
     *** @param val      The 'long' value to set for the field
@@ -356,7 +548,7 @@ public class DBFieldValues
     **/
     public boolean setFieldValue(String fldName, long val) 
     {
-        return this._setFieldValue(fldName, true, (Object)(new Long(val)));
+        return this._setFieldPrimitive(fldName, true, DBFieldLayout.KIND_LONG, 0.0, val);
     }
 
     /**
@@ -367,7 +559,7 @@ public class DBFieldValues
     **/
     public boolean setOptionalFieldValue(String fldName, float val) 
     {
-        return this._setFieldValue(fldName, false, (Object)(new Float(val)));
+        return this._setFieldPrimitive(fldName, false, DBFieldLayout.KIND_FLOAT, (double)val, 0L);
     }
 
     /**
@@ -378,7 +570,7 @@ public class DBFieldValues
     **/
     public boolean setFieldValue(String fldName, float val) 
     {
-        return this._setFieldValue(fldName, true, (Object)(new Float(val)));
+        return this._setFieldPrimitive(fldName, true, DBFieldLayout.KIND_FLOAT, (double)val, 0L);
     }
 
     /**
@@ -389,7 +581,7 @@ public class DBFieldValues
     **/
     public boolean setOptionalFieldValue(String fldName, double val) 
     {
-        return this._setFieldValue(fldName, false, (Object)(new Double(val)));
+        return this._setFieldPrimitive(fldName, false, DBFieldLayout.KIND_DOUBLE, val, 0L);
     }
 
     /**
@@ -400,7 +592,7 @@ public class DBFieldValues
     **/
     public boolean setFieldValue(String fldName, double val) 
     {
-        return this._setFieldValue(fldName, true, (Object)(new Double(val)));
+        return this._setFieldPrimitive(fldName, true, DBFieldLayout.KIND_DOUBLE, val, 0L);
     }
 
     /**
@@ -411,7 +603,7 @@ public class DBFieldValues
     **/
     public boolean setOptionalFieldValue(String fldName, boolean val) 
     {
-        return this._setFieldValue(fldName, false, (Object)(new Boolean(val)));
+        return this._setFieldPrimitive(fldName, false, DBFieldLayout.KIND_BOOLEAN, 0.0, (val? 1L : 0L));
     }
 
     /**
@@ -422,7 +614,7 @@ public class DBFieldValues
     **/
     public boolean setFieldValue(String fldName, boolean val) 
     {
-        return this._setFieldValue(fldName, true, (Object)(new Boolean(val)));
+        return this._setFieldPrimitive(fldName, true, DBFieldLayout.KIND_BOOLEAN, 0.0, (val? 1L : 0L));
     }
 
     /**
@@ -512,8 +704,7 @@ public class DBFieldValues
             for (int i = 0; i < fld.length; i++) {
                 if (setPrimaryKey || !fld[i].isPrimaryKey()) {
                     try {
-                        Object val = fld[i].getResultSetValue(rs); // may throw exception if field does not exist
-                        this._setFieldValue(fld[i], val);
+                        this._setResultSetValue(fld[i], rs); // may throw exception if field does not exist
                     } catch (SQLException sqe) {
                         // we want to ignore "Column 'xxxx' not found" errors [found: SQLState:S0022;ErrorCode:0]
                         int errCode = sqe.getErrorCode(); // in the test we performed, this was '0' (thus useless)
@@ -539,6 +730,32 @@ public class DBFieldValues
         }
     }
 
+    /**
+    *** Sets the field value from the specified ResultSet.  Primitive column values 
+    *** are stored without boxing.
+    *** @param fld  The DBField to set
+    *** @param rs   The ResultSet from which the field value is retrieved
+    *** @throws SQLException If field does not exist
+    **/
+    private void _setResultSetValue(DBField fld, ResultSet rs)
+        throws SQLException
+    {
+        if (this._isReadOnly(fld)) {
+            return;
+        }
+        int ndx = this.layout.getIndex(fld.getName());
+        int kind = (ndx >= 0)? this.layout.getKind(ndx) : DBFieldLayout.KIND_OBJECT;
+        String n = fld.getName();
+        switch (kind) {
+            case DBFieldLayout.KIND_DOUBLE : this._storeDouble(fld, ndx, rs.getDouble(n));         break;
+            case DBFieldLayout.KIND_FLOAT  : this._storeDouble(fld, ndx, (double)rs.getFloat(n));  break;
+            case DBFieldLayout.KIND_LONG   : this._storeLong(  fld, ndx, rs.getLong(n));           break;
+            case DBFieldLayout.KIND_INT    : this._storeInt(   fld, ndx, rs.getInt(n));            break;
+            case DBFieldLayout.KIND_BOOLEAN: this._storeInt(   fld, ndx, (rs.getInt(n) != 0)? 1 : 0); break;
+            default                        : this._setFieldValue(fld, fld.getResultSetValue(rs));  break;
+        }
+    }
+
     /**
     *** Sets all field values from the specified value map (all fields required)
     *** @param valMap  The Field==>Value map
@@ -657,11 +874,7 @@ public class DBFieldValues
     **/
     public String getFieldName(String fldName)
     {
-        if (fldName != null) {
-            return this.caseMap.get(fldName.toLowerCase());
-        } else {
-            return null;
-        }
+        return this.layout.getColumnName(fldName);
     }
     
     // ------------------------------------------------------------------------
@@ -678,7 +891,7 @@ public class DBFieldValues
             return false;
         } else {
             String fn = DBProvider.translateColumnName(fldName);
-            return this.fieldMap.containsKey(fn);
+            return this.layout.hasColumn(fn);
         }
     }
 
@@ -690,7 +903,8 @@ public class DBFieldValues
     public boolean hasFieldValue(String fldName)
     {
         // if true, the field, and its value, are defined
-        return (fldName != null)? this.valueMap.containsKey(fldName) : false;
+        int ndx = this.layout.getIndex(fldName);
+        return (ndx >= 0)? (this.state[ndx] != STATE_UNSET) : false;
     }
 
     // ------------------------------------------------------------------------
@@ -703,7 +917,8 @@ public class DBFieldValues
     **/
     protected Object _getFieldValue(String fldName, boolean requiredField) 
     {
-        Object val = (fldName != null)? this.valueMap.get(fldName) : null;
+        int    ndx = this.layout.getIndex(fldName);
+        Object val = (ndx >= 0)? this._getValue(ndx) : null;
         if (val != null) {
             // field value found (or undefined)
             return val;
@@ -721,6 +936,155 @@ public class DBFieldValues
         }
     }
 
+    /**
+    *** Gets the (boxed) value at the specified field ordinal
+    *** @param ndx  The field ordinal
+    *** @return The field value, or null if the value has not been set
+    **/
+    private Object _getValue(int ndx)
+    {
+        if (this.state[ndx] != STATE_VALUE) {
+            return null;
+        }
+        int slot = this.layout.getSlot(ndx);
+        switch (this.layout.getKind(ndx)) {
+            case DBFieldLayout.KIND_DOUBLE : return new Double(this.doubleVals[slot]);
+            case DBFieldLayout.KIND_FLOAT  : return new Float((float)this.doubleVals[slot]);
+            case DBFieldLayout.KIND_LONG   : return new Long(this.longVals[slot]);
+            case DBFieldLayout.KIND_INT    : return new Integer(this.intVals[slot]);
+            case DBFieldLayout.KIND_BOOLEAN: return new Boolean(this.intVals[slot] != 0);
+            default                        : return this.objectVals[slot];
+        }
+    }
+
+    /**
+    *** Gets the field ordinal for the specified field name, displaying an error if
+    *** the field is required, but does not exist.
+    **/
+    private int _getFieldIndex(String fldName, boolean requiredField)
+    {
+        int ndx = this.layout.getIndex(fldName);
+        if ((ndx < 0) && !this.hasField(fldName) && requiredField && !this.getIgnoreInvalidFields()) {
+            Print.logStackTrace("Field not found: " + fldName);
+        }
+        return ndx;
+    }
+
+    /**
+    *** Gets the double value for the specified field name, without boxing
+    *** @param fldName        The field name for the value retrieved
+    *** @param requiredField  True to indicate that this field is required (warnings displayed if field is not found)
+    *** @param dft            The value returned if the field is not numeric, or has not been set
+    *** @return The field value
+    **/
+    public double getFieldDouble(String fldName, boolean requiredField, double dft)
+    {
+        int ndx = this._getFieldIndex(fldName, requiredField);
+        if ((ndx < 0) || (this.state[ndx] != STATE_VALUE)) {
+            return dft;
+        }
+        int slot = this.layout.getSlot(ndx);
+        switch (this.layout.getKind(ndx)) {
+            case DBFieldLayout.KIND_DOUBLE :
+            case DBFieldLayout.KIND_FLOAT  : return this.doubleVals[slot];
+            case DBFieldLayout.KIND_LONG   : return (double)this.longVals[slot];
+            case DBFieldLayout.KIND_INT    : return (double)this.intVals[slot];
+            case DBFieldLayout.KIND_BOOLEAN: return dft;
+            default                        : {
+                Object obj = this.objectVals[slot];
+                return (obj instanceof Number)? ((Number)obj).doubleValue() : dft;
+            }
+        }
+    }
+
+    /**
+    *** Gets the long value for the specified field name, without boxing
+    *** @param fldName        The field name for the value retrieved
+    *** @param requiredField  True to indicate that this field is required (warnings displayed if field is not found)
+    *** @param dft            The value returned if the field is not numeric, or has not been set
+    *** @return The field value
+    **/
+    public long getFieldLong(String fldName, boolean requiredField, long dft)
+    {
+        int ndx = this._getFieldIndex(fldName, requiredField);
+        if ((ndx < 0) || (this.state[ndx] != STATE_VALUE)) {
+            return dft;
+        }
+        int slot = this.layout.getSlot(ndx);
+        switch (this.layout.getKind(ndx)) {
+            case DBFieldLayout.KIND_DOUBLE :
+            case DBFieldLayout.KIND_FLOAT  : return (long)this.doubleVals[slot];
+            case DBFieldLayout.KIND_LONG   : return this.longVals[slot];
+            case DBFieldLayout.KIND_INT    : return (long)this.intVals[slot];
+            case DBFieldLayout.KIND_BOOLEAN: return dft;
+            default                        : {
+                Object obj = this.objectVals[slot];
+                return (obj instanceof Number)? ((Number)obj).longValue() : dft;
+            }
+        }
+    }
+
+    /**
+    *** Gets the int value for the specified field name, without boxing
+    *** @param fldName        The field name for the value retrieved
+    *** @param requiredField  True to indicate that this field is required (warnings displayed if field is not found)
+    *** @param dft            The value returned if the field is not numeric, or has not been set
+    *** @return The field value
+    **/
+    public int getFieldInt(String fldName, boolean requiredField, int dft)
+    {
+        int ndx = this._getFieldIndex(fldName, requiredField);
+        if ((ndx < 0) || (this.state[ndx] != STATE_VALUE)) {
+            return dft;
+        }
+        int slot = this.layout.getSlot(ndx);
+        switch (this.layout.getKind(ndx)) {
+            case DBFieldLayout.KIND_DOUBLE :
+            case DBFieldLayout.KIND_FLOAT  : return (int)this.doubleVals[slot];
+            case DBFieldLayout.KIND_LONG   : return (int)this.longVals[slot];
+            case DBFieldLayout.KIND_INT    : return this.intVals[slot];
+            case DBFieldLayout.KIND_BOOLEAN: return dft;
+            default                        : {
+                Object obj = this.objectVals[slot];
+                return (obj instanceof Number)? ((Number)obj).intValue() : dft;
+            }
+        }
+    }
+
+    /**
+    *** Gets the boolean value for the specified field name, without boxing
+    *** @param fldName        The field name for the value retrieved
+    *** @param requiredField  True to indicate that this field is required (warnings displayed if field is not found)
+    *** @param dft            The value returned if the field is not boolean/numeric, or has not been set
+    *** @return The field value
+    **/
+    public boolean getFieldBoolean(String fldName, boolean requiredField, boolean dft)
+    {
+        int ndx = this._getFieldIndex(fldName, requiredField);
+        if ((ndx < 0) || (this.state[ndx] != STATE_VALUE)) {
+            return dft;
+        }
+        int slot = this.layout.getSlot(ndx);
+        switch (this.layout.getKind(ndx)) {
+            case DBFieldLayout.KIND_DOUBLE :
+            case DBFieldLayout.KIND_FLOAT  : return ((int)this.doubleVals[slot] != 0);
+            case DBFieldLayout.KIND_LONG   : return ((int)this.longVals[slot] != 0);
+            case DBFieldLayout.KIND_INT    :
+            case DBFieldLayout.KIND_BOOLEAN: return (this.intVals[slot] != 0);
+            default                        : {
+                Object obj = this.objectVals[slot];
+                if (obj instanceof Boolean) {
+                    return ((Boolean)obj).booleanValue();
+                } else
+                if (obj instanceof Number) {
+                    return (((Number)obj).intValue() != 0);
+                } else {
+                    return dft;
+                }
+            }
+        }
+    }
+
     /**
     *** Gets the value for the specified field name
     *** @param fldName        The field name for the value retrieved
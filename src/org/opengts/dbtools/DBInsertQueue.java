@@ -0,0 +1,513 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Write-behind queue which collects records for a single table and inserts
+//  them in batches (multi-row INSERT, or JDBC batch).
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.lang.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBInsertQueue</code> collects records to be inserted into a single table
+*** and flushes them to the database in batches, when either the batch size has been
+*** reached, or the oldest queued record has waited for the maximum delay.<br>
+*** Callers which need to know that the record has actually been written to the
+*** database may wait on the returned <code>Ticket</code> (group-commit), or
+*** provide a <code>CommitListener</code> to be notified asynchronously.
+**/
+
+public class DBInsertQueue<gDBR extends DBRecord<?>>
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    DFT_BATCH_SIZE          = 100;
+    private static final long   DFT_MAX_DELAY_MS        = 500L;
+    private static final int    DFT_MAX_PENDING         = 10000;
+
+    // ------------------------------------------------------------------------
+
+    private static Map<String,DBInsertQueue<?>> insertQueueMap = new HashMap<String,DBInsertQueue<?>>();
+    private static boolean                      shutdownHookInstalled = false;
+
+    /**
+    *** Gets the DBInsertQueue for the specified table factory (created if necessary)
+    *** @param fact  The table DBFactory
+    *** @return The DBInsertQueue for the table
+    **/
+    @SuppressWarnings("unchecked")
+    public static <T extends DBRecord<?>> DBInsertQueue<T> getInsertQueue(DBFactory<T> fact)
+    {
+        if (fact == null) {
+            return null;
+        }
+        String utableName = fact.getUntranslatedTableName();
+        synchronized (DBInsertQueue.insertQueueMap) {
+            DBInsertQueue<T> diq = (DBInsertQueue<T>)DBInsertQueue.insertQueueMap.get(utableName);
+            if (diq == null) {
+                diq = new DBInsertQueue<T>(fact);
+                DBInsertQueue.insertQueueMap.put(utableName, diq);
+                if (!DBInsertQueue.shutdownHookInstalled) {
+                    Runtime.getRuntime().addShutdownHook(new Thread("DBInsertQueue_shutdown") {
+                        public void run() {
+                            DBInsertQueue.shutdownAll();
+                        }
+                    });
+                    DBInsertQueue.shutdownHookInstalled = true;
+                }
+            }
+            return diq;
+        }
+    }
+
+    /**
+    *** Flushes all pending records in all DBInsertQueues, and stops the flush threads
+    **/
+    public static void shutdownAll()
+    {
+        java.util.List<DBInsertQueue<?>> list = null;
+        synchronized (DBInsertQueue.insertQueueMap) {
+            list = new Vector<DBInsertQueue<?>>(DBInsertQueue.insertQueueMap.values());
+        }
+        for (DBInsertQueue<?> diq : list) {
+            diq.shutdown();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Listener notified when a queued record has been committed (or has failed)
+    **/
+    public interface CommitListener<T extends DBRecord<?>>
+    {
+        public void recordCommitted(T rcd, boolean success);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Ticket returned for each queued record
+    **/
+    public static class Ticket<T extends DBRecord<?>>
+    {
+        private T                   record      = null;
+        private CommitListener<T>   listener    = null;
+        private long                queueTimeMS = 0L;
+        private boolean             done        = false;
+        private boolean             success     = false;
+        public Ticket(T rcd, CommitListener<T> listener) {
+            this.record      = rcd;
+            this.listener    = listener;
+            this.queueTimeMS = DateTime.getCurrentTimeMillis();
+        }
+        public T getRecord() {
+            return this.record;
+        }
+        public long getQueueTimeMS() {
+            return this.queueTimeMS;
+        }
+        public synchronized boolean isDone() {
+            return this.done;
+        }
+        public synchronized boolean isCommitted() {
+            return this.done && this.success;
+        }
+        protected void setDone(boolean success) {
+            synchronized (this) {
+                this.done    = true;
+                this.success = success;
+                this.notifyAll();
+            }
+            if (this.listener != null) {
+                try {
+                    this.listener.recordCommitted(this.record, success);
+                } catch (Throwable th) {
+                    Print.logException("CommitListener error", th);
+                }
+            }
+        }
+        /**
+        *** Waits for this record to be written to the database
+        *** @param timeoutMS  The maximum number of milliseconds to wait (<=0 to wait indefinitely)
+        *** @return True if the record was committed, false if it failed, or the wait timed-out.
+        ***         (a timed-out record is still queued, and may be inserted later, unless it
+        ***         is removed with <code>DBInsertQueue.cancel</code>)
+        **/
+        public synchronized boolean waitForCommit(long timeoutMS) {
+            long endTimeMS = (timeoutMS > 0L)? (DateTime.getCurrentTimeMillis() + timeoutMS) : 0L;
+            while (!this.done) {
+                long waitMS = 0L;
+                if (endTimeMS > 0L) {
+                    waitMS = endTimeMS - DateTime.getCurrentTimeMillis();
+                    if (waitMS <= 0L) {
+                        break; // timeout
+                    }
+                }
+                try { this.wait(waitMS); } catch (InterruptedException ie) { break; }
+            }
+            return this.done && this.success;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private DBFactory<gDBR>                 factory         = null;
+    private java.util.List<Ticket<gDBR>>    queue           = new LinkedList<Ticket<gDBR>>();
+    private Object                          flushLock       = new Object();
+    private FlushThread                     flushThread     = null;
+    private boolean                         stopFlush       = false;
+
+    private int                             batchSize       = DFT_BATCH_SIZE;
+    private long                            maxDelayMS      = DFT_MAX_DELAY_MS;
+    private int                             maxPending      = DFT_MAX_PENDING;
+
+    private long                            flushCount      = 0L;
+    private long                            insertCount     = 0L;
+    private long                            failedCount     = 0L;
+    private long                            fallbackCount   = 0L;
+    private long                            totalFlushMS    = 0L;
+    private int                             lastFlushSize   = 0;
+    private long                            lastFlushMS     = 0L;
+
+    /**
+    *** Constructor
+    *** @param fact  The table DBFactory
+    **/
+    protected DBInsertQueue(DBFactory<gDBR> fact)
+    {
+        this.factory    = fact;
+        this.batchSize  = RTConfig.getInt( RTKey.DB_INSERT_QUEUE_BATCH_SIZE  , DFT_BATCH_SIZE);
+        this.maxDelayMS = RTConfig.getLong(RTKey.DB_INSERT_QUEUE_MAX_DELAY_MS, DFT_MAX_DELAY_MS);
+        this.maxPending = RTConfig.getInt( RTKey.DB_INSERT_QUEUE_MAX_PENDING , DFT_MAX_PENDING);
+        if (this.batchSize  <= 0 ) { this.batchSize  = DFT_BATCH_SIZE; }
+        if (this.maxDelayMS <= 0L) { this.maxDelayMS = DFT_MAX_DELAY_MS; }
+        if (this.maxPending < this.batchSize) { this.maxPending = this.batchSize; }
+        this.flushThread = new FlushThread();
+        this.flushThread.start();
+        Print.logInfo("DBInsertQueue started: %s [batch=%d, maxDelay=%dms, maxPending=%d]",
+            this.getTableName(), this.batchSize, this.maxDelayMS, this.maxPending);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the untranslated table name of this queue
+    *** @return The table name
+    **/
+    public String getTableName()
+    {
+        return this.factory.getUntranslatedTableName();
+    }
+
+    /**
+    *** Gets the number of records currently waiting to be inserted
+    *** @return The number of pending records
+    **/
+    public int getPendingCount()
+    {
+        synchronized (this.queue) {
+            return this.queue.size();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Queues the specified record for insertion
+    *** @param rcd  The record to insert
+    *** @return The Ticket which may be used to wait for the record to be committed
+    **/
+    public Ticket<gDBR> add(gDBR rcd)
+    {
+        return this.add(rcd, null);
+    }
+
+    /**
+    *** Queues the specified record for insertion.  If the number of pending
+    *** records is at the maximum, this method blocks until the next flush.
+    *** @param rcd       The record to insert
+    *** @param listener  The listener notified when the record has been committed (may be null)
+    *** @return The Ticket which may be used to wait for the record to be committed
+    **/
+    public Ticket<gDBR> add(gDBR rcd, CommitListener<gDBR> listener)
+    {
+        Ticket<gDBR> ticket = new Ticket<gDBR>(rcd, listener);
+        if (rcd == null) {
+            ticket.setDone(false);
+            return ticket;
+        }
+        boolean stopped = false;
+        synchronized (this.queue) {
+            while (!this.stopFlush && (this.queue.size() >= this.maxPending)) {
+                // backpressure: wait for the flush thread to catch up
+                try { this.queue.wait(this.maxDelayMS); } catch (InterruptedException ie) { break; }
+            }
+            if (this.stopFlush) {
+                stopped = true;
+            } else {
+                this.queue.add(ticket);
+                if (this.queue.size() >= this.batchSize) {
+                    this.queue.notifyAll();
+                }
+            }
+        }
+        if (stopped) {
+            // queue has been shutdown, insert now
+            java.util.List<Ticket<gDBR>> list = new Vector<Ticket<gDBR>>();
+            list.add(ticket);
+            this._flush(list);
+        }
+        return ticket;
+    }
+
+    /**
+    *** Removes the specified record from the queue, if it has not yet been taken by a
+    *** flush.  A cancelled Ticket is marked done/failed (the listener is notified).
+    *** @param ticket  The Ticket returned by <code>add</code>
+    *** @return True if the record was removed (and will not be inserted), false if the
+    ***         record has already been flushed, or is currently being flushed
+    **/
+    public boolean cancel(Ticket<gDBR> ticket)
+    {
+        if (ticket == null) {
+            return false;
+        }
+        boolean removed = false;
+        synchronized (this.queue) {
+            removed = this.queue.remove(ticket);
+            if (removed) {
+                this.queue.notifyAll(); // release any blocked 'add' callers
+            }
+        }
+        if (removed) {
+            ticket.setDone(false);
+        }
+        return removed;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Flushes all currently pending records (in the calling thread)
+    **/
+    public void flush()
+    {
+        while (true) {
+            java.util.List<Ticket<gDBR>> list = this._nextBatch(false);
+            if (list == null) {
+                break;
+            }
+            this._flush(list);
+        }
+    }
+
+    /**
+    *** Flushes all pending records and stops the flush thread
+    **/
+    public void shutdown()
+    {
+        synchronized (this.queue) {
+            this.stopFlush = true;
+            this.queue.notifyAll();
+        }
+        this.flush();
+    }
+
+    /**
+    *** Removes and returns the next batch of queued records
+    *** @param wait  True to wait until a batch is ready (size or age)
+    *** @return The list of records to insert, or null if none are available
+    **/
+    private java.util.List<Ticket<gDBR>> _nextBatch(boolean wait)
+    {
+        synchronized (this.queue) {
+            while (wait && !this.stopFlush) {
+                if (this.queue.size() >= this.batchSize) {
+                    break;
+                } else
+                if (!this.queue.isEmpty()) {
+                    long ageMS = DateTime.getCurrentTimeMillis() - this.queue.get(0).getQueueTimeMS();
+                    if (ageMS >= this.maxDelayMS) {
+                        break;
+                    }
+                    try { this.queue.wait(this.maxDelayMS - ageMS); } catch (InterruptedException ie) {}
+                } else {
+                    try { this.queue.wait(10000L); } catch (InterruptedException ie) {}
+                }
+            }
+            if (this.queue.isEmpty()) {
+                return null;
+            }
+            int count = Math.min(this.queue.size(), this.batchSize);
+            java.util.List<Ticket<gDBR>> list = new Vector<Ticket<gDBR>>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(this.queue.remove(0));
+            }
+            this.queue.notifyAll(); // release any blocked 'add' callers
+            return list;
+        }
+    }
+
+    /**
+    *** Inserts the specified list of records.  If the batch insert fails, each
+    *** record is saved individually (so that a duplicate key, or otherwise invalid
+    *** record, does not cause the remaining records to be lost).
+    *** @param list  The list of queued records
+    **/
+    private void _flush(java.util.List<Ticket<gDBR>> list)
+    {
+        if (ListTools.isEmpty(list)) {
+            return;
+        }
+        synchronized (this.flushLock) {
+            long startMS = DateTime.getCurrentTimeMillis();
+            java.util.List<gDBR> rcdList = new Vector<gDBR>(list.size());
+            for (Ticket<gDBR> t : list) {
+                rcdList.add(t.getRecord());
+            }
+            int inserted = 0, failed = 0;
+            boolean fallback = false;
+            try {
+                DBRecord.insertRecords(rcdList);
+                inserted = list.size();
+                for (Ticket<gDBR> t : list) {
+                    t.setDone(true);
+                }
+            } catch (Throwable th) { // DBException
+                Print.logWarn("Batch insert failed [%s], inserting individually: %s", this.getTableName(), th);
+                fallback = true;
+                for (Ticket<gDBR> t : list) {
+                    try {
+                        t.getRecord().save();
+                        inserted++;
+                        t.setDone(true);
+                    } catch (Throwable th2) { // DBException
+                        Print.logError("Record insert failed [%s]: %s", this.getTableName(), th2);
+                        failed++;
+                        t.setDone(false);
+                    }
+                }
+            }
+            long deltaMS = DateTime.getCurrentTimeMillis() - startMS;
+            this.flushCount++;
+            this.insertCount   += inserted;
+            this.failedCount   += failed;
+            this.fallbackCount += fallback? 1L : 0L;
+            this.totalFlushMS  += deltaMS;
+            this.lastFlushSize  = list.size();
+            this.lastFlushMS    = deltaMS;
+            if (RTConfig.isDebugMode()) {
+                double rps = (deltaMS > 0L)? ((double)inserted * 1000.0 / (double)deltaMS) : (double)inserted;
+                Print.logDebug("DBInsertQueue flush [%s]: %d records in %d ms (%.1f rec/sec) %s",
+                    this.getTableName(), inserted, deltaMS, rps, (fallback? "[individual]" : ""));
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of flushes performed
+    **/
+    public long getFlushCount()
+    {
+        synchronized (this.flushLock) {
+            return this.flushCount;
+        }
+    }
+
+    /**
+    *** Gets the total number of records inserted
+    **/
+    public long getInsertCount()
+    {
+        synchronized (this.flushLock) {
+            return this.insertCount;
+        }
+    }
+
+    /**
+    *** Gets the total number of records which failed to insert
+    **/
+    public long getFailedCount()
+    {
+        synchronized (this.flushLock) {
+            return this.failedCount;
+        }
+    }
+
+    /**
+    *** Gets the average number of records inserted per second of flush time
+    **/
+    public double getRecordsPerSecond()
+    {
+        synchronized (this.flushLock) {
+            return (this.totalFlushMS > 0L)? ((double)this.insertCount * 1000.0 / (double)this.totalFlushMS) : 0.0;
+        }
+    }
+
+    /**
+    *** Returns a String representation of the flush statistics
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        synchronized (this.flushLock) {
+            sb.append("DBInsertQueue[").append(this.getTableName()).append("] ");
+            sb.append("flushes=").append(this.flushCount);
+            sb.append(", inserted=").append(this.insertCount);
+            sb.append(", failed=").append(this.failedCount);
+            sb.append(", individual=").append(this.fallbackCount);
+            sb.append(", lastFlush=").append(this.lastFlushSize).append("/").append(this.lastFlushMS).append("ms");
+            sb.append(", rate=").append(StringTools.format(this.getRecordsPerSecond(),"0.0")).append("/sec");
+        }
+        sb.append(", pending=").append(this.getPendingCount());
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private class FlushThread
+        extends Thread
+    {
+        public FlushThread() {
+            super("DBInsertQueue_" + DBInsertQueue.this.getTableName());
+            this.setDaemon(true);
+        }
+        public void run() {
+            while (true) {
+                java.util.List<Ticket<gDBR>> list = DBInsertQueue.this._nextBatch(true);
+                if (list != null) {
+                    DBInsertQueue.this._flush(list);
+                } else
+                if (DBInsertQueue.this.stopFlush) {
+                    break;
+                }
+            }
+        }
+    }
+
+}
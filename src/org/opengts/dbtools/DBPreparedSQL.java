@@ -0,0 +1,123 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Parameterized SQL statement template (see DBFactory/DBConnection)
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.lang.*;
+import java.util.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBPreparedSQL</code> is a parameterized SQL statement template (ie.
+*** "INSERT INTO table (a,b) VALUES (?,?)"), along with the ordered list of fields
+*** which are bound to the '?' parameters.  Templates are created and cached by
+*** <code>DBFactory</code>, and the compiled <code>PreparedStatement</code> is
+*** cached per <code>DBConnection</code>.
+**/
+
+public class DBPreparedSQL
+{
+
+    // ------------------------------------------------------------------------
+
+    private String      sql         = null;
+    private DBField     bindFields[] = null;
+
+    /**
+    *** Constructor
+    *** @param sql         The parameterized SQL statement
+    *** @param bindFields  The fields bound to the statement parameters, in order
+    **/
+    public DBPreparedSQL(String sql, DBField bindFields[])
+    {
+        this.sql        = sql;
+        this.bindFields = (bindFields != null)? bindFields : new DBField[0];
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the parameterized SQL statement
+    *** @return The parameterized SQL statement
+    **/
+    public String getSQL()
+    {
+        return this.sql;
+    }
+
+    /**
+    *** Gets the fields bound to the statement parameters
+    *** @return The array of bound fields
+    **/
+    public DBField[] getBindFields()
+    {
+        return this.bindFields;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Binds the field values to the specified PreparedStatement
+    *** @param ps      The PreparedStatement
+    *** @param fldVals The field values
+    *** @throws SQLException  If an SQL error occurs
+    **/
+    public void bind(PreparedStatement ps, DBFieldValues fldVals)
+        throws SQLException
+    {
+        for (int i = 0; i < this.bindFields.length; i++) {
+            DBField fld = this.bindFields[i];
+            Object  val = fldVals.getFieldValue(fld.getName(), true);
+            fld.setStatementValue(ps, i + 1, val);
+        }
+    }
+
+    /**
+    *** Returns a String representation of the statement with the specified
+    *** field values (for debug purposes only)
+    *** @param fldVals The field values
+    *** @return The debug String
+    **/
+    public String toString(DBFieldValues fldVals)
+    {
+        StringBuffer sb = new StringBuffer(this.sql);
+        sb.append(" [");
+        for (int i = 0; i < this.bindFields.length; i++) {
+            if (i > 0) { sb.append(","); }
+            String fn = this.bindFields[i].getName();
+            sb.append(this.bindFields[i].getQValue(fldVals.getFieldValue(fn,true)));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /**
+    *** Returns the parameterized SQL statement
+    *** @return The parameterized SQL statement
+    **/
+    public String toString()
+    {
+        return this.sql;
+    }
+
+}
@@ -213,6 +213,7 @@ public class DBProvider
     public    static final long     FLAGS_NONE              = 0x0000000000000000L;
     public    static final long     FLAGS_LIMIT             = 0x0000000000000001L;
     public    static final long     FLAGS_OFFSET            = 0x0000000000000002L;
+    public    static final long     FLAGS_MULTIROW_INSERT   = 0x0000000000000004L;
 
     // ------------------------------------------------------------------------
 
@@ -291,7 +292,7 @@ public class DBProvider
         null,                                       // column name filter
         null,                                       // table name filter
         "type=MyISAM",                              // "CREATE TABLE" suffix
-        FLAGS_LIMIT|FLAGS_OFFSET,                   // flags
+        FLAGS_LIMIT|FLAGS_OFFSET|FLAGS_MULTIROW_INSERT, // flags
         new String[] {
             /* SQL_UNKNOWN */ "",
             /* SQL_BOOLEAN */ "TINYINT",            //  8bit          Java 'boolean'
@@ -320,7 +321,7 @@ public class DBProvider
         null,                                       // column name filter
         null,                                       // table name filter
         "engine=MyISAM",                            // "CREATE TABLE" suffix
-        FLAGS_LIMIT|FLAGS_OFFSET,                   // flags
+        FLAGS_LIMIT|FLAGS_OFFSET|FLAGS_MULTIROW_INSERT, // flags
         new String[] {
             /* SQL_UNKNOWN */ "",
             /* SQL_BOOLEAN */ "TINYINT",            //  8bit          Java 'boolean'
@@ -351,7 +352,7 @@ public class DBProvider
         null,                                       // column name filter
         null,                                       // table name filter
         "engine=InnoDB",                            // "CREATE TABLE" suffix
-        FLAGS_LIMIT|FLAGS_OFFSET,                   // flags
+        FLAGS_LIMIT|FLAGS_OFFSET|FLAGS_MULTIROW_INSERT, // flags
         new String[] {
             /* SQL_UNKNOWN */ "",
             /* SQL_BOOLEAN */ "TINYINT",            //  8bit          Java 'boolean'
@@ -438,7 +439,7 @@ public class DBProvider
         new NameFilterLowerCase(""),                // column name filter
         new NameFilterLowerCase(""),                // table name filter
         null,                                       // "CREATE TABLE" suffix (ie. index type)
-        FLAGS_LIMIT|FLAGS_OFFSET,                   // flags
+        FLAGS_LIMIT|FLAGS_OFFSET|FLAGS_MULTIROW_INSERT, // flags
         new String[] {
             /* SQL_UNKNOWN */ "",
             /* SQL_BOOLEAN */ "SMALLINT",           //  8bit          Java 'boolean'
@@ -1805,6 +1806,21 @@ public class DBProvider
         DBField autoIncrField = null;
         DBFieldValues fieldValues = recKey.getFieldValues();
 
+        /* prepared insert (tables without an auto-increment field only) */
+        if (DBFactory.usePreparedStatements()) {
+            DBPreparedSQL psql = recFact.getPreparedInsertSQL();
+            if ((psql != null) && (psql.getBindFields().length > 0)) {
+                DBConnection dbc = null;
+                try {
+                    dbc = DBConnection.getDefaultConnection();
+                    dbc.executePreparedUpdate(psql, fieldValues);
+                } finally {
+                    DBConnection.release(dbc);
+                }
+                return true;
+            }
+        }
+
         /* insert */
         // MySQL:      INSERT INTO <table> (<column>,<column>,...) VALUES (<value>,<value>,...)
         // SQLServer:  INSERT INTO <table> (<column>,<column>,...) VALUES (<value>,<value>,...)
@@ -1895,6 +1911,112 @@ public class DBProvider
         
     }
     
+    /**
+    *** Insert a list of records into a table.  All records must be from the same table.<br>
+    *** If the DBProvider supports multi-row inserts, a single "INSERT" statement is
+    *** used for all records, otherwise the individual "INSERT" statements are sent
+    *** as a single JDBC batch within one transaction.  
+    *** @param recList The list of records to insert
+    *** @return True if the records were inserted, false if no columns were found to insert
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public static boolean insertRecordsIntoTable(java.util.List<? extends DBRecord<?>> recList)
+        throws SQLException, DBException
+    {
+
+        /* nothing to insert? */
+        if (ListTools.isEmpty(recList)) {
+            return false;
+        } else
+        if (recList.size() == 1) {
+            return DBProvider.insertRecordIntoTable(recList.get(0));
+        }
+
+        /* table/columns (taken from the first record) */
+        DBRecordKey<?> firstKey = recList.get(0).getRecordKey();
+        String xtableName       = firstKey.getTranslatedTableName();
+        DBFactory<?> recFact    = firstKey.getFactory();
+        Map<String,DBField> existingColumns = recFact.getExistingColumnMap(false);
+        DBField field[]       = firstKey.getFields();
+        java.util.List<DBField> insFields = new Vector<DBField>();
+        for (int i = 0; i < field.length; i++) {
+            String fldName = field[i].getName();
+            String xFldName = DBProvider.translateColumnName(fldName);
+            if (field[i].isAutoIncrement()) {
+                // auto-increment values cannot be returned per-record from a batch
+                for (DBRecord<?> rec : recList) {
+                    DBProvider.insertRecordIntoTable(rec);
+                }
+                return true;
+            } else
+            if ((existingColumns == null) || existingColumns.containsKey(xFldName)) {
+                insFields.add(field[i]);
+            } else
+            if (recFact.logMissingColumnWarning()) {
+                // ignore non-existant columns
+                Print.logWarn("Insert: Field does not exist: " + xtableName + "." + fldName + " [ignored]");
+            }
+        }
+        if (insFields.isEmpty()) {
+            Print.logInfo("No columns specified to insert!!! [" + xtableName + "]");
+            return false;
+        }
+
+        /* column list */
+        StringBuffer colSB = new StringBuffer();
+        for (DBField fld : insFields) {
+            if (colSB.length() > 0) { colSB.append(","); }
+            colSB.append(fld.getName());
+        }
+
+        /* values */
+        // MySQL:      INSERT INTO <table> (<column>,...) VALUES (<value>,...),(<value>,...),...
+        // PostgreSQL: INSERT INTO <table> (<column>,...) VALUES (<value>,...),(<value>,...),...
+        boolean multiRow = DBProvider.getProvider().supportsMultiRowInsert();
+        StringBuffer multiSB = multiRow? new StringBuffer() : null;
+        String batchSQL[] = multiRow? null : new String[recList.size()];
+        for (int r = 0; r < recList.size(); r++) {
+            DBFieldValues fieldValues = recList.get(r).getRecordKey().getFieldValues();
+            StringBuffer valSB = new StringBuffer();
+            for (DBField fld : insFields) {
+                if (valSB.length() > 0) { valSB.append(","); }
+                Object fldVal = fieldValues.getFieldValue(fld.getName(),true);
+                valSB.append(fld.getQValue(fldVal));
+            }
+            if (multiRow) {
+                if (multiSB.length() == 0) {
+                    multiSB.append("INSERT INTO ").append(xtableName);
+                    multiSB.append(" (").append(colSB).append(") VALUES ");
+                } else {
+                    multiSB.append(",");
+                }
+                multiSB.append("(").append(valSB).append(")");
+            } else {
+                StringBuffer sb = new StringBuffer();
+                sb.append("INSERT INTO ").append(xtableName);
+                sb.append(" (").append(colSB).append(")");
+                sb.append(" VALUES (").append(valSB).append(")");
+                batchSQL[r] = sb.toString();
+            }
+        }
+
+        /* execute */
+        DBConnection dbc = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            if (multiRow) {
+                dbc.executeUpdate(multiSB.toString());
+            } else {
+                dbc.executeBatch(batchSQL);
+            }
+        } finally {
+            DBConnection.release(dbc);
+        }
+        return true;
+
+    }
+
     /**
     *** Assemble an update statement (and execute) for the specified record and
     *** array of fields to update
@@ -1935,6 +2057,90 @@ public class DBProvider
     **/
     public static boolean updateRecordInTable(DBRecord rec, Set<String> updFldSet)
         throws SQLException, DBException
+    {
+        java.util.List<DBField> updFields = new Vector<DBField>();
+        String updSQL = DBProvider._getUpdateSQL(rec, updFldSet, updFields);
+
+        /* execute */
+        if (updSQL != null) {
+            DBFactory<?> recFact = rec.getRecordKey().getFactory();
+            DBFieldValues fieldValues = rec.getRecordKey().getFieldValues();
+            DBPreparedSQL psql = DBFactory.usePreparedStatements()? recFact.getPreparedUpdateSQL(updFields) : null;
+            DBConnection dbc = null;
+            try {
+                dbc = DBConnection.getDefaultConnection();
+                if (psql != null) {
+                    dbc.executePreparedUpdate(psql, fieldValues);
+                } else {
+                    dbc.executeUpdate(updSQL);
+                }
+            } finally {
+                DBConnection.release(dbc);
+            }
+            return true;
+        } else {
+            Print.logInfo("No columns specified to update!!! [" + rec.getRecordKey().getTranslatedTableName() + "]");
+            return false;
+        }
+        
+    }
+
+    /**
+    *** Update the specified set of fields in a list of records, sending the individual
+    *** "UPDATE" statements as a single JDBC batch within one transaction.  All records
+    *** must be from the same table.
+    *** @param recList   The list of records to update
+    *** @param updFldSet The set of fields to update
+    *** @return True if the records were updated, false if no columns were found to update
+    *** @throws SQLException  If an SQL error occurs
+    *** @throws DBException   If a database error occurs
+    **/
+    public static boolean updateRecordsInTable(java.util.List<? extends DBRecord<?>> recList, Set<String> updFldSet)
+        throws SQLException, DBException
+    {
+
+        /* nothing to update? */
+        if (ListTools.isEmpty(recList)) {
+            return false;
+        } else
+        if (recList.size() == 1) {
+            return DBProvider.updateRecordInTable(recList.get(0), updFldSet);
+        }
+
+        /* assemble update statements */
+        java.util.List<String> batchSQL = new Vector<String>(recList.size());
+        for (DBRecord<?> rec : recList) {
+            String updSQL = DBProvider._getUpdateSQL(rec, updFldSet, null);
+            if (updSQL != null) {
+                batchSQL.add(updSQL);
+            }
+        }
+        if (batchSQL.isEmpty()) {
+            Print.logInfo("No columns specified to update!!! [" + recList.get(0).getRecordKey().getTranslatedTableName() + "]");
+            return false;
+        }
+
+        /* execute */
+        DBConnection dbc = null;
+        try {
+            dbc = DBConnection.getDefaultConnection();
+            dbc.executeBatch(batchSQL.toArray(new String[batchSQL.size()]));
+        } finally {
+            DBConnection.release(dbc);
+        }
+        return true;
+
+    }
+
+    /**
+    *** Assemble an update statement for the specified record and set of fields to update
+    *** @param rec       The record to update
+    *** @param updFldSet The set of fields to update
+    *** @param updFields If non-null, the updated fields are added to this list
+    *** @return The "UPDATE" statement, or null if there are no columns to update
+    **/
+    private static String _getUpdateSQL(DBRecord<?> rec, Set<String> updFldSet, java.util.List<DBField> updFields)
+        throws DBException
     {
         DBRecordKey recKey = rec.getRecordKey();
         StringBuffer sb    = new StringBuffer();
@@ -2001,27 +2207,15 @@ public class DBProvider
             Object fldVal = fieldValues.getFieldValue(fldName,true);
             String dbVal  = field[i].getQValue(fldVal);
             sb.append(fldName).append("=").append(dbVal);
+            if (updFields != null) { updFields.add(field[i]); }
             addedField = true;
         }
 
         /* where */
         sb.append(recKey.getWhereClause(DBWhere.KEY_FULL));
 
-        /* execute */
-        if (addedField) {
-            DBConnection dbc = null;
-            try {
-                dbc = DBConnection.getDefaultConnection();
-                dbc.executeUpdate(sb.toString());
-            } finally {
-                DBConnection.release(dbc);
-            }
-            return true;
-        } else {
-            Print.logInfo("No columns specified to update!!! [" + xtableName + "]");
-            return false;
-        }
-        
+        return addedField? sb.toString() : null;
+
     }
 
     // ------------------------------------------------------------------------
@@ -2405,6 +2599,180 @@ public class DBProvider
         
     }
 
+    // ------------------------------------------------------------------------
+    // Lock-free reads
+    // Tables stored by an MVCC storage engine (MySQL InnoDB, PostgreSQL, Derby) provide
+    // consistent reads without a table lock, so read-only selections on these tables
+    // skip "LOCK TABLES" entirely (which would otherwise serialize the reads against
+    // concurrent inserts/updates).
+
+    private static Map<String,Boolean>  mvccTableMap        = new HashMap<String,Boolean>();
+    private static Object               readLockStatsLock   = new Object();
+    private static long                 readLockCount       = 0L;
+    private static long                 readLockWaitMS      = 0L;
+    private static long                 readLockSkipCount   = 0L;
+
+    /**
+    *** Returns true if the specified table is stored by a storage engine which supports
+    *** multi-version concurrency control (consistent reads without table locks).  The
+    *** storage engine is detected once per table, and cached.
+    *** @param utableName  The untranslated table name
+    *** @return True if the table supports MVCC reads
+    **/
+    public static boolean isMVCCTable(String utableName)
+    {
+        if (utableName == null) {
+            return false;
+        }
+        synchronized (DBProvider.mvccTableMap) {
+            Boolean mvcc = DBProvider.mvccTableMap.get(utableName);
+            if (mvcc != null) {
+                return mvcc.booleanValue();
+            }
+        }
+        boolean isMVCC = false;
+        String  engine = null;
+        DBProvider dbp = DBProvider.getProvider();
+        switch (dbp.getID()) {
+            case DB_MYSQL: {
+                // MySQL: SELECT ENGINE FROM information_schema.TABLES WHERE TABLE_SCHEMA='gts' AND TABLE_NAME='EventData'
+                String xtableName = DBProvider.translateTableName(utableName);
+                String sql = "SELECT ENGINE FROM information_schema.TABLES" +
+                    " WHERE TABLE_SCHEMA='" + DBProvider.getDBName() + "' AND TABLE_NAME='" + xtableName + "'";
+                DBConnection dbc  = null;
+                Statement    stmt = null;
+                ResultSet    rs   = null;
+                try {
+                    dbc  = DBConnection.getDefaultConnection();
+                    stmt = dbc.execute(sql);
+                    rs   = stmt.getResultSet();
+                    if (rs.next()) {
+                        engine = rs.getString(1);
+                    }
+                } catch (Throwable th) {
+                    Print.logError("Unable to determine storage engine for table " + xtableName + ": " + th);
+                } finally {
+                    if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+                    if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+                    DBConnection.release(dbc);
+                }
+                isMVCC = (engine != null) && 
+                    (engine.equalsIgnoreCase("InnoDB") || engine.equalsIgnoreCase("XtraDB"));
+                } break;
+            case DB_POSTGRESQL:
+            case DB_DERBY:
+                engine = dbp.getJDBCName();
+                isMVCC = true;
+                break;
+            default:
+                engine = dbp.getJDBCName();
+                isMVCC = false;
+                break;
+        }
+        Print.logInfo("Table '" + utableName + "' engine " + engine + ": " + 
+            (isMVCC? "lock-free reads" : "locked reads"));
+        synchronized (DBProvider.mvccTableMap) {
+            DBProvider.mvccTableMap.put(utableName, new Boolean(isMVCC));
+        }
+        return isMVCC;
+    }
+
+    /**
+    *** Lock the specified tables for a read-only selection.  The lock is skipped if table
+    *** locking is disabled, if all of the specified tables support MVCC reads, or if a
+    *** consistent-read snapshot is active in the current thread.<br>
+    *** Must be paired with <code>unlockTablesForRead(locked)</code>.
+    *** @param utableNames  The array of untranslated table names
+    *** @return True if the tables were locked
+    *** @throws DBException   If a database error occurs
+    **/
+    public static boolean lockTablesForRead(String utableNames[])
+        throws DBException
+    {
+
+        /* no locking */
+        if (ListTools.isEmpty(utableNames) || !DBProvider.isTableLockingEnabled()) {
+            return false;
+        }
+
+        /* lock-free read? */
+        boolean skipLock = DBConnection.isSnapshotActive();
+        if (!skipLock && RTConfig.getBoolean(RTKey.DB_MVCC_READS,true)) {
+            skipLock = true;
+            for (int i = 0; i < utableNames.length; i++) {
+                if (!DBProvider.isMVCCTable(utableNames[i])) {
+                    skipLock = false;
+                    break;
+                }
+            }
+        }
+        if (skipLock) {
+            synchronized (DBProvider.readLockStatsLock) {
+                DBProvider.readLockSkipCount++;
+            }
+            return false;
+        }
+
+        /* lock (the time spent here is the time waiting for the lock) */
+        long startMS = System.currentTimeMillis();
+        DBProvider.lockTables(utableNames, null);
+        long waitMS = System.currentTimeMillis() - startMS;
+        synchronized (DBProvider.readLockStatsLock) {
+            DBProvider.readLockCount++;
+            DBProvider.readLockWaitMS += waitMS;
+        }
+        return true;
+
+    }
+
+    /**
+    *** Unlocks the tables locked by <code>lockTablesForRead</code>
+    *** @param locked  The value returned by <code>lockTablesForRead</code>
+    *** @return True if the tables were unlocked
+    *** @throws DBException   If a database error occurs
+    **/
+    public static boolean unlockTablesForRead(boolean locked)
+        throws DBException
+    {
+        return locked? DBProvider.unlockTables() : false;
+    }
+
+    /**
+    *** Returns the read lock statistics: the number of read locks taken, the total time
+    *** spent waiting for them, and the number of read locks skipped (MVCC tables/snapshots)
+    *** @return The read lock statistics
+    **/
+    public static String getReadLockStatistics()
+    {
+        synchronized (DBProvider.readLockStatsLock) {
+            return "ReadLocks: locked=" + DBProvider.readLockCount + 
+                " waitMS=" + DBProvider.readLockWaitMS +
+                " skipped=" + DBProvider.readLockSkipCount;
+        }
+    }
+
+    /**
+    *** Returns the number of read locks skipped (MVCC tables/snapshots)
+    *** @return The number of read locks skipped
+    **/
+    public static long getReadLockSkipCount()
+    {
+        synchronized (DBProvider.readLockStatsLock) {
+            return DBProvider.readLockSkipCount;
+        }
+    }
+
+    /**
+    *** Returns the total time (milliseconds) spent waiting for read locks
+    *** @return The total read lock wait time
+    **/
+    public static long getReadLockWaitMS()
+    {
+        synchronized (DBProvider.readLockStatsLock) {
+            return DBProvider.readLockWaitMS;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
@@ -2577,6 +2945,16 @@ public class DBProvider
         return ((this.jdbcFlags & FLAGS_OFFSET) != 0);
     }
 
+    /**
+    *** Returns true if the DBProvider supports multi-row inserts
+    *** (ie. "INSERT INTO table (...) VALUES (...),(...)")
+    *** @return True if the DBProvider supports multi-row inserts
+    **/
+    public boolean supportsMultiRowInsert()
+    {
+        return ((this.jdbcFlags & FLAGS_MULTIROW_INSERT) != 0);
+    }
+
     // ------------------------------------------------------------------------
 
 }
@@ -107,6 +107,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     private   Vector<DBChangeListener>  changeNotification      = null;
     
     private   boolean                   isVirtual               = false;
+    private   boolean                   isReadOnly              = false;
 
     protected boolean                   isValidating            = false;
     protected SQLException              lastSQLException        = null;
@@ -781,16 +782,24 @@ public abstract class DBRecord<gDBR extends DBRecord>
         ResultSet    rs   = null;
         try {
             DBRecordKey<gDBR> recKey = this.getRecordKey();
-            // DBSelect: SELECT * FROM <table> <where>
-            DBSelect<gDBR> dsel = new DBSelect<gDBR>(recKey.getFactory());
-            if (!ListTools.isEmpty(fldNames)) {
-                dsel.setSelectedFields(fldNames);
-            }
-            String wh = recKey.getWhereClause(DBWhere.KEY_FULL);
-            dsel.setWhere(wh);
+            String wh = null;
             dbc  = DBConnection.getDefaultConnection();
-            stmt = dbc.execute(dsel.toString());
-            rs   = stmt.getResultSet();
+            if (ListTools.isEmpty(fldNames) && DBFactory.usePreparedStatements()) {
+                // SELECT * FROM <table> WHERE (<key>=?) AND ...
+                // (the cached PreparedStatement is not closed, 'stmt' remains null)
+                DBPreparedSQL psql = recKey.getFactory().getPreparedSelectByKeySQL();
+                rs   = dbc.executePreparedQuery(psql, recKey.getFieldValues());
+            } else {
+                // DBSelect: SELECT * FROM <table> <where>
+                DBSelect<gDBR> dsel = new DBSelect<gDBR>(recKey.getFactory());
+                if (!ListTools.isEmpty(fldNames)) {
+                    dsel.setSelectedFields(fldNames);
+                }
+                wh = recKey.getWhereClause(DBWhere.KEY_FULL);
+                dsel.setWhere(wh);
+                stmt = dbc.execute(dsel.toString());
+                rs   = stmt.getResultSet();
+            }
             if (rs.next()) {
                 if (!ListTools.isEmpty(fldNames)) {
                     this.setAllFieldValues(rs, fldNames); // exclude primary keys
@@ -801,6 +810,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
                 return (gDBR)this;    // "unchecked cast"
             } else {
                 // not a fatal error
+                if (wh == null) { wh = recKey.getWhereClause(DBWhere.KEY_FULL); }
                 Print.logWarn("Key not found: [" + recKey.getUntranslatedTableName() + "] " + wh);
                 return null;
             }
@@ -1192,6 +1202,128 @@ public abstract class DBRecord<gDBR extends DBRecord>
         }
     }
 
+    /**
+    *** Insert the specified list of DBRecords in the database, using a single
+    *** multi-row insert, or JDBC batch, where supported by the DBProvider.<br>
+    *** All records must be from the same table.  This method is "all-or-nothing":
+    *** if an exception is thrown, none of the records should be considered inserted
+    *** (the caller may then choose to insert/save each record individually).
+    *** @param recList  The list of records to insert
+    *** @throws DBException if a database error occurs.
+    **/
+    public static <T extends DBRecord<?>> void insertRecords(java.util.List<T> recList)
+        throws DBException
+    {
+
+        /* nothing to insert? */
+        if (ListTools.isEmpty(recList)) {
+            return;
+        }
+
+        /* save allowed? */
+        for (T rec : recList) {
+            if (!rec.isOkToSave()) {
+                throw new DBException("Update not allowed");
+            }
+        }
+
+        /* insert */
+        try {
+
+            /* creation time/user */
+            long nowTimeMS = DateTime.getCurrentTimeMillis();
+            long nowTime   = nowTimeMS / 1000L;
+            String user    = DBRecord.GetCurrentUser();
+            for (T rec : recList) {
+                rec.setCreationMillis(nowTimeMS);
+                rec.setCreationTime(nowTime);
+                rec.setLastUpdateTime(nowTime);
+                rec.setLastUpdateUser(user);
+                rec.recordWillInsert();
+            }
+
+            /* insert */
+            DBProvider.insertRecordsIntoTable(recList);
+
+            /* clear changes */
+            for (T rec : recList) {
+                rec.recordDidInsert();
+                rec.clearChanged();
+            }
+
+        } catch (SQLException sqe) {
+            DBRecordKey<?> dbKey = recList.get(0).getRecordKey();
+            for (T rec : recList) {
+                rec.setLastCaughtSQLException(sqe);
+            }
+            throw new DBException("Unable to insert " + recList.size() + " records [" + dbKey.getUntranslatedTableName() + "]", sqe);
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Update the specified fields in a list of DBRecords, using a single JDBC batch
+    *** within one transaction.<br>
+    *** All records must be from the same table.  This method is "all-or-nothing":
+    *** if an exception is thrown, none of the records should be considered updated.
+    *** @param recList    The list of records to update
+    *** @param updFldSet  The set of fields to update
+    *** @throws DBException if a database error occurs.
+    **/
+    public static <T extends DBRecord<?>> void updateRecords(java.util.List<T> recList, Set<String> updFldSet)
+        throws DBException
+    {
+
+        /* nothing to update? */
+        if (ListTools.isEmpty(recList)) {
+            return;
+        }
+
+        /* save allowed? */
+        for (T rec : recList) {
+            if (!rec.isOkToSave()) {
+                throw new DBException("Update not allowed");
+            }
+        }
+
+        /* update */
+        try {
+
+            /* update time/user */
+            Set<String> updFields = (updFldSet != null)? new HashSet<String>(updFldSet) : null;
+            long nowTime = DateTime.getCurrentTimeSec();
+            String user  = DBRecord.GetCurrentUser();
+            for (T rec : recList) {
+                boolean updTime = rec.setLastUpdateTime(nowTime);
+                boolean updUser = rec.setLastUpdateUser(user);
+                if (updFields != null) {
+                    if (updTime) { updFields.add(FLD_lastUpdateTime); }
+                    if (updUser) { updFields.add(FLD_lastUpdateUser); }
+                }
+                rec.recordWillUpdate();
+            }
+
+            /* update */
+            DBProvider.updateRecordsInTable(recList, updFields);
+
+            /* clear changes */
+            for (T rec : recList) {
+                rec.recordDidUpdate();
+                rec.clearChanged();
+            }
+
+        } catch (SQLException sqe) {
+            DBRecordKey<?> dbKey = recList.get(0).getRecordKey();
+            for (T rec : recList) {
+                rec.setLastCaughtSQLException(sqe);
+            }
+            throw new DBException("Unable to update " + recList.size() + " records [" + dbKey.getUntranslatedTableName() + "]", sqe);
+        }
+
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -1347,12 +1479,30 @@ public abstract class DBRecord<gDBR extends DBRecord>
         return this.isVirtual;
     }
 
+    /**
+    *** Marks this DBRecord as read-only (ie. a record instance shared by a cache).
+    *** Field values of a read-only record cannot be changed, and the record cannot be
+    *** saved or reloaded.  This state cannot be cleared.
+    **/
+    public void setReadOnly()
+    {
+        this.isReadOnly = true;
+    }
+
+    /**
+    *** Returns true if this DBRecord is read-only
+    **/
+    public boolean isReadOnly()
+    {
+        return this.isReadOnly;
+    }
+
     /**
     *** Returns true if this DBRecord is ok to save
     **/
     public boolean isOkToSave()
     {
-        return !this.isVirtual();
+        return !this.isVirtual() && !this.isReadOnly();
     }
 
     /**
@@ -1360,7 +1510,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public boolean isOkToReload()
     {
-        return !this.isVirtual();
+        return !this.isVirtual() && !this.isReadOnly();
     }
 
     // ------------------------------------------------------------------------
@@ -1837,15 +1987,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public boolean getOptionalFieldValue(String fldName, boolean dft)
     {
-        Object obj = this.getOptionalFieldValue(fldName);
-        if (obj instanceof Boolean) {
-            return ((Boolean)obj).booleanValue();
-        } else 
-        if (obj instanceof Number) {
-            return (((Number)obj).intValue() != 0)? true : false;
-        } else {
-            return dft;
-        }
+        return this.getRecordKey().getFieldValues().getFieldBoolean(fldName, false, dft);
     }
 
     /**
@@ -1858,15 +2000,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public boolean getFieldValue(String fldName, boolean dft)
     {
-        Object obj = this.getFieldValue(fldName);
-        if (obj instanceof Boolean) {
-            return ((Boolean)obj).booleanValue();
-        } else 
-        if (obj instanceof Number) {
-            return (((Number)obj).intValue() != 0)? true : false;
-        } else {
-            return dft;
-        }
+        return this.getRecordKey().getFieldValues().getFieldBoolean(fldName, true, dft);
     }
 
     /**
@@ -1930,8 +2064,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public int getOptionalFieldValue(String fldName, int dft)
     {
-        Object obj = this.getOptionalFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).intValue() : dft;
+        return this.getRecordKey().getFieldValues().getFieldInt(fldName, false, dft);
     }
 
     /**
@@ -1944,8 +2077,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public int getFieldValue(String fldName, int dft)
     {
-        Object obj = this.getFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).intValue() : dft;
+        return this.getRecordKey().getFieldValues().getFieldInt(fldName, true, dft);
     }
 
     /**
@@ -2009,8 +2141,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public long getOptionalFieldValue(String fldName, long dft)
     {
-        Object obj = this.getOptionalFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).longValue() : dft;
+        return this.getRecordKey().getFieldValues().getFieldLong(fldName, false, dft);
     }
 
     /**
@@ -2023,8 +2154,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public long getFieldValue(String fldName, long dft)
     {
-        Object obj = this.getFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).longValue() : dft;
+        return this.getRecordKey().getFieldValues().getFieldLong(fldName, true, dft);
     }
 
     /**
@@ -2088,8 +2218,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public float getOptionalFieldValue(String fldName, float dft)
     {
-        Object obj = this.getOptionalFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).floatValue() : dft;
+        return (float)this.getRecordKey().getFieldValues().getFieldDouble(fldName, false, (double)dft);
     }
 
     /**
@@ -2102,8 +2231,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public float getFieldValue(String fldName, float dft)
     {
-        Object obj = this.getFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).floatValue() : dft;
+        return (float)this.getRecordKey().getFieldValues().getFieldDouble(fldName, true, (double)dft);
     }
 
     /**
@@ -2167,8 +2295,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public double getOptionalFieldValue(String fldName, double dft)
     {
-        Object obj = this.getOptionalFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).doubleValue() : dft;
+        return this.getRecordKey().getFieldValues().getFieldDouble(fldName, false, dft);
     }
 
     /**
@@ -2181,8 +2308,7 @@ public abstract class DBRecord<gDBR extends DBRecord>
     **/
     public double getFieldValue(String fldName, double dft)
     {
-        Object obj = this.getFieldValue(fldName);
-        return (obj instanceof Number)? ((Number)obj).doubleValue() : dft;
+        return this.getRecordKey().getFieldValues().getFieldDouble(fldName, true, dft);
     }
 
     /**
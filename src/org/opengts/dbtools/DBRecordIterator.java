@@ -30,11 +30,24 @@ import org.opengts.util.*;
 
 /**
 *** <code>DBRecordIterator</code> is used to iterate through a DBRecord selection.<br>
-*** This DBRecordIterator currently uses the SQL DB provider OFFSET/LIMIT keywords to
-*** iterate through a selection, and thus is only supported by DB providers that support
-*** these keywords.  This method has the disadvantage that record insertions/deletions 
-*** occurring while this DBRecordIterator is in use may cause this iterator to possibly 
-*** miss some records, or produce duplicate records.
+*** A DBSelect selection may be iterated using one of the following modes:<br>
+*** <ul>
+*** <li>MODE_OFFSET: (default) Uses the SQL DB provider OFFSET/LIMIT keywords to iterate
+***     through a selection, and thus is only supported by DB providers that support
+***     these keywords.  This method has the disadvantage that record insertions/deletions 
+***     occurring while this DBRecordIterator is in use may cause this iterator to possibly 
+***     miss some records, or produce duplicate records, and that each block becomes
+***     slower to retrieve as the offset grows.</li>
+*** <li>MODE_KEYSET: Uses the LIMIT keyword, and selects each block following the primary
+***     key of the last record retrieved (see "DBSelect.setKeysetPaging").  The selection
+***     is returned in primary key order.</li>
+*** <li>MODE_CURSOR: Reads the selection from a single forward-only cursor on a separate
+***     DBConnection (streamed row-by-row on MySQL, fetched in blocks of 'limit' rows on
+***     PostgreSQL).  The cursor is closed when the end of the selection is reached, or
+***     when "close()" is called.  Several iterations may share one cursor connection
+***     (see "openCursorConnection"/"setCursorConnection").</li>
+*** </ul>
+*** In all modes, no more than one block of records is held in memory.
 **/
 
 public class DBRecordIterator<DBR extends DBRecord>
@@ -44,15 +57,26 @@ public class DBRecordIterator<DBR extends DBRecord>
 
     public static final long    DEFAULT_LIMIT  = 50L;
 
+    public static final int     MODE_OFFSET    = 0; // LIMIT/OFFSET paging
+    public static final int     MODE_KEYSET    = 1; // LIMIT paging following the last record key
+    public static final int     MODE_CURSOR    = 2; // forward-only cursor
+
     // ------------------------------------------------------------------------
 
     private Iterator<DBR>       iterator        = null;
     
     private DBSelect<DBR>       dbSelector      = null;
+    private int                 mode            = MODE_OFFSET;
     private long                offset          = 0L;
     private long                limit           = DEFAULT_LIMIT;
+    private boolean             lastBlock       = false;
     
     private DBRecordKey<DBR>    lastRecordKey   = null;
+
+    private DBConnection        cursorConn      = null;
+    private boolean             ownCursorConn   = true;
+    private Statement           cursorStmt      = null;
+    private ResultSet           cursorRS        = null;
     
     // ------------------------------------------------------------------------
 
@@ -96,16 +120,43 @@ public class DBRecordIterator<DBR extends DBRecord>
     **/
     public DBRecordIterator(DBSelect<DBR> dbSel)
         throws DBException
+    {
+        this(dbSel, MODE_OFFSET);
+    }
+
+    /**
+    *** Constructor
+    *** @param dbSel The DBSelect instance
+    *** @param mode  The iteration mode (MODE_OFFSET, MODE_KEYSET, MODE_CURSOR)
+    *** @throws DBException if the DBProvider does not support the specified mode.
+    **/
+    public DBRecordIterator(DBSelect<DBR> dbSel, int mode)
+        throws DBException
     {
         super();
         this.iterator   = null;
         this.dbSelector = dbSel;
+        this.mode       = mode;
         if (this.dbSelector != null) {
-            if (!this.dbSelector.supportsLimit()) {
-                throw new DBException("DB provider does not support LIMIT");
-            } else
-            if (!this.dbSelector.supportsOffset()) {
-                throw new DBException("DB provider does not support OFFSET");
+            switch (this.mode) {
+                case MODE_OFFSET:
+                    if (!this.dbSelector.supportsLimit()) {
+                        throw new DBException("DB provider does not support LIMIT");
+                    } else
+                    if (!this.dbSelector.supportsOffset()) {
+                        throw new DBException("DB provider does not support OFFSET");
+                    }
+                    break;
+                case MODE_KEYSET:
+                    if (!this.dbSelector.supportsLimit()) {
+                        throw new DBException("DB provider does not support LIMIT");
+                    }
+                    this.dbSelector.setKeysetPaging(true);
+                    break;
+                case MODE_CURSOR:
+                    break;
+                default:
+                    throw new DBException("Invalid iterator mode: " + mode);
             }
         }
     }
@@ -122,7 +173,7 @@ public class DBRecordIterator<DBR extends DBRecord>
     }
     
     /**
-    *** Sets the limit block size
+    *** Sets the limit block size (also the cursor fetch size hint in MODE_CURSOR)
     *** @param limit  The block size limit
     **/
     public void setLimit(long limit)
@@ -130,6 +181,45 @@ public class DBRecordIterator<DBR extends DBRecord>
         this.limit = (limit > 0L)? limit : DEFAULT_LIMIT;
     }
     
+    /**
+    *** Sets the DBConnection on which the cursor is opened (MODE_CURSOR).  The connection
+    *** is owned by the caller, and is not closed by this iterator.  If not set, the
+    *** iterator opens (and closes) its own cursor connection.
+    *** @param dbc  A connection returned by "openCursorConnection", or null
+    **/
+    public void setCursorConnection(DBConnection dbc)
+    {
+        this.cursorConn    = dbc;
+        this.ownCursorConn = (dbc == null);
+    }
+
+    /**
+    *** Opens a new DBConnection, separate from the shared/pooled connections, suitable for
+    *** forward-only cursors (see "setCursorConnection").  The caller must close the
+    *** returned connection with "closeConnection()".
+    *** @return The new DBConnection
+    *** @throws DBException if the connection could not be opened
+    **/
+    public static DBConnection openCursorConnection()
+        throws DBException
+    {
+        String uri = DBProvider.getDBUri(true);
+        String usr = DBProvider.getDBUsername();
+        String pwd = DBProvider.getDBPassword();
+        DBConnection dbc = new DBConnection(uri, usr, pwd);
+        try {
+            Connection conn = dbc.getConnection();
+            if (DBProvider.getProvider().getID() == DBProvider.DB_POSTGRESQL) {
+                // PostgreSQL only fetches in blocks within a transaction
+                conn.setAutoCommit(false);
+            }
+            return dbc;
+        } catch (SQLException sqe) {
+            dbc.closeConnection();
+            throw new DBException("Opening cursor connection", sqe);
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -166,6 +256,26 @@ public class DBRecordIterator<DBR extends DBRecord>
         }
     }
 
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Closes any open cursor (MODE_CURSOR).  Should be called if the iteration is
+    *** abandoned before the end of the selection has been reached.
+    **/
+    public void close()
+    {
+        if (this.cursorRS   != null) { try { this.cursorRS.close();   } catch (Throwable t) {} }
+        if (this.cursorStmt != null) { try { this.cursorStmt.close(); } catch (Throwable t) {} }
+        if (this.cursorConn != null) {
+            if (this.ownCursorConn) {
+                this.cursorConn.closeConnection();
+                this.cursorConn = null;
+            }
+        }
+        this.cursorRS   = null;
+        this.cursorStmt = null;
+    }
+
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
@@ -198,6 +308,11 @@ public class DBRecordIterator<DBR extends DBRecord>
             // unable to fetch data
             throw new DBNotFoundException("No db selector");
         }
+
+        /* keyset/cursor */
+        if (this.mode != MODE_OFFSET) {
+            return this._fetchBlock();
+        }
         
         /* offset/limit */
         this.dbSelector.setOffset(this.offset);
@@ -235,6 +350,119 @@ public class DBRecordIterator<DBR extends DBRecord>
         
     }
 
+    /**
+    *** Reads the next block of records (MODE_KEYSET, MODE_CURSOR)
+    *** @return The DBRecord iterator
+    **/
+    @SuppressWarnings("unchecked")
+    private Iterator<DBR> _fetchBlock()
+        throws DBException, DBNotFoundException
+    {
+        DBFactory<DBR> fact = this.dbSelector.getFactory();
+        java.util.List<DBR> rcdList = null;
+
+        if (this.lastBlock) {
+            // the previous block was not full
+            rcdList = null;
+        } else
+        if (this.mode == MODE_KEYSET) {
+            // DBSelect: SELECT * FROM <table> WHERE (<where>) AND <after last key> ORDER BY <key> LIMIT <limit>
+            this.dbSelector.setLimit(this.limit);
+            this.dbSelector.setLastRecordKey(this.lastRecordKey);
+            DBConnection dbc  = null;
+            Statement    stmt = null;
+            ResultSet    rs   = null;
+            try {
+                dbc  = DBConnection.getDefaultConnection();
+                stmt = dbc.execute(this.dbSelector.toString());
+                rs   = stmt.getResultSet();
+                rcdList = this._readBlock(fact, rs);
+            } catch (SQLException sqe) {
+                throw new DBException("Keyset record block", sqe);
+            } finally {
+                if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+                if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+                DBConnection.release(dbc);
+            }
+        } else {
+            try {
+                if (this.cursorRS == null) {
+                    this._openCursor();
+                }
+                rcdList = this._readBlock(fact, this.cursorRS);
+            } catch (SQLException sqe) {
+                this.close();
+                throw new DBException("Cursor record block", sqe);
+            }
+        }
+
+        /* end of data? */
+        if ((rcdList == null) || rcdList.isEmpty()) {
+            // no more records, this record iterator is done
+            this.close();
+            this.dbSelector = null;
+            this.iterator = null;
+            this.lastRecordKey = null;
+            throw new DBNotFoundException("No more records");
+        }
+        this.lastBlock = (rcdList.size() < this.limit);
+        if (this.lastBlock) {
+            this.close();
+        }
+
+        /* last record retrieved */
+        this.lastRecordKey = rcdList.get(rcdList.size() - 1).getRecordKey(); // "unchecked cast"
+
+        /* reset/return iterator */
+        this.iterator = rcdList.iterator();
+        return this.iterator;
+
+    }
+
+    /**
+    *** Reads up to 'limit' records from the specified ResultSet
+    **/
+    @SuppressWarnings("unchecked")
+    private java.util.List<DBR> _readBlock(DBFactory<DBR> fact, ResultSet rs)
+        throws SQLException, DBException
+    {
+        java.util.List<DBR> rcdList = new ArrayList<DBR>((int)Math.min(this.limit,1000L));
+        while ((rcdList.size() < this.limit) && rs.next()) {
+            DBRecordKey<DBR> rcdKey = fact.createKey(rs); // may throw DBException
+            if (rcdKey != null) {
+                DBR rcd = rcdKey.getDBRecord();
+                rcd.setAllFieldValues(rs);
+                rcdList.add(rcd);
+            } else {
+                Print.logError("Unable to create key: " + fact.getUntranslatedTableName());
+            }
+        }
+        return rcdList;
+    }
+
+    /**
+    *** Opens a forward-only cursor for the selection on a separate DBConnection, so that
+    *** other database access from this thread is not blocked by a streaming ResultSet.
+    **/
+    private void _openCursor()
+        throws SQLException, DBException
+    {
+        int dbid = DBProvider.getProvider().getID();
+        if (this.cursorConn == null) {
+            this.cursorConn    = DBRecordIterator.openCursorConnection();
+            this.ownCursorConn = true;
+        }
+        Connection conn = this.cursorConn.getConnection();
+        this.cursorStmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (dbid == DBProvider.DB_MYSQL) {
+            // see "http://forums.mysql.com/read.php?39,152636,153012#msg-153012"
+            this.cursorStmt.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            this.cursorStmt.setFetchSize((int)this.limit);
+        }
+        this.cursorRS = this.cursorStmt.executeQuery(this.dbSelector.toString());
+    }
+
     // ------------------------------------------------------------------------
 
 }
@@ -399,6 +399,22 @@ public abstract class DBRecordKey<gDBR extends DBRecord>
             }
         }
 
+        /* prepared primary key existence check */
+        if (usePrimaryKey && (whereKeyType == DBWhere.KEY_FULL) && DBFactory.usePreparedStatements()) {
+            DBPreparedSQL psql = this.getFactory().getPreparedExistsByKeySQL();
+            DBConnection dbc = null;
+            ResultSet    rs  = null;
+            try {
+                dbc = DBConnection.getDefaultConnection();
+                rs  = dbc.executePreparedQuery(psql, this.getFieldValues());
+                return rs.next();
+            } finally {
+                // the cached PreparedStatement is not closed
+                if (rs != null) { try { rs.close(); } catch (Throwable t) {} }
+                DBConnection.release(dbc);
+            }
+        }
+
         // DBSelect: SELECT <Keys> FROM <TableName> <KeyWhere>
         String firstKey = kfld[0].getName();
         DBSelect<gDBR> dsel = new DBSelect<gDBR>(this.getFactory());
@@ -565,6 +581,18 @@ public abstract class DBRecordKey<gDBR extends DBRecord>
         } finally {
             DBConnection.release(dbc);
         }
+        this.recordDidDelete();
+    }
+
+    /**
+    *** Callback after the record(s) matching this key have been deleted from the table.
+    *** Also called for the (partial) keys used to delete dependent children records.
+    *** Subclasses may override this method to invalidate any cached copies of the
+    *** deleted records.
+    **/
+    protected void recordDidDelete()
+    {
+        // override
     }
     
     protected void _deleteDependencies()
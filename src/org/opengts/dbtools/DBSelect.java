@@ -58,6 +58,9 @@ public class DBSelect<gDBR extends DBRecord>
     private long            limit           = 0L;   // no limit
     private long            offset          = 0L;   // beginning of list
 
+    private boolean         keysetPaging    = false;
+    private String          keysetWhere     = null; // records following the last record key
+
     /**
     *** Constructor
     *** @param fact  The table DBFactory instance
@@ -444,7 +447,76 @@ public class DBSelect<gDBR extends DBRecord>
     **/
     public void setLastRecordKey(DBRecordKey<gDBR> rcdKey)
     {
-        // managed by subclasses of DBSelect
+        if (this.keysetPaging) {
+            this.keysetWhere = (rcdKey != null)? this._getKeysetWhere(rcdKey) : null;
+        } else {
+            // otherwise managed by subclasses of DBSelect
+        }
+    }
+
+    /**
+    *** Enables/Disables keyset paging.  When enabled, the selection is ordered by the
+    *** primary key fields (ascending or descending, per "setOrderAscending"), and the
+    *** DBRecordKey set with "setLastRecordKey" limits the selection to the records which
+    *** follow that key.  This allows paging through large selections by the last retrieved
+    *** record key, rather than by OFFSET.
+    *** @param keyset  True to enable keyset paging
+    **/
+    public void setKeysetPaging(boolean keyset)
+    {
+        this.keysetPaging = keyset;
+        this.keysetWhere  = null;
+    }
+
+    /**
+    *** Returns true if keyset paging is enabled
+    *** @return True if keyset paging is enabled
+    **/
+    public boolean isKeysetPaging()
+    {
+        return this.keysetPaging;
+    }
+
+    /**
+    *** Gets the primary key field names of the table
+    *** @return The primary key field names
+    **/
+    protected String[] getKeyFieldNames()
+    {
+        DBFactory<gDBR> fact = this.getFactory();
+        DBField keyFld[] = (fact != null)? fact.getKeyFields() : null;
+        if (keyFld == null) {
+            return new String[0];
+        }
+        String keyNames[] = new String[keyFld.length];
+        for (int i = 0; i < keyFld.length; i++) {
+            keyNames[i] = keyFld[i].getName();
+        }
+        return keyNames;
+    }
+
+    /**
+    *** Returns the selection clause for records following the specified key:<br>
+    *** "((k1>v1) OR ((k1=v1) AND (k2>v2)) OR ...)"
+    **/
+    private String _getKeysetWhere(DBRecordKey<gDBR> rcdKey)
+    {
+        String keyNames[] = this.getKeyFieldNames();
+        if (keyNames.length == 0) {
+            return null;
+        }
+        DBWhere dwh = new DBWhere(this.getFactory());
+        String or[] = new String[keyNames.length];
+        for (int k = 0; k < keyNames.length; k++) {
+            String and[] = new String[k + 1];
+            for (int e = 0; e < k; e++) {
+                and[e] = dwh.EQ(keyNames[e], rcdKey.getFieldValue(keyNames[e]));
+            }
+            Object v = rcdKey.getFieldValue(keyNames[k]);
+            and[k] = this.isOrderAscending()? dwh.GT(keyNames[k],v) : dwh.LT(keyNames[k],v);
+            or[k]  = (and.length == 1)? and[0] : dwh.AND(and);
+        }
+        return (or.length == 1)? or[0] : dwh.OR(or);
     }
     
     // ------------------------------------------------------------------------
@@ -504,11 +576,34 @@ public class DBSelect<gDBR extends DBRecord>
         }
         
         /* WHERE */
+        if (this.keysetWhere != null) {
+            // records following the last record key
+            if (this.hasWhere()) {
+                String wh = this.getWhere().substring("WHERE ".length());
+                sb.append(" WHERE (").append(wh).append(") AND ").append(this.keysetWhere);
+            } else {
+                sb.append(" WHERE ").append(this.keysetWhere);
+            }
+        } else
         if (this.hasWhere()) {
             sb.append(" ").append(this.getWhere());
         }
         
         /* ORDER BY */
+        if (this.keysetPaging) {
+            // primary key order (each field must be descending for a descending keyset)
+            sb.append(" ORDER BY ");
+            String fld[] = this.getKeyFieldNames();
+            for (int i = 0; i < fld.length; i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                sb.append(fld[i]);
+                if (!this.isOrderAscending()) {
+                    sb.append(" DESC");
+                }
+            }
+        } else
         if (this.hasOrderByFields()) {
             sb.append(" ORDER BY ");
             String fld[] = this.getOrderByFields();
@@ -0,0 +1,789 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Parallel, chunked table dump.  The table is split into chunks on the leading
+//  (String) primary key fields (ie. accountID/deviceID), which are dumped
+//  concurrently, either to separate (optionally gzip'ed) chunk files described
+//  by a manifest, or to a single (optionally gzip'ed) output stream.
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBTableDumper</code> dumps the table represented by a DBFactory in chunks,
+*** split on the distinct values of the leading String primary key fields (for example,
+*** one chunk per accountID/deviceID for EventData), using several threads which each
+*** run their own short SELECT on their own DB connection.<br>
+*** In "chunk" mode each chunk is written to its own file, and a manifest records the
+*** state of each chunk.  An interrupted dump may be resumed (completed chunks are
+*** not dumped again), and the manifest may be passed to <code>DBFactory.loadTable</code>
+*** to restore the chunks (completed chunk loads are recorded in the manifest, so an
+*** interrupted restore may also be resumed).<br>
+*** In "stream" mode all chunks are written, in order, to a single output file.  Each
+*** chunk being dumped holds at most a bounded number of formatted rows in memory
+*** while it waits for its turn to be written.
+**/
+
+public class DBTableDumper
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    DFT_CHUNK_KEYS          = 2;
+    private static final int    DFT_BUFFER_ROWS         = 1000;
+    private static final long   DFT_PROGRESS_SEC        = 30L;
+
+    public  static final String MODE_CHUNKS             = "chunks";
+    public  static final String MODE_STREAM             = "stream";
+
+    public  static final String STATUS_PENDING          = "pending";
+    public  static final String STATUS_DONE             = "done";
+    public  static final String STATUS_LOADED           = "loaded";
+
+    private static final String HDR_TABLE               = "table";
+    private static final String HDR_MODE                = "mode";
+    private static final String HDR_FILE                = "file";
+
+    /**
+    *** Returns true if the parallel dump has been enabled (more than one dump thread
+    *** has been configured)
+    *** @return True if the parallel dump is enabled
+    **/
+    public static boolean isParallelDump()
+    {
+        return (RTConfig.getInt(RTKey.DB_DUMP_THREADS,0) > 1);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A single chunk of the table (all records matching a set of leading key values)
+    **/
+    private static class Chunk
+    {
+        private int          index      = 0;
+        private String       keys       = "";       // "accountID=demo,deviceID=demo1"
+        private String       where      = null;
+        private String       fileName   = "";
+        private String       status     = STATUS_PENDING;
+        private long         rows       = 0L;
+        // "stream" mode row buffer
+        private List<String> buffer     = null;
+        private boolean      complete   = false;
+        public Chunk(int index, String keys, String where) {
+            this.index = index;
+            this.keys  = keys;
+            this.where = where;
+        }
+        public String toString() {
+            return this.index + "\t" + this.status + "\t" + this.rows + "\t" + this.fileName + "\t" + this.keys;
+        }
+    }
+
+    /**
+    *** Progress accumulator shared by all dump threads
+    **/
+    private static class Progress
+    {
+        private long    startMS         = 0L;
+        private long    lastLogMS       = 0L;
+        private long    logIntervMS     = 0L;
+        private long    rowCount        = 0L;
+        private int     chunkCount      = 0;
+        private int     chunkTotal      = 0;
+        public Progress(int chunkTotal, long logIntervMS) {
+            this.startMS     = System.currentTimeMillis();
+            this.lastLogMS   = this.startMS;
+            this.logIntervMS = logIntervMS;
+            this.chunkTotal  = chunkTotal;
+        }
+        public synchronized void addRows(long count) {
+            this.rowCount += count;
+            long nowMS = System.currentTimeMillis();
+            if ((this.logIntervMS > 0L) && ((nowMS - this.lastLogMS) >= this.logIntervMS)) {
+                this.lastLogMS = nowMS;
+                Print.logInfo("Dump progress: " + this.toString());
+            }
+        }
+        public synchronized void chunkDone() {
+            this.chunkCount++;
+        }
+        public synchronized long getRowCount() {
+            return this.rowCount;
+        }
+        public synchronized String toString() {
+            long   elapsedMS = Math.max(System.currentTimeMillis() - this.startMS, 1L);
+            double rps       = ((double)this.rowCount * 1000.0) / (double)elapsedMS;
+            return this.rowCount + " rows, " +
+                this.chunkCount + "/" + this.chunkTotal + " chunks, " +
+                StringTools.format(rps,"0.0") + " rows/sec, " +
+                (elapsedMS / 1000L) + " sec";
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private DBFactory<?>    factory         = null;
+    private int             maxThreads      = 1;
+    private int             chunkKeys       = DFT_CHUNK_KEYS;
+    private int             bufferRows      = DFT_BUFFER_ROWS;
+    private boolean         gzip            = false;
+    private long            progressMS      = DFT_PROGRESS_SEC * 1000L;
+
+    private Throwable       error           = null;
+
+    /**
+    *** Constructor
+    *** @param fact  The DBFactory of the table to dump
+    **/
+    public DBTableDumper(DBFactory<?> fact)
+    {
+        this.factory = fact;
+        this.setMaxThreads(RTConfig.getInt(RTKey.DB_DUMP_THREADS,1));
+        this.setChunkKeyCount(RTConfig.getInt(RTKey.DB_DUMP_CHUNK_KEYS,DFT_CHUNK_KEYS));
+        this.setBufferRows(RTConfig.getInt(RTKey.DB_DUMP_BUFFER_ROWS,DFT_BUFFER_ROWS));
+        this.setProgressInterval(RTConfig.getLong(RTKey.DB_LOAD_PROGRESS_SEC,DFT_PROGRESS_SEC) * 1000L);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the number of dump threads
+    *** @param max  The number of dump threads
+    **/
+    public void setMaxThreads(int max)
+    {
+        this.maxThreads = (max > 0)? max : 1;
+    }
+
+    /**
+    *** Gets the number of dump threads
+    *** @return The number of dump threads
+    **/
+    public int getMaxThreads()
+    {
+        return this.maxThreads;
+    }
+
+    /**
+    *** Sets the maximum number of leading primary key fields on which the table is split
+    *** @param count  The maximum number of chunk key fields (0 for a single chunk)
+    **/
+    public void setChunkKeyCount(int count)
+    {
+        this.chunkKeys = (count >= 0)? count : DFT_CHUNK_KEYS;
+    }
+
+    /**
+    *** Sets the maximum number of formatted rows held in memory per chunk ("stream" mode)
+    *** @param rows  The maximum number of buffered rows
+    **/
+    public void setBufferRows(int rows)
+    {
+        this.bufferRows = (rows > 0)? rows : DFT_BUFFER_ROWS;
+    }
+
+    /**
+    *** Sets whether the dump output is gzip compressed
+    *** @param gzip  True to compress the dump output
+    **/
+    public void setGzip(boolean gzip)
+    {
+        this.gzip = gzip;
+    }
+
+    /**
+    *** Sets the progress log interval
+    *** @param intervMS  The progress log interval (milliseconds), 0 to disable
+    **/
+    public void setProgressInterval(long intervMS)
+    {
+        this.progressMS = (intervMS > 0L)? intervMS : 0L;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the leading String primary key fields on which the table is split
+    **/
+    private DBField[] _getChunkKeyFields()
+    {
+        DBField keyFlds[] = this.factory.getKeyFields();
+        java.util.List<DBField> chunkFlds = new Vector<DBField>();
+        // the last key field is never used, so each chunk contains more than one record
+        for (int i = 0; (i < (keyFlds.length - 1)) && (i < this.chunkKeys); i++) {
+            if (!keyFlds[i].isTypeString()) { break; }
+            chunkFlds.add(keyFlds[i]);
+        }
+        return chunkFlds.toArray(new DBField[chunkFlds.size()]);
+    }
+
+    /**
+    *** Returns the table chunks (the distinct leading key values of the selected records)
+    **/
+    private java.util.List<Chunk> _getChunks(String where)
+        throws DBException
+    {
+        java.util.List<Chunk> chunks = new Vector<Chunk>();
+        DBField keyFlds[] = this._getChunkKeyFields();
+        if (keyFlds.length == 0) {
+            // single chunk
+            chunks.add(new Chunk(1, "", StringTools.isBlank(where)? null : where));
+            return chunks;
+        }
+
+        /* select distinct key values */
+        StringBuffer cols = new StringBuffer();
+        for (int k = 0; k < keyFlds.length; k++) {
+            if (k > 0) { cols.append(","); }
+            cols.append(DBProvider.translateColumnName(keyFlds[k].getName()));
+        }
+        StringBuffer sel = new StringBuffer();
+        sel.append("SELECT DISTINCT ").append(cols);
+        sel.append(" FROM ").append(this.factory.getTranslatedTableName());
+        if (!StringTools.isBlank(where)) {
+            sel.append(" WHERE (").append(where).append(")");
+        }
+        sel.append(" ORDER BY ").append(cols);
+
+        /* read chunk keys */
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(sel.toString(), true); // row by row
+            rs   = stmt.getResultSet();
+            DBWhere dwh = new DBWhere(this.factory);
+            while (rs.next()) {
+                String and[]     = new String[keyFlds.length + (StringTools.isBlank(where)? 0 : 1)];
+                StringBuffer key = new StringBuffer();
+                for (int k = 0; k < keyFlds.length; k++) {
+                    String v = rs.getString(k + 1);
+                    and[k] = dwh.EQ(DBProvider.translateColumnName(keyFlds[k].getName()), ((v != null)? v : ""));
+                    if (k > 0) { key.append(","); }
+                    key.append(keyFlds[k].getName()).append("=").append(v);
+                }
+                if (!StringTools.isBlank(where)) {
+                    and[keyFlds.length] = "(" + where + ")";
+                }
+                String chunkWhere = (and.length == 1)? and[0] : dwh.AND(and);
+                chunks.add(new Chunk(chunks.size() + 1, key.toString(), chunkWhere));
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Unable to read table chunk keys", sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+        return chunks;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Dumps the table to separate chunk files in the specified directory, and writes
+    *** a manifest "&lt;table&gt;.manifest" describing the chunks.  If the manifest
+    *** already exists, chunks which have already been completely dumped are skipped.
+    *** @param toDir  The destination directory
+    *** @param ext    The chunk file extension (".txt", ".csv", ".xml")
+    *** @param where  The optional selection where clause
+    *** @param fldn   The optional list of field names to dump
+    *** @return The manifest file
+    *** @throws DBException   If unable to dump the table
+    **/
+    public File dumpChunks(File toDir, String ext, String where, String fldn[])
+        throws DBException
+    {
+        String utableName = this.factory.getUntranslatedTableName();
+        if ((toDir == null) || !toDir.isDirectory()) {
+            throw new DBException("Invalid dump directory: " + toDir);
+        }
+        final String  dumpExt = StringTools.isBlank(ext)? DBFactory._DUMP_EXT_TXT : ext;
+        final int     outFmt  = DBFactory._getDumpFormat(dumpExt);
+        final DBField fields[]= this.factory.getFields(fldn);
+        final File    mfFile  = new File(toDir, utableName + DBFactory._DUMP_EXT_MANIFEST);
+
+        /* chunks (resume a previous dump with the same manifest) */
+        final java.util.List<Chunk> chunks = this._getChunks(where);
+        Map<String,Chunk> prior = new HashMap<String,Chunk>();
+        int maxIndex = 0;
+        if (mfFile.isFile()) {
+            for (Chunk c : this._readManifest(mfFile, new HashMap<String,String>())) {
+                prior.put(c.keys, c);
+                maxIndex = Math.max(maxIndex, c.index);
+            }
+        }
+        final java.util.List<Chunk> pending = new Vector<Chunk>();
+        for (Chunk c : chunks) {
+            Chunk p = prior.get(c.keys);
+            if (p != null) {
+                c.index    = p.index;
+                c.fileName = p.fileName;
+                c.rows     = p.rows;
+                c.status   = p.status;
+            } else {
+                c.index    = ++maxIndex;
+                c.fileName = utableName + "." + StringTools.format(c.index,"00000") + dumpExt +
+                    (this.gzip? DBFactory._DUMP_EXT_GZ : "");
+            }
+            if (c.status.equals(STATUS_PENDING) || !(new File(toDir,c.fileName)).isFile()) {
+                c.status = STATUS_PENDING;
+                pending.add(c);
+            }
+        }
+        final Map<String,String> header = new OrderedMap<String,String>();
+        header.put(HDR_TABLE, utableName);
+        header.put(HDR_MODE , MODE_CHUNKS);
+        this._writeManifest(mfFile, header, chunks);
+        Print.logInfo("Chunked dump start: " + utableName + " (" + pending.size() + "/" + chunks.size() +
+            " chunks, " + this.maxThreads + " threads)");
+
+        /* dump pending chunks */
+        final Progress progress = new Progress(pending.size(), this.progressMS);
+        final File     dir      = toDir;
+        this.error = null;
+        Thread threads[] = new Thread[Math.max(Math.min(this.maxThreads, pending.size()), 1)];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread("DBTableDumper_" + (t + 1)) {
+                public void run() {
+                    for (;;) {
+                        Chunk chunk = null;
+                        synchronized (pending) {
+                            if (pending.isEmpty() || (DBTableDumper.this._getError() != null)) { break; }
+                            chunk = pending.remove(0);
+                        }
+                        try {
+                            DBTableDumper.this._dumpChunkFile(dir, chunk, fields, outFmt, progress);
+                            progress.chunkDone();
+                            DBTableDumper.this._writeManifest(mfFile, header, chunks);
+                        } catch (Throwable th) { // DBException, IOException
+                            DBTableDumper.this._setError(th, chunks);
+                            break;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            try { threads[t].join(); } catch (InterruptedException ie) { /*ignore*/ }
+        }
+        Print.logInfo("Chunked dump done: " + utableName + " - " + progress);
+
+        /* error? */
+        Throwable th = this._getError();
+        if (th instanceof DBException) {
+            throw (DBException)th;
+        } else
+        if (th != null) {
+            throw new DBException("Chunked dump error", th);
+        }
+        return mfFile;
+
+    }
+
+    /* dump a single chunk to its own file (written to a temporary file, then renamed) */
+    private void _dumpChunkFile(File dir, Chunk chunk, DBField fields[], int outFmt, Progress progress)
+        throws DBException, IOException
+    {
+        File file = new File(dir, chunk.fileName);
+        File temp = new File(dir, chunk.fileName + ".partial");
+        PrintWriter pw = null;
+        boolean ok = false;
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024);
+            if (this.gzip) {
+                out = ZipTools.openGZIPOutputStream(out);
+            }
+            pw = new PrintWriter(out);
+            StringBuffer sb = new StringBuffer();
+            this.factory._dumpHeader(sb, fields, outFmt);
+            pw.write(sb.toString());
+            long rows = this._selectChunk(chunk, fields, outFmt, pw, progress);
+            sb.setLength(0);
+            this.factory._dumpFooter(sb, outFmt);
+            pw.write(sb.toString());
+            pw.close(); // also finishes gzip
+            if (pw.checkError()) {
+                throw new IOException("Error writing chunk file: " + temp);
+            }
+            pw = null;
+            if (file.exists()) { file.delete(); }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename chunk file: " + temp);
+            }
+            synchronized (this) {
+                chunk.rows   = rows;
+                chunk.status = STATUS_DONE;
+            }
+            ok = true;
+        } finally {
+            if (pw != null) { try { pw.close(); } catch (Throwable th) {} }
+            if (!ok) { temp.delete(); }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Dumps the table to a single output file, gzip compressed if the file name ends
+    *** with ".gz" (or compression has been enabled).  All chunks are written in order
+    *** (dumped concurrently, with a bounded number of rows buffered per chunk), and a
+    *** manifest "&lt;file&gt;.manifest" records the number of rows of each chunk.
+    *** @param toFile  The destination file
+    *** @param where   The optional selection where clause
+    *** @param fldn    The optional list of field names to dump
+    *** @return The number of records dumped
+    *** @throws DBException   If unable to dump the table
+    **/
+    public long dumpStream(File toFile, String where, String fldn[])
+        throws DBException
+    {
+        String utableName = this.factory.getUntranslatedTableName();
+        if (toFile == null) {
+            throw new DBException("'To' file not specified");
+        }
+        String  fn       = toFile.getName();
+        boolean gz       = this.gzip || fn.endsWith(DBFactory._DUMP_EXT_GZ);
+        if (fn.endsWith(DBFactory._DUMP_EXT_GZ)) {
+            fn = fn.substring(0, fn.length() - DBFactory._DUMP_EXT_GZ.length());
+        } else
+        if (gz) {
+            toFile = new File(toFile.getPath() + DBFactory._DUMP_EXT_GZ);
+        }
+        final int     outFmt   = DBFactory._getDumpFormat(fn);
+        final DBField fields[] = this.factory.getFields(fldn);
+        final java.util.List<Chunk> chunks = this._getChunks(where);
+        for (Chunk c : chunks) {
+            c.fileName = toFile.getName();
+            c.buffer   = new Vector<String>();
+        }
+        Print.logInfo("Stream dump start: " + utableName + " (" + chunks.size() + " chunks, " + this.maxThreads + " threads)");
+
+        /* start dump threads (chunks are taken in order) */
+        final Progress progress = new Progress(chunks.size(), this.progressMS);
+        final int nextChunk[] = new int[] { 0 };
+        this.error = null;
+        Thread threads[] = new Thread[Math.max(Math.min(this.maxThreads, chunks.size()), 1)];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread("DBTableDumper_" + (t + 1)) {
+                public void run() {
+                    for (;;) {
+                        Chunk chunk = null;
+                        synchronized (nextChunk) {
+                            if ((nextChunk[0] >= chunks.size()) || (DBTableDumper.this._getError() != null)) { break; }
+                            chunk = chunks.get(nextChunk[0]++);
+                        }
+                        try {
+                            chunk.rows = DBTableDumper.this._selectChunk(chunk, fields, outFmt, null, progress);
+                        } catch (Throwable th) { // DBException
+                            DBTableDumper.this._setError(th, chunks);
+                        } finally {
+                            synchronized (chunk) {
+                                chunk.complete = true;
+                                chunk.notifyAll();
+                            }
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        /* write chunks in order */
+        PrintWriter pw = null;
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(toFile), 64 * 1024);
+            if (gz) {
+                out = ZipTools.openGZIPOutputStream(out);
+            }
+            pw = new PrintWriter(out);
+            StringBuffer sb = new StringBuffer();
+            this.factory._dumpHeader(sb, fields, outFmt);
+            pw.write(sb.toString());
+            long seq = 0L; // record sequence across all chunks
+            for (Chunk chunk : chunks) {
+                for (;;) {
+                    String row = null;
+                    synchronized (chunk) {
+                        while (chunk.buffer.isEmpty() && !chunk.complete && (this._getError() == null)) {
+                            try { chunk.wait(); } catch (InterruptedException ie) { /*ignore*/ }
+                        }
+                        if (chunk.buffer.isEmpty()) { break; } // complete, or error
+                        row = chunk.buffer.remove(0);
+                        chunk.notifyAll();
+                    }
+                    seq++;
+                    if (outFmt == DBFactory.DUMP_FORMAT_XML) {
+                        // chunks are numbered from 1, renumber within the whole file
+                        row = DBTableDumper._setXMLSequence(row, seq);
+                    }
+                    pw.write(row);
+                }
+                if (this._getError() != null) { break; }
+                chunk.status = STATUS_DONE;
+                progress.chunkDone();
+            }
+            sb.setLength(0);
+            this.factory._dumpFooter(sb, outFmt);
+            pw.write(sb.toString());
+            pw.close(); // also finishes gzip
+            if (pw.checkError()) {
+                this._setError(new IOException("Error writing dump file: " + toFile), chunks);
+            }
+            pw = null;
+        } catch (IOException ioe) {
+            this._setError(ioe, chunks);
+        } finally {
+            if (pw != null) { try { pw.close(); } catch (Throwable th) {} }
+            for (int t = 0; t < threads.length; t++) {
+                try { threads[t].join(); } catch (InterruptedException ie) { /*ignore*/ }
+            }
+        }
+        Print.logInfo("Stream dump done: " + utableName + " - " + progress);
+
+        /* manifest */
+        Map<String,String> header = new OrderedMap<String,String>();
+        header.put(HDR_TABLE, utableName);
+        header.put(HDR_MODE , MODE_STREAM);
+        header.put(HDR_FILE , toFile.getName());
+        this._writeManifest(new File(toFile.getPath() + DBFactory._DUMP_EXT_MANIFEST), header, chunks);
+
+        /* error? */
+        Throwable th = this._getError();
+        if (th instanceof DBException) {
+            throw (DBException)th;
+        } else
+        if (th != null) {
+            throw new DBException("Stream dump error", th);
+        }
+        return progress.getRowCount();
+
+    }
+
+    /**
+    *** Replaces the record sequence attribute of the specified formatted XML record
+    **/
+    private static String _setXMLSequence(String row, long seq)
+    {
+        String attr = DBFactory.ATTR_sequence + "=\"";
+        int s = row.indexOf(attr);
+        int e = (s >= 0)? row.indexOf('"', s + attr.length()) : -1;
+        if (e < 0) {
+            return row;
+        }
+        return row.substring(0, s + attr.length()) + seq + row.substring(e);
+    }
+
+    /* record the first error, and wake up all waiting threads */
+    private void _setError(Throwable th, java.util.List<Chunk> chunks)
+    {
+        synchronized (this) {
+            if (this.error == null) { this.error = th; }
+        }
+        for (Chunk c : chunks) {
+            synchronized (c) { c.notifyAll(); }
+        }
+    }
+
+    private synchronized Throwable _getError()
+    {
+        return this.error;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates a DBSelect for the specified factory (binds the factory record type)
+    **/
+    private static <T extends DBRecord<?>> DBSelect<T> _createSelect(DBFactory<T> fact, String where)
+    {
+        return new DBSelect<T>(fact, where);
+    }
+
+    /**
+    *** Selects the records of the specified chunk (row by row), writing each formatted
+    *** record to the PrintWriter, or, if the PrintWriter is null, to the bounded chunk buffer.
+    **/
+    private long _selectChunk(Chunk chunk, DBField fields[], int outFmt, PrintWriter pw, Progress progress)
+        throws DBException
+    {
+        DBSelect<?> dsel = DBTableDumper._createSelect(this.factory, chunk.where);
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        long rows = 0L, reported = 0L;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(dsel.toString(), true); // row by row
+            rs   = stmt.getResultSet();
+            StringBuffer sb = new StringBuffer();
+            while (rs.next()) {
+                rows++;
+                sb.setLength(0);
+                this.factory._dumpRecord(sb, fields, rs, rows, outFmt);
+                if (pw != null) {
+                    pw.write(sb.toString());
+                } else {
+                    synchronized (chunk) {
+                        while ((chunk.buffer.size() >= this.bufferRows) && (this._getError() == null)) {
+                            try { chunk.wait(); } catch (InterruptedException ie) { /*ignore*/ }
+                        }
+                        if (this._getError() != null) { break; }
+                        chunk.buffer.add(sb.toString());
+                        chunk.notifyAll();
+                    }
+                }
+                if ((rows - reported) >= 1000L) {
+                    progress.addRows(rows - reported);
+                    reported = rows;
+                }
+            }
+            progress.addRows(rows - reported);
+            return rows;
+        } catch (SQLException sqe) {
+            throw new DBException("Dumping table chunk: " + chunk.keys, sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Loads the chunks described by the specified manifest into the table.  Each
+    *** completely loaded chunk is recorded in the manifest, so that an interrupted
+    *** restore may be resumed.
+    *** @param mfFile     The manifest file
+    *** @param validator  The optional insertion validator
+    *** @param overwriteExisting  True to overwrite existing matching records
+    *** @return The number of records loaded
+    *** @throws DBException   If unable to load the chunks
+    **/
+    public long loadManifest(File mfFile, DBFactory.InsertionValidator validator, boolean overwriteExisting)
+        throws DBException
+    {
+        File dir = mfFile.getParentFile();
+        Map<String,String> header = new OrderedMap<String,String>();
+        java.util.List<Chunk> chunks = this._readManifest(mfFile, header);
+        String table = header.get(HDR_TABLE);
+        if ((table != null) && !table.equals(this.factory.getUntranslatedTableName())) {
+            throw new DBException("Manifest table mismatch: " + table);
+        }
+
+        /* single stream */
+        if (MODE_STREAM.equals(header.get(HDR_MODE))) {
+            return this.factory.loadTable(new File(dir, header.get(HDR_FILE)), validator, overwriteExisting);
+        }
+
+        /* chunks */
+        long count = 0L;
+        for (Chunk chunk : chunks) {
+            if (chunk.status.equals(STATUS_LOADED)) {
+                continue; // already loaded
+            } else
+            if (!chunk.status.equals(STATUS_DONE)) {
+                Print.logWarn("Chunk was not completely dumped (skipped): " + chunk.fileName);
+                continue;
+            }
+            Print.logInfo("Loading chunk " + chunk.index + "/" + chunks.size() + ": " + chunk.fileName);
+            count += this.factory.loadTable(new File(dir, chunk.fileName), validator, overwriteExisting);
+            chunk.status = STATUS_LOADED;
+            this._writeManifest(mfFile, header, chunks);
+        }
+        return count;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* read manifest chunks and header values */
+    private java.util.List<Chunk> _readManifest(File mfFile, Map<String,String> header)
+        throws DBException
+    {
+        java.util.List<Chunk> chunks = new Vector<Chunk>();
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new FileReader(mfFile));
+            for (;;) {
+                String line = br.readLine();
+                if (line == null) { break; }
+                if (line.startsWith("#")) {
+                    int p = line.indexOf('=');
+                    if (p > 0) {
+                        header.put(line.substring(1,p).trim(), line.substring(p+1).trim());
+                    }
+                    continue;
+                }
+                String f[] = StringTools.split(line, '\t');
+                if (f.length < 4) { continue; }
+                Chunk c = new Chunk(StringTools.parseInt(f[0],0), ((f.length > 4)? f[4] : ""), null);
+                c.status   = f[1];
+                c.rows     = StringTools.parseLong(f[2],0L);
+                c.fileName = f[3];
+                chunks.add(c);
+            }
+        } catch (IOException ioe) {
+            throw new DBException("Unable to read manifest: " + mfFile, ioe);
+        } finally {
+            if (br != null) { try { br.close(); } catch (Throwable t) {} }
+        }
+        return chunks;
+    }
+
+    /* write manifest (to a temporary file, then renamed) */
+    private synchronized void _writeManifest(File mfFile, Map<String,String> header, java.util.List<Chunk> chunks)
+        throws DBException
+    {
+        File temp = new File(mfFile.getPath() + ".partial");
+        PrintWriter pw = null;
+        try {
+            pw = new PrintWriter(new FileWriter(temp));
+            pw.println("# DBTableDumper manifest: index, status, rows, file, keys");
+            for (String k : header.keySet()) {
+                pw.println("# " + k + "=" + header.get(k));
+            }
+            for (Chunk c : chunks) {
+                pw.println(c.toString());
+            }
+            pw.close();
+            pw = null;
+            if (mfFile.exists()) { mfFile.delete(); }
+            if (!temp.renameTo(mfFile)) {
+                throw new DBException("Unable to rename manifest: " + temp);
+            }
+        } catch (IOException ioe) {
+            throw new DBException("Unable to write manifest: " + mfFile, ioe);
+        } finally {
+            if (pw != null) { try { pw.close(); } catch (Throwable t) {} }
+        }
+    }
+
+}
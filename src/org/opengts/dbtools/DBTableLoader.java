@@ -0,0 +1,615 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Parallel bulk loader for DBFactory table dump/CSV files.  A single reader
+//  thread splits the file into blocks of lines, which are parsed and inserted
+//  (multi-row INSERT, or JDBC batch) by several worker threads, each using its
+//  own DB connection.
+// ----------------------------------------------------------------------------
+package org.opengts.dbtools;
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import java.sql.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>DBTableLoader</code> loads a table dump (".dump", ".sql"/".txt") or CSV file
+*** into the table represented by a DBFactory, using several parallel parse/insert
+*** threads.  Each block of parsed records is inserted with a single multi-row INSERT
+*** (or JDBC batch).  Records whose keys already exist (checked with one query per block),
+*** or which repeat a key within the block, are individually updated/skipped using the
+*** same rules as the sequential loader.  If a block insert still fails, the records of
+*** that block are individually inserted.  As with the sequential loader, inserted
+*** records receive the current creation/last-update time, and the record
+*** insert callbacks are called.<br>
+*** Alternate indexes may optionally be dropped before the load and recreated
+*** afterwards, which is usually much faster than maintaining them row by row.
+**/
+
+public class DBTableLoader
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    DFT_BATCH_SIZE          = 500;
+    private static final long   DFT_PROGRESS_SEC        = 30L;
+
+    /**
+    *** Returns true if the parallel bulk loader has been enabled (more than one
+    *** load thread has been configured)
+    *** @return True if the parallel bulk loader is enabled
+    **/
+    public static boolean isBulkLoad()
+    {
+        return (RTConfig.getInt(RTKey.DB_LOAD_THREADS,0) > 1);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** A block of unparsed lines read from the load file
+    **/
+    private static class Block
+    {
+        private int          firstRow = 0;
+        private List<String> lines    = null;
+        public Block(int firstRow, int size) {
+            this.firstRow = firstRow;
+            this.lines    = new Vector<String>(size);
+        }
+    }
+
+    /**
+    *** Progress accumulator shared by the reader and all worker threads
+    **/
+    private static class Progress
+    {
+        private long    startMS         = 0L;
+        private long    lastLogMS       = 0L;
+        private long    logIntervMS     = 0L;
+        private long    readCount       = 0L;
+        private long    loadCount       = 0L;
+        private long    skipCount       = 0L;
+        private long    fallbackCount   = 0L;
+        public Progress(long logIntervMS) {
+            this.startMS     = System.currentTimeMillis();
+            this.lastLogMS   = this.startMS;
+            this.logIntervMS = logIntervMS;
+        }
+        public synchronized void addRead(long count) {
+            this.readCount += count;
+        }
+        public synchronized void addBlock(long loaded, long skipped, boolean fallback) {
+            this.loadCount += loaded;
+            this.skipCount += skipped;
+            if (fallback) { this.fallbackCount++; }
+            long nowMS = System.currentTimeMillis();
+            if ((this.logIntervMS > 0L) && ((nowMS - this.lastLogMS) >= this.logIntervMS)) {
+                this.lastLogMS = nowMS;
+                Print.logInfo("Load progress: " + this.toString());
+            }
+        }
+        public synchronized long getLoadCount() {
+            return this.loadCount;
+        }
+        public synchronized String toString() {
+            long   elapsedMS = Math.max(System.currentTimeMillis() - this.startMS, 1L);
+            double rps       = ((double)this.loadCount * 1000.0) / (double)elapsedMS;
+            return this.loadCount + " loaded, " +
+                this.readCount + " read, " +
+                this.skipCount + " skipped, " +
+                this.fallbackCount + " row-by-row blocks, " +
+                StringTools.format(rps,"0.0") + " rows/sec, " +
+                (elapsedMS / 1000L) + " sec";
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private DBFactory<?>    factory         = null;
+    private int             maxThreads      = 1;
+    private int             batchSize       = DFT_BATCH_SIZE;
+    private boolean         deferIndexes    = false;
+    private long            progressMS      = DFT_PROGRESS_SEC * 1000L;
+
+    private List<Block>     blockQueue      = new LinkedList<Block>();
+    private boolean         readDone        = false;
+    private Throwable       error           = null;
+
+    /**
+    *** Constructor
+    *** @param fact  The DBFactory of the table to load
+    **/
+    public DBTableLoader(DBFactory<?> fact)
+    {
+        this.factory = fact;
+        this.setMaxThreads(RTConfig.getInt(RTKey.DB_LOAD_THREADS,1));
+        this.setBatchSize(RTConfig.getInt(RTKey.DB_LOAD_BATCH_SIZE,DFT_BATCH_SIZE));
+        this.setDeferIndexes(RTConfig.getBoolean(RTKey.DB_LOAD_DEFER_INDEXES,false));
+        this.setProgressInterval(RTConfig.getLong(RTKey.DB_LOAD_PROGRESS_SEC,DFT_PROGRESS_SEC) * 1000L);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets the number of parse/insert worker threads
+    *** @param max  The number of worker threads
+    **/
+    public void setMaxThreads(int max)
+    {
+        this.maxThreads = (max > 0)? max : 1;
+    }
+
+    /**
+    *** Gets the number of parse/insert worker threads
+    *** @return The number of worker threads
+    **/
+    public int getMaxThreads()
+    {
+        return this.maxThreads;
+    }
+
+    /**
+    *** Sets the number of records inserted per multi-row INSERT (or JDBC batch)
+    *** @param size  The batch size
+    **/
+    public void setBatchSize(int size)
+    {
+        this.batchSize = (size > 0)? size : DFT_BATCH_SIZE;
+    }
+
+    /**
+    *** Gets the number of records inserted per multi-row INSERT (or JDBC batch)
+    *** @return The batch size
+    **/
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    /**
+    *** Sets whether the alternate indexes should be dropped before the load, and
+    *** recreated once the load has completed
+    *** @param defer  True to defer alternate index creation
+    **/
+    public void setDeferIndexes(boolean defer)
+    {
+        this.deferIndexes = defer;
+    }
+
+    /**
+    *** Returns true if alternate index creation is deferred until after the load
+    *** @return True if alternate index creation is deferred
+    **/
+    public boolean getDeferIndexes()
+    {
+        return this.deferIndexes;
+    }
+
+    /**
+    *** Sets the progress log interval
+    *** @param intervMS  The progress log interval (milliseconds), 0 to disable
+    **/
+    public void setProgressInterval(long intervMS)
+    {
+        this.progressMS = (intervMS > 0L)? intervMS : 0L;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Loads the data in the specified file into the table represented by the DBFactory
+    *** @param oldFieldNames  The column/field names of the file data.  If null, the
+    ***                       names are read from the first line of the file.
+    *** @param fromFile   The file containing the record data to load
+    *** @param csv        True if the file is in CSV format, false for MySQL dump format
+    *** @param validator  The InsertionValidator filter which determines whether a given
+    ***                   record should be inserted into the table (may be null).
+    *** @param overwriteExisting  True to overwrite existing matching records
+    *** @return The number of records loaded into the table from the specified file
+    *** @throws DBException   If unable to load the table
+    **/
+    public long loadTable(String oldFieldNames[], File fromFile, boolean csv,
+        DBFactory.InsertionValidator validator, boolean overwriteExisting)
+        throws DBException
+    {
+        String utableName = this.factory.getUntranslatedTableName();
+        InputStream fis = null;
+        DBFactory.MySQLDumpReader fr = null;
+        Thread threads[] = null;
+        Progress progress = new Progress(this.progressMS);
+        boolean droppedIndexes = false;
+        this.blockQueue.clear();
+        this.readDone = false;
+        this.error    = null;
+        try {
+
+            /* open file */
+            if (csv) {
+                fis = DBFactory.openLoadStream(fromFile);
+            } else {
+                fr = new DBFactory.MySQLDumpReader(fromFile);
+            }
+
+            /* field/column definition */
+            if (ListTools.isEmpty(oldFieldNames)) {
+                String firstLine = null;
+                try {
+                    firstLine = csv? FileTools.readLine(fis) : fr.readLineString();
+                } catch (EOFException eofe) {
+                    throw new DBException("Premature EOF");
+                }
+                if (csv) {
+                    oldFieldNames = StringTools.parseArray(firstLine);
+                } else
+                if ((firstLine != null) && firstLine.startsWith("#")) {
+                    oldFieldNames = StringTools.parseArray(firstLine.substring(1).trim());
+                }
+                if (ListTools.isEmpty(oldFieldNames)) {
+                    Print.logError("Unable to determine column mapping definitions");
+                    throw new DBException("Missing column definitions, unable to load file");
+                }
+            }
+
+            /* list fields */
+            for (int i = 0; i < oldFieldNames.length; i++) {
+                DBField field = this.factory.getField(oldFieldNames[i]);
+                if (field == null) {
+                    Print.logInfo("Column : " + oldFieldNames[i] + "  - will be dropped");
+                } else {
+                    Print.logInfo("Column : " + oldFieldNames[i]);
+                }
+            }
+
+            /* initialize validator */
+            if ((validator != null) && !validator.setFields(oldFieldNames)) {
+                throw new DBException("Load fields rejected by insertion validator");
+            }
+
+            /* defer alternate indexes */
+            if (this.deferIndexes && !ListTools.isEmpty(this.factory.getAlternateIndexes())) {
+                Print.logInfo("Dropping alternate indexes prior to load: " + utableName);
+                this.factory.dropAlternateIndexes();
+                droppedIndexes = true;
+            }
+
+            /* start worker threads */
+            Print.logInfo("Bulk load start: " + utableName + " (" + this.maxThreads + " threads, batch " + this.batchSize + ")");
+            final String  fields[]     = oldFieldNames;
+            final boolean overwrite    = overwriteExisting;
+            final DBFactory.InsertionValidator valid = validator;
+            final Progress prog        = progress;
+            threads = new Thread[this.maxThreads];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread("DBTableLoader_" + (t + 1)) {
+                    public void run() {
+                        for (;;) {
+                            Block block = DBTableLoader.this._takeBlock();
+                            if (block == null) { break; }
+                            try {
+                                DBTableLoader.this._loadBlock(block, fields, valid, overwrite, prog);
+                            } catch (Throwable th) { // DBException, SQLException
+                                DBTableLoader.this._setError(th);
+                                break;
+                            }
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+
+            /* read blocks */
+            int rowNumber = 2; // start at line '2'
+            Block block = new Block(rowNumber, this.batchSize);
+            for (;;rowNumber++) {
+                String line = null;
+                if (csv) {
+                    try {
+                        line = FileTools.readLine(fis).trim();
+                    } catch (EOFException eofe) {
+                        line = null;
+                    }
+                    if ((line != null) && line.equals("")) { continue; } // ignore blank lines
+                } else {
+                    line = fr.readLineString();
+                    if ((line != null) && line.startsWith("#")) { continue; }
+                }
+                if (line == null) { break; }
+                block.lines.add(line);
+                if (block.lines.size() >= this.batchSize) {
+                    progress.addRead(block.lines.size());
+                    if (!this._putBlock(block)) { break; }
+                    block = new Block(rowNumber + 1, this.batchSize);
+                }
+            }
+            if (!block.lines.isEmpty()) {
+                progress.addRead(block.lines.size());
+                this._putBlock(block);
+            }
+
+        } catch (IOException ioe) {
+            this._setError(new DBException("Parsing error", ioe));
+        } catch (DBException dbe) {
+            this._setError(dbe);
+        } finally {
+
+            /* wait for workers */
+            synchronized (this.blockQueue) {
+                this.readDone = true;
+                this.blockQueue.notifyAll();
+            }
+            if (threads != null) {
+                for (int t = 0; t < threads.length; t++) {
+                    if (threads[t] == null) { continue; }
+                    try { threads[t].join(); } catch (InterruptedException ie) { /*ignore*/ }
+                }
+            }
+
+            /* close file */
+            if (fis != null) { try { fis.close(); } catch (Throwable t) {} }
+            if (fr  != null) { try { fr.close();  } catch (Throwable t) {} }
+
+        }
+        Print.logInfo("Bulk load done: " + utableName + " - " + progress);
+
+        /* recreate deferred indexes */
+        if (droppedIndexes) {
+            Print.logInfo("Recreating alternate indexes: " + utableName);
+            long startMS = System.currentTimeMillis();
+            this.factory.recreateAlternateIndexes();
+            Print.logInfo("Recreated alternate indexes in " + (System.currentTimeMillis() - startMS) + " ms");
+        }
+
+        /* error? */
+        Throwable th = this._getError();
+        if (th instanceof DBException) {
+            throw (DBException)th;
+        } else
+        if (th != null) {
+            throw new DBException("Bulk load error", th);
+        }
+
+        /* return number of records loaded */
+        return progress.getLoadCount();
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* queue a block for the worker threads (waits while the queue is full) */
+    private boolean _putBlock(Block block)
+    {
+        int maxPending = this.maxThreads * 2;
+        synchronized (this.blockQueue) {
+            while ((this.error == null) && (this.blockQueue.size() >= maxPending)) {
+                try { this.blockQueue.wait(); } catch (InterruptedException ie) { /*ignore*/ }
+            }
+            if (this.error != null) {
+                return false;
+            }
+            this.blockQueue.add(block);
+            this.blockQueue.notifyAll();
+            return true;
+        }
+    }
+
+    /* take the next block (returns null once reading is complete, or an error occurred) */
+    private Block _takeBlock()
+    {
+        synchronized (this.blockQueue) {
+            while ((this.error == null) && this.blockQueue.isEmpty() && !this.readDone) {
+                try { this.blockQueue.wait(); } catch (InterruptedException ie) { /*ignore*/ }
+            }
+            if ((this.error != null) || this.blockQueue.isEmpty()) {
+                return null;
+            }
+            Block block = this.blockQueue.remove(0);
+            this.blockQueue.notifyAll();
+            return block;
+        }
+    }
+
+    /* record the first error, and stop the reader/workers */
+    private void _setError(Throwable th)
+    {
+        synchronized (this.blockQueue) {
+            if (this.error == null) { this.error = th; }
+            this.blockQueue.notifyAll();
+        }
+    }
+
+    private Throwable _getError()
+    {
+        synchronized (this.blockQueue) {
+            return this.error;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /* parse and insert a single block of lines */
+    private void _loadBlock(Block block, String oldFieldNames[],
+        DBFactory.InsertionValidator validator, boolean overwriteExisting, Progress progress)
+        throws DBException, SQLException
+    {
+        List<DBRecord<?>>  rcdList = new Vector<DBRecord<?>>(block.lines.size());
+        List<Set<String>>  fldList = new Vector<Set<String>>(block.lines.size());
+        long loaded  = 0L;
+        long skipped = 0L;
+
+        /* parse */
+        for (int r = 0; r < block.lines.size(); r++) {
+            String rowValues[] = StringTools.parseArray(block.lines.get(r));
+            if (rowValues.length != oldFieldNames.length) {
+                Print.logError("Fields - #found != #expected: " +
+                    rowValues.length + " != " + oldFieldNames.length +
+                    " [row " + (block.firstRow + r) + "]");
+                skipped++;
+                continue;
+            }
+            if (validator != null) {
+                synchronized (validator) {
+                    if (!validator.validate(rowValues)) {
+                        // insertion failed validation
+                        skipped++;
+                        continue;
+                    }
+                }
+            }
+            Set<String> fieldNameList = new HashSet<String>();
+            DBRecord<?> dbRcd = this.factory._loadCreateRecord(oldFieldNames, rowValues, fieldNameList);
+            rcdList.add(dbRcd);
+            fldList.add(fieldNameList);
+        }
+        if (rcdList.isEmpty()) {
+            progress.addBlock(0L, skipped, false);
+            return;
+        }
+
+        /* auto-increment keys cannot be checked/inserted as a block */
+        if (this._hasAutoIncrementKey()) {
+            for (int r = 0; r < rcdList.size(); r++) {
+                if (this.factory._loadSaveRecord(rcdList.get(r), fldList.get(r), overwriteExisting)) {
+                    loaded++;
+                } else {
+                    skipped++;
+                }
+            }
+            progress.addBlock(loaded, skipped, true);
+            return;
+        }
+
+        /* separate new records from existing/repeated keys */
+        Set<String> existKeys = this._getExistingKeys(rcdList);
+        List<DBRecord<?>> insList = new Vector<DBRecord<?>>(rcdList.size());
+        List<Integer>     savList = new Vector<Integer>();
+        for (int r = 0; r < rcdList.size(); r++) {
+            String key = rcdList.get(r).getRecordKey().toString();
+            if (existKeys.add(key)) {
+                insList.add(rcdList.get(r));
+            } else {
+                // key exists in the table, or earlier in this block
+                savList.add(new Integer(r));
+            }
+        }
+
+        /* insert new records */
+        boolean fallback = false;
+        try {
+            DBRecord.insertRecords(insList); // sets creation/update times, calls insert callbacks
+            loaded += insList.size();
+        } catch (DBException dbe) {
+            // row-by-row insert (ie. a record inserted by another process since the check)
+            Print.logWarn("Block insert failed [row " + block.firstRow + "]: " + dbe.getMessage());
+            fallback = true;
+            for (DBRecord<?> rcd : insList) {
+                if (rcd.getRecordKey().exists()) {
+                    // inserted by the failed block (non-transactional table, ie. MyISAM)
+                    rcd.recordDidInsert();
+                    loaded++;
+                } else {
+                    rcd.insert();
+                    loaded++;
+                }
+            }
+        }
+
+        /* update/skip existing records (in file order) */
+        for (Integer r : savList) {
+            int ndx = r.intValue();
+            if (this.factory._loadSaveRecord(rcdList.get(ndx), fldList.get(ndx), overwriteExisting)) {
+                loaded++;
+            } else {
+                skipped++;
+            }
+        }
+        progress.addBlock(loaded, skipped, fallback);
+
+    }
+
+    /* returns true if the table has an auto-increment primary key field */
+    private boolean _hasAutoIncrementKey()
+    {
+        DBField keyFlds[] = this.factory.getKeyFields();
+        for (int i = 0; i < keyFlds.length; i++) {
+            if (keyFlds[i].isAutoIncrement()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* return the keys of the specified records which already exist in the table */
+    private Set<String> _getExistingKeys(List<DBRecord<?>> rcdList)
+        throws DBException
+    {
+
+        /* select */
+        // SELECT <keys> FROM <table> WHERE ((<key1>=<val1> AND ...) OR (...) ...)
+        DBField keyFlds[] = this.factory.getKeyFields();
+        DBWhere dwh = new DBWhere(this.factory);
+        String keyOr[] = new String[rcdList.size()];
+        for (int r = 0; r < rcdList.size(); r++) {
+            DBFieldValues fv = rcdList.get(r).getRecordKey().getFieldValues();
+            String keyAnd[] = new String[keyFlds.length];
+            for (int k = 0; k < keyFlds.length; k++) {
+                String fldName = keyFlds[k].getName();
+                keyAnd[k] = dwh.EQ(fldName, fv.getFieldValueAsString(fldName)); // as in "DBRecordKey.getWhereClause"
+            }
+            keyOr[r] = dwh.AND(keyAnd);
+        }
+        StringBuffer sb = new StringBuffer();
+        sb.append("SELECT ");
+        for (int k = 0; k < keyFlds.length; k++) {
+            if (k > 0) { sb.append(","); }
+            sb.append(DBProvider.translateColumnName(keyFlds[k].getName()));
+        }
+        sb.append(" FROM ").append(this.factory.getTranslatedTableName());
+        sb.append(dwh.WHERE(dwh.OR(keyOr)));
+
+        /* read existing keys */
+        Set<String> keys = new HashSet<String>();
+        DBConnection dbc  = null;
+        Statement    stmt = null;
+        ResultSet    rs   = null;
+        try {
+            dbc  = DBConnection.getDefaultConnection();
+            stmt = dbc.execute(sb.toString());
+            rs   = stmt.getResultSet();
+            while (rs.next()) {
+                DBRecordKey<?> key = this.factory.createKey(rs);
+                if (key != null) {
+                    keys.add(key.toString());
+                }
+            }
+        } catch (SQLException sqe) {
+            throw new DBException("Existing keys: " + this.factory.getUntranslatedTableName(), sqe);
+        } finally {
+            if (rs   != null) { try { rs.close();   } catch (Throwable t) {} }
+            if (stmt != null) { try { stmt.close(); } catch (Throwable t) {} }
+            DBConnection.release(dbc);
+        }
+        return keys;
+
+    }
+
+}
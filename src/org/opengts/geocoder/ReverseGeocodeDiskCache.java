@@ -0,0 +1,348 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Persistent (memory-mapped file) ReverseGeocode cache, keyed by quantized GeoPoint
+// ----------------------------------------------------------------------------
+package org.opengts.geocoder;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>ReverseGeocodeDiskCache</code> is a fixed-size hash table of ReverseGeocode
+*** entries stored in a memory-mapped file, so that cached addresses survive a restart.<br>
+*** Entries are keyed by the GeoPoint quantized to 4 decimal places (about 11 meters),
+*** plus a hash of the provider name and locale.  Each entry occupies a fixed size slot,
+*** collisions are resolved by linear probing over a small number of slots, and the
+*** oldest entry in the probe range is replaced when all probed slots are in use.
+**/
+
+public class ReverseGeocodeDiskCache
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final byte   MAGIC[]         = "GTSRGC01".getBytes();
+    private static final int    SLOT_SIZE       = 512;
+    private static final int    PROBE_COUNT     = 8;
+    private static final int    SLOT_HEADER     = 8 + 4 + 4 + 2; // key, context, time, length
+    private static final int    MAX_PAYLOAD     = SLOT_SIZE - SLOT_HEADER;
+    private static final int    MAX_SLOTS       = (Integer.MAX_VALUE / SLOT_SIZE) - 1;
+
+    private static final double QUANTIZE        = 10000.0; // 4 decimal places
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the quantized key for the specified GeoPoint (never 0)
+    *** @param gp  The GeoPoint
+    *** @return The quantized key
+    **/
+    public static long getGeoPointKey(GeoPoint gp)
+    {
+        long lat = Math.round((gp.getLatitude()  +  90.0) * QUANTIZE) + 1L; // [1 .. 1800001]
+        long lon = Math.round((gp.getLongitude() + 180.0) * QUANTIZE) + 1L; // [1 .. 3600001]
+        return (lat << 32) | lon;
+    }
+
+    /**
+    *** Returns the context hash for the specified provider name and locale
+    *** @param providerName  The ReverseGeocodeProvider name
+    *** @param localeStr     The locale
+    *** @return The context hash
+    **/
+    public static int getContextHash(String providerName, String localeStr)
+    {
+        return (StringTools.trim(providerName) + "|" + StringTools.trim(localeStr)).hashCode();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Opens (or creates) the specified cache file
+    *** @param file       The cache file
+    *** @param slotCount  The number of entry slots (used when the file is created)
+    *** @return The ReverseGeocodeDiskCache, or null if the file could not be opened
+    **/
+    public static ReverseGeocodeDiskCache open(File file, int slotCount)
+    {
+        try {
+            return new ReverseGeocodeDiskCache(file, slotCount);
+        } catch (IOException ioe) {
+            Print.logError("Unable to open ReverseGeocode cache file: " + file + " [" + ioe + "]");
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private File                cacheFile       = null;
+    private RandomAccessFile    raf             = null;
+    private MappedByteBuffer    mbb             = null;
+    private int                 slotCount       = 0;
+
+    private long                hitCount        = 0L;
+    private long                missCount       = 0L;
+
+    /**
+    *** Constructor
+    **/
+    private ReverseGeocodeDiskCache(File file, int slots)
+        throws IOException
+    {
+        this.cacheFile = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        boolean init = true;
+        if (this.raf.length() >= SLOT_SIZE) {
+            // existing file: validate header and use the existing slot count
+            byte magic[] = new byte[MAGIC.length];
+            this.raf.seek(0L);
+            this.raf.readFully(magic);
+            int existingSlots = this.raf.readInt();
+            if (java.util.Arrays.equals(magic,MAGIC) && (existingSlots > 0) &&
+                (this.raf.length() == ((long)(existingSlots + 1) * SLOT_SIZE))) {
+                slots = existingSlots;
+                init  = false;
+            } else {
+                Print.logWarn("Invalid ReverseGeocode cache file, reinitializing: " + file);
+            }
+        }
+        this.slotCount = Math.max(1, Math.min(slots, MAX_SLOTS));
+        long size = (long)(this.slotCount + 1) * SLOT_SIZE;
+        if (init) {
+            this.raf.setLength(0L);
+            this.raf.setLength(size); // zero filled
+        }
+        this.mbb = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, size);
+        if (init) {
+            this.mbb.position(0);
+            this.mbb.put(MAGIC);
+            this.mbb.putInt(this.slotCount);
+        }
+        Print.logInfo("ReverseGeocode cache file: " + file + " [slots=" + this.slotCount + "]");
+    }
+
+    // ------------------------------------------------------------------------
+
+    private int _slotIndex(long key, int ctx, int probe)
+    {
+        long h = (key * 0x9E3779B97F4A7C15L) ^ ctx;
+        h ^= (h >>> 29);
+        int ndx = (int)((h & 0x7FFFFFFFFFFFFFFFL) % this.slotCount);
+        return ((ndx + probe) % this.slotCount) + 1; // slot 0 is the header
+    }
+
+    /**
+    *** Gets the cached ReverseGeocode for the specified GeoPoint
+    *** @param gp         The GeoPoint
+    *** @param ctx        The context hash (see "getContextHash")
+    *** @param maxAgeSec  The maximum age of the cached entry (<=0 for no limit)
+    *** @return The cached ReverseGeocode, or null if not found
+    **/
+    public synchronized ReverseGeocode get(GeoPoint gp, int ctx, long maxAgeSec)
+    {
+        if ((this.mbb == null) || (gp == null) || !gp.isValid()) {
+            return null;
+        }
+        long key = getGeoPointKey(gp);
+        for (int p = 0; p < PROBE_COUNT; p++) {
+            int ofs = this._slotIndex(key, ctx, p) * SLOT_SIZE;
+            long slotKey = this.mbb.getLong(ofs);
+            if (slotKey == 0L) {
+                break; // empty slot, not found
+            } else
+            if ((slotKey == key) && (this.mbb.getInt(ofs + 8) == ctx)) {
+                long timeSec = (long)this.mbb.getInt(ofs + 12) & 0xFFFFFFFFL;
+                if ((maxAgeSec > 0L) && ((DateTime.getCurrentTimeSec() - timeSec) > maxAgeSec)) {
+                    break; // expired
+                }
+                int len = this.mbb.getShort(ofs + 16);
+                if ((len <= 0) || (len > MAX_PAYLOAD)) {
+                    break; // invalid
+                }
+                byte payload[] = new byte[len];
+                this.mbb.position(ofs + SLOT_HEADER);
+                this.mbb.get(payload);
+                ReverseGeocode rg = _decode(payload);
+                if (rg != null) {
+                    this.hitCount++;
+                    return rg;
+                }
+                break;
+            }
+        }
+        this.missCount++;
+        return null;
+    }
+
+    /**
+    *** Adds the specified ReverseGeocode to the cache
+    *** @param gp   The GeoPoint
+    *** @param ctx  The context hash (see "getContextHash")
+    *** @param rg   The ReverseGeocode
+    *** @return True if the entry was cached
+    **/
+    public synchronized boolean put(GeoPoint gp, int ctx, ReverseGeocode rg)
+    {
+        if ((this.mbb == null) || (gp == null) || !gp.isValid() || (rg == null)) {
+            return false;
+        }
+        byte payload[] = _encode(rg);
+        if ((payload == null) || (payload.length > MAX_PAYLOAD)) {
+            return false; // too large to cache
+        }
+        long key = getGeoPointKey(gp);
+
+        /* find matching/empty slot, otherwise the oldest slot in the probe range */
+        int  slotOfs = -1;
+        long oldest  = Long.MAX_VALUE;
+        for (int p = 0; p < PROBE_COUNT; p++) {
+            int ofs = this._slotIndex(key, ctx, p) * SLOT_SIZE;
+            long slotKey = this.mbb.getLong(ofs);
+            if ((slotKey == 0L) || ((slotKey == key) && (this.mbb.getInt(ofs + 8) == ctx))) {
+                slotOfs = ofs;
+                break;
+            }
+            long timeSec = (long)this.mbb.getInt(ofs + 12) & 0xFFFFFFFFL;
+            if (timeSec < oldest) {
+                oldest  = timeSec;
+                slotOfs = ofs;
+            }
+        }
+
+        /* write slot */
+        this.mbb.putLong(slotOfs, 0L); // invalidate while writing
+        this.mbb.putInt(slotOfs + 8, ctx);
+        this.mbb.putInt(slotOfs + 12, (int)DateTime.getCurrentTimeSec());
+        this.mbb.putShort(slotOfs + 16, (short)payload.length);
+        this.mbb.position(slotOfs + SLOT_HEADER);
+        this.mbb.put(payload);
+        this.mbb.putLong(slotOfs, key);
+        return true;
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Writes any changes to the cache file, and closes the file
+    **/
+    public synchronized void close()
+    {
+        if (this.mbb != null) {
+            this.mbb.force();
+            this.mbb = null;
+        }
+        if (this.raf != null) {
+            try { this.raf.close(); } catch (IOException ioe) {}
+            this.raf = null;
+        }
+    }
+
+    /**
+    *** Writes any changes to the cache file
+    **/
+    public synchronized void flush()
+    {
+        if (this.mbb != null) {
+            this.mbb.force();
+        }
+    }
+
+    /**
+    *** Gets the number of cache hits
+    **/
+    public synchronized long getHitCount()
+    {
+        return this.hitCount;
+    }
+
+    /**
+    *** Gets the number of cache misses
+    **/
+    public synchronized long getMissCount()
+    {
+        return this.missCount;
+    }
+
+    /**
+    *** Returns a String representation of this instance
+    **/
+    public String toString()
+    {
+        return this.cacheFile + " [slots=" + this.slotCount + ", hits=" + this.getHitCount() + ", misses=" + this.getMissCount() + "]";
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static final int FLD_COUNT = 9;
+
+    private static byte[] _encode(ReverseGeocode rg)
+    {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+            DataOutputStream dos = new DataOutputStream(bos);
+            dos.writeByte(FLD_COUNT);
+            dos.writeUTF(rg.hasFullAddress()  ? rg.getFullAddress()   : "");
+            dos.writeUTF(rg.hasStreetAddress()? rg.getStreetAddress() : "");
+            dos.writeUTF(rg.hasCity()         ? rg.getCity()          : "");
+            dos.writeUTF(rg.hasStateProvince()? rg.getStateProvince() : "");
+            dos.writeUTF(rg.hasPostalCode()   ? rg.getPostalCode()    : "");
+            dos.writeUTF(rg.hasCountryCode()  ? rg.getCountryCode()   : "");
+            dos.writeUTF(rg.hasSubdivision()  ? rg.getSubdivision()   : "");
+            dos.writeDouble(rg.hasSpeedLimitKPH()? rg.getSpeedLimitKPH() : -1.0);
+            dos.writeByte(rg.hasIsTollRoad()? (rg.getIsTollRoad()? 1 : 0) : -1);
+            dos.flush();
+            return bos.toByteArray();
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    private static ReverseGeocode _decode(byte payload[])
+    {
+        try {
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(payload));
+            if (dis.readByte() != FLD_COUNT) {
+                return null;
+            }
+            ReverseGeocode rg = new ReverseGeocode();
+            String s;
+            if (!(s = dis.readUTF()).equals("")) { rg.setFullAddress(s);   }
+            if (!(s = dis.readUTF()).equals("")) { rg.setStreetAddress(s); }
+            if (!(s = dis.readUTF()).equals("")) { rg.setCity(s);          }
+            if (!(s = dis.readUTF()).equals("")) { rg.setStateProvince(s); }
+            if (!(s = dis.readUTF()).equals("")) { rg.setPostalCode(s);    }
+            if (!(s = dis.readUTF()).equals("")) { rg.setCountryCode(s);   }
+            if (!(s = dis.readUTF()).equals("")) { rg.setSubdivision(s);   }
+            double speed = dis.readDouble();
+            if (speed >= 0.0) { rg.setSpeedLimitKPH(speed); }
+            int toll = dis.readByte();
+            if (toll >= 0) { rg.setIsTollRoad(toll == 1); }
+            return rg;
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+}
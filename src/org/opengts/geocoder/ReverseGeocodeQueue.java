@@ -0,0 +1,424 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Asynchronous reverse-geocode pipeline
+// ----------------------------------------------------------------------------
+package org.opengts.geocoder;
+
+import java.io.*;
+import java.util.*;
+
+import org.opengts.util.*;
+
+/**
+*** <code>ReverseGeocodeQueue</code> performs 'slow' reverse-geocode requests
+*** asynchronously.<br>
+*** <ul>
+*** <li>The number of pending requests is bounded ("ReverseGeocodeQueue.maxPending"), and
+***     callers are blocked for up to "ReverseGeocodeQueue.maxWaitMS" when the queue is full.</li>
+*** <li>Each ReverseGeocodeProvider has its own worker threads ("ReverseGeocodeQueue.threads")
+***     and request rate limit ("ReverseGeocodeQueue.rateLimitPerSec"), either of which may be
+***     overridden per provider by appending ".&lt;providerName&gt;" to the property key.</li>
+*** <li>Requests for the same provider/locale and GeoPoint (rounded to 4 decimal places) are
+***     coalesced into a single provider request.</li>
+*** <li>Results are cached in memory, and optionally in a persistent memory-mapped file
+***     ("ReverseGeocodeQueue.cacheFile") which survives restarts.</li>
+*** </ul>
+**/
+
+public class ReverseGeocodeQueue
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    DFT_MAX_PENDING         = 5000;
+    private static final long   DFT_MAX_WAIT_MS         = 1000L;
+    private static final int    DFT_THREADS             = 2;
+    private static final int    DFT_CACHE_SLOTS         = 262144;
+    private static final long   DFT_CACHE_MAX_AGE_SEC   = DateTime.DaySeconds(30);
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the reverse-geocode pipeline is enabled
+    *** @return True if the reverse-geocode pipeline is enabled
+    **/
+    public static boolean isEnabled()
+    {
+        return RTConfig.getBoolean(RTKey.RGQUEUE_ENABLE,false);
+    }
+
+    private static ReverseGeocodeQueue rgQueue = null;
+
+    /**
+    *** Gets the global ReverseGeocodeQueue instance
+    *** @return The ReverseGeocodeQueue
+    **/
+    public static ReverseGeocodeQueue getInstance()
+    {
+        synchronized (ReverseGeocodeQueue.class) {
+            if (rgQueue == null) {
+                rgQueue = new ReverseGeocodeQueue();
+            }
+            return rgQueue;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Listener notified when a queued reverse-geocode request has completed
+    **/
+    public interface Listener
+    {
+        /**
+        *** Called when the reverse-geocode has completed
+        *** @param gp  The requested GeoPoint
+        *** @param rg  The ReverseGeocode, or null if the address could not be determined
+        **/
+        public void reverseGeocodeCompleted(GeoPoint gp, ReverseGeocode rg);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Queued reverse-geocode request (shared by all coalesced callers)
+    **/
+    private static class Request
+    {
+        private String                      key         = null;
+        private ReverseGeocodeProvider      rgp         = null;
+        private GeoPoint                    geoPoint    = null;
+        private String                      localeStr   = null;
+        private int                         context     = 0;
+        private RTProperties                rtProps     = null;
+        private java.util.List<Listener>    listeners   = new Vector<Listener>();
+        public Request(String key, ReverseGeocodeProvider rgp, GeoPoint gp, String localeStr, int ctx, RTProperties rtProps) {
+            this.key       = key;
+            this.rgp       = rgp;
+            this.geoPoint  = gp;
+            this.localeStr = localeStr;
+            this.context   = ctx;
+            this.rtProps   = rtProps;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Per-provider queue, worker threads, and rate limit
+    **/
+    private class ProviderStage
+    {
+        private String                      name        = null;
+        private LinkedList<Request>         queue       = new LinkedList<Request>();
+        private long                        minDelayMS  = 0L;
+        private long                        nextTimeMS  = 0L;
+        public ProviderStage(String name) {
+            this.name = name;
+            int threads = RTConfig.getInt(RTKey.RGQUEUE_THREADS + "." + name,
+                RTConfig.getInt(RTKey.RGQUEUE_THREADS, DFT_THREADS));
+            double rate = RTConfig.getDouble(RTKey.RGQUEUE_RATE_LIMIT + "." + name,
+                RTConfig.getDouble(RTKey.RGQUEUE_RATE_LIMIT, 0.0));
+            this.minDelayMS = (rate > 0.0)? Math.round(1000.0 / rate) : 0L;
+            for (int i = 0; i < Math.max(threads,1); i++) {
+                Thread t = new Thread("ReverseGeocode_" + name + "_" + (i + 1)) {
+                    public void run() {
+                        ProviderStage.this._runWorker();
+                    }
+                };
+                t.setDaemon(true);
+                t.start();
+            }
+            Print.logInfo("ReverseGeocodeQueue provider '%s' [threads=%d, rate=%.2f/sec]", name, threads, rate);
+        }
+        public void add(Request req) {
+            synchronized (this.queue) {
+                this.queue.add(req);
+                this.queue.notify();
+            }
+        }
+        private Request _next() {
+            Request req   = null;
+            long    nowMS = 0L;
+            long    runMS = 0L;
+            synchronized (this.queue) {
+                while (this.queue.isEmpty()) {
+                    try { this.queue.wait(); } catch (InterruptedException ie) {}
+                }
+                req = this.queue.removeFirst();
+                /* rate limit: reserve the next time slot */
+                if (this.minDelayMS > 0L) {
+                    nowMS = DateTime.getCurrentTimeMillis();
+                    runMS = Math.max(nowMS, this.nextTimeMS);
+                    this.nextTimeMS = runMS + this.minDelayMS;
+                }
+            }
+            /* wait for the reserved slot (without holding the queue lock, so "add" never blocks) */
+            long waitMS = runMS - nowMS;
+            while (waitMS > 0L) {
+                try { Thread.sleep(waitMS); } catch (InterruptedException ie) {}
+                waitMS = runMS - DateTime.getCurrentTimeMillis();
+            }
+            return req;
+        }
+        private void _runWorker() {
+            while (true) {
+                Request req = this._next();
+                ReverseGeocode rg = null;
+                try {
+                    if (req.rtProps != null) { RTConfig.pushTemporaryProperties(req.rtProps); }
+                    rg = req.rgp.getReverseGeocode(req.geoPoint, req.localeStr);
+                } catch (Throwable th) {
+                    Print.logError("ReverseGeocodeProvider '" + this.name + "' error: " + th);
+                } finally {
+                    if (req.rtProps != null) { RTConfig.popTemporaryProperties(req.rtProps); }
+                }
+                ReverseGeocodeQueue.this._complete(req, rg);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private Map<String,ProviderStage>   stageMap        = new HashMap<String,ProviderStage>();
+    private Map<String,Request>         pendingMap      = new HashMap<String,Request>();
+    private Object                      pendingLock     = new Object();
+    private int                         maxPending      = DFT_MAX_PENDING;
+    private long                        maxWaitMS       = DFT_MAX_WAIT_MS;
+
+    private Map<Integer,ReverseGeocodeCache> memCacheMap = new HashMap<Integer,ReverseGeocodeCache>();
+    private ReverseGeocodeDiskCache     diskCache       = null;
+    private long                        diskMaxAgeSec   = DFT_CACHE_MAX_AGE_SEC;
+
+    private long                        submitCount     = 0L;
+    private long                        coalesceCount   = 0L;
+    private long                        cacheHitCount   = 0L;
+    private long                        rejectCount     = 0L;
+
+    /**
+    *** Constructor
+    **/
+    private ReverseGeocodeQueue()
+    {
+        this.maxPending = Math.max(RTConfig.getInt(RTKey.RGQUEUE_MAX_PENDING, DFT_MAX_PENDING), 1);
+        this.maxWaitMS  = RTConfig.getLong(RTKey.RGQUEUE_MAX_WAIT_MS, DFT_MAX_WAIT_MS);
+        String cacheFile = RTConfig.getString(RTKey.RGQUEUE_CACHE_FILE, "");
+        if (!StringTools.isBlank(cacheFile)) {
+            int slots = RTConfig.getInt(RTKey.RGQUEUE_CACHE_SLOTS, DFT_CACHE_SLOTS);
+            this.diskMaxAgeSec = RTConfig.getLong(RTKey.RGQUEUE_CACHE_MAX_AGE_SEC, DFT_CACHE_MAX_AGE_SEC);
+            this.diskCache = ReverseGeocodeDiskCache.open(new File(cacheFile), slots);
+            if (this.diskCache != null) {
+                final ReverseGeocodeDiskCache dc = this.diskCache;
+                Runtime.getRuntime().addShutdownHook(new Thread("ReverseGeocodeQueue_shutdown") {
+                    public void run() {
+                        dc.close();
+                    }
+                });
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Submits a reverse-geocode request.  If the address is cached, the listener is
+    *** notified before this method returns.  Otherwise the request is queued (or coalesced
+    *** with an identical pending request) and the listener is notified from a worker thread.
+    *** @param rgp        The ReverseGeocodeProvider
+    *** @param gp         The GeoPoint to reverse-geocode
+    *** @param localeStr  The locale
+    *** @param rtProps    Properties pushed onto the RTConfig stack while the provider is
+    ***                   called (ie. PrivateLabel properties), may be null
+    *** @param listener   The listener notified on completion
+    *** @return True if the request was accepted, false if the queue remained full for
+    ***         the maximum wait time (the caller should handle the request otherwise)
+    **/
+    public boolean submit(ReverseGeocodeProvider rgp, GeoPoint gp, String localeStr, RTProperties rtProps, Listener listener)
+    {
+        if ((rgp == null) || (gp == null) || !gp.isValid() || (listener == null)) {
+            return false;
+        }
+        String name = rgp.getName();
+        int    ctx  = ReverseGeocodeDiskCache.getContextHash(name, localeStr);
+        String key  = name + "|" + StringTools.trim(localeStr) + "|" + ReverseGeocodeDiskCache.getGeoPointKey(gp);
+
+        /* cached? */
+        ReverseGeocode rg = this._getCached(gp, ctx);
+        if (rg != null) {
+            synchronized (this.pendingLock) {
+                this.submitCount++;
+                this.cacheHitCount++;
+            }
+            listener.reverseGeocodeCompleted(gp, rg);
+            return true;
+        }
+
+        /* queue/coalesce */
+        Request newReq = null;
+        synchronized (this.pendingLock) {
+            this.submitCount++;
+            Request req = this.pendingMap.get(key);
+            if (req != null) {
+                // identical request already pending
+                req.listeners.add(listener);
+                this.coalesceCount++;
+                return true;
+            }
+            long endMS = DateTime.getCurrentTimeMillis() + this.maxWaitMS;
+            while (this.pendingMap.size() >= this.maxPending) {
+                // backpressure: wait for pending requests to complete
+                long waitMS = endMS - DateTime.getCurrentTimeMillis();
+                if (waitMS <= 0L) {
+                    this.rejectCount++;
+                    return false;
+                }
+                try { this.pendingLock.wait(waitMS); } catch (InterruptedException ie) { break; }
+                req = this.pendingMap.get(key);
+                if (req != null) {
+                    req.listeners.add(listener);
+                    this.coalesceCount++;
+                    return true;
+                }
+            }
+            newReq = new Request(key, rgp, gp, localeStr, ctx, rtProps);
+            newReq.listeners.add(listener);
+            this.pendingMap.put(key, newReq);
+        }
+        this._getProviderStage(name).add(newReq);
+        return true;
+
+    }
+
+    /**
+    *** Gets the ProviderStage for the named provider (created if necessary)
+    **/
+    private ProviderStage _getProviderStage(String name)
+    {
+        synchronized (this.stageMap) {
+            ProviderStage ps = this.stageMap.get(name);
+            if (ps == null) {
+                ps = new ProviderStage(name);
+                this.stageMap.put(name, ps);
+            }
+            return ps;
+        }
+    }
+
+    /**
+    *** Gets the in-memory cache for the specified provider/locale context
+    **/
+    private ReverseGeocodeCache _getMemoryCache(int ctx)
+    {
+        synchronized (this.memCacheMap) {
+            Integer key = new Integer(ctx);
+            ReverseGeocodeCache rgc = this.memCacheMap.get(key);
+            if (rgc == null) {
+                rgc = new ReverseGeocodeCache();
+                this.memCacheMap.put(key, rgc);
+            }
+            return rgc;
+        }
+    }
+
+    /**
+    *** Gets the cached ReverseGeocode (memory, then disk)
+    **/
+    private ReverseGeocode _getCached(GeoPoint gp, int ctx)
+    {
+        ReverseGeocodeCache rgc = this._getMemoryCache(ctx);
+        ReverseGeocode rg = rgc.getReverseGeocode(gp);
+        if ((rg == null) && (this.diskCache != null)) {
+            rg = this.diskCache.get(gp, ctx, this.diskMaxAgeSec);
+            if (rg != null) {
+                rgc.addReverseGeocode(gp, rg);
+            }
+        }
+        return rg;
+    }
+
+    /**
+    *** Completes the specified request: caches the result and notifies all listeners
+    **/
+    private void _complete(Request req, ReverseGeocode rg)
+    {
+
+        /* cache */
+        if (rg != null) {
+            this._getMemoryCache(req.context).addReverseGeocode(req.geoPoint, rg);
+            if (this.diskCache != null) {
+                this.diskCache.put(req.geoPoint, req.context, rg);
+            }
+        }
+
+        /* remove from pending (no additional listeners after this point) */
+        java.util.List<Listener> listeners = null;
+        synchronized (this.pendingLock) {
+            this.pendingMap.remove(req.key);
+            listeners = new Vector<Listener>(req.listeners);
+            this.pendingLock.notifyAll(); // release any blocked 'submit' callers
+        }
+
+        /* notify */
+        for (Listener listener : listeners) {
+            try {
+                listener.reverseGeocodeCompleted(req.geoPoint, rg);
+            } catch (Throwable th) {
+                Print.logException("ReverseGeocodeQueue listener error", th);
+            }
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of pending (queued or in-progress) requests
+    *** @return The number of pending requests
+    **/
+    public int getPendingCount()
+    {
+        synchronized (this.pendingLock) {
+            return this.pendingMap.size();
+        }
+    }
+
+    /**
+    *** Returns a String representation of the queue statistics
+    *** @return The queue statistics
+    **/
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        synchronized (this.pendingLock) {
+            sb.append("ReverseGeocodeQueue:");
+            sb.append(" pending=").append(this.pendingMap.size());
+            sb.append(" submitted=").append(this.submitCount);
+            sb.append(" coalesced=").append(this.coalesceCount);
+            sb.append(" cached=").append(this.cacheHitCount);
+            sb.append(" rejected=").append(this.rejectCount);
+        }
+        if (this.diskCache != null) {
+            sb.append(" diskCache=").append(this.diskCache);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,104 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Local reverse-geocode stub, used in place of a remote ReverseGeocodeProvider
+//  (ie. Nominatim, GeoNames, GisGraphy) when testing.  Returns a synthesized
+//  address for the specified GeoPoint, after an optional simulated delay.
+//  Example "private.xml" entry:
+//    <ReverseGeocodeProvider name="localstub" active="true"
+//        class="org.opengts.geocoder.localstub.LocalStub">
+//        <Property key="delayMS">250</Property>
+//    </ReverseGeocodeProvider>
+// ----------------------------------------------------------------------------
+package org.opengts.geocoder.localstub;
+
+import org.opengts.util.*;
+import org.opengts.geocoder.*;
+
+public class LocalStub
+    extends ReverseGeocodeProviderAdapter
+    implements ReverseGeocodeProvider
+{
+
+    // ------------------------------------------------------------------------
+
+    public static final String PROP_delayMS         = "delayMS";        // Long: simulated latency
+    public static final String PROP_countryCode     = "countryCode";    // String: returned country code
+
+    // ------------------------------------------------------------------------
+
+    private long requestCount = 0L;
+
+    /**
+    *** Constructor
+    *** @param name    The name assigned to this ReverseGeocodeProvider
+    *** @param key     The optional authorization key (not used)
+    *** @param rtProps The properties associated with this ReverseGeocodeProvider
+    **/
+    public LocalStub(String name, String key, RTProperties rtProps)
+    {
+        super(name, key, rtProps);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the number of reverse-geocode requests handled by this instance
+    *** @return The number of requests
+    **/
+    public synchronized long getRequestCount()
+    {
+        return this.requestCount;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns a ReverseGeocode instance for the specified GeoPoint
+    *** @param gp  The GeoPoint
+    *** @return The ReverseGeocode instance
+    **/
+    public ReverseGeocode getReverseGeocode(GeoPoint gp, String localeStr)
+    {
+        if ((gp == null) || !gp.isValid()) {
+            return null;
+        }
+        synchronized (this) {
+            this.requestCount++;
+        }
+
+        /* simulated latency */
+        long delayMS = this.getProperties().getLong(PROP_delayMS, 0L);
+        if (delayMS > 0L) {
+            try { Thread.sleep(delayMS); } catch (InterruptedException ie) {}
+        }
+
+        /* synthesized address */
+        String lat = GeoPoint.formatLatitude( gp.getLatitude() , "4", null);
+        String lon = GeoPoint.formatLongitude(gp.getLongitude(), "4", null);
+        ReverseGeocode rg = new ReverseGeocode();
+        rg.setFullAddress("Stub " + lat + "," + lon);
+        rg.setStreetAddress(lat + "," + lon);
+        rg.setCity("Stub");
+        rg.setCountryCode(this.getProperties().getString(PROP_countryCode, "US"));
+        return rg;
+
+    }
+
+}
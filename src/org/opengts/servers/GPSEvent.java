@@ -104,12 +104,16 @@ public class GPSEvent
             return this.loadDevice(devID);
         } else {
             try {
-                Account account = Account.getAccount(acctID);
+                Device device = DeviceStateCache.getDevice(acctID, devID);
+                if (device != null) {
+                    return device;
+                }
+                Account account = AccountCache.loadAccount(acctID); // shared, if enabled
                 if (account == null) {
                     Print.logError("Account-ID not found: " + acctID);
                     return null;
                 } else {
-                    return Transport.loadDeviceByTransportID(account, devID);
+                    return DeviceStateCache.putDevice(Transport.loadDeviceByTransportID(account, devID), null);
                 }
             } catch (DBException dbe) {
                 Print.logError("Error getting Device: " + acctID + "/" + devID + " [" + dbe + "]");
@@ -258,7 +262,10 @@ public class GPSEvent
         Print.logInfo("Event     : [0x" + 
             StringTools.toHexString(statusCode,16) + "] " + 
             StatusCodes.GetDescription(statusCode,null));
-        this.device.insertEventData(evdb); // FLD_lastValidLatitude,FLD_lastValidLongitude,FLD_lastGPSTimestamp,FLD_lastOdometerKM
+        if (!this.device.insertEventData(evdb)) { // FLD_lastValidLatitude,FLD_lastValidLongitude,FLD_lastGPSTimestamp,FLD_lastOdometerKM
+            // event ignored, or insert failed (ie. batched insert not committed)
+            return false;
+        }
         this.eventTotalCount++;
         return true;
 
@@ -186,7 +186,10 @@ public class Main
 
         /* start server */
         if (RTConfig.getBoolean(ARG_START,false)) {
-            
+
+            /* load unique-id directory (if enabled) */
+            DeviceDirectory.startup();
+
             /* start port listeners */
             try {
                 int tcpPorts[]  = getTcpPorts();
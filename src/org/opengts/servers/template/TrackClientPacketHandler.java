@@ -227,6 +227,19 @@ public class TrackClientPacketHandler
     private String          ipAddress                   = null;
     private int             clientPort                  = 0;
 
+    /* session Device */
+    // The last Device located during this session (pending Device changes are 
+    // written at the end of the session when the DeviceStateCache is enabled)
+    private Device          sessionDevice               = null;
+
+    /* session packet parser */
+    // Reused for every packet received during this session, so that parsing the packet
+    // fields does not create any intermediate Strings.  The last modem-id String is
+    // retained so that it is only created once per session.
+    private ByteFieldParser fieldParser                 = new ByteFieldParser();
+    private String          lastModemID                 = null;
+    private double          gpsPair[]                   = new double[2];
+
     /* packet handler constructor */
     public TrackClientPacketHandler() 
     {
@@ -254,6 +267,13 @@ public class TrackClientPacketHandler
     public void sessionTerminated(Throwable err, long readCount, long writeCount)
     {
         super.sessionTerminated(err, readCount, writeCount);
+
+        /* write pending Device changes */
+        if (this.sessionDevice != null) {
+            DeviceStateCache.flushDevice(this.sessionDevice);
+            this.sessionDevice = null;
+        }
+
     }
 
     // ------------------------------------------------------------------------
@@ -364,15 +384,17 @@ public class TrackClientPacketHandler
         if ((pktBytes != null) && (pktBytes.length > 0)) {
             
             /* (debug message) display received data packet */
-            Print.logInfo("Recv[HEX]: " + StringTools.toHexString(pktBytes));
-            String s = StringTools.toStringValue(pktBytes).trim(); // remove leading/trailing spaces
-            Print.logInfo("Recv[TXT]: " + s); // debug message
+            if (Print.isDebugLoggingLevel()) {
+                Print.logDebug("Recv[HEX]: " + StringTools.toHexString(pktBytes));
+                Print.logDebug("Recv[TXT]: " + StringTools.toStringValue(pktBytes).trim());
+            }
             
             /* parse/insert event */
+            // The packet fields are parsed directly from 'pktBytes' (see ByteFieldParser)
             byte rtn[] = null;
             switch (DATA_FORMAT_OPTION) {
-                case 4 : rtn = this.parseInsertRecord_ASCII_4(s); break;
-                case 9 : rtn = this.parseInsertRecord_RTProps(s); break;
+                case 4 : rtn = this.parseInsertRecord_ASCII_4(pktBytes); break;
+                case 9 : rtn = this.parseInsertRecord_RTProps(pktBytes); break;
                 default: Print.logError("Unspecified data format"); break;
             }
             // Note:
@@ -532,66 +554,61 @@ public class TrackClientPacketHandler
    	return point;
    }
    
-       /* parse the specified date into unix 'epoch' time */      
-    private long _parseDate(long ddmmyy, long hhmmss)  // ddmmyy
+    /* parse the specified date into unix 'epoch' time */
+    private static final long EPOCH_DAY_NUMBER = DateTime.getDayNumberFromDate(1970, 1, 1);
+    private long _parseDate(long ddmmyy, long daySec)  // ddmmyy, seconds since midnight
     {
-        if ((ddmmyy <= 0L) || (hhmmss < 0L)) {
+        if ((ddmmyy <= 0L) || (daySec < 0L)) {
             return 0L;
         } else {
-            int YY = (int) (((ddmmyy /     1L) % 100L) + 2000); // 2011 year
-    			int MM = (int)((ddmmyy /   100L) % 100L); // 04 month
-    			int DD = (int)((ddmmyy / 10000L)    ); // 18 day
-    			int hh = (int)((hhmmss   / 10000L)       ); // 01 hour
-    			int mm = (int)((hhmmss   /   100L) % 100L); // 48 minute
-    			int ss = (int)((hhmmss   /     1L) % 100L); // 04 second
-            DateTime dt = new DateTime(gmtTimezone,YY,MM,DD,hh,mm,ss);
-            return dt.getTimeSec();
+            int YY = (int)(((ddmmyy /     1L) % 100L) + 2000); // 2011 year
+            int MM = (int)((ddmmyy  /   100L) % 100L); // 04 month
+            int DD = (int)((ddmmyy  / 10000L)       ); // 18 day
+            long dayNum = DateTime.getDayNumberFromDate(YY, MM, DD); // GMT
+            return ((dayNum - EPOCH_DAY_NUMBER) * DateTime.DaySeconds(1)) + daySec;
         }
     }
    
-	private byte[] parseInsertRecord_ASCII_4(String s) { 
+	private byte[] parseInsertRecord_ASCII_4(byte pkt[]) { 
 
 
 		/* pre-validate */ 
-		if (s == null) { 
-  			Print.logError("String is null"); 
+		if (pkt == null) { 
+  			Print.logError("Packet is null"); 
   			return null; 
   		} 
 
-		/* separate key|value from rest of packet */ 
-		String kv = null; 
-		int kvPos = s.indexOf(';'); 
-
-		if (kvPos >= 0) { 
-  			kv = s.substring(kvPos+1); 
-  			s = s.substring(0,kvPos); 
+		/* separate key|value from rest of packet (ignored) */ 
+		int pktLen = ByteFieldParser.indexOf(pkt, 0, pkt.length, ';'); 
+		if (pktLen < 0) { 
+  			pktLen = pkt.length; 
  		} 
 
 		/* parse to fields */ 
-		String fld[] = StringTools.parseString(s, ','); 
-
-		if ((fld == null) || (fld.length < 10)) { 
+		// $GPRMC,<modemID>,hhmmss.sss,A,DDMM.mmmm,N,DDDMM.mmmm,W,speed,heading,ddmmyy
+		ByteFieldParser fld = this.fieldParser; 
+		if (fld.parse(pkt, 0, pktLen, ',') < 11) { 
   			Print.logWarn("Invalid number of fields"); 
   			return null; 
  		} 
 
 		/* parse individual fields */ 
 		int statusCode = StatusCodes.STATUS_LOCATION; 
-		String modemID = fld[1].toLowerCase(); 
-		double temps = Double.parseDouble(fld[2]);
-		long hhmmss = (long) temps;
-		long ddmmyy = Long.parseLong(fld[10]);
-		boolean validGPS = fld[3].equals("A");
-		double speedKPH = StringTools.parseDouble(fld[8],0.0);
-		long fixtime = this._parseDate(ddmmyy, hhmmss);   
-		double latitude = getposition(fld[4], fld[5]);
-		double longitude = getposition(fld[6], fld[7]);
+		String modemID = fld.getString(1, true, this.lastModemID); 
+		long daySec = fld.getHHMMSS(2);
+		long ddmmyy = fld.getLong(10, 0L);
+		boolean validGPS = fld.equals(3, "A", false);
+		double speedKPH = fld.getDouble(8, 0.0);
+		long fixtime = this._parseDate(ddmmyy, daySec);   
+		double latitude = fld.getNmeaCoordinate(4, 5);
+		double longitude = fld.getNmeaCoordinate(6, 7);
    
 		/* no modemID? */ 
 		if (StringTools.isBlank(modemID)) { 
   			Print.logWarn("ModemID not specified!"); 
   			return null; 
   		} 
+		this.lastModemID = modemID; 
   
   		/* GPS Event */ 
   		GPSEvent gpsEvent = new GPSEvent(Main.getServerConfig(), this.ipAddress, this.clientPort, modemID); 
@@ -600,6 +617,8 @@ public class TrackClientPacketHandler
   			// errors already displayed 
   			return null; 
   		} 
+  		this.sessionDevice = device;
+  		this.setSessionDevice(device.getUniqueID(), device.getAccountID(), device.getDeviceID());
   		gpsEvent.setTimestamp(fixtime); 
   		gpsEvent.setStatusCode(statusCode); 
   		gpsEvent.setLatitude(latitude); 
@@ -645,7 +664,7 @@ public class TrackClientPacketHandler
     private static String RTP_NAK[]         = new String[] { "nak"  };
 
     /* parse and insert data record */
-    private byte[] parseInsertRecord_RTProps(String s)
+    private byte[] parseInsertRecord_RTProps(byte pkt[])
     {
         // This is an example showing how another parsing server might transfer data to this
         // server, using the following simple (and extensible) format:
@@ -665,22 +684,21 @@ public class TrackClientPacketHandler
         //   gpio  = Input mask
         //   ack   = Acknowledgement to return to the device on successful parsing
         //   nak   = Negative-acknowledgement to return to the device on error
-        Print.logInfo("Parsing: " + s);
 
         /* pre-validate */
-        if (StringTools.isBlank(s)) {
+        ByteFieldParser rtp = this.fieldParser;
+        if ((pkt == null) || (rtp.parse(pkt, 0, pkt.length, ' ') <= 0)) {
             Print.logError("Packet string is blank/null");
             return null;
         }
 
         /* parse */
-        RTProperties rtp = new RTProperties(s);
+        // (Strings are only created for the values which are present)
         String   accountID  = rtp.getString(RTP_ACCOUNT,   null);
         String   deviceID   = rtp.getString(RTP_DEVICE,    null);
-        String   mobileID   = rtp.getString(RTP_MODEMID,   null);
+        String   mobileID   = rtp.getString(RTP_MODEMID,   false, this.lastModemID);
         long     fixtime    = rtp.getLong(  RTP_TIMESTAMP, 0L);
         int      statusCode = rtp.getInt(   RTP_STATUSCODE,StatusCodes.STATUS_LOCATION);
-        String   gpsStr     = rtp.getString(RTP_GEOPOINT,  null);
         long     gpsAge     = rtp.getLong(  RTP_GPSAGE,    0L);
         int      satCount   = rtp.getInt(   RTP_SATCOUNT,  0);
         double   speedKPH   = rtp.getDouble(RTP_SPEED,     0.0);
@@ -691,13 +709,28 @@ public class TrackClientPacketHandler
         String   dcsid      = rtp.getString(RTP_SERVERID,  null);
         String   ack        = rtp.getString(RTP_ACK,       null);
         String   nak        = rtp.getString(RTP_NAK,       null);
-        GeoPoint geoPoint   = new GeoPoint(gpsStr);
+        double   latitude   = 0.0;
+        double   longitude  = 0.0;
+        if (rtp.getDoublePair(RTP_GEOPOINT, this.gpsPair)) {
+            latitude  = this.gpsPair[0];
+            longitude = this.gpsPair[1];
+        } else
+        if (rtp.hasKey(RTP_GEOPOINT)) {
+            // other GeoPoint formats
+            GeoPoint gp = new GeoPoint(rtp.getString(RTP_GEOPOINT, null));
+            latitude  = gp.getLatitude();
+            longitude = gp.getLongitude();
+        }
+        if (Print.isDebugLoggingLevel()) {
+            Print.logDebug("Parsing: " + StringTools.toStringValue(pkt).trim());
+        }
 
         /* no mobileID? */
         if (StringTools.isBlank(mobileID)) {
             Print.logError("UniqueID/ModemID not specified!");
             return (nak != null)? (nak+"\n").getBytes() : null;
         }
+        this.lastModemID = mobileID;
         
         /* DCServer */
         String dcsName = !StringTools.isBlank(dcsid)? dcsid : Main.getServerName();
@@ -737,9 +770,12 @@ public class TrackClientPacketHandler
             // errors already displayed
             return (nak != null)? (nak+"\n").getBytes() : null;
         }
+        this.sessionDevice = device;
+        this.setSessionDevice(device.getUniqueID(), device.getAccountID(), device.getDeviceID());
         gpsEvent.setTimestamp(fixtime);
         gpsEvent.setStatusCode(statusCode);
-        gpsEvent.setGeoPoint(geoPoint);
+        gpsEvent.setLatitude(latitude);
+        gpsEvent.setLongitude(longitude);
         gpsEvent.setGpsAge(gpsAge);
         gpsEvent.setSatelliteCount(satCount);
         gpsEvent.setSpeedKPH(speedKPH);
@@ -192,6 +192,7 @@ public abstract class AbstractClientPacketHandler
         this.isTextPackets  = isText;
         this.clearSavedEventCount();
         this.printSessionStart();
+        this.updateSessionID();
     }
 
     /**
@@ -245,6 +246,34 @@ public abstract class AbstractClientPacketHandler
         return null;
     }
 
+    /**
+    *** Indexes the current session ID (see <code>getSessionID</code>) of a TCP session in
+    *** the <code>ClientSessionRegistry</code>, so that it can be found by
+    *** <code>ServerSocketThread.tcpWriteToSessionID</code>.  Called when the session
+    *** starts, and when the session identifies the device.  Subclasses which change the
+    *** session ID at any other time should also call this method.
+    **/
+    protected void updateSessionID()
+    {
+        ClientSessionRegistry.setSessionID(this.getSessionInfo(), this.getSessionID());
+    }
+
+    /**
+    *** Identifies the device communicating in this session.  TCP sessions are indexed
+    *** by device unique ID and account/device ID (and by the current session ID) in the
+    *** <code>ClientSessionRegistry</code>, so that commands can be sent to the device
+    *** while it is connected.
+    *** @param uniqueID   The device unique ID (may be null)
+    *** @param accountID  The account ID
+    *** @param deviceID   The device ID
+    **/
+    protected void setSessionDevice(String uniqueID, String accountID, String deviceID)
+    {
+        ServerSocketThread.SessionInfo si = this.getSessionInfo();
+        ClientSessionRegistry.setSessionDevice(si, uniqueID, accountID, deviceID);
+        ClientSessionRegistry.setSessionID(si, this.getSessionID());
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -0,0 +1,589 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  In-place tokenizer/parser for ASCII packet fields held in a byte array
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.lang.*;
+import java.util.*;
+
+/**
+*** <code>ByteFieldParser</code> tokenizes an ASCII packet held in a byte array into
+*** separator delimited fields, without copying the data, and parses numeric,
+*** NMEA-0183 coordinate, and time-of-day values directly from the field bytes.<br>
+*** Fields may also be treated as "key=value" pairs (ie. "mid=1234 ts=1254100914"),
+*** in which case values may be retrieved by key, similar to <code>RTProperties</code>.<br>
+*** An instance is intended to be reused for every packet of a session (it is not
+*** thread-safe), so that the parsing of a packet does not create any objects other
+*** than the Strings explicitly requested.
+**/
+
+public class ByteFieldParser
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final int    DFT_MAX_FIELDS  = 32;
+
+    private static final double POW10[]         = new double[] {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    /**
+    *** Returns the index of the specified character within the byte array range
+    *** @param b    The byte array
+    *** @param off  The starting offset
+    *** @param len  The number of bytes to search
+    *** @param ch   The character to find
+    *** @return The index of the character, or -1 if not found
+    **/
+    public static int indexOf(byte b[], int off, int len, char ch)
+    {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (b[i] == (byte)ch) { return i; }
+        }
+        return -1;
+    }
+
+    // ------------------------------------------------------------------------
+
+    private byte    data[]          = null;
+    private int     fldCount        = 0;
+    private int     fldStart[]      = null;
+    private int     fldEnd[]        = null;     // exclusive
+    private int     fldKeyEnd[]     = null;     // index of '=', or -1
+
+    /**
+    *** Constructor
+    **/
+    public ByteFieldParser()
+    {
+        this(DFT_MAX_FIELDS);
+    }
+
+    /**
+    *** Constructor
+    *** @param maxFields  The initial maximum number of fields (grows as required)
+    **/
+    public ByteFieldParser(int maxFields)
+    {
+        int max = (maxFields > 0)? maxFields : DFT_MAX_FIELDS;
+        this.fldStart  = new int[max];
+        this.fldEnd    = new int[max];
+        this.fldKeyEnd = new int[max];
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Tokenizes the specified byte array range into fields separated by the specified
+    *** character.  Leading/trailing whitespace of the range is ignored.  If the separator
+    *** is a space, consecutive spaces are treated as a single separator.  A "key=value"
+    *** value which starts with a double-quote extends to the matching closing quote, and
+    *** may contain separators (ie. <code>name="a b"</code>).  Within a quoted value, a
+    *** backslash escapes the following character.
+    *** @param b    The packet byte array
+    *** @param off  The starting offset
+    *** @param len  The number of bytes
+    *** @param sep  The field separator character
+    *** @return The number of fields found
+    **/
+    public int parse(byte b[], int off, int len, char sep)
+    {
+        this.data     = b;
+        this.fldCount = 0;
+        if (b == null) {
+            return 0;
+        }
+
+        /* trim */
+        int s = Math.max(off, 0);
+        int e = Math.min(off + len, b.length);
+        while ((s < e) && ((b[s]   & 0xFF) <= ' ')) { s++; }
+        while ((e > s) && ((b[e-1] & 0xFF) <= ' ')) { e--; }
+        if (s >= e) {
+            return 0;
+        }
+
+        /* split */
+        byte    sp        = (byte)sep;
+        boolean collapse  = (sep == ' ');
+        int     fs        = s;
+        int     keyEnd    = -1;
+        for (int i = s; i <= e; i++) {
+            if ((i == e) || (b[i] == sp)) {
+                if (!collapse || (i > fs)) {
+                    this._addField(fs, i, keyEnd);
+                }
+                fs     = i + 1;
+                keyEnd = -1;
+            } else
+            if ((b[i] == '=') && (keyEnd < 0)) {
+                keyEnd = i;
+            } else
+            if ((b[i] == '\"') && (keyEnd >= 0) && (keyEnd == i - 1)) {
+                // quoted value: skip to closing quote
+                for (i++; (i < e) && (b[i] != '\"'); i++) {
+                    if ((b[i] == '\\') && ((i + 1) < e)) { i++; }
+                }
+                if (i >= e) { i = e - 1; } // unterminated, ends at end of range
+            }
+        }
+        return this.fldCount;
+
+    }
+
+    private void _addField(int start, int end, int keyEnd)
+    {
+        if (this.fldCount >= this.fldStart.length) {
+            int n = this.fldStart.length * 2;
+            int s[] = new int[n], e[] = new int[n], k[] = new int[n];
+            System.arraycopy(this.fldStart , 0, s, 0, this.fldCount);
+            System.arraycopy(this.fldEnd   , 0, e, 0, this.fldCount);
+            System.arraycopy(this.fldKeyEnd, 0, k, 0, this.fldCount);
+            this.fldStart  = s;
+            this.fldEnd    = e;
+            this.fldKeyEnd = k;
+        }
+        this.fldStart [this.fldCount] = start;
+        this.fldEnd   [this.fldCount] = end;
+        this.fldKeyEnd[this.fldCount] = keyEnd;
+        this.fldCount++;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns the number of fields found by the last call to <code>parse</code>
+    *** @return The number of fields
+    **/
+    public int getFieldCount()
+    {
+        return this.fldCount;
+    }
+
+    /**
+    *** Returns true if the specified field does not exist, or is empty
+    *** @param f  The field index
+    *** @return True if the field is blank
+    **/
+    public boolean isBlank(int f)
+    {
+        return (f < 0) || (f >= this.fldCount) || (this.fldEnd[f] <= this.fldStart[f]);
+    }
+
+    /**
+    *** Returns the first character of the specified field
+    *** @param f    The field index
+    *** @param dft  The default character returned if the field is blank
+    *** @return The first character of the field
+    **/
+    public char getChar(int f, char dft)
+    {
+        return this.isBlank(f)? dft : (char)(this.data[this.fldStart[f]] & 0xFF);
+    }
+
+    /**
+    *** Returns true if the specified field matches the specified String
+    *** @param f           The field index
+    *** @param s           The String to compare
+    *** @param ignoreCase  True to ignore ASCII case
+    *** @return True if the field matches the String
+    **/
+    public boolean equals(int f, String s, boolean ignoreCase)
+    {
+        if ((f < 0) || (f >= this.fldCount) || (s == null)) {
+            return false;
+        }
+        return this._equals(this.fldStart[f], this.fldEnd[f], s, ignoreCase);
+    }
+
+    /**
+    *** Returns the specified field as a String.  If the field matches the specified
+    *** (previously returned) String, then that String instance is returned instead of
+    *** creating a new String.
+    *** @param f          The field index
+    *** @param lowerCase  True to convert the field to lower-case
+    *** @param cached     A previously returned String (may be null)
+    *** @return The field String, or null if the field does not exist
+    **/
+    public String getString(int f, boolean lowerCase, String cached)
+    {
+        if ((f < 0) || (f >= this.fldCount)) {
+            return null;
+        }
+        return this._getString(this.fldStart[f], this.fldEnd[f], lowerCase, cached);
+    }
+
+    /**
+    *** Parses the specified field as a decimal (or "0x" prefixed hex) long value
+    *** @param f    The field index
+    *** @param dft  The default value returned if the field is blank or invalid
+    *** @return The parsed value
+    **/
+    public long getLong(int f, long dft)
+    {
+        if ((f < 0) || (f >= this.fldCount)) {
+            return dft;
+        }
+        return this._parseLong(this.fldStart[f], this.fldEnd[f], dft);
+    }
+
+    /**
+    *** Parses the specified field as a decimal double value
+    *** @param f    The field index
+    *** @param dft  The default value returned if the field is blank or invalid
+    *** @return The parsed value
+    **/
+    public double getDouble(int f, double dft)
+    {
+        if ((f < 0) || (f >= this.fldCount)) {
+            return dft;
+        }
+        return this._parseDouble(this.fldStart[f], this.fldEnd[f], dft);
+    }
+
+    /**
+    *** Parses the specified NMEA-0183 "DDDMM.mmmm" coordinate field, and the following
+    *** hemisphere field ("N"/"S"/"E"/"W"), into signed decimal degrees
+    *** @param f     The coordinate field index
+    *** @param hemi  The hemisphere field index
+    *** @return The decimal degrees, or 0.0 if the coordinate field is invalid
+    **/
+    public double getNmeaCoordinate(int f, int hemi)
+    {
+        double v = this.getDouble(f, 0.0);
+        double deg = (double)((long)(v / 100.0));
+        double pos = deg + ((v - (deg * 100.0)) / 60.0);
+        char h = this.getChar(hemi, 'N');
+        return ((h == 'S') || (h == 's') || (h == 'W') || (h == 'w'))? -pos : pos;
+    }
+
+    /**
+    *** Parses the specified "HHMMSS[.sss]" time field into the number of seconds
+    *** since midnight
+    *** @param f  The field index
+    *** @return The number of seconds since midnight, or -1 if the field is invalid
+    **/
+    public long getHHMMSS(int f)
+    {
+        long hhmmss = (long)this.getDouble(f, -1.0);
+        if (hhmmss < 0L) {
+            return -1L;
+        }
+        long hh = (hhmmss / 10000L);
+        long mm = (hhmmss /   100L) % 100L;
+        long ss = (hhmmss /     1L) % 100L;
+        return (hh * 3600L) + (mm * 60L) + ss;
+    }
+
+    // ------------------------------------------------------------------------
+    // "key=value" fields
+
+    /* return true if the value of the specified "key=value" field is quoted */
+    private boolean _isQuotedValue(int f)
+    {
+        int vs = this.fldKeyEnd[f] + 1;
+        return (vs < this.fldEnd[f]) && (this.data[vs] == '"');
+    }
+
+    /* return the start of the value of the specified "key=value" field (inclusive) */
+    private int _valueStart(int f)
+    {
+        return this._isQuotedValue(f)? (this.fldKeyEnd[f] + 2) : (this.fldKeyEnd[f] + 1);
+    }
+
+    /* return the end of the value of the specified "key=value" field (exclusive) */
+    private int _valueEnd(int f)
+    {
+        int ve = this.fldEnd[f];
+        if (this._isQuotedValue(f) && (ve - 1 > this.fldKeyEnd[f] + 1) && (this.data[ve - 1] == '"')) {
+            return ve - 1;
+        }
+        return ve;
+    }
+
+    /* return the value of the specified "key=value" field as a String */
+    private String _getValueString(int f, boolean lowerCase, String cached)
+    {
+        int vs = this._valueStart(f), ve = this._valueEnd(f);
+        if (this._isQuotedValue(f) && (ByteFieldParser.indexOf(this.data, vs, ve - vs, '\\') >= 0)) {
+            // quoted value with escaped characters
+            StringBuffer sb = new StringBuffer(ve - vs);
+            for (int i = vs; i < ve; i++) {
+                if ((this.data[i] == '\\') && ((i + 1) < ve)) { i++; }
+                char ch = (char)(this.data[i] & 0xFF);
+                sb.append(lowerCase? Character.toLowerCase(ch) : ch);
+            }
+            String v = sb.toString();
+            return v.equals(cached)? cached : v;
+        }
+        return this._getString(vs, ve, lowerCase, cached);
+    }
+
+    /* return the index of the field with one of the specified keys */
+    private int _findKey(String keys[])
+    {
+        if (keys == null) {
+            return -1;
+        }
+        for (int f = 0; f < this.fldCount; f++) {
+            int ke = this.fldKeyEnd[f];
+            if (ke < 0) { continue; }
+            for (int k = 0; k < keys.length; k++) {
+                if (this._equals(this.fldStart[f], ke, keys[k], true)) {
+                    return f;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+    *** Returns true if a "key=value" field exists for one of the specified keys
+    *** @param keys  The key aliases
+    *** @return True if the key exists
+    **/
+    public boolean hasKey(String keys[])
+    {
+        return (this._findKey(keys) >= 0);
+    }
+
+    /**
+    *** Returns the value of the specified key as a String
+    *** @param keys  The key aliases
+    *** @param dft   The default value returned if the key does not exist
+    *** @return The value String
+    **/
+    public String getString(String keys[], String dft)
+    {
+        int f = this._findKey(keys);
+        if (f < 0) {
+            return dft;
+        }
+        return this._getValueString(f, false, null);
+    }
+
+    /**
+    *** Returns the value of the specified key as a String.  If the value matches the
+    *** specified (previously returned) String, then that String instance is returned
+    *** instead of creating a new String.
+    *** @param keys       The key aliases
+    *** @param lowerCase  True to convert the value to lower-case
+    *** @param cached     A previously returned String (may be null)
+    *** @return The value String, or null if the key does not exist
+    **/
+    public String getString(String keys[], boolean lowerCase, String cached)
+    {
+        int f = this._findKey(keys);
+        if (f < 0) {
+            return null;
+        }
+        return this._getValueString(f, lowerCase, cached);
+    }
+
+    /**
+    *** Returns the value of the specified key as a long
+    *** @param keys  The key aliases
+    *** @param dft   The default value returned if the key does not exist, or is invalid
+    *** @return The parsed value
+    **/
+    public long getLong(String keys[], long dft)
+    {
+        int f = this._findKey(keys);
+        if (f < 0) {
+            return dft;
+        }
+        return this._parseLong(this._valueStart(f), this._valueEnd(f), dft);
+    }
+
+    /**
+    *** Returns the value of the specified key as an int
+    *** @param keys  The key aliases
+    *** @param dft   The default value returned if the key does not exist, or is invalid
+    *** @return The parsed value
+    **/
+    public int getInt(String keys[], int dft)
+    {
+        return (int)this.getLong(keys, (long)dft);
+    }
+
+    /**
+    *** Returns the value of the specified key as a double
+    *** @param keys  The key aliases
+    *** @param dft   The default value returned if the key does not exist, or is invalid
+    *** @return The parsed value
+    **/
+    public double getDouble(String keys[], double dft)
+    {
+        int f = this._findKey(keys);
+        if (f < 0) {
+            return dft;
+        }
+        return this._parseDouble(this._valueStart(f), this._valueEnd(f), dft);
+    }
+
+    /**
+    *** Parses the value of the specified key as a pair of doubles, separated by '/'
+    *** or ',' (ie. "gps=39.1234/-142.1234")
+    *** @param keys  The key aliases
+    *** @param pair  The 2-element array into which the values are placed
+    *** @return True if both values were parsed
+    **/
+    public boolean getDoublePair(String keys[], double pair[])
+    {
+        int f = this._findKey(keys);
+        if ((f < 0) || (pair == null) || (pair.length < 2)) {
+            return false;
+        }
+        int s = this._valueStart(f), e = this._valueEnd(f);
+        int p = ByteFieldParser.indexOf(this.data, s, e - s, '/');
+        if (p < 0) { p = ByteFieldParser.indexOf(this.data, s, e - s, ','); }
+        if (p < 0) {
+            return false;
+        }
+        pair[0] = this._parseDouble(s    , p, Double.NaN);
+        pair[1] = this._parseDouble(p + 1, e, Double.NaN);
+        return !Double.isNaN(pair[0]) && !Double.isNaN(pair[1]);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private boolean _equals(int s, int e, String str, boolean ignoreCase)
+    {
+        int len = e - s;
+        if (str.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            char a = (char)(this.data[s + i] & 0xFF);
+            char b = str.charAt(i);
+            if (a == b) {
+                continue;
+            } else
+            if (ignoreCase && (Character.toLowerCase(a) == Character.toLowerCase(b))) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private String _getString(int s, int e, boolean lowerCase, String cached)
+    {
+        if ((cached != null) && this._equals(s, e, cached, false)) {
+            return cached;
+        }
+        char ch[] = new char[Math.max(e - s, 0)];
+        for (int i = 0; i < ch.length; i++) {
+            char c = (char)(this.data[s + i] & 0xFF);
+            ch[i] = lowerCase? Character.toLowerCase(c) : c;
+        }
+        String str = new String(ch);
+        if ((cached != null) && cached.equals(str)) {
+            return cached;
+        }
+        return str;
+    }
+
+    private long _parseLong(int s, int e, long dft)
+    {
+        byte b[] = this.data;
+        if (s >= e) {
+            return dft;
+        }
+        boolean neg = false;
+        if ((b[s] == '-') || (b[s] == '+')) {
+            neg = (b[s] == '-');
+            s++;
+        }
+        int radix = 10;
+        if (((e - s) > 2) && (b[s] == '0') && ((b[s+1] == 'x') || (b[s+1] == 'X'))) {
+            radix = 16;
+            s += 2;
+        }
+        if (s >= e) {
+            return dft;
+        }
+        long v = 0L;
+        for (int i = s; i < e; i++) {
+            int d = Character.digit((char)(b[i] & 0xFF), radix);
+            if (d < 0) {
+                return dft;
+            }
+            v = (v * radix) + d;
+        }
+        return neg? -v : v;
+    }
+
+    private double _parseDouble(int s, int e, double dft)
+    {
+        byte b[] = this.data;
+        if (s >= e) {
+            return dft;
+        }
+        int  i = s;
+        boolean neg = false;
+        if ((b[i] == '-') || (b[i] == '+')) {
+            neg = (b[i] == '-');
+            i++;
+        }
+        long mant   = 0L;
+        int  digits = 0;
+        int  scale  = 0;
+        boolean dot = false, any = false;
+        for (; i < e; i++) {
+            int c = b[i];
+            if ((c >= '0') && (c <= '9')) {
+                if (digits >= 15) {
+                    // more than 15 significant digits: 'mant' may exceed 2^53
+                    return this._parseDoubleSlow(s, e, dft);
+                }
+                mant = (mant * 10L) + (c - '0');
+                any  = true;
+                if (mant > 0L) { digits++; }
+                if (dot) { scale++; }
+            } else
+            if ((c == '.') && !dot) {
+                dot = true;
+            } else {
+                return this._parseDoubleSlow(s, e, dft); // exponent, etc.
+            }
+        }
+        if (!any) {
+            return dft;
+        }
+        // 'mant' (< 2^53) and 10^scale are exact, so a single division is correctly rounded
+        double v = (scale < POW10.length)? ((double)mant / POW10[scale]) : this._parseDoubleSlow(s, e, dft);
+        return neg? -v : v;
+    }
+
+    private double _parseDoubleSlow(int s, int e, double dft)
+    {
+        try {
+            return Double.parseDouble(this._getString(s, e, false, null));
+        } catch (NumberFormatException nfe) {
+            return dft;
+        }
+    }
+
+}
@@ -0,0 +1,317 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Registry of active TCP client sessions, indexed for command dispatch
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+*** <code>ClientSessionRegistry</code> is a JVM-wide registry of the active TCP client
+*** sessions of all <code>ServerSocketThread</code> listeners.<br>
+*** Sessions are registered when started, and are indexed by session ID, device unique
+*** ID, and account/device ID as the session identifies itself (see
+*** <code>AbstractClientPacketHandler.setSessionDevice</code>), so that a command
+*** handler can find the session for a specific device without scanning all active
+*** sessions.  Lookups and updates do not hold a global lock.<br>
+*** Sessions are registered by <code>SessionInfo</code> (one entry per connection), so
+*** a <code>ServerSocketThread</code> which shares a single <code>ClientPacketHandler</code>
+*** instance across sessions still has one registry entry per session.  Writes to a
+*** found session are made through its <code>SessionInfo</code>.<br>
+*** If a device reconnects before its previous session has terminated, the most
+*** recently identified session is returned.
+**/
+
+public class ClientSessionRegistry
+{
+
+    // ------------------------------------------------------------------------
+
+    /* registered session (index keys are guarded by the Entry instance) */
+    private static class Entry
+    {
+        private ServerSocketThread              server      = null;
+        private ServerSocketThread.SessionInfo  session     = null;
+        private ClientPacketHandler             handler     = null;
+        private String                          sessionID   = null;
+        private String                          uniqueID    = null;
+        private String                          deviceKey   = null;
+        public Entry(ServerSocketThread server, ServerSocketThread.SessionInfo session, ClientPacketHandler handler) {
+            this.server  = server;
+            this.session = session;
+            this.handler = handler;
+        }
+    }
+
+    private static ConcurrentHashMap<ServerSocketThread.SessionInfo,Entry> sessionMap = new ConcurrentHashMap<ServerSocketThread.SessionInfo,Entry>();
+    private static ConcurrentHashMap<String,Entry>  sessionIDMap = new ConcurrentHashMap<String,Entry>();
+    private static ConcurrentHashMap<String,Entry>  uniqueIDMap  = new ConcurrentHashMap<String,Entry>();
+    private static ConcurrentHashMap<String,Entry>  deviceMap    = new ConcurrentHashMap<String,Entry>();
+
+    /**
+    *** Returns the account/device index key
+    **/
+    private static String _deviceKey(String accountID, String deviceID)
+    {
+        if (StringTools.isBlank(accountID) || StringTools.isBlank(deviceID)) {
+            return null;
+        } else {
+            return accountID + "/" + deviceID;
+        }
+    }
+
+    /**
+    *** Replaces the index entry 'oldKey' with 'newKey' for the specified session entry.
+    *** Must be called while synchronized on the session entry.
+    *** @return The new key
+    **/
+    private static String _reindex(ConcurrentHashMap<String,Entry> index, Entry e, String oldKey, String newKey)
+    {
+        if ((oldKey != null) && !oldKey.equals(newKey)) {
+            index.remove(oldKey, e); // only if still this session
+        }
+        if (newKey != null) {
+            index.put(newKey, e); // replaces any prior session for this key
+        }
+        return newKey;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Registers a started client session
+    *** @param server   The ServerSocketThread handling the session
+    *** @param session  The session
+    *** @param cph      The session ClientPacketHandler
+    **/
+    public static void addSession(ServerSocketThread server, ServerSocketThread.SessionInfo session,
+        ClientPacketHandler cph)
+    {
+        if (session != null) {
+            sessionMap.putIfAbsent(session, new Entry(server,session,cph));
+        }
+    }
+
+    /**
+    *** Removes a terminated client session (and all of its index keys)
+    *** @param session  The session
+    **/
+    public static void removeSession(ServerSocketThread.SessionInfo session)
+    {
+        Entry e = (session != null)? sessionMap.remove(session) : null;
+        if (e != null) {
+            synchronized (e) {
+                e.sessionID = _reindex(sessionIDMap, e, e.sessionID, null);
+                e.uniqueID  = _reindex(uniqueIDMap , e, e.uniqueID , null);
+                e.deviceKey = _reindex(deviceMap   , e, e.deviceKey, null);
+            }
+        }
+    }
+
+    /**
+    *** Sets the session ID index of a registered session
+    *** @param session    The session
+    *** @param sessionID  The session ID (null/blank to remove the session ID index)
+    *** @return True if the session is registered, false otherwise
+    **/
+    public static boolean setSessionID(ServerSocketThread.SessionInfo session, String sessionID)
+    {
+        Entry e = (session != null)? sessionMap.get(session) : null;
+        if (e == null) {
+            return false;
+        }
+        String sid = StringTools.isBlank(sessionID)? null : StringTools.trim(sessionID);
+        synchronized (e) {
+            if (sessionMap.get(session) == e) { // not removed
+                e.sessionID = _reindex(sessionIDMap, e, e.sessionID, sid);
+            }
+        }
+        return true;
+    }
+
+    /**
+    *** Sets the device unique ID, and account/device ID, indexes of a registered session
+    *** @param session    The session
+    *** @param uniqueID   The device unique ID (may be null)
+    *** @param accountID  The account ID (may be null)
+    *** @param deviceID   The device ID (may be null)
+    *** @return True if the session is registered, false otherwise
+    **/
+    public static boolean setSessionDevice(ServerSocketThread.SessionInfo session,
+        String uniqueID, String accountID, String deviceID)
+    {
+        Entry e = (session != null)? sessionMap.get(session) : null;
+        if (e == null) {
+            return false;
+        }
+        String uid = StringTools.isBlank(uniqueID)? null : uniqueID;
+        String dev = _deviceKey(accountID, deviceID);
+        synchronized (e) {
+            if (sessionMap.get(session) == e) { // not removed
+                e.uniqueID  = _reindex(uniqueIDMap, e, e.uniqueID , uid);
+                e.deviceKey = _reindex(deviceMap  , e, e.deviceKey, dev);
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Returns true if the specified client session is registered
+    *** @param session  The session
+    *** @return True if the session is registered
+    **/
+    public static boolean isRegistered(ServerSocketThread.SessionInfo session)
+    {
+        return (session != null) && sessionMap.containsKey(session);
+    }
+
+    /**
+    *** Gets the ServerSocketThread handling the specified registered session
+    *** @param session  The session
+    *** @return The ServerSocketThread, or null if the session is not registered
+    **/
+    public static ServerSocketThread getServer(ServerSocketThread.SessionInfo session)
+    {
+        Entry e = (session != null)? sessionMap.get(session) : null;
+        return (e != null)? e.server : null;
+    }
+
+    /**
+    *** Gets the number of registered sessions
+    *** @return The number of registered sessions
+    **/
+    public static int getSessionCount()
+    {
+        return sessionMap.size();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the session with the specified session ID
+    *** @param sessionID  The session ID
+    *** @return The session, or null if not found
+    **/
+    public static ServerSocketThread.SessionInfo getSessionInfoBySessionID(String sessionID)
+    {
+        Entry e = (sessionID != null)? sessionIDMap.get(sessionID) : null;
+        return (e != null)? e.session : null;
+    }
+
+    /**
+    *** Gets the session for the specified device unique ID
+    *** @param uniqueID  The device unique ID
+    *** @return The session, or null if not found
+    **/
+    public static ServerSocketThread.SessionInfo getSessionInfoByUniqueID(String uniqueID)
+    {
+        Entry e = (uniqueID != null)? uniqueIDMap.get(uniqueID) : null;
+        return (e != null)? e.session : null;
+    }
+
+    /**
+    *** Gets the session for the specified account/device
+    *** @param accountID  The account ID
+    *** @param deviceID   The device ID
+    *** @return The session, or null if not found
+    **/
+    public static ServerSocketThread.SessionInfo getSessionInfoByDevice(String accountID, String deviceID)
+    {
+        String key = _deviceKey(accountID, deviceID);
+        Entry e = (key != null)? deviceMap.get(key) : null;
+        return (e != null)? e.session : null;
+    }
+
+    /**
+    *** Gets the ClientPacketHandler of the session with the specified session ID
+    *** @param sessionID  The session ID
+    *** @return The session ClientPacketHandler, or null if not found
+    **/
+    public static ClientPacketHandler getSessionBySessionID(String sessionID)
+    {
+        Entry e = (sessionID != null)? sessionIDMap.get(sessionID) : null;
+        return (e != null)? e.handler : null;
+    }
+
+    /**
+    *** Gets the ClientPacketHandler of the session for the specified device unique ID
+    *** @param uniqueID  The device unique ID
+    *** @return The session ClientPacketHandler, or null if not found
+    **/
+    public static ClientPacketHandler getSessionByUniqueID(String uniqueID)
+    {
+        Entry e = (uniqueID != null)? uniqueIDMap.get(uniqueID) : null;
+        return (e != null)? e.handler : null;
+    }
+
+    /**
+    *** Gets the ClientPacketHandler of the session for the specified account/device
+    *** @param accountID  The account ID
+    *** @param deviceID   The device ID
+    *** @return The session ClientPacketHandler, or null if not found
+    **/
+    public static ClientPacketHandler getSessionByDevice(String accountID, String deviceID)
+    {
+        String key = _deviceKey(accountID, deviceID);
+        Entry e = (key != null)? deviceMap.get(key) : null;
+        return (e != null)? e.handler : null;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Writes the specified bytes to the TCP session of the specified account/device
+    *** @param accountID  The account ID
+    *** @param deviceID   The device ID
+    *** @param data       The bytes to write
+    *** @return True if the bytes were written, false if the device has no active
+    ***         session, or the write failed
+    **/
+    public static boolean writeToDevice(String accountID, String deviceID, byte data[])
+    {
+        ServerSocketThread.SessionInfo si = ClientSessionRegistry.getSessionInfoByDevice(accountID, deviceID);
+        return (si != null)? si.tcpWrite(data) : false;
+    }
+
+    /**
+    *** Writes the specified bytes to the TCP sessions of each of the specified devices.
+    *** Each session is written independently (no lock is held across sessions).
+    *** @param accountID  The account ID
+    *** @param deviceIDs  The list of device IDs
+    *** @param data       The bytes to write
+    *** @return The number of device sessions to which the bytes were written
+    **/
+    public static int writeToDevices(String accountID, Collection<String> deviceIDs, byte data[])
+    {
+        int count = 0;
+        if (!ListTools.isEmpty(deviceIDs) && !ListTools.isEmpty(data)) {
+            for (String deviceID : deviceIDs) {
+                if (ClientSessionRegistry.writeToDevice(accountID, deviceID, data)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+}
@@ -49,6 +49,8 @@
 // ----------------------------------------------------------------------------
 package org.opengts.util;
 
+import java.nio.ByteBuffer;
+
 /**
 *** A container for a NMEA-0183 record
 **/
@@ -156,6 +158,12 @@ public class Nmea0183
     
     private String      extraData[]         = null;
 
+    private ByteFieldParser fldParser       = null;    // byte[] parse mode
+    private byte        extraBytes[]        = null;
+    private int         extraStart          = -1;
+    private int         extraEnd            = -1;
+    private byte        scratch[]           = null;    // non-array ByteBuffer copy
+
     // ------------------------------------------------------------------------
 
     /**
@@ -210,6 +218,36 @@ public class Nmea0183
 
     // ------------------------------------------------------------------------
 
+    /**
+    *** Clears all parsed values, so that this instance may be reused for the next fix
+    *** (the "ignore invalid GPS flag" setting is retained)
+    **/
+    public void clear()
+    {
+        this.validChecksum      = false;
+        this.parsedRcdTypes     = TYPE_NONE;
+        this.lastRcdType        = "";
+        this.fieldMask          = 0L;
+        this.ddmmyy             = 0L;
+        this.hhmmss             = 0L;
+        this.fixtime            = 0L;
+        this.ignoredInvalidGPS  = false;
+        this.isValidGPS         = false;
+        this.latitude           = 0.0;
+        this.longitude          = 0.0;
+        this.geoPoint           = null;
+        this.speedKnots         = 0.0;
+        this.heading            = 0.0;
+        this.hdop               = 0.0;
+        this.numSats            = 0;
+        this.altitudeM          = 0.0;
+        this.fixType            = 0;
+        this.magVariation       = 0.0;
+        this.extraData          = null;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Gets the mask of available fields
     *** @return The mask of available fields
@@ -771,6 +809,396 @@ public class Nmea0183
         
     }
 
+    // ------------------------------------------------------------------------
+    // byte[] parse mode
+    // Parses records directly from a byte array (or ByteBuffer), without creating a
+    // String for the record or its fields.  The checksum is accumulated while scanning
+    // for the '*' terminator, and the fields are tokenized in place by a ByteFieldParser
+    // owned by this instance.  Reusing a single Nmea0183 instance (see "clear") for a
+    // stream of records creates no objects, other than any "extra data" Strings.
+
+    /**
+    *** Parses all NMEA-0183 records found in the specified byte array range, combining
+    *** the parsed values into this instance.  Records must begin with '$', and are
+    *** terminated by CR/LF, or by the '$' of the next record.
+    *** @param b    The byte array containing the records
+    *** @param off  The offset of the first byte
+    *** @param len  The number of bytes
+    *** @param ignoreChecksum True to ignore the terminating checksum
+    *** @return The number of records which were successfully parsed
+    **/
+    public int parseRecords(byte b[], int off, int len, boolean ignoreChecksum)
+    {
+        if (b == null) {
+            return 0;
+        }
+        int end = Math.min(off + len, b.length);
+        int s   = Math.max(off, 0);
+        int cnt = 0;
+        while (s < end) {
+            while ((s < end) && (b[s] != '$')) { s++; } // skip to start of record
+            if (s >= end) {
+                break;
+            }
+            int e = s + 1;
+            while ((e < end) && (b[e] != '\r') && (b[e] != '\n') && (b[e] != '$')) { e++; }
+            if (this.parse(b, s, e - s, ignoreChecksum)) {
+                cnt++;
+            }
+            s = e;
+        }
+        return cnt;
+    }
+
+    /**
+    *** Parses all NMEA-0183 records remaining in the specified ByteBuffer (see
+    *** "parseRecords(byte[],int,int,boolean)").  The buffer position is advanced to
+    *** its limit.
+    *** @param bb  The ByteBuffer containing the records
+    *** @param ignoreChecksum True to ignore the terminating checksum
+    *** @return The number of records which were successfully parsed
+    **/
+    public int parseRecords(ByteBuffer bb, boolean ignoreChecksum)
+    {
+        if ((bb == null) || !bb.hasRemaining()) {
+            return 0;
+        }
+        int len = bb.remaining();
+        int cnt;
+        if (bb.hasArray()) {
+            cnt = this.parseRecords(bb.array(), bb.arrayOffset() + bb.position(), len, ignoreChecksum);
+        } else {
+            if ((this.scratch == null) || (this.scratch.length < len)) {
+                this.scratch = new byte[Math.max(len, 256)];
+            }
+            bb.duplicate().get(this.scratch, 0, len);
+            cnt = this.parseRecords(this.scratch, 0, len, ignoreChecksum);
+        }
+        bb.position(bb.limit());
+        return cnt;
+    }
+
+    /**
+    *** Parses a single NMEA-0183 record from the specified byte array range
+    *** @param b    The byte array containing the record
+    *** @param off  The offset of the record ('$')
+    *** @param len  The length of the record
+    *** @param ignoreChecksum True to ignore the terminating checksum
+    *** @return True if this record was successfully parsed
+    **/
+    public boolean parse(byte b[], int off, int len, boolean ignoreChecksum)
+    {
+
+        /* pre-validate */
+        if (b == null) {
+            Print.logError("Null record specified");
+            return false;
+        }
+        int end = Math.min(off + len, b.length);
+        while ((end > off) && ((b[end - 1] & 0xFF) <= ' ')) { end--; } // trailing CR/LF
+        if ((off < 0) || (off >= end) || (b[off] != '$')) {
+            Print.logError("Invalid record (must begin with '$'): " + StringTools.toStringValue(b, off, end - off));
+            return false;
+        }
+
+        /* calculate checksum (up to '*') */
+        int cksum = 0;
+        int star  = -1;
+        for (int i = off + 1; i < end; i++) {
+            if (b[i] == '*') {
+                star = i;
+                break;
+            }
+            cksum = (cksum ^ b[i]) & 0xFF;
+        }
+
+        /* valid checksum? */
+        if (ignoreChecksum) {
+            this.validChecksum = true;
+        } else {
+            int hi = ((star >= 0) && ((star + 2) < end))? Character.digit((char)b[star + 1], 16) : -1;
+            int lo = ((star >= 0) && ((star + 2) < end))? Character.digit((char)b[star + 2], 16) : -1;
+            this.validChecksum = (hi >= 0) && (lo >= 0) && (((hi << 4) | lo) == cksum);
+            if (!this.validChecksum) {
+                Print.logError("Invalid Checksum: " + StringTools.toStringValue(b, off, end - off));
+                return false;
+            }
+        }
+
+        /* extra data follows "*MM," */
+        this.extraBytes = b;
+        this.extraStart = -1;
+        this.extraEnd   = end;
+        if (star >= 0) {
+            int c = ByteFieldParser.indexOf(b, star, end - star, ',');
+            this.extraStart = (c >= 0)? (c + 1) : -1;
+        }
+
+        /* parse into fields (up to '*') */
+        if (this.fldParser == null) {
+            this.fldParser = new ByteFieldParser();
+        }
+        ByteFieldParser fld = this.fldParser;
+        int fldEnd = (star >= 0)? star : end;
+        if (fld.parse(b, off, fldEnd - off, ',') < 1) {
+            Print.logError("Insufficient fields: " + StringTools.toStringValue(b, off, end - off));
+            return false;
+        }
+
+        /* parse record type */
+        this.fieldMask = 0L;
+        if (fld.equals(0, DNAME_GPRMC, false)) {
+            this.parsedRcdTypes |= TYPE_GPRMC;
+            this.lastRcdType = DNAME_GPRMC;
+            this.fieldMask |= FIELD_RECORD_TYPE;
+            return this._parse_GPRMC(fld);
+        } else
+        if (fld.equals(0, DNAME_GPGGA, false)) {
+            this.parsedRcdTypes |= TYPE_GPGGA;
+            this.lastRcdType = DNAME_GPGGA;
+            this.fieldMask |= FIELD_RECORD_TYPE;
+            return this._parse_GPGGA(fld);
+        } else
+        if (fld.equals(0, DNAME_GPVTG, false)) {
+            this.parsedRcdTypes |= TYPE_GPVTG;
+            this.lastRcdType = DNAME_GPVTG;
+            this.fieldMask |= FIELD_RECORD_TYPE;
+            return this._parse_GPVTG(fld); // speed/heading
+        } else
+        if (fld.equals(0, DNAME_GPZDA, false)) {
+            this.parsedRcdTypes |= TYPE_GPZDA;
+            this.lastRcdType = DNAME_GPZDA;
+            this.fieldMask |= FIELD_RECORD_TYPE;
+            return this._parse_GPZDA(fld);
+        } else {
+            Print.logError("Record not supported: " + StringTools.toStringValue(b, off, end - off));
+            return false;
+        }
+
+    }
+
+    /* return the "extra data" following the checksum of the last byte[] record */
+    private String[] _getExtraData()
+    {
+        if ((this.extraStart < 0) || (this.extraStart > this.extraEnd)) {
+            return null;
+        }
+        String ed = StringTools.toStringValue(this.extraBytes, this.extraStart, this.extraEnd - this.extraStart);
+        return StringTools.parseString(ed, ',');
+    }
+
+    /* parse "DDDMM.mmmm" coordinate field (see "ParseLatitude"/"ParseLongitude") */
+    private static double _parseCoord(ByteFieldParser fld, int f, int hemi, String neg, double dft)
+    {
+        double _v = fld.getDouble(f, 99999.0);
+        if (_v < 99999.0) {
+            double v = (double)((long)_v / 100L);
+            v += (_v - (v * 100.0)) / 60.0;
+            return fld.equals(hemi, neg, true)? -v : v;
+        } else {
+            return dft;
+        }
+    }
+
+    /* parse "$GPRMC" (see "_parse_GPRMC(String[])") */
+    private boolean _parse_GPRMC(ByteFieldParser fld)
+    {
+
+        /* valid number of fields? */
+        int fldLen = fld.getFieldCount();
+        if (fldLen < 10) {
+            return false;
+        }
+
+        /* valid GPS? */
+        boolean validGPS = false;
+        if (fld.equals(2, "A", false)) {
+            // vAlid
+            validGPS = true;
+        } else
+        if (this.getIgnoreInvalidGpsFlag()) {
+            // forced valid
+            this.ignoredInvalidGPS = true;
+            validGPS = true;
+        } else
+        if (fld.equals(2, "V", false)) {
+            // inValid
+            validGPS = false;
+        } else {
+            // staLe?, unknown
+            Print.logWarn("Unexpected valid GPS fix indicator: " + fld.getString(2, false, null));
+            validGPS = true;
+        }
+        this.fieldMask |= FIELD_VALID_FIX;
+
+        /* date */
+        this.fixtime = 0L; // calculated later
+        boolean hasDate = false;
+        if (!fld.equals(9, "000000", false)) {
+            this.ddmmyy = (long)fld.getDouble(9, 0.0);
+            this.fieldMask |= FIELD_DDMMYY;
+            hasDate = true;
+        }
+
+        /* time */
+        if (hasDate || !fld.equals(1, "000000.000", false)) {
+            // either we have a date, or the time is not "000000"
+            this.hhmmss = (long)fld.getDouble(1, 0.0);
+            this.fieldMask |= FIELD_HHMMSS;
+        }
+
+        /* latitude, longitude, speed, heading */
+        this.geoPoint = null;
+        if (validGPS) {
+            this.latitude  = Nmea0183._parseCoord(fld, 3, 4, "S",  90.0);
+            this.longitude = Nmea0183._parseCoord(fld, 5, 6, "W", 180.0);
+            if (!GeoPoint.isValid(this.latitude,this.longitude)) {
+                validGPS        = false;
+                this.latitude   = 0.0;
+                this.longitude  = 0.0;
+                this.ignoredInvalidGPS = false; // in case it was set true above
+            } else {
+                this.fieldMask |= FIELD_LATITUDE | FIELD_LONGITUDE;
+                this.speedKnots = fld.getDouble(7, -1.0);
+                this.heading    = fld.getDouble(8, -1.0);
+                this.fieldMask |= FIELD_SPEED | FIELD_HEADING;
+            }
+        } else {
+            this.latitude   = 0.0;
+            this.longitude  = 0.0;
+            this.speedKnots = 0.0;
+            this.heading    = 0.0;
+        }
+        this.isValidGPS = validGPS;
+
+        /* magnetic variation */
+        if (fldLen > 11) {
+            double magDeg = fld.getDouble(10, 0.0);
+            this.magVariation = fld.equals(11, "W", true)? -magDeg : magDeg;
+        }
+
+        /* extra data? */
+        this.extraData = this._getExtraData();
+
+        /* return valid GPS state */
+        return validGPS;
+
+    }
+
+    /* parse "$GPGGA" (see "_parse_GPGGA(String[])") */
+    private boolean _parse_GPGGA(ByteFieldParser fld)
+    {
+
+        /* valid number of fields? */
+        if (fld.getFieldCount() < 14) {
+            return false;
+        }
+
+        /* valid GPS? */
+        boolean validGPS = !fld.equals(6, "0", false);
+        this.fieldMask |= FIELD_VALID_FIX;
+
+        /* date */
+        this.fixtime = 0L; // calculated later
+        this.ddmmyy  = 0L; // we don't know the day
+
+        /* time */
+        this.hhmmss  = (long)fld.getDouble(1, 0.0);
+        this.fieldMask |= FIELD_HHMMSS;
+
+        /* latitude, longitude, altitude */
+        this.geoPoint = null;
+        if (validGPS) {
+            this.latitude  = Nmea0183._parseCoord(fld, 2, 3, "S",  90.0);
+            this.longitude = Nmea0183._parseCoord(fld, 4, 5, "W", 180.0);
+            if (!GeoPoint.isValid(this.latitude,this.longitude)) {
+                validGPS        = false;
+                this.latitude   = 0.0;
+                this.longitude  = 0.0;
+            } else {
+                this.fieldMask |= FIELD_LATITUDE | FIELD_LONGITUDE;
+                this.fixType    = (int)fld.getLong(6, 1L); // 1=GPS, 2=DGPS, 3=PPS?, ...
+                this.numSats    = (int)fld.getLong(7, 0L);
+                this.hdop       = fld.getDouble(8, 0.0);
+                this.altitudeM  = fld.getDouble(9, 0.0); // meters
+                this.fieldMask |= FIELD_FIX_TYPE | FIELD_NUMBER_SATS | FIELD_HDOP | FIELD_ALTITUDE;
+            }
+        } else {
+            this.latitude   = 0.0;
+            this.longitude  = 0.0;
+            this.fixType    = 0;
+            this.numSats    = 0;
+            this.hdop       = 0.0;
+            this.altitudeM  = 0.0;
+        }
+        this.isValidGPS = validGPS;
+
+        /* extra data? */
+        this.extraData = this._getExtraData();
+
+        /* return valid GPS state */
+        return validGPS;
+
+    }
+
+    /* parse "$GPVTG" (see "_parse_GPVTG(String[])") */
+    private boolean _parse_GPVTG(ByteFieldParser fld)
+    {
+
+        /* valid number of fields? */
+        int fldLen = fld.getFieldCount();
+        if (fldLen < 3) {
+            return false;
+        }
+
+        /* loop through values */
+        for (int i = 1; (i + 1) < fldLen; i += 2) {
+            if (fld.equals(i+1, "T", false)) { // True course
+                this.heading = fld.getDouble(i, -1.0);
+                this.fieldMask |= FIELD_HEADING;
+            } else
+            if (fld.equals(i+1, "N", false)) { // Knots
+                this.speedKnots = fld.getDouble(i, -1.0);
+                this.fieldMask |= FIELD_SPEED;
+            } else
+            if (fld.equals(i+1, "K", false)) { // KPH
+                double kph = fld.getDouble(i, -1.0);
+                this.speedKnots = (kph >= 0.0)? (kph * KNOTS_PER_KILOMETER) : -1.0;
+                this.fieldMask |= FIELD_SPEED;
+            }
+        }
+
+        /* success */
+        return true;
+
+    }
+
+    /* parse "$GPZDA" (see "_parse_GPZDA(String[])") */
+    private boolean _parse_GPZDA(ByteFieldParser fld)
+    {
+
+        /* valid number of fields? */
+        if (fld.getFieldCount() < 5) {
+            return false;
+        }
+
+        /* parse date */
+        this.fixtime = 0L; // calculated later
+        long day     = fld.getLong(2, 0L) % 100L;
+        long month   = fld.getLong(3, 0L) % 100L;
+        long year    = fld.getLong(4, 0L) % 10000L;
+        this.ddmmyy  = (day * 10000L) + (month * 100L) + (year % 100L);
+        this.fieldMask |= FIELD_DDMMYY;
+
+        /* parse time */
+        this.hhmmss  = (long)fld.getDouble(1, 0.0);
+        this.fieldMask |= FIELD_HHMMSS;
+
+        /* success */
+        return true;
+
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -718,6 +718,60 @@ public class OSTools
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    private static java.lang.reflect.Method virtThreadOfVirtual = null;
+    private static java.lang.reflect.Method virtThreadName      = null;
+    private static java.lang.reflect.Method virtThreadUnstarted = null;
+    private static int                      virtThreadState     = 0; // 0=unchecked, 1=supported, -1=unsupported
+
+    /**
+    *** Returns true if the runtime supports virtual threads (Java 21+).<br>
+    *** Virtual threads are accessed via reflection, so this code still compiles/runs
+    *** on older versions of Java.
+    *** @return True if virtual threads are supported
+    **/
+    public static synchronized boolean isVirtualThreadSupported()
+    {
+        if (virtThreadState == 0) {
+            try {
+                // Thread.ofVirtual().name(name).unstarted(runnable)
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                virtThreadOfVirtual = Thread.class.getMethod("ofVirtual");
+                virtThreadName      = builderClass.getMethod("name", String.class);
+                virtThreadUnstarted = builderClass.getMethod("unstarted", Runnable.class);
+                virtThreadState     = 1;
+            } catch (Throwable th) { // ClassNotFoundException, NoSuchMethodException
+                virtThreadState     = -1;
+            }
+        }
+        return (virtThreadState > 0);
+    }
+
+    /**
+    *** Creates a new (unstarted) virtual thread which will execute the specified Runnable
+    *** @param name  The thread name
+    *** @param r     The Runnable to execute
+    *** @return The unstarted virtual thread, or null if virtual threads are not supported
+    **/
+    public static Thread createVirtualThread(String name, Runnable r)
+    {
+        if ((r == null) || !OSTools.isVirtualThreadSupported()) {
+            return null;
+        }
+        try {
+            Object builder = virtThreadOfVirtual.invoke(null);
+            if (name != null) {
+                builder = virtThreadName.invoke(builder, name);
+            }
+            return (Thread)virtThreadUnstarted.invoke(builder, r);
+        } catch (Throwable th) { // IllegalAccessException, InvocationTargetException
+            Print.logException("Unable to create virtual thread", th);
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
     /**
     *** Gets the Process-ID of this JVM invocation.<br>
     *** IMPORTANT: This implementation relies on a "convention", rather that a documented method
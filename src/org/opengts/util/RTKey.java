@@ -119,6 +119,10 @@ public class RTKey
     public static final String LOG_SENDMAIL_CLASS           = "log.email.sendmailClass";
     
     public static final String DB_DBCONNECTION_POOL         = "db.dbConnectionPool";            // Boolean
+    public static final String DB_DBCONNECTION_POOL_MIN     = "db.dbConnectionPool.minSize";    // Integer
+    public static final String DB_DBCONNECTION_POOL_MAX     = "db.dbConnectionPool.maxSize";    // Integer
+    public static final String DB_DBCONNECTION_POOL_WAIT    = "db.dbConnectionPool.maxWaitMS";  // Long
+    public static final String DB_DBCONNECTION_POOL_IDLE    = "db.dbConnectionPool.idleSec";    // Long
     public static final String DB_DATASOURCE_CLASS          = "db.dataSource.class";            // String
     public static final String DB_DATASOURCE_MAX_ACTIVE     = "db.dataSource.maxActive";        // Integer
     public static final String DB_DATASOURCE_MAX_IDLE       = "db.dataSource.maxIdle";          // Integer
@@ -134,9 +138,21 @@ public class RTKey
     public static final String DB_UTF8                      = "db.sql.utf8";                    // Boolean
     public static final String DB_TABLE_NAME_PREFIX         = "db.tableNamePrefix";             // String (not used?)
     public static final String DB_TABLE_LOCKING             = "db.tableLocking";                // Boolean
+    public static final String DB_MVCC_READS                = "db.mvccReads";                   // Boolean
     public static final String DB_SHOW_SQL                  = "db.showSQL";                     // Boolean
     public static final String DB_SHOW_CONNECTIONS          = "db.showConnections";             // Boolean
     public static final String DB_MYSQL_TBLEXIST_SEL_COUNT  = "db.mysql.tableExistsSelectCount";// Boolean
+    public static final String DB_PREPARED_STATEMENTS       = "db.preparedStatements";          // Boolean
+    public static final String DB_INSERT_QUEUE_BATCH_SIZE   = "db.insertQueue.batchSize";       // Integer
+    public static final String DB_INSERT_QUEUE_MAX_DELAY_MS = "db.insertQueue.maxDelayMS";      // Long
+    public static final String DB_INSERT_QUEUE_MAX_PENDING  = "db.insertQueue.maxPending";      // Integer
+    public static final String DB_LOAD_THREADS              = "db.load.threads";                // Integer
+    public static final String DB_LOAD_BATCH_SIZE           = "db.load.batchSize";              // Integer
+    public static final String DB_LOAD_DEFER_INDEXES        = "db.load.deferIndexes";           // Boolean
+    public static final String DB_LOAD_PROGRESS_SEC         = "db.load.progressSec";            // Long
+    public static final String DB_DUMP_THREADS              = "db.dump.threads";                // Integer
+    public static final String DB_DUMP_CHUNK_KEYS           = "db.dump.chunkKeys";              // Integer
+    public static final String DB_DUMP_BUFFER_ROWS          = "db.dump.bufferRows";             // Integer
 
     public static final String DB_TYPESIZE_                 = "db.typeSize.";                   // Integer
     
@@ -144,6 +160,27 @@ public class RTKey
     public static final String OSTOOLS_MEMORY_TREND_WEIGHT  = "OSTools.memoryTrendWeight";      // Double (percent 0.0 .. 1.0)
     public static final String OSTOOLS_MEMORY_USAGE_WARN    = "OSTools.memoryUsageWarning";     // Double (percent 0.0 .. 1.0)
 
+    public static final String SERVER_SOCKET_NIO            = "ServerSocketThread.nio";         // Boolean
+    public static final String SERVER_SOCKET_NIO_SELECTORS  = "ServerSocketThread.nio.selectors"; // Integer
+    public static final String SERVER_SOCKET_NIO_WORKERS    = "ServerSocketThread.nio.workers"; // Integer
+    public static final String SERVER_SOCKET_VIRTUAL_THREADS= "ServerSocketThread.virtualThreads"; // Boolean
+    public static final String SERVER_SOCKET_READ_BUFFER    = "ServerSocketThread.readBufferSize"; // Integer
+    public static final String SERVER_SOCKET_UDP_RECEIVERS  = "ServerSocketThread.udp.receivers"; // Integer
+    public static final String SERVER_SOCKET_UDP_WORKERS    = "ServerSocketThread.udp.workers"; // Integer
+    public static final String SERVER_SOCKET_UDP_QUEUE      = "ServerSocketThread.udp.queueSize"; // Integer
+    public static final String SERVER_SOCKET_UDP_BLOCK      = "ServerSocketThread.udp.blockOnFull"; // Boolean
+
+    public static final String THREAD_POOL_VIRTUAL_THREADS  = "ThreadPool.virtualThreads";      // Boolean
+
+    public static final String RGQUEUE_ENABLE               = "ReverseGeocodeQueue.enable";           // Boolean
+    public static final String RGQUEUE_MAX_PENDING          = "ReverseGeocodeQueue.maxPending";       // Integer
+    public static final String RGQUEUE_MAX_WAIT_MS          = "ReverseGeocodeQueue.maxWaitMS";        // Long
+    public static final String RGQUEUE_THREADS              = "ReverseGeocodeQueue.threads";          // Integer (".<provider>" optional)
+    public static final String RGQUEUE_RATE_LIMIT           = "ReverseGeocodeQueue.rateLimitPerSec";  // Double  (".<provider>" optional)
+    public static final String RGQUEUE_CACHE_FILE           = "ReverseGeocodeQueue.cacheFile";        // String
+    public static final String RGQUEUE_CACHE_SLOTS          = "ReverseGeocodeQueue.cacheSlots";       // Integer
+    public static final String RGQUEUE_CACHE_MAX_AGE_SEC    = "ReverseGeocodeQueue.cacheMaxAgeSec";   // Long
+
     // ------------------------------------------------------------------------
 
     public static final String CONSTANT_PREFIX              = "%";
@@ -231,6 +268,10 @@ public class RTKey
 
         new Entry("DB attributes"),
         new Entry(DB_DBCONNECTION_POOL       , false                            , "DBConnection Pooling"),                      // APP|WEB
+        new Entry(DB_DBCONNECTION_POOL_MIN   , 2                                , "DBConnection Pool minimum idle size"),       // APP|WEB
+        new Entry(DB_DBCONNECTION_POOL_MAX   , 50                               , "DBConnection Pool maximum size"),            // APP|WEB
+        new Entry(DB_DBCONNECTION_POOL_WAIT  , 10000L                           , "DBConnection Pool maximum borrow wait"),     // APP|WEB
+        new Entry(DB_DBCONNECTION_POOL_IDLE  , 600L                             , "DBConnection Pool idle eviction seconds"),   // APP|WEB
         new Entry(DB_DATASOURCE_CLASS        , ""                               , "DataSource class"),                          // APP|WEB
         new Entry(DB_DATASOURCE_MAX_ACTIVE   , 100                              , "DataSource maxActive"),                      // APP|WEB
         new Entry(DB_DATASOURCE_MAX_IDLE     , 30                               , "DataSource maxIdle"),                        // APP|WEB
@@ -246,15 +287,51 @@ public class RTKey
         new Entry(DB_UTF8                    , false                            , "Enable UTF8"),                               // APP|WEB
         new Entry(DB_TABLE_NAME_PREFIX       , ""                               , "Table name prefix"),                         // APP|WEB
         new Entry(DB_TABLE_LOCKING           , false                            , "Table locking enabled"),                     // APP|WEB
+        new Entry(DB_MVCC_READS              , true                             , "Skip read locks on MVCC tables"),            // APP|WEB
         new Entry(DB_SHOW_SQL                , false                            , "Show insert/update SQL"),                    // APP|WEB
         new Entry(DB_SHOW_CONNECTIONS        , false                            , "Show connections"),                          // APP|WEB
         new Entry(DB_MYSQL_TBLEXIST_SEL_COUNT, true                             , "MySQL tableExist use SELECT COUNT(*)"),      // APP|WEB
+        new Entry(DB_PREPARED_STATEMENTS     , false                            , "Use PreparedStatements"),                    // APP|WEB
+        new Entry(DB_INSERT_QUEUE_BATCH_SIZE , 100                              , "Batched insert queue size"),                 // APP
+        new Entry(DB_INSERT_QUEUE_MAX_DELAY_MS, 500L                            , "Batched insert maximum delay (ms)"),         // APP
+        new Entry(DB_INSERT_QUEUE_MAX_PENDING, 10000                            , "Batched insert maximum pending records"),    // APP
+        new Entry(DB_LOAD_THREADS            , 0                                , "Bulk table load threads (0=sequential)"),    // APP
+        new Entry(DB_LOAD_BATCH_SIZE         , 500                              , "Bulk table load batch size"),                // APP
+        new Entry(DB_LOAD_DEFER_INDEXES      , false                            , "Bulk table load defers alternate indexes"),  // APP
+        new Entry(DB_LOAD_PROGRESS_SEC       , 30L                              , "Bulk load/dump progress interval (sec)"),    // APP
+        new Entry(DB_DUMP_THREADS            , 0                                , "Chunked table dump threads (0=sequential)"), // APP
+        new Entry(DB_DUMP_CHUNK_KEYS         , 2                                , "Chunked table dump key fields"),             // APP
+        new Entry(DB_DUMP_BUFFER_ROWS        , 1000                             , "Chunked table dump rows buffered per chunk"),// APP
 
         new Entry("OSTools attributes"),
         new Entry(OSTOOLS_MEMORY_CHECK_ENABLE, false                            , "Enable memory checks"),                      // APP|WEB
         new Entry(OSTOOLS_MEMORY_TREND_WEIGHT, 0.15                             , "Memory Check Trend Weight"),                 // APP|WEB
         new Entry(OSTOOLS_MEMORY_USAGE_WARN  , 0.90                             , "Memory Usage Limit Warning"),                // APP|WEB
 
+        new Entry("ServerSocketThread attributes"),
+        new Entry(SERVER_SOCKET_NIO          , false                            , "Use NIO selector listeners"),                // APP
+        new Entry(SERVER_SOCKET_NIO_SELECTORS, 2                                , "NIO TCP selector threads"),                  // APP
+        new Entry(SERVER_SOCKET_NIO_WORKERS  , 50                               , "NIO packet handler threads"),                // APP
+        new Entry(SERVER_SOCKET_VIRTUAL_THREADS, false                          , "Run client sessions on virtual threads"),    // APP
+        new Entry(SERVER_SOCKET_READ_BUFFER  , 4096                             , "Session socket read buffer size"),           // APP
+        new Entry(SERVER_SOCKET_UDP_RECEIVERS, 1                                , "UDP receiver threads"),                      // APP
+        new Entry(SERVER_SOCKET_UDP_WORKERS  , 0                                , "UDP datagram worker threads (0=disabled)"),  // APP
+        new Entry(SERVER_SOCKET_UDP_QUEUE    , 1000                             , "UDP datagram queue size per worker"),        // APP
+        new Entry(SERVER_SOCKET_UDP_BLOCK    , false                            , "Wait for UDP worker queue space"),           // APP
+
+        new Entry("ThreadPool attributes"),
+        new Entry(THREAD_POOL_VIRTUAL_THREADS, false                            , "Run ThreadPool jobs on virtual threads"),    // APP|WEB
+
+        new Entry("ReverseGeocodeQueue attributes"),
+        new Entry(RGQUEUE_ENABLE             , false                            , "Enable reverse-geocode pipeline"),           // APP
+        new Entry(RGQUEUE_MAX_PENDING        , 5000                             , "Maximum pending reverse-geocodes"),          // APP
+        new Entry(RGQUEUE_MAX_WAIT_MS        , 1000L                            , "Maximum wait when pipeline is full"),        // APP
+        new Entry(RGQUEUE_THREADS            , 2                                , "Concurrent requests per provider"),          // APP
+        new Entry(RGQUEUE_RATE_LIMIT         , 0.0                              , "Maximum requests/second per provider"),      // APP
+        new Entry(RGQUEUE_CACHE_FILE         , ""                               , "Persistent reverse-geocode cache file"),     // APP
+        new Entry(RGQUEUE_CACHE_SLOTS        , 262144                           , "Persistent cache entry slots"),              // APP
+        new Entry(RGQUEUE_CACHE_MAX_AGE_SEC  , 2592000L                         , "Persistent cache entry maximum age"),        // APP
+
     };
 
     // ------------------------------------------------------------------------
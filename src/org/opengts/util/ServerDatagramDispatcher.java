@@ -0,0 +1,501 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  Multi-threaded UDP receive/dispatch support for ServerSocketThread
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.io.*;
+import java.util.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.lang.reflect.*;
+import java.util.concurrent.atomic.*;
+
+/**
+*** <code>ServerDatagramDispatcher</code> services the UDP listener of a
+*** <code>ServerSocketThread</code> with multiple receiver threads and a fixed pool
+*** of worker threads.<br>
+*** Receiver threads read datagrams into pooled (recycled) <code>DatagramPacket</code>
+*** buffers and hand them off to a worker selected by hashing the datagram source
+*** address/port, so that datagrams from the same device are always handled in the
+*** order received.  Each worker has a bounded queue.  When a worker queue is full the
+*** datagram is either dropped (and counted), or the receiver waits for space
+*** ("ServerSocketThread.udp.blockOnFull"), leaving the backlog in the socket receive
+*** buffer.<br>
+*** When more than one receiver is configured, each receiver is bound to its own
+*** socket using SO_REUSEPORT (Java 9+ on Linux/BSD), which keeps datagrams from
+*** the same source on the same socket.  Otherwise a single receiver is used, since
+*** receivers sharing one socket may reorder datagrams from the same device.<br>
+*** Each datagram is handled as a single session, as in NIO mode, so existing
+*** <code>ClientPacketHandler</code> implementations work unchanged.  Each worker
+*** reuses one session (and its read buffers) for all datagrams it handles.
+**/
+
+public class ServerDatagramDispatcher
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final long   QUEUE_WAIT_MS           = 1000L;        // shutdown check interval
+    private static final long   DROP_LOG_INTERVAL       = 1000L;        // log every Nth dropped datagram
+
+    // ------------------------------------------------------------------------
+    // SO_REUSEPORT support (Java 9+)
+
+    private static int          reusePortState          = 0;            // 0=unchecked, 1=supported, -1=unsupported
+    private static Object       reusePortOption         = null;         // StandardSocketOptions.SO_REUSEPORT
+    private static Method       setOptionMethod         = null;         // DatagramChannel.setOption(SocketOption,Object)
+
+    /**
+    *** Returns true if the SO_REUSEPORT socket option is available in this runtime
+    **/
+    private static synchronized boolean _isReusePortSupported()
+    {
+        if (reusePortState == 0) {
+            try {
+                Class<?> optClass = Class.forName("java.net.StandardSocketOptions");
+                Class<?> sockOpt  = Class.forName("java.net.SocketOption");
+                reusePortOption = optClass.getField("SO_REUSEPORT").get(null);
+                setOptionMethod = DatagramChannel.class.getMethod("setOption", sockOpt, Object.class);
+                reusePortState  = 1;
+            } catch (Throwable th) { // ClassNotFoundException, NoSuchFieldException, NoSuchMethodException
+                reusePortState  = -1;
+            }
+        }
+        return (reusePortState > 0);
+    }
+
+    /**
+    *** Opens a UDP channel bound to the specified address/port with SO_REUSEPORT enabled
+    *** @return The bound DatagramChannel, or null if SO_REUSEPORT is not supported
+    **/
+    private static DatagramChannel _openReusePortChannel(InetAddress bind, int port)
+        throws IOException
+    {
+        if (!ServerDatagramDispatcher._isReusePortSupported()) {
+            return null;
+        }
+        DatagramChannel dc = DatagramChannel.open();
+        try {
+            setOptionMethod.invoke(dc, reusePortOption, Boolean.TRUE);
+        } catch (Throwable th) { // UnsupportedOperationException (wrapped), IllegalAccessException
+            // not supported by this platform
+            try { dc.close(); } catch (IOException ioe) {}
+            return null;
+        }
+        dc.socket().bind(new InetSocketAddress(bind,port));
+        return dc;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates a ServerDatagramDispatcher for the UDP listener of the specified
+    *** ServerSocketThread.  If more than one receiver is requested, and SO_REUSEPORT
+    *** is supported, the listen port is re-bound with one socket per receiver,
+    *** otherwise a single receiver is used.
+    *** @param sst        The ServerSocketThread
+    *** @param receivers  The number of receiver threads
+    *** @param workers    The number of worker threads
+    *** @param queueSize  The maximum number of queued datagrams per worker
+    *** @return The ServerDatagramDispatcher, or null if the ServerSocketThread is not a UDP listener
+    **/
+    public static ServerDatagramDispatcher createDispatcher(ServerSocketThread sst,
+        int receivers, int workers, int queueSize)
+    {
+        if ((sst == null) || (sst.getDatagramSocket() == null)) {
+            return null;
+        }
+        DatagramSocket ds = sst.getDatagramSocket();
+        int rcvCnt = Math.max(receivers, 1);
+        DatagramSocket sockets[] = new DatagramSocket[] { ds };
+        if ((rcvCnt > 1) && !ServerDatagramDispatcher._isReusePortSupported()) {
+            // keep the existing listener socket.  Multiple receivers on a shared socket
+            // could reorder datagrams from the same device, so only one receiver is used.
+            Print.logWarn("SO_REUSEPORT not supported, using a single UDP receiver on port " + ds.getLocalPort());
+            rcvCnt = 1;
+        }
+        if (rcvCnt > 1) {
+            // attempt to re-bind the listen port with one SO_REUSEPORT socket per receiver
+            InetAddress bind = ds.getLocalAddress();
+            int         port = ds.getLocalPort();
+            DatagramSocket rp[] = new DatagramSocket[rcvCnt];
+            try {
+                int rcvBuf = ds.getReceiveBufferSize(); // retain configured buffer size
+                ds.close();
+                for (int i = 0; i < rcvCnt; i++) {
+                    DatagramChannel dc = ServerDatagramDispatcher._openReusePortChannel(bind, port);
+                    if (dc == null) {
+                        // SO_REUSEPORT not supported by this platform
+                        for (int r = 0; r < i; r++) { rp[r].close(); }
+                        rp = null;
+                        break;
+                    }
+                    rp[i] = dc.socket();
+                    rp[i].setReceiveBufferSize(rcvBuf);
+                }
+                if (rp == null) {
+                    // restore the single listener socket.  Multiple receivers on a shared
+                    // socket could reorder datagrams from the same device, so only one
+                    // receiver is used.
+                    Print.logWarn("SO_REUSEPORT not supported, using a single UDP receiver on port " + port);
+                    ds = ServerSocketThread.createDatagramSocket(bind, port);
+                    ds.setReceiveBufferSize(rcvBuf);
+                    sst._setDatagramSocket(ds);
+                    sockets = new DatagramSocket[] { ds };
+                } else {
+                    // the first socket is also used for outbound responses
+                    sst._setDatagramSocket(rp[0]);
+                    sockets = rp;
+                }
+            } catch (IOException ioe) {
+                Print.logException("Unable to re-bind UDP listener on port " + port, ioe);
+                return null;
+            }
+        }
+        return new ServerDatagramDispatcher(sst, sockets, workers, queueSize);
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private ServerSocketThread          sst             = null;
+    private DatagramSocket              sockets[]       = null;
+    private int                         packetSize      = 0;
+
+    private ReceiverThread              receivers[]     = null;
+    private WorkerThread                workers[]       = null;
+    private int                         queueSize       = 0;
+    private boolean                     blockOnFull     = false;
+
+    private java.util.List<DatagramPacket> packetPool   = null;
+    private int                         maxPooled       = 0;
+
+    private AtomicLong                  receivedCount   = new AtomicLong(0L);
+    private AtomicLong                  droppedCount    = new AtomicLong(0L);
+    private AtomicLong                  handledCount    = new AtomicLong(0L);
+
+    private boolean                     isShutdown      = false;
+
+    /**
+    *** Constructor
+    **/
+    private ServerDatagramDispatcher(ServerSocketThread sst, DatagramSocket sockets[],
+        int workers, int queueSize)
+    {
+        this.sst         = sst;
+        this.sockets     = sockets;
+        this.packetSize  = sst.getMaximumPacketLength();
+        this.queueSize   = Math.max(queueSize, 1);
+        this.blockOnFull = RTConfig.getBoolean(RTKey.SERVER_SOCKET_UDP_BLOCK, false);
+        int port = sst.getLocalPort();
+        this.workers     = new WorkerThread[Math.max(workers, 1)];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new WorkerThread("ServerSocketUDP_" + port + "_W" + (i+1));
+        }
+        this.receivers   = new ReceiverThread[this.sockets.length]; // one receiver per socket
+        for (int i = 0; i < this.receivers.length; i++) {
+            this.receivers[i] = new ReceiverThread("ServerSocketUDP_" + port + "_R" + (i+1), this.sockets[i]);
+        }
+        // every packet is either being received, queued, or handled
+        this.maxPooled   = this.receivers.length + (this.workers.length * (this.queueSize + 1));
+        this.packetPool  = new ArrayList<DatagramPacket>();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Runs the listener (returns when the listener socket has been closed)
+    **/
+    public void run()
+    {
+        int port = this.sst.getLocalPort();
+        Print.logInfo("UDP listener on port " + port +
+            " [receivers=" + this.receivers.length +
+            ", workers=" + this.workers.length +
+            ", queue=" + this.queueSize + "]");
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i].start();
+        }
+        for (int i = 1; i < this.receivers.length; i++) {
+            this.receivers[i].start();
+        }
+        this.receivers[0].run(); // first receiver runs in this thread
+        Print.logInfo("Shutdown UDP server on port " + port);
+        this.shutdown();
+    }
+
+    /**
+    *** Closes the listener sockets and stops the worker threads once queued
+    *** datagrams have been handled
+    **/
+    public void shutdown()
+    {
+        synchronized (this) {
+            if (this.isShutdown) {
+                return;
+            }
+            this.isShutdown = true;
+        }
+        for (int i = 0; i < this.sockets.length; i++) {
+            this.sockets[i].close();
+        }
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i].shutdown();
+        }
+        Print.logInfo("UDP listener on port " + this.sst.getLocalPort() +
+            " [received=" + this.getReceivedCount() +
+            ", handled=" + this.getHandledCount() +
+            ", dropped=" + this.getDroppedCount() + "]");
+    }
+
+    /**
+    *** Returns true if this dispatcher has been shut down
+    **/
+    public synchronized boolean isShutdown()
+    {
+        return this.isShutdown;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Gets the number of datagrams received
+    *** @return The number of datagrams received
+    **/
+    public long getReceivedCount()
+    {
+        return this.receivedCount.get();
+    }
+
+    /**
+    *** Gets the number of datagrams dropped because the selected worker queue was full
+    *** @return The number of dropped datagrams
+    **/
+    public long getDroppedCount()
+    {
+        return this.droppedCount.get();
+    }
+
+    /**
+    *** Gets the number of datagrams handled
+    *** @return The number of datagrams handled
+    **/
+    public long getHandledCount()
+    {
+        return this.handledCount.get();
+    }
+
+    /**
+    *** Gets the number of datagrams currently queued for handling
+    *** @return The number of queued datagrams
+    **/
+    public int getQueuedCount()
+    {
+        int count = 0;
+        for (int i = 0; i < this.workers.length; i++) {
+            count += this.workers[i].getQueuedCount();
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------------------
+    // DatagramPacket pool
+
+    /**
+    *** Gets a DatagramPacket from the pool, reset to the full buffer length
+    **/
+    private DatagramPacket _getPacket()
+    {
+        DatagramPacket dp = null;
+        synchronized (this.packetPool) {
+            int size = this.packetPool.size();
+            if (size > 0) {
+                dp = this.packetPool.remove(size - 1);
+            }
+        }
+        if (dp == null) {
+            byte b[] = new byte[this.packetSize];
+            return new DatagramPacket(b, b.length);
+        } else {
+            dp.setLength(dp.getData().length);
+            return dp;
+        }
+    }
+
+    /**
+    *** Returns a DatagramPacket to the pool
+    **/
+    private void _releasePacket(DatagramPacket dp)
+    {
+        if (dp != null) {
+            synchronized (this.packetPool) {
+                if (this.packetPool.size() < this.maxPooled) {
+                    this.packetPool.add(dp);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Selects the worker for the specified datagram, based on the source address/port
+    **/
+    private WorkerThread _getWorker(DatagramPacket dp)
+    {
+        InetAddress addr = dp.getAddress();
+        int h = ((addr != null)? addr.hashCode() : 0) * 31 + dp.getPort();
+        h ^= (h >>> 16);
+        return this.workers[(h & 0x7FFFFFFF) % this.workers.length];
+    }
+
+    /**
+    *** Queues the received datagram on the worker for its source address.  The datagram
+    *** is dropped if the worker queue is full (and 'blockOnFull' is false).
+    **/
+    private void _dispatch(DatagramPacket dp)
+    {
+        WorkerThread w = this._getWorker(dp);
+        boolean queued = w.offer(dp, this.blockOnFull);
+        this.receivedCount.incrementAndGet();
+        if (!queued) {
+            long dropped = this.droppedCount.incrementAndGet();
+            this._releasePacket(dp);
+            if ((dropped % DROP_LOG_INTERVAL) == 1L) {
+                Print.logWarn("UDP worker queue full, datagram dropped [" + w.getName() + ", dropped=" + dropped + "]");
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Receives datagrams from a listener socket
+    **/
+    private class ReceiverThread
+        extends Thread
+    {
+        private DatagramSocket socket = null;
+
+        public ReceiverThread(String name, DatagramSocket socket) {
+            super(name);
+            this.socket = socket;
+        }
+
+        public void run() {
+            ServerDatagramDispatcher sdd = ServerDatagramDispatcher.this;
+            while (!this.socket.isClosed()) {
+                DatagramPacket dp = sdd._getPacket();
+                try {
+                    this.socket.receive(dp); // block until datagram
+                } catch (SocketException se) {
+                    // shutdown support
+                    sdd._releasePacket(dp);
+                    break;
+                } catch (IOException ioe) {
+                    sdd._releasePacket(dp);
+                    if (this.socket.isClosed()) { break; }
+                    Print.logError("Connection - " + ioe);
+                    continue; // go back and wait again
+                }
+                sdd._dispatch(dp);
+            }
+            // closing any listener socket shuts down the dispatcher
+            sdd.shutdown();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Handles queued datagrams, in the order received
+    **/
+    private class WorkerThread
+        extends Thread
+    {
+        private DatagramPacket  queue[]     = null;
+        private int             head        = 0;
+        private int             count       = 0;
+        private boolean         stop        = false;
+
+        public WorkerThread(String name) {
+            super(name);
+            this.queue = new DatagramPacket[ServerDatagramDispatcher.this.queueSize];
+        }
+
+        public synchronized int getQueuedCount() {
+            return this.count;
+        }
+
+        /* add datagram to this worker queue, returns false if the queue is full */
+        public synchronized boolean offer(DatagramPacket dp, boolean block) {
+            while (this.count >= this.queue.length) {
+                if (!block || this.stop) {
+                    return false;
+                }
+                try { this.wait(QUEUE_WAIT_MS); } catch (InterruptedException ie) {}
+            }
+            this.queue[(this.head + this.count) % this.queue.length] = dp;
+            this.count++;
+            this.notifyAll();
+            return true;
+        }
+
+        /* remove the next datagram from this worker queue, returns null on shutdown */
+        private synchronized DatagramPacket _take() {
+            while (this.count == 0) {
+                if (this.stop) {
+                    return null;
+                }
+                try { this.wait(QUEUE_WAIT_MS); } catch (InterruptedException ie) {}
+            }
+            DatagramPacket dp = this.queue[this.head];
+            this.queue[this.head] = null;
+            this.head = (this.head + 1) % this.queue.length;
+            this.count--;
+            this.notifyAll(); // wake a blocked receiver
+            return dp;
+        }
+
+        /* stop once the queue is empty */
+        public synchronized void shutdown() {
+            this.stop = true;
+            this.notifyAll();
+        }
+
+        public void run() {
+            ServerDatagramDispatcher sdd = ServerDatagramDispatcher.this;
+            ServerSocketThread.ServerSessionThread sess = sdd.sst._createDatagramSession();
+            while (true) {
+                DatagramPacket dp = this._take();
+                if (dp == null) { break; }
+                try {
+                    sdd.sst._handleDatagram(dp, sess);
+                } catch (Throwable th) {
+                    Print.logException("UDP datagram handler error", th);
+                }
+                sdd.handledCount.incrementAndGet();
+                sdd._releasePacket(dp);
+            }
+        }
+    }
+
+}
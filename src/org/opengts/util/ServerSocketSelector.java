@@ -0,0 +1,1173 @@
+// ----------------------------------------------------------------------------
+// Copyright 2007-2011, GeoTelematic Solutions, Inc.
+// All rights reserved
+// ----------------------------------------------------------------------------
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// ----------------------------------------------------------------------------
+// Description:
+//  NIO selector-based listener support for ServerSocketThread
+// ----------------------------------------------------------------------------
+package org.opengts.util;
+
+import java.io.*;
+import java.util.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+*** <code>ServerSocketSelector</code> services the TCP/UDP listener of a
+*** <code>ServerSocketThread</code> using non-blocking channels.<br>
+*** TCP sessions are multiplexed over a small number of selector threads, which only
+*** read received bytes into pooled <code>ByteBuffer</code>s and write pending output.
+*** Packet framing (<code>getActualPacketLength</code>, line terminators, etc) and
+*** packet handling (<code>getHandlePacket</code>) are performed sequentially per
+*** session on a bounded <code>ThreadPool</code>, so existing
+*** <code>ClientPacketHandler</code> implementations work unchanged.<br>
+*** UDP datagrams are received on the listener thread and each datagram is handled
+*** as a single session on the same <code>ThreadPool</code>.
+**/
+
+public class ServerSocketSelector
+{
+
+    // ------------------------------------------------------------------------
+
+    private static final long   SELECT_TIMEOUT_MS       = 1000L;        // timeout check interval
+    private static final int    BUFFER_SIZE             = 8 * 1024;     // pooled buffer size
+    private static final int    MAX_POOLED_BUFFERS      = 1024;
+    private static final int    MAX_INBOUND_SIZE        = 1024 * 1024;  // stop reading above this
+
+    // ------------------------------------------------------------------------
+    // ByteBuffer pool
+
+    private static LinkedList<ByteBuffer> bufferPool = new LinkedList<ByteBuffer>();
+
+    /**
+    *** Gets a cleared ByteBuffer from the pool
+    **/
+    private static ByteBuffer _getBuffer()
+    {
+        synchronized (bufferPool) {
+            if (!bufferPool.isEmpty()) {
+                ByteBuffer bb = bufferPool.removeFirst();
+                bb.clear();
+                return bb;
+            }
+        }
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+    *** Returns a ByteBuffer to the pool
+    **/
+    private static void _releaseBuffer(ByteBuffer bb)
+    {
+        if ((bb != null) && (bb.capacity() == BUFFER_SIZE)) {
+            synchronized (bufferPool) {
+                if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+                    bufferPool.addFirst(bb);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Creates a ServerSocketSelector for the specified ServerSocketThread, converting
+    *** the bound listener socket to a channel-based socket if necessary.
+    *** @param sst  The ServerSocketThread
+    *** @return The ServerSocketSelector, or null if NIO is not supported for this listener
+    ***         (ie. SSL sockets)
+    **/
+    public static ServerSocketSelector createSelector(ServerSocketThread sst)
+    {
+        if (sst == null) {
+            return null;
+        }
+        try {
+            if (sst.getServerSocket() != null) {
+                // TCP
+                ServerSocket ss = sst.getServerSocket();
+                if (ss.getChannel() != null) {
+                    return new ServerSocketSelector(sst, ss.getChannel(), null);
+                } else
+                if (ss instanceof javax.net.ssl.SSLServerSocket) {
+                    return null; // SSL remains on blocking sessions
+                } else {
+                    // re-bind the listen port using a channel-based socket
+                    InetAddress bind = ss.getInetAddress();
+                    int         port = ss.getLocalPort();
+                    ss.close();
+                    ServerSocketChannel ssc = ServerSocketChannel.open();
+                    ssc.socket().setReuseAddress(true);
+                    ssc.socket().bind(new InetSocketAddress(bind,port), ServerSocketThread.getListenBacklog());
+                    sst._setServerSocket(ssc.socket());
+                    return new ServerSocketSelector(sst, ssc, null);
+                }
+            } else
+            if (sst.getDatagramSocket() != null) {
+                // UDP
+                DatagramSocket ds = sst.getDatagramSocket();
+                if (ds.getChannel() != null) {
+                    return new ServerSocketSelector(sst, null, ds.getChannel());
+                } else {
+                    // re-bind the listen port using a channel-based socket
+                    InetAddress bind = ds.getLocalAddress();
+                    int         port = ds.getLocalPort();
+                    ds.close();
+                    DatagramChannel dc = DatagramChannel.open();
+                    dc.socket().bind(new InetSocketAddress(bind,port));
+                    sst._setDatagramSocket(dc.socket());
+                    return new ServerSocketSelector(sst, null, dc);
+                }
+            } else {
+                return null;
+            }
+        } catch (IOException ioe) {
+            Print.logException("Unable to create NIO listener", ioe);
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private ServerSocketThread      sst             = null;
+    private ServerSocketChannel     tcpChannel      = null;
+    private DatagramChannel         udpChannel      = null;
+
+    private SelectorThread          selectors[]     = null;
+    private int                     nextSelector    = 0;
+    private ThreadPool              handlerPool     = null;
+
+    private boolean                 isShutdown      = false;
+
+    /**
+    *** Constructor
+    **/
+    private ServerSocketSelector(ServerSocketThread sst, ServerSocketChannel tcp, DatagramChannel udp)
+    {
+        this.sst         = sst;
+        this.tcpChannel  = tcp;
+        this.udpChannel  = udp;
+        int workers      = RTConfig.getInt(RTKey.SERVER_SOCKET_NIO_WORKERS, 50);
+        this.handlerPool = new ThreadPool("ServerSocketNIO_" + sst.getLocalPort(), workers);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Runs the listener (returns when the listener socket has been closed)
+    **/
+    public void run()
+    {
+        if (this.tcpChannel != null) {
+            this._runTCP();
+        } else
+        if (this.udpChannel != null) {
+            this._runUDP();
+        }
+        this.shutdown();
+    }
+
+    /**
+    *** Closes all sessions and stops the selector threads
+    **/
+    public void shutdown()
+    {
+        synchronized (this) {
+            if (this.isShutdown) {
+                return;
+            }
+            this.isShutdown = true;
+        }
+        if (this.selectors != null) {
+            for (int i = 0; i < this.selectors.length; i++) {
+                this.selectors[i].shutdown();
+            }
+        }
+        this.handlerPool.stopThreads();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** TCP: accept connections and assign them to selector threads
+    **/
+    private void _runTCP()
+    {
+        int port = this.sst.getLocalPort();
+
+        /* start selector threads */
+        int selCnt = Math.max(RTConfig.getInt(RTKey.SERVER_SOCKET_NIO_SELECTORS, 2), 1);
+        this.selectors = new SelectorThread[selCnt];
+        try {
+            for (int i = 0; i < selCnt; i++) {
+                this.selectors[i] = new SelectorThread("ServerSocketNIO_" + port + "_" + (i+1));
+                this.selectors[i].start();
+            }
+        } catch (IOException ioe) {
+            Print.logException("Unable to open NIO Selector", ioe);
+            return;
+        }
+        Print.logInfo("NIO TCP listener on port " + port + " [selectors=" + selCnt + "]");
+
+        /* accept loop */
+        while (true) {
+            SocketChannel sc = null;
+            try {
+                sc = this.tcpChannel.accept(); // blocking
+            } catch (ClosedChannelException cce) {
+                // includes AsynchronousCloseException
+                Print.logInfo("Shutdown TCP server on port " + port);
+                break;
+            } catch (IOException ioe) {
+                if (!this.tcpChannel.isOpen()) {
+                    Print.logInfo("Shutdown TCP server on port " + port);
+                    break;
+                }
+                Print.logError("Connection - " + ioe);
+                continue; // go back and wait again
+            }
+            if (sc == null) {
+                continue;
+            }
+            try {
+                sc.configureBlocking(false);
+                SelectorThread st = this.selectors[this.nextSelector];
+                this.nextSelector = (this.nextSelector + 1) % this.selectors.length;
+                st.addSession(new Session(st, sc));
+            } catch (IOException ioe) {
+                Print.logError("Unable to register client connection - " + ioe);
+                try { sc.close(); } catch (IOException e) {}
+            }
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+    *** UDP: receive datagrams and dispatch each to a handler thread
+    **/
+    private void _runUDP()
+    {
+        int port = this.sst.getLocalPort();
+        Selector selector = null;
+        try {
+            selector = Selector.open();
+            this.udpChannel.configureBlocking(false);
+            this.udpChannel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException ioe) {
+            Print.logException("Unable to open NIO Selector", ioe);
+            return;
+        }
+        Print.logInfo("NIO UDP listener on port " + port);
+        ByteBuffer bb = ByteBuffer.allocate(this.sst.getMaximumPacketLength());
+        while (this.udpChannel.isOpen()) {
+            try {
+                selector.select(SELECT_TIMEOUT_MS);
+                selector.selectedKeys().clear();
+                for (;;) {
+                    bb.clear();
+                    SocketAddress sa = this.udpChannel.receive(bb);
+                    if (sa == null) { break; } // no more datagrams
+                    if (!(sa instanceof InetSocketAddress)) { continue; }
+                    InetSocketAddress isa = (InetSocketAddress)sa;
+                    bb.flip();
+                    byte b[] = new byte[bb.remaining()];
+                    bb.get(b);
+                    final DatagramPacket dp = new DatagramPacket(b, b.length, isa.getAddress(), isa.getPort());
+                    this.handlerPool.run(new Runnable() {
+                        public void run() {
+                            ServerSocketSelector.this.sst._handleDatagram(dp);
+                        }
+                    });
+                }
+            } catch (ClosedChannelException cce) {
+                break;
+            } catch (IOException ioe) {
+                if (!this.udpChannel.isOpen()) { break; }
+                Print.logError("Connection - " + ioe);
+            }
+        }
+        Print.logInfo("Shutdown UDP server on port " + port);
+        try { selector.close(); } catch (IOException ioe) {}
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Selector thread servicing reads/writes/timeouts of a set of TCP sessions
+    **/
+    private class SelectorThread
+        extends Thread
+    {
+        private Selector                selector    = null;
+        private java.util.List<Session> sessions    = new Vector<Session>();
+        private java.util.List<Session> pending     = new Vector<Session>(); // register/interest changes
+        private boolean                 stop        = false;
+        public SelectorThread(String name) throws IOException {
+            super(name);
+            this.selector = Selector.open();
+            this.setDaemon(true);
+        }
+        public void addSession(Session s) {
+            this.sessions.add(s);
+            this.requestUpdate(s);
+        }
+        public void requestUpdate(Session s) {
+            // apply registration/interest changes on the selector thread
+            synchronized (this.pending) {
+                if (!this.pending.contains(s)) {
+                    this.pending.add(s);
+                }
+            }
+            this.selector.wakeup();
+        }
+        public void shutdown() {
+            this.stop = true;
+            this.selector.wakeup();
+        }
+        public void run() {
+            long lastCheckMS = 0L;
+            while (!this.stop) {
+                try {
+                    this.selector.select(SELECT_TIMEOUT_MS);
+                } catch (IOException ioe) {
+                    Print.logError("Selector error - " + ioe);
+                    continue;
+                }
+                /* registration/interest changes */
+                Session upd[] = null;
+                synchronized (this.pending) {
+                    upd = this.pending.toArray(new Session[this.pending.size()]);
+                    this.pending.clear();
+                }
+                for (int i = 0; i < upd.length; i++) {
+                    upd[i]._updateInterest(this.selector);
+                }
+                /* ready channels */
+                Iterator<SelectionKey> ki = this.selector.selectedKeys().iterator();
+                while (ki.hasNext()) {
+                    SelectionKey key = ki.next();
+                    ki.remove();
+                    Session s = (Session)key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isWritable()) {
+                        s._flushOutput();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        s._readInput();
+                    }
+                }
+                /* timeouts */
+                long nowMS = System.currentTimeMillis();
+                if ((nowMS - lastCheckMS) >= SELECT_TIMEOUT_MS) {
+                    lastCheckMS = nowMS;
+                    Session ss[] = this.sessions.toArray(new Session[this.sessions.size()]);
+                    for (int i = 0; i < ss.length; i++) {
+                        if (ss[i]._checkTimeouts(nowMS)) {
+                            this.sessions.remove(ss[i]); // closed
+                        }
+                    }
+                }
+            }
+            /* close remaining sessions */
+            Session ss[] = this.sessions.toArray(new Session[this.sessions.size()]);
+            for (int i = 0; i < ss.length; i++) {
+                ss[i]._closeChannel();
+            }
+            this.sessions.clear();
+            try { this.selector.close(); } catch (IOException ioe) {}
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    private static final int TIMEOUT_NONE       = 0;
+    private static final int TIMEOUT_IDLE       = 1;
+    private static final int TIMEOUT_PACKET     = 2;
+    private static final int TIMEOUT_SESSION    = 3;
+
+    /**
+    *** TCP session state.  The selector thread only reads input into the pooled
+    *** inbound buffer and flushes pending output.  All ClientPacketHandler calls are
+    *** made from a single handler-pool job at a time ('scheduled').
+    **/
+    private class Session
+        implements ServerSocketThread.SessionInfo, Runnable
+    {
+        private SelectorThread          owner           = null;
+        private SocketChannel           channel         = null;
+        private SelectionKey            key             = null;
+        private InetAddress             inetAddr        = null;
+        private int                     remotePort      = -1;
+        private ClientPacketHandler     handler         = null;
+        private PacketFramer            framer          = null;
+        // -- guarded by 'this'
+        private ByteBuffer              inbound         = null; // write mode
+        private boolean                 readPaused      = false;
+        private boolean                 endOfStream     = false;
+        private int                     timeoutType     = TIMEOUT_NONE;
+        private boolean                 scheduled       = false;
+        private boolean                 started         = false;
+        private boolean                 terminated      = false;
+        private long                    sessionStartMS  = 0L;
+        private long                    idleStartMS     = 0L;
+        private long                    packetStartMS   = -1L;
+        // -- guarded by 'outLock'
+        private Object                  outLock         = new Object();
+        private LinkedList<ByteBuffer>  outbound        = new LinkedList<ByteBuffer>();
+        private boolean                 closeOnFlush    = false;
+        private long                    closeAtMS       = -1L;
+        private boolean                 closed          = false;
+        // -- counts
+        private long                    readByteCount   = 0L;
+        private long                    writeByteCount  = 0L;
+        private int                     promptIndex     = 0;
+
+        public Session(SelectorThread owner, SocketChannel sc) {
+            this.owner          = owner;
+            this.channel        = sc;
+            Socket sock         = sc.socket();
+            this.inetAddr       = sock.getInetAddress();
+            this.remotePort     = sock.getPort();
+            this.handler        = ServerSocketSelector.this.sst.getClientPacketHandler();
+            this.sessionStartMS = System.currentTimeMillis();
+            this.idleStartMS    = this.sessionStartMS;
+            this.scheduled      = true; // session start
+            ServerSocketSelector.this.handlerPool.run(this);
+        }
+
+        // -- SessionInfo
+        public int getLocalPort() {
+            return ServerSocketSelector.this.sst.getLocalPort();
+        }
+        public boolean isTCP() {
+            return true;
+        }
+        public boolean isUDP() {
+            return false;
+        }
+        public int getAvailableBytes() {
+            synchronized (this) {
+                return (this.inbound != null)? this.inbound.position() : 0;
+            }
+        }
+        public InetAddress getInetAddress() {
+            return this.inetAddr;
+        }
+        public int getRemotePort() {
+            int rPort = ServerSocketSelector.this.sst.getRemotePort(); // likely always '0'
+            return (rPort > 0)? rPort : this.remotePort;
+        }
+        public boolean tcpWrite(byte data[]) {
+            // may be called by an external thread
+            try {
+                return this._write(data);
+            } catch (IOException ioe) {
+                return false;
+            }
+        }
+        public long getReadByteCount() {
+            return this.readByteCount;
+        }
+        public long getWriteByteCount() {
+            return this.writeByteCount;
+        }
+
+        // -- selector thread: apply registration/interest
+        public void _updateInterest(Selector selector) {
+            try {
+                if (this.key == null) {
+                    if (!this.channel.isOpen()) { return; }
+                    this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+                }
+                if (!this.key.isValid()) {
+                    return;
+                }
+                int ops = 0;
+                synchronized (this) {
+                    if (!this.readPaused && !this.endOfStream) { ops |= SelectionKey.OP_READ; }
+                }
+                synchronized (this.outLock) {
+                    if (!this.outbound.isEmpty()) { ops |= SelectionKey.OP_WRITE; }
+                    if (this.closeOnFlush && this.outbound.isEmpty()) {
+                        this._closeChannel();
+                        return;
+                    }
+                }
+                this.key.interestOps(ops);
+            } catch (IOException ioe) { // ClosedChannelException, CancelledKeyException
+                this._closeChannel();
+            } catch (CancelledKeyException cke) {
+                this._closeChannel();
+            }
+        }
+
+        // -- selector thread: read available bytes into inbound buffer
+        public void _readInput() {
+            boolean schedule = false;
+            synchronized (this) {
+                try {
+                    for (;;) {
+                        if (this.inbound == null) {
+                            this.inbound = ServerSocketSelector._getBuffer();
+                        } else
+                        if (!this.inbound.hasRemaining()) {
+                            if (this.inbound.capacity() >= MAX_INBOUND_SIZE) {
+                                // handler is not keeping up, stop reading for now
+                                this.readPaused = true;
+                                this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+                                break;
+                            }
+                            ByteBuffer nb = ByteBuffer.allocate(this.inbound.capacity() * 2);
+                            this.inbound.flip();
+                            nb.put(this.inbound);
+                            ServerSocketSelector._releaseBuffer(this.inbound);
+                            this.inbound = nb;
+                        }
+                        int n = this.channel.read(this.inbound);
+                        if (n < 0) {
+                            // socket closed by client
+                            this.endOfStream = true;
+                            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+                            schedule = true;
+                            break;
+                        } else
+                        if (n == 0) {
+                            break;
+                        }
+                        this.readByteCount += n;
+                        schedule = true;
+                    }
+                } catch (IOException ioe) {
+                    Print.logError("Connection closed - " + ioe);
+                    this.endOfStream = true;
+                    schedule = true;
+                    try { this.key.interestOps(0); } catch (Throwable th) {}
+                }
+                if (this.inbound.position() == 0) {
+                    ServerSocketSelector._releaseBuffer(this.inbound);
+                    this.inbound = null;
+                }
+                if (schedule && !this.scheduled && !this.terminated) {
+                    this.scheduled = true;
+                } else {
+                    schedule = false;
+                }
+            }
+            if (schedule) {
+                ServerSocketSelector.this.handlerPool.run(this);
+            }
+        }
+
+        // -- selector thread: write pending output
+        public void _flushOutput() {
+            synchronized (this.outLock) {
+                try {
+                    while (!this.outbound.isEmpty()) {
+                        ByteBuffer bb = this.outbound.getFirst();
+                        this.channel.write(bb);
+                        if (bb.hasRemaining()) {
+                            return; // socket buffer full, wait for next OP_WRITE
+                        }
+                        this.outbound.removeFirst();
+                    }
+                    if (this.closeOnFlush) {
+                        this._closeChannel();
+                    } else {
+                        this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+                    }
+                } catch (IOException ioe) {
+                    Print.logError("writeBytes error - " + ioe);
+                    this.outbound.clear();
+                    this._closeChannel();
+                } catch (CancelledKeyException cke) {
+                    this.outbound.clear();
+                }
+            }
+        }
+
+        // -- selector thread: check timeouts (returns true if this session is closed)
+        public boolean _checkTimeouts(long nowMS) {
+            synchronized (this.outLock) {
+                if (this.closed) {
+                    return true;
+                } else
+                if ((this.closeAtMS > 0L) && (nowMS >= this.closeAtMS)) {
+                    // linger timeout expired with unwritten output
+                    this.outbound.clear();
+                    this._closeChannel();
+                    return true;
+                }
+            }
+            boolean schedule = false;
+            synchronized (this) {
+                if (this.terminated || (this.timeoutType != TIMEOUT_NONE)) {
+                    return false;
+                }
+                ServerSocketThread sst = ServerSocketSelector.this.sst;
+                long sessTMO = sst.getSessionTimeout();
+                long idleTMO = sst.getIdleTimeout();
+                long pcktTMO = sst.getPacketTimeout();
+                if ((sessTMO > 0L) && (nowMS >= (this.sessionStartMS + sessTMO))) {
+                    this.timeoutType = TIMEOUT_SESSION;
+                } else
+                if (this.packetStartMS > 0L) {
+                    // packet in progress
+                    long tmoAt = (pcktTMO > 0L)? (this.packetStartMS + pcktTMO) :
+                        (idleTMO > 0L)? (this.idleStartMS + idleTMO) : -1L;
+                    if ((tmoAt > 0L) && (nowMS >= tmoAt)) {
+                        this.timeoutType = TIMEOUT_PACKET;
+                    }
+                } else
+                if ((idleTMO > 0L) && (nowMS >= (this.idleStartMS + idleTMO))) {
+                    this.timeoutType = TIMEOUT_IDLE;
+                }
+                if ((this.timeoutType != TIMEOUT_NONE) && !this.scheduled) {
+                    this.scheduled = true;
+                    schedule = true;
+                }
+            }
+            if (schedule) {
+                ServerSocketSelector.this.handlerPool.run(this);
+            }
+            return false;
+        }
+
+        // -- close channel (any thread)
+        public void _closeChannel() {
+            synchronized (this.outLock) {
+                if (this.closed) {
+                    return;
+                }
+                this.closed = true;
+                this.outbound.clear();
+            }
+            try {
+                if (this.key != null) { this.key.cancel(); }
+                this.channel.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+            synchronized (this) {
+                if (this.inbound != null) {
+                    ServerSocketSelector._releaseBuffer(this.inbound);
+                    this.inbound = null;
+                }
+            }
+        }
+
+        // -- write bytes (any thread)
+        private boolean _write(byte data[]) throws IOException {
+            if ((data == null) || (data.length == 0)) {
+                return false;
+            }
+            boolean needWrite = false;
+            synchronized (this.outLock) {
+                if (this.closed || this.closeOnFlush) {
+                    return false;
+                }
+                ByteBuffer bb = ByteBuffer.wrap(data);
+                if (this.outbound.isEmpty()) {
+                    try {
+                        this.channel.write(bb); // non-blocking, may be partial
+                    } catch (IOException ioe) {
+                        Print.logError("writeBytes error - " + ioe);
+                        throw ioe;
+                    }
+                }
+                if (bb.hasRemaining()) {
+                    this.outbound.add(bb);
+                    needWrite = true;
+                }
+                this.writeByteCount += data.length;
+            }
+            if (needWrite) {
+                this.owner.requestUpdate(this);
+            }
+            return true;
+        }
+
+        // -- handler thread
+        public void run() {
+            ServerSocketThread sst = ServerSocketSelector.this.sst;
+            ClientPacketHandler cph = this.handler;
+
+            /* start session */
+            if (!this.started) {
+                this.started = true;
+                Print.logInfo("Remote client port: " + this.inetAddr + ":" + this.remotePort + "[" + this.getLocalPort() + "]");
+                if (cph == null) {
+                    Print.logError("ClientPacketHandler not defined");
+                    this._terminate(null, null);
+                    return;
+                }
+                cph.setSessionInfo(this);
+                sst._addActiveSession(this, cph);
+                cph.sessionStarted(this.inetAddr, true, sst.isTextPackets());
+                if (cph.terminateSession()) {
+                    this._terminate(null, null);
+                    return;
+                }
+                this.framer = new PacketFramer(sst, cph, true);
+                try {
+                    byte initialPacket[] = cph.getInitialPacket(); // may be null
+                    this._write(initialPacket);
+                    this._write(sst.getPrompt(this.promptIndex++));
+                } catch (Throwable th) {
+                    Print.logException("?", th);
+                    this._terminate(th, null);
+                    return;
+                }
+                synchronized (this) {
+                    this.idleStartMS = System.currentTimeMillis();
+                }
+            }
+
+            /* process received packets */
+            for (;;) {
+                byte    packet[]    = null;
+                boolean lastPacket  = false;
+                Throwable termError = null;
+                synchronized (this) {
+                    packet = this._nextPacket();
+                    if (packet == null) {
+                        int tmoType = this.timeoutType;
+                        this.timeoutType = TIMEOUT_NONE;
+                        int pktLen = this.framer.getLength();
+                        if (tmoType == TIMEOUT_SESSION) {
+                            termError = new ServerSocketThread.SSSessionTimeoutException("Session timeout");
+                            Print.logWarn(termError.getMessage());
+                            lastPacket = true;
+                        } else
+                        if (tmoType == TIMEOUT_PACKET) {
+                            this.framer.logPartial("Timeout: ");
+                            if (sst.getTerminateOnTimeout() && this.framer.failOnTimeout()) {
+                                termError = new ServerSocketThread.SSReadTimeoutException("Read timeout [@ " + pktLen + "]", pktLen);
+                                Print.logWarn(termError.getMessage());
+                                lastPacket = true;
+                            } else {
+                                packet = this.framer.flush();
+                            }
+                        } else
+                        if (tmoType == TIMEOUT_IDLE) {
+                            if (sst.getTerminateOnTimeout()) {
+                                Print.logInfo("Read timeout [empty packet]");
+                                lastPacket = true;
+                            } else {
+                                this.idleStartMS = System.currentTimeMillis();
+                            }
+                        } else
+                        if (this.endOfStream) {
+                            if (pktLen <= 0) {
+                                Print.logInfo("End of stream [empty packet]");
+                            } else
+                            if (!this.framer.failOnEOS()) {
+                                packet = this.framer.flush(); // expected EOS
+                            } else {
+                                this.framer.logPartial("EOS: ");
+                                termError = new ServerSocketThread.SSEndOfStreamException("End of stream [@ " + pktLen + "]", pktLen);
+                                Print.logWarn(termError.getMessage());
+                            }
+                            lastPacket = true;
+                        }
+                        if ((packet == null) && !lastPacket) {
+                            // wait for more data
+                            this.scheduled = false;
+                            if (this.readPaused && (this.inbound == null)) {
+                                this.readPaused = false;
+                                this.owner.requestUpdate(this);
+                            }
+                            return;
+                        }
+                    }
+                    if (packet != null) {
+                        this.packetStartMS = -1L;
+                    }
+                }
+
+                /* handle packet */
+                if ((packet != null) && !this._handlePacket(packet)) {
+                    lastPacket = true;
+                }
+                synchronized (this) {
+                    this.idleStartMS = System.currentTimeMillis();
+                }
+                if (lastPacket) {
+                    this._terminate(termError, cph);
+                    return;
+                }
+
+            }
+
+        }
+
+        // -- frame the next packet from the inbound buffer (session lock required)
+        private byte[] _nextPacket() {
+            if (this.inbound == null) {
+                return null;
+            }
+            this.inbound.flip();
+            byte packet[] = null;
+            while (this.inbound.hasRemaining()) {
+                int b = (int)this.inbound.get() & 0xFF;
+                if (this.packetStartMS < 0L) {
+                    this.packetStartMS = System.currentTimeMillis();
+                }
+                if (this.framer.addByte(b, this.inbound.remaining())) {
+                    packet = this.framer.flush();
+                    break;
+                }
+            }
+            this.inbound.compact();
+            if (this.inbound.position() == 0) {
+                ServerSocketSelector._releaseBuffer(this.inbound);
+                this.inbound = null;
+            }
+            return packet;
+        }
+
+        // -- handle packet (returns false if the session should terminate)
+        private boolean _handlePacket(byte packet[]) {
+            ServerSocketThread sst = ServerSocketSelector.this.sst;
+            ClientPacketHandler cph = this.handler;
+
+            /* check for requested terminate */
+            if (cph.terminateSession()) {
+                return false;
+            }
+
+            /* send packet to listeners */
+            if (sst.hasListeners()) {
+                try {
+                    sst.invokeListeners(packet);
+                } catch (Throwable t) {
+                    // a listener can terminate this session
+                    return false;
+                }
+            }
+
+            /* handle packet, and get response */
+            try {
+                byte response[] = cph.getHandlePacket(packet);
+                if ((response != null) && (response.length > 0)) {
+                    Print.logDebug("TCP Response 0x%s", StringTools.toHexString(response));
+                    this._write(response);
+                }
+                if (cph.terminateSession()) {
+                    return false;
+                }
+                this._write(sst.getPrompt(this.promptIndex++));
+            } catch (Throwable t) {
+                // the ClientPacketHandler can terminate this session
+                Print.logException("Unexpected exception: ", t);
+                return false;
+            }
+            return true;
+
+        }
+
+        // -- end session (handler thread)
+        private void _terminate(Throwable termError, ClientPacketHandler cph) {
+            synchronized (this) {
+                this.terminated = true;
+            }
+            Print.logInfo("End of session ...");
+            if (cph != null) {
+                try {
+                    byte finalPacket[] = cph.getFinalPacket(termError != null);
+                    this._write(finalPacket);
+                } catch (Throwable t) {
+                    Print.logException("Final packet transmission", t);
+                }
+                cph.sessionTerminated(termError, this.readByteCount, this.writeByteCount);
+                ServerSocketSelector.this.sst._removeActiveSession(this);
+                cph.setSessionInfo(null);
+            }
+            /* close after pending output has been written (bounded by the linger timeout) */
+            boolean closeNow = false;
+            synchronized (this.outLock) {
+                if (this.outbound.isEmpty()) {
+                    closeNow = true;
+                } else {
+                    this.closeOnFlush = true;
+                    this.closeAtMS = System.currentTimeMillis() + (ServerSocketSelector.this.sst.getLingerTimeoutSec() * 1000L);
+                }
+            }
+            if (closeNow) {
+                this._closeChannel();
+            } else {
+                this.owner.requestUpdate(this);
+            }
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Resumable packet framer, equivalent to the blocking 'readLine'/'readPacket'
+    *** framing in <code>ServerSocketThread.ServerSessionThread</code>, but fed one
+    *** byte at a time from a buffer.
+    **/
+    private static class PacketFramer
+    {
+        private ServerSocketThread  sst                 = null;
+        private ClientPacketHandler handler             = null;
+        private boolean             isTCP               = true;
+        private boolean             isText              = true;
+        private int                 maxLen              = 0;
+        private byte                pktTerm[]           = null;
+        // -- per packet state
+        private byte                packet[]            = null;
+        private int                 packetLen           = 0;
+        private int                 minLen              = 0;
+        private int                 actualLen           = 0;
+        private int                 pktState            = 0;
+        private boolean             breakOnLineTerm     = false;
+        private boolean             incrementOnLineTerm = false;
+        private boolean             failOnEOS           = true;
+
+        public PacketFramer(ServerSocketThread sst, ClientPacketHandler cph, boolean isTCP) {
+            this.sst     = sst;
+            this.handler = cph;
+            this.isTCP   = isTCP;
+            this.isText  = sst.isTextPackets();
+            int len = (cph != null)? cph.getMaximumPacketLength() : 0;
+            this.maxLen  = (len > 0)? len : sst.getMaximumPacketLength();
+            this.pktTerm = sst.getPacketTerminatorPattern();
+            this._reset();
+        }
+
+        private void _reset() {
+            int len = (this.handler != null)? this.handler.getMinimumPacketLength() : 0;
+            if ((this.packet == null) || (this.packet.length > Math.max(this.maxLen,1) * 4)) {
+                // allocate once, and drop a buffer grown well past 'maxLen' by an oversized packet
+                this.packet          = new byte[this.maxLen];
+            }
+            this.packetLen           = 0;
+            this.minLen              = (len > 0)? len : this.sst.getMinimumPacketLength();
+            this.actualLen           = 0;
+            this.pktState            = 0;
+            this.breakOnLineTerm     = false;
+            this.incrementOnLineTerm = false;
+            this.failOnEOS           = this.isTCP;
+        }
+
+        public int getLength() {
+            return this.packetLen;
+        }
+
+        public boolean failOnEOS() {
+            return this.isText || this.failOnEOS;
+        }
+
+        public boolean failOnTimeout() {
+            return this.isText || this.failOnEOS;
+        }
+
+        public void logPartial(String msg) {
+            if (this.packetLen > 0) {
+                if (this.isText) {
+                    Print.logWarn(msg + StringTools.toStringValue(this.packet, 0, this.packetLen));
+                } else {
+                    Print.logWarn(msg + "0x" + StringTools.toHexString(this.packet, 0, this.packetLen));
+                }
+            }
+        }
+
+        /* return the current packet, and reset for the next packet */
+        public byte[] flush() {
+            byte p[] = new byte[this.packetLen];
+            System.arraycopy(this.packet, 0, p, 0, this.packetLen);
+            this._reset();
+            return p;
+        }
+
+        /* add byte, returns true if the packet is complete */
+        public boolean addByte(int ch, int avail) {
+            return this.isText? this._addTextByte(ch) : this._addBinaryByte(ch, avail);
+        }
+
+        /* see "ServerSessionThread.readLine" */
+        private boolean _addTextByte(int ch) {
+            if (this.sst.isLineTerminatorChar(ch)) {
+                // end of line/packet
+                if (this.sst.includePacketLineTerminator()) {
+                    this._save(ch, 1);
+                }
+                return true;
+            } else
+            if (this.sst.isIgnoreChar(ch)) {
+                // ignore this character (typically '\r')
+                return false;
+            } else
+            if (this.sst.isBackspaceChar(ch)) {
+                if (this.packetLen > 0) {
+                    this.packetLen--;
+                }
+                return false;
+            } else
+            if ((ch < ' ') && (ch != '\t')) {
+                // ignore non-printable characters (keep tab chars)
+                return false;
+            }
+            this._save(ch, this.packet.length);
+            return ((this.maxLen > 0) && (this.packetLen >= this.maxLen));
+        }
+
+        private void _save(int ch, int grow) {
+            if (this.packetLen >= this.packet.length) { // overflow?
+                byte newBuff[] = new byte[this.packet.length + Math.max(grow,1)];
+                System.arraycopy(this.packet, 0, newBuff, 0, this.packet.length);
+                this.packet = newBuff;
+            }
+            this.packet[this.packetLen++] = (byte)ch;
+        }
+
+        /* see "ServerSessionThread.readPacket" */
+        private boolean _addBinaryByte(int lastByte, int avail) {
+
+            /* look for line terminator? */
+            if (this.breakOnLineTerm) {
+                if (this.sst.isLineTerminatorChar(lastByte)) {
+                    if (this.sst.includePacketLineTerminator()) {
+                        this._save(lastByte, 1);
+                    }
+                    return true;
+                } else
+                if (this.sst.isIgnoreChar(lastByte)) {
+                    return false;
+                } else {
+                    this._save(lastByte, 1);
+                }
+            } else {
+                this._save(lastByte, 1);
+            }
+
+            /* already read maximum allowed bytes? */
+            if (this.packetLen >= this.maxLen) {
+                return true;
+            }
+
+            /* do we have a specified packet length? */
+            if (this.actualLen > 0) {
+                return (this.packetLen >= this.actualLen);
+            }
+
+            /* check pattern matching */
+            if (this.pktTerm != null) {
+                if (this.pktTerm[this.pktState] == (byte)lastByte) {
+                    this.pktState++;
+                    if (this.pktState >= this.pktTerm.length) {
+                        return true;
+                    }
+                } else {
+                    this.pktState = 0;
+                }
+            }
+
+            /* scan for incremental line-terminator? */
+            if (this.incrementOnLineTerm && this.sst.isLineTerminatorChar(lastByte)) {
+                this.incrementOnLineTerm = false;
+                this.minLen = this.packetLen;
+            }
+
+            /* have we met the minimum length? */
+            if ((this.packetLen < this.minLen) || (this.handler == null)) {
+                return false;
+            }
+
+            /* get the actual/next expected packet length */
+            int     newPktLen  = this.handler.getActualPacketLength(this.packet, this.packetLen);
+            boolean haveActual = ((newPktLen >= 0) && (newPktLen < ServerSocketThread.PACKET_LEN_INCREMENTAL_MASK));
+            int     nextLen    = (newPktLen < 0)? newPktLen : (newPktLen & ServerSocketThread.PACKET_LEN_INCREMENTAL_MASK);
+
+            /* has the client indicated that session should be terminated? */
+            if (this.handler.terminateSession()) {
+                return true;
+            }
+
+            /* actual packet length specified? */
+            if (haveActual) {
+                if (nextLen == this.packetLen) {
+                    this.actualLen = this.packetLen;
+                    return true;
+                } else
+                if (nextLen < this.packetLen) {
+                    Print.logStackTrace("Actual length ["+nextLen+"] < Packet length ["+this.packetLen+"]");
+                    this.actualLen = this.packetLen;
+                    return true;
+                } else
+                if (nextLen > this.maxLen) {
+                    Print.logStackTrace("Actual length ["+nextLen+"] > Maximum length ["+this.maxLen+"]");
+                    this.actualLen = this.maxLen;
+                    return false;
+                } else {
+                    this.actualLen = nextLen;
+                    return false;
+                }
+            }
+
+            /* check for special case packet termination */
+            if (nextLen == ServerSocketThread.PACKET_LEN_LINE_TERMINATOR) {
+                if (this.sst.isLineTerminatorChar(lastByte)) {
+                    // last byte was already a line terminator
+                    if (!this.sst.includePacketLineTerminator()) {
+                        this.packetLen--; // remove terminator
+                    }
+                    this.actualLen = this.packetLen;
+                    return true;
+                } else {
+                    this.breakOnLineTerm = true;
+                    this.actualLen = this.maxLen; // continue until line-term
+                    return false;
+                }
+            } else
+            if (nextLen <= ServerSocketThread.PACKET_LEN_END_OF_STREAM) {
+                // read the rest of the currently received bytes
+                this.actualLen = Math.min(this.packetLen + avail, this.maxLen);
+                this.failOnEOS = false;
+                return (this.packetLen >= this.actualLen);
+            }
+
+            /* INCREMENTAL read */
+            if (nextLen == ServerSocketThread.PACKET_LEN_INCREMENTAL_MASK) {
+                this.incrementOnLineTerm = true;
+                this.minLen = this.maxLen;
+            } else
+            if (nextLen > this.maxLen) {
+                Print.logStackTrace("Incremental length ["+nextLen+"] > Maximum length ["+this.maxLen+"]");
+                this.minLen = this.maxLen;
+            } else {
+                this.minLen = (nextLen > this.packetLen)? nextLen : (this.packetLen + 1);
+            }
+            return false;
+
+        }
+
+    }
+
+}
@@ -72,6 +72,7 @@ package org.opengts.util;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.net.*;
 import java.awt.event.*;
 import javax.net.*;
@@ -134,6 +135,15 @@ public class ServerSocketThread
         ListenBacklog = backlog;
     }
 
+    /**
+    *** Gets the listen backlog for all created ServerSocket's
+    *** @return The listen backlog
+    **/
+    public static int getListenBacklog()
+    {
+        return ListenBacklog;
+    }
+
     /**
     *** Sets the local bind address for all created ServerSocket's
     *** @param bindAddr  The local bind address
@@ -276,7 +286,7 @@ public class ServerSocketThread
     private ServerSocket                        serverSocket            = null;
     
     private java.util.List<ServerSessionThread> clientThreadPool        = null;
-    private java.util.List<ClientPacketHandler> activeSessionList       = null;
+    private java.util.Set<SessionInfo>          activeSessionSet        = null;
 
     private ClientPacketHandler                 clientPacketHandler     = null;
     private Class                               clientPacketHandlerClass = null;
@@ -305,6 +315,18 @@ public class ServerSocketThread
     private boolean                             autoPrompt              = false;
     
     private java.util.List<ActionListener>      actionListeners         = null;
+
+    private boolean                             nioMode                 = false;
+    private ServerSocketSelector                nioSelector             = null;
+
+    private boolean                             virtualThreads          = false;
+
+    private int                                 readBufferSize          = 4096;
+
+    private int                                 udpReceivers            = 1;
+    private int                                 udpWorkers              = 0;
+    private int                                 udpQueueSize            = 1000;
+    private ServerDatagramDispatcher            udpDispatcher           = null;
     
     // ------------------------------------------------------------------------
 
@@ -313,9 +335,15 @@ public class ServerSocketThread
     **/
     private ServerSocketThread()
     {
+        this.nioMode           = RTConfig.getBoolean(RTKey.SERVER_SOCKET_NIO,false);
+        this.virtualThreads    = RTConfig.getBoolean(RTKey.SERVER_SOCKET_VIRTUAL_THREADS,false);
+        this.readBufferSize    = RTConfig.getInt(RTKey.SERVER_SOCKET_READ_BUFFER,4096);
+        this.udpReceivers      = RTConfig.getInt(RTKey.SERVER_SOCKET_UDP_RECEIVERS,1);
+        this.udpWorkers        = RTConfig.getInt(RTKey.SERVER_SOCKET_UDP_WORKERS,0);
+        this.udpQueueSize      = RTConfig.getInt(RTKey.SERVER_SOCKET_UDP_QUEUE,1000);
         this.bindAddress       = ServerSocketThread.getDefaultBindAddress();
         this.clientThreadPool  = new Vector<ServerSessionThread>();
-        this.activeSessionList = new Vector<ClientPacketHandler>();
+        this.activeSessionSet  = Collections.newSetFromMap(new ConcurrentHashMap<SessionInfo,Boolean>());
         this.actionListeners   = new Vector<ActionListener>();
     }
     
@@ -414,6 +442,22 @@ public class ServerSocketThread
         return this.serverSocket;
     }
 
+    /**
+    *** Replaces the TCP ServerSocket (used when switching to a channel-based socket)
+    **/
+    void _setServerSocket(ServerSocket ss)
+    {
+        this.serverSocket = ss;
+    }
+
+    /**
+    *** Replaces the UDP DatagramSocket (used when switching to a channel-based socket)
+    **/
+    void _setDatagramSocket(DatagramSocket ds)
+    {
+        this.datagramSocket = ds;
+    }
+
     /**
     *** Gets the local port to which this socket is bound
     *** @return the local port to which this socket is bound
@@ -459,11 +503,167 @@ public class ServerSocketThread
     
     // ------------------------------------------------------------------------
 
+    /**
+    *** Sets NIO mode.  In NIO mode, TCP sessions are serviced by a small number of
+    *** selector threads (rather than one thread per session), and received packets
+    *** are handled by a bounded pool of handler threads.  Must be set before this
+    *** thread is started.  (Defaults to the "ServerSocketThread.nio" property)
+    *** @param nio  True to enable NIO mode
+    **/
+    public void setNIOMode(boolean nio)
+    {
+        this.nioMode = nio;
+    }
+
+    /**
+    *** Returns true if NIO mode is enabled
+    *** @return True if NIO mode is enabled
+    **/
+    public boolean isNIOMode()
+    {
+        return this.nioMode;
+    }
+
+    /**
+    *** Sets whether each client session should be run on its own virtual thread
+    *** (Java 21+).  (Defaults to the "ServerSocketThread.virtualThreads" property)
+    *** @param virtual  True to run client sessions on virtual threads
+    **/
+    public void setVirtualThreads(boolean virtual)
+    {
+        this.virtualThreads = virtual;
+    }
+
+    /**
+    *** Returns true if client sessions are run on virtual threads
+    *** @return True if client sessions are run on virtual threads
+    **/
+    public boolean isVirtualThreads()
+    {
+        return this.virtualThreads && OSTools.isVirtualThreadSupported();
+    }
+
+    /**
+    *** Sets the size of the per-session read buffer.  Client session bytes are read
+    *** from the socket in blocks of up to this size, and packets are framed from the
+    *** buffered bytes.  (Defaults to the "ServerSocketThread.readBufferSize" property)
+    *** @param size  The read buffer size
+    **/
+    public void setReadBufferSize(int size)
+    {
+        this.readBufferSize = size;
+    }
+
+    /**
+    *** Gets the size of the per-session read buffer
+    *** @return The read buffer size
+    **/
+    public int getReadBufferSize()
+    {
+        return (this.readBufferSize > 0)? this.readBufferSize : 1;
+    }
+
+    /**
+    *** Sets the number of UDP datagram worker threads.  If greater than zero, received
+    *** datagrams are queued to a fixed pool of worker threads (selected by the datagram
+    *** source address, to preserve the order of datagrams from each device), rather than
+    *** to a new/idle session thread per datagram.  Must be set before this thread is
+    *** started.  (Defaults to the "ServerSocketThread.udp.workers" property)
+    *** @param workers  The number of worker threads (0 to disable)
+    **/
+    public void setUDPWorkers(int workers)
+    {
+        this.udpWorkers = workers;
+    }
+
+    /**
+    *** Gets the number of UDP datagram worker threads
+    *** @return The number of UDP worker threads (0 if disabled)
+    **/
+    public int getUDPWorkers()
+    {
+        return (this.udpWorkers > 0)? this.udpWorkers : 0;
+    }
+
+    /**
+    *** Sets the number of UDP receiver threads (used only when UDP worker threads are
+    *** enabled).  (Defaults to the "ServerSocketThread.udp.receivers" property)
+    *** @param receivers  The number of receiver threads
+    **/
+    public void setUDPReceivers(int receivers)
+    {
+        this.udpReceivers = receivers;
+    }
+
+    /**
+    *** Gets the number of UDP receiver threads
+    *** @return The number of UDP receiver threads
+    **/
+    public int getUDPReceivers()
+    {
+        return (this.udpReceivers > 0)? this.udpReceivers : 1;
+    }
+
+    /**
+    *** Sets the maximum number of datagrams queued per UDP worker thread.  Datagrams
+    *** received while the worker queue is full are dropped (see "ServerSocketThread.udp.blockOnFull").
+    *** (Defaults to the "ServerSocketThread.udp.queueSize" property)
+    *** @param size  The maximum number of queued datagrams per worker
+    **/
+    public void setUDPQueueSize(int size)
+    {
+        this.udpQueueSize = size;
+    }
+
+    /**
+    *** Gets the maximum number of datagrams queued per UDP worker thread
+    *** @return The maximum number of queued datagrams per worker
+    **/
+    public int getUDPQueueSize()
+    {
+        return (this.udpQueueSize > 0)? this.udpQueueSize : 1;
+    }
+
+    /**
+    *** Gets the UDP datagram dispatcher (null if UDP worker threads are not enabled,
+    *** or this thread has not been started)
+    *** @return The UDP datagram dispatcher
+    **/
+    public ServerDatagramDispatcher getDatagramDispatcher()
+    {
+        return this.udpDispatcher;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Listens for incoming connections and dispatches them to a handler thread
     **/
     public void run() 
     {
+
+        /* NIO listener */
+        if (this.isNIOMode()) {
+            this.nioSelector = ServerSocketSelector.createSelector(this); // null if unsupported
+            if (this.nioSelector != null) {
+                this.nioSelector.run(); // returns on shutdown
+                return;
+            }
+            Print.logWarn("NIO mode not supported for this listener, using blocking sessions");
+        }
+
+        /* UDP receiver/worker threads */
+        if ((this.datagramSocket != null) && (this.getUDPWorkers() > 0)) {
+            this.udpDispatcher = ServerDatagramDispatcher.createDispatcher(this,
+                this.getUDPReceivers(), this.getUDPWorkers(), this.getUDPQueueSize());
+            if (this.udpDispatcher != null) {
+                this.udpDispatcher.run(); // returns on shutdown
+                return;
+            }
+            Print.logWarn("Unable to start UDP workers for this listener, using blocking sessions");
+        }
+
+        /* blocking listener */
         while (true) {
             ClientSocket clientSocket = null;
 
@@ -513,6 +713,14 @@ public class ServerSocketThread
             //}
             //int clientRemotePort = clientSocket.getPort();
 
+            /* virtual thread per session */
+            if (this.isVirtualThreads()) {
+                ServerSessionThread sst = new ServerSessionThread(clientSocket, false, true);
+                this.clientThreadPool.add(sst); // removed at end of session
+                sst.startThread();
+                continue;
+            }
+
             /* find an available client thread */
             boolean foundThread = false;
             for (Iterator i = this.clientThreadPool.iterator(); i.hasNext() && !foundThread;) {
@@ -546,11 +754,23 @@ public class ServerSocketThread
 	    	if (this.datagramSocket != null) {
 	    		this.datagramSocket.close();
 	    	}
+
+            /* shutdown NIO sessions */
+            if (this.nioSelector != null) {
+                this.nioSelector.shutdown();
+            }
+
+            /* shutdown UDP receivers/workers */
+            if (this.udpDispatcher != null) {
+                this.udpDispatcher.shutdown();
+            }
             
             /* loop through, and close all server threads */
-	    	Iterator it = this.clientThreadPool.iterator();
+            // -- iterate over a snapshot, virtual-thread sessions remove themselves when done
+            java.util.List<ServerSessionThread> sessList = new ArrayList<ServerSessionThread>(this.clientThreadPool);
+	    	Iterator<ServerSessionThread> it = sessList.iterator();
 	    	while (it.hasNext()) {
-	    		ServerSessionThread sst = (ServerSessionThread)it.next();
+	    		ServerSessionThread sst = it.next();
 	    		if (sst != null) {
 	    			sst.close();
 	    		}
@@ -1117,6 +1337,78 @@ public class ServerSocketThread
     // ------------------------------------------------------------------------
     // ------------------------------------------------------------------------
 
+    /**
+    *** Adds the specified session to the set of active sessions.  TCP sessions are also
+    *** registered with the <code>ClientSessionRegistry</code>.
+    *** @param si   The session
+    *** @param cph  The session client handler
+    **/
+    void _addActiveSession(SessionInfo si, ClientPacketHandler cph)
+    {
+        this.activeSessionSet.add(si);
+        if (si.isTCP()) {
+            ClientSessionRegistry.addSession(this, si, cph);
+        }
+    }
+
+    /**
+    *** Removes the specified session from the set of active sessions
+    *** @param si  The session
+    **/
+    void _removeActiveSession(SessionInfo si)
+    {
+        ClientSessionRegistry.removeSession(si);
+        this.activeSessionSet.remove(si);
+    }
+
+    /**
+    *** Gets the number of currently active sessions
+    *** @return The number of active sessions
+    **/
+    public int getActiveSessionCount()
+    {
+        return this.activeSessionSet.size();
+    }
+
+    /**
+    *** Handles the specified received datagram in the current thread (NIO mode, UDP workers)
+    *** @param dp  The received datagram
+    **/
+    void _handleDatagram(DatagramPacket dp)
+    {
+        this._handleDatagram(dp, null);
+    }
+
+    /**
+    *** Handles the specified received datagram in the current thread, using the specified
+    *** reusable session (see "_createDatagramSession")
+    *** @param dp    The received datagram
+    *** @param sess  The reusable session, or null to create a new session for this datagram
+    **/
+    void _handleDatagram(DatagramPacket dp, ServerSessionThread sess)
+    {
+        if (sess == null) {
+            ServerSessionThread sst = new ServerSessionThread(new ClientSocket(dp), false, true);
+            sst.run(); // single session, run in this thread
+        } else {
+            sess._runDatagram(new ClientSocket(dp));
+        }
+    }
+
+    /**
+    *** Creates a session which may be reused by a single thread for handling datagrams,
+    *** retaining its read/packet buffers between datagrams (see "_handleDatagram")
+    *** @return The reusable session
+    **/
+    ServerSessionThread _createDatagramSession()
+    {
+        ServerSessionThread sess = new ServerSessionThread(null, false, true);
+        sess.reusable = true;
+        return sess;
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Find the named TCP session and write the specified bytes TCP output stream
     *** @param sessionID  The session ID
@@ -1139,22 +1431,14 @@ public class ServerSocketThread
         }
 
         /* find matching TCP SessionID and send packet */
+        // sessions are indexed by session ID as they start/identify themselves
         //Print.logInfo("Looking for SessionID: " + sessionID);
-        boolean foundSID = false;
-        boolean rtnOK    = false;
-        synchronized (this.activeSessionList) {
-            for (ClientPacketHandler cph : this.activeSessionList) {
-                if (cph.equalsSessionID(sessionID)) {
-                    foundSID = true;
-                    rtnOK = cph.tcpWrite(data);
-                    break;
-                }
-            }
-        }
-        if (!foundSID) {
+        SessionInfo si = ClientSessionRegistry.getSessionInfoBySessionID(sessionID);
+        if ((si == null) || (ClientSessionRegistry.getServer(si) != this)) {
             Print.logWarn("TCP SessionID not found: " + sessionID);
+            return false;
         }
-        return rtnOK;
+        return si.tcpWrite(data);
 
     }
     
@@ -1341,10 +1625,21 @@ public class ServerSocketThread
         private Object tcpWriteLock = new Object(); // TCP write: synchronous/asynchronous
 
         private ClientSocket client = null;
+        private boolean runOnce     = false;
+        private boolean reusable    = false;    // datagram session, not in 'clientThreadPool'
         
         private long readByteCount  = 0L;
         private long writeByteCount = 0L;
 
+        // per-session read buffer (see "readByte")
+        private byte readBuff[]     = null;
+        private int  readBuffPos    = 0;
+        private int  readBuffLen    = 0;
+        private int  soTimeout      = -1;   // last SO_TIMEOUT set on the socket
+
+        // per-session packet work buffer (see "readLine"/"readPacket")
+        private byte packetBuff[]   = null;
+
         //public ServerSessionThread(Socket client) {
         //    super("ClientSession");
         //    this.client = new ClientSocket(client);
@@ -1358,13 +1653,39 @@ public class ServerSocketThread
 
         /* create new ClientSocket handler thread */
         public ServerSessionThread(ClientSocket client, boolean startThread) {
+            this(client, startThread, false);
+        }
+
+        /* create new ClientSocket handler thread (optionally returning after a single session) */
+        public ServerSessionThread(ClientSocket client, boolean startThread, boolean runOnce) {
             super("ClientSession");
-            this.client = client; // new ClientSocket thread
+            this.client  = client; // new ClientSocket thread
+            this.runOnce = runOnce;
             if (startThread) {
-                this.start();
+                this.startThread();
             }
         }
 
+        /* start this session on a virtual thread (if enabled), otherwise on this thread */
+        public void startThread() {
+            if (ServerSocketThread.this.isVirtualThreads()) {
+                Thread vt = OSTools.createVirtualThread(this.getName(), this);
+                if (vt != null) {
+                    vt.start();
+                    return;
+                }
+            }
+            this.start();
+        }
+
+        /* handle a single datagram session in the calling thread (reusable session only) */
+        void _runDatagram(ClientSocket clientSocket) {
+            synchronized (this.runLock) {
+                this.client = clientSocket;
+            }
+            this.run();
+        }
+
         /* find an existing/unused ClientSocket handler thread */
         public boolean setClientIfAvailable(ClientSocket clientSocket) {
             boolean rtn = false;
@@ -1429,7 +1750,21 @@ public class ServerSocketThread
         }
 
         public int getAvailableBytes() {
-            return (this.client != null)? this.client.available() : 0;
+            return this._available(this.client);
+        }
+
+        /* buffered, plus socket available, bytes */
+        private int _available(ClientSocket client) {
+            int buffered = this.readBuffLen - this.readBuffPos;
+            return (client != null)? (buffered + client.available()) : buffered;
+        }
+
+        /* return a packet work buffer of at least the specified length */
+        private byte[] _getPacketBuffer(int len) {
+            if ((this.packetBuff == null) || (this.packetBuff.length < len)) {
+                this.packetBuff = new byte[len];
+            }
+            return this.packetBuff;
         }
 
         public long getReadByteCount() {
@@ -1457,6 +1792,15 @@ public class ServerSocketThread
                 this.readByteCount  = 0L;
                 this.writeByteCount = 0L;
 
+                /* reset read buffer */
+                int rbLen = ServerSocketThread.this.getReadBufferSize();
+                if ((this.readBuff == null) || (this.readBuff.length != rbLen)) {
+                    this.readBuff = new byte[rbLen];
+                }
+                this.readBuffPos = 0;
+                this.readBuffLen = 0;
+                this.soTimeout   = -1;
+
                 /* remote client IP address/port */
                 InetAddress inetAddr = this.client.getInetAddress();
                 int       remotePort = this.client.getPort();
@@ -1472,9 +1816,7 @@ public class ServerSocketThread
                 if (clientHandler != null) {
                     // set a handle to this session thread
                     clientHandler.setSessionInfo(this);
-                    synchronized (ServerSocketThread.this.activeSessionList) {
-                        ServerSocketThread.this.activeSessionList.add(clientHandler);
-                    }
+                    ServerSocketThread.this._addActiveSession(this, clientHandler);
                     clientHandler.sessionStarted(inetAddr, this.client.isTCP(), ServerSocketThread.this.isTextPackets());
                 }
 
@@ -1577,7 +1919,7 @@ public class ServerSocketThread
 
                             /* terminate now if we're reading a Datagram and we're out of data */
                             if (this.client.isUDP()) {
-                                int avail = this.client.available();
+                                int avail = this._available(this.client);
                                 if (avail <= 0) {
                                     // Normal end of UDP connection
                                     break; // break socket read loop
@@ -1643,9 +1985,7 @@ public class ServerSocketThread
                         Print.logException("Final packet transmission", t);
                     }
                     clientHandler.sessionTerminated(termError, this.readByteCount, this.writeByteCount);
-                    synchronized (ServerSocketThread.this.activeSessionList) {
-                        ServerSocketThread.this.activeSessionList.remove(clientHandler);
-                    }
+                    ServerSocketThread.this._removeActiveSession(this);
                     // clear the session so that it doesn't hold on to an instance of this class
                     clientHandler.setSessionInfo(null);
                 }
@@ -1681,6 +2021,12 @@ public class ServerSocketThread
                 synchronized (this.runLock) {
                     this.client = null;
                 }
+                if (this.runOnce) {
+                    if (!this.reusable) {
+                        ServerSocketThread.this.clientThreadPool.remove(this);
+                    }
+                    break;
+                }
 
             } // while (true)
 
@@ -1731,7 +2077,16 @@ public class ServerSocketThread
                 int retry = 1;
                 for (;retry > 0; retry--) {
                     Print.logDebug("UDP Response (from %d to %s:%d) 0x%s", dgSocket.getLocalPort(), clientAddr.toString(), clientPort, StringTools.toHexString(pkt));
-                    dgSocket.send(respPkt);
+                    if (dgSocket.getChannel() != null) {
+                        // NIO: the socket of a non-blocking channel must be written via the channel
+                        java.nio.channels.DatagramChannel dc = dgSocket.getChannel();
+                        if (dc.send(java.nio.ByteBuffer.wrap(pkt), new InetSocketAddress(clientAddr,clientPort)) <= 0) {
+                            Print.logWarn("UDP Response not sent (send buffer full)");
+                            continue;
+                        }
+                    } else {
+                        dgSocket.send(respPkt);
+                    }
                     this.writeByteCount += pkt.length;
                 }
                 // close
@@ -1783,7 +2138,17 @@ public class ServerSocketThread
             //  - Timeout
             //  - IO error
             //  - Read byte
-            int ch;
+            // Bytes are returned from the session read buffer.  The socket is only read
+            // (and the timeout only computed) when the buffer has been drained, in which
+            // case all currently available bytes (up to the buffer size) are read at once.
+
+            /* buffered byte? */
+            if (this.readBuffPos < this.readBuffLen) {
+                this.readByteCount++;
+                return (int)this.readBuff[this.readBuffPos++] & 0xFF; // <-- valid character returned
+            }
+
+            /* refill buffer */
             InputStream input = client.getInputStream();
             while (true) {
                 if (timeoutAt > 0L) {
@@ -1795,24 +2160,33 @@ public class ServerSocketThread
                             throw new SSReadTimeoutException("Read timeout [@ " + byteNdx + "]", byteNdx);
                         }
                     }
-                    //if (input.available() <= 0) {
                     int timeout = (int)(timeoutAt - currentTimeMS);
-                    client.setSoTimeout(timeout);
-                    //}
+                    if (timeout != this.soTimeout) {
+                        // only set when changed (the remaining time changes each refill, but
+                        // a refill is only required once per buffer, not once per byte)
+                        client.setSoTimeout(timeout);
+                        this.soTimeout = timeout;
+                    }
                 }
                 try {
                     // this read is expected to time-out if no data is available
-                    ch = input.read();
-                    if (ch < 0) {
+                    int len = input.read(this.readBuff, 0, this.readBuff.length);
+                    if (len < 0) {
                         // socket likely closed by client
                         if (byteNdx <= 0) {
                             throw new SSEndOfStreamException("End of stream [empty packet]", byteNdx);
                         } else {
                             throw new SSEndOfStreamException("End of stream [@ " + byteNdx + "]", byteNdx);
                         }
+                    } else
+                    if (len == 0) {
+                        // should not occur on a blocking stream
+                        continue;
                     }
+                    this.readBuffPos = 1;
+                    this.readBuffLen = len;
                     this.readByteCount++;
-                    return ch; // <-- valid character returned
+                    return (int)this.readBuff[0] & 0xFF; // <-- valid character returned
                 } catch (InterruptedIOException ie) {
                     // timeout
                     continue;
@@ -1846,11 +2220,10 @@ public class ServerSocketThread
             /* set default socket timeout */
             //client.setSoTimeout(10000);
 
-            /* packet */
-            byte buff[]  = new byte[maxLen];
+            /* packet (reused work buffer) */
+            byte buff[]  = this._getPacketBuffer(maxLen);
             int  buffLen = 0;
             boolean isIdle = true;
-            long readStartTime = DateTime.getCurrentTimeMillis();
             try {
                 while (true) {
 
@@ -1875,6 +2248,7 @@ public class ServerSocketThread
                                 byte newBuff[] = new byte[buff.length + 1];
                                 System.arraycopy(buff, 0, newBuff, 0, buff.length);
                                 buff = newBuff;
+                                this.packetBuff = buff;
                             }
                             buff[buffLen++] = (byte)ch;
                         }
@@ -1901,9 +2275,10 @@ public class ServerSocketThread
 
                     /* save byte */
                     if (buffLen >= buff.length) { // overflow?
-                        byte newBuff[] = new byte[buff.length * 2];
+                        byte newBuff[] = new byte[Math.max(buff.length * 2, 16)];
                         System.arraycopy(buff, 0, newBuff, 0, buff.length);
                         buff = newBuff;
+                        this.packetBuff = buff;
                     }
                     buff[buffLen++] = (byte)ch;
 
@@ -1938,18 +2313,11 @@ public class ServerSocketThread
                 Print.logError("ReadLine error - " + ioe);
                 throw ioe;
             }
-            long readEndTime = DateTime.getCurrentTimeMillis();
 
-            /* return packet */
-            if (buff.length == buffLen) {
-                // highly unlikely
-                return buff;
-            } else {
-                // resize buffer
-                byte newBuff[] = new byte[buffLen];
-                System.arraycopy(buff, 0, newBuff, 0, buffLen);
-                return newBuff;
-            }
+            /* return packet (copied from the work buffer) */
+            byte newBuff[] = new byte[buffLen];
+            System.arraycopy(buff, 0, newBuff, 0, buffLen);
+            return newBuff;
 
         }
 
@@ -1977,8 +2345,8 @@ public class ServerSocketThread
             byte pktTerm[] = ServerSocketThread.this.getPacketTerminatorPattern();
             int  pktState  = 0;
 
-            /* read packet */
-            byte packet[] = new byte[maxLen];
+            /* read packet (reused work buffer) */
+            byte packet[] = this._getPacketBuffer(maxLen);
             int  packetLen = 0;
             boolean isIdle = true;
             boolean breakOnLineTerm = false;
@@ -2150,7 +2518,7 @@ public class ServerSocketThread
                     } else
                     if (nextLen == PACKET_LEN_END_OF_STREAM) { // "-2"
                         // read the rest of the stream
-                        int avail = client.available();
+                        int avail = this._available(client);
                         //Print.logDebug("Reading remaining stream bytes: " + avail);
                         actualLen = packetLen + avail; // what we've already read, plus any remaining
                         if (actualLen > maxLen) {
@@ -2164,7 +2532,7 @@ public class ServerSocketThread
                     if (nextLen < PACKET_LEN_END_OF_STREAM) { // <= "-3"
                         // DEFAULT TO END-OF-STREAM
                         // read the rest of the stream
-                        int avail = client.available();
+                        int avail = this._available(client);
                         //Print.logDebug("Reading remaining stream bytes: " + avail);
                         actualLen = packetLen + avail; // what we've already read, plus any remaining
                         if (actualLen > maxLen) {
@@ -2232,16 +2600,10 @@ public class ServerSocketThread
                 throw ioe;
             }
 
-            /* return packet */
-            if (packet.length == packetLen) {
-                // highly unlikely
-                return packet;
-            } else {
-                // resize buffer
-                byte newPacket[] = new byte[packetLen];
-                System.arraycopy(packet, 0, newPacket, 0, packetLen);
-                return newPacket;
-            }
+            /* return packet (copied from the work buffer) */
+            byte newPacket[] = new byte[packetLen];
+            System.arraycopy(packet, 0, newPacket, 0, packetLen);
+            return newPacket;
 
         }
         
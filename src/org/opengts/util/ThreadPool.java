@@ -57,6 +57,8 @@ public class ThreadPool
     private java.util.List<Runnable>    jobQueue        = null;
     private int                         waitingCount    = 0;
     private int                         stopThreads     = STOP_NEVER;
+    private TriState                    virtualThreads  = TriState.UNKNOWN;
+    private int                         virtualCount    = 0;
 
     /**
     *** Constuctor
@@ -135,6 +137,9 @@ public class ThreadPool
         synchronized (this.jobThreadPool) {
             size = this.jobThreadPool.size();
         }
+        synchronized (this.jobQueue) {
+            size += this.virtualCount;
+        }
         return size;
     }
 
@@ -156,6 +161,34 @@ public class ThreadPool
         return this.maxPoolSize;
     }
     
+    // ------------------------------------------------------------------------
+
+    /**
+    *** Sets whether jobs in this pool should be run on virtual threads.  If not
+    *** explicitly set, the default is obtained from the runtime property
+    *** "ThreadPool.virtualThreads".
+    *** @param virtual True to run jobs on virtual threads
+    **/
+    public void setVirtualThreads(boolean virtual)
+    {
+        this.virtualThreads = virtual? TriState.TRUE : TriState.FALSE;
+    }
+
+    /**
+    *** Returns true if jobs in this pool are run on virtual threads.  Virtual
+    *** threads are used only when supported by the runtime (Java 21+).  The maximum
+    *** pool size still limits the number of concurrently running jobs, so a pool
+    *** used for DB-bound work remains bounded.
+    *** @return True if jobs are run on virtual threads
+    **/
+    public boolean isVirtualThreads()
+    {
+        boolean virtual = this.virtualThreads.isUnknown()?
+            RTConfig.getBoolean(RTKey.THREAD_POOL_VIRTUAL_THREADS,false) :
+            this.virtualThreads.isTrue();
+        return virtual && OSTools.isVirtualThreadSupported();
+    }
+
     // ------------------------------------------------------------------------
     
     /**
@@ -164,6 +197,25 @@ public class ThreadPool
     **/
     public void run(Runnable job)
     {
+        if ((job != null) && this.isVirtualThreads()) {
+            synchronized (this.jobQueue) {
+                if (this.virtualCount >= this.maxPoolSize) {
+                    // maximum concurrent jobs, run by an active virtual thread
+                    this.jobQueue.add(job);
+                    return;
+                }
+                String name = this.getName() + "_" + (this.threadId++);
+                Thread vt = OSTools.createVirtualThread(name, new VirtualJob(this));
+                if (vt != null) {
+                    // new virtual thread exits when the job queue is empty
+                    this.jobQueue.add(job);
+                    this.virtualCount++;
+                    vt.start();
+                    return;
+                }
+                // unable to create virtual thread, continue with platform thread
+            }
+        }
         if (job != null) {
             synchronized (this.jobThreadPool) { // <-- modification of threadPool is likely
                 synchronized (this.jobQueue) { // <-- modification of job queue mandatory
@@ -271,6 +323,41 @@ public class ThreadPool
     
     // ------------------------------------------------------------------------
 
+    private static class VirtualJob
+        implements Runnable
+    {
+        private ThreadPool threadPool = null;
+
+        public VirtualJob(ThreadPool pool) {
+            this.threadPool = pool;
+        }
+
+        public void run() {
+
+            /* run queued jobs until the queue is empty */
+            while (true) {
+                Runnable job = null;
+                synchronized (this.threadPool.jobQueue) {
+                    if ((this.threadPool.stopThreads == STOP_NOW) || this.threadPool.jobQueue.isEmpty()) {
+                        // no more jobs, release this thread
+                        this.threadPool.virtualCount--;
+                        break;
+                    }
+                    job = this.threadPool.jobQueue.remove(0);
+                }
+                try {
+                    job.run();
+                } catch (Throwable th) {
+                    Print.logException("ThreadPool job error", th);
+                }
+            }
+
+        }
+
+    }
+
+    // ------------------------------------------------------------------------
+
     /**
     *** Main entry point for testing/debugging
     *** @param argv Comand-line arguments
@@ -95,4 +95,19 @@ public class ZipTools
         return data;
     }
     
+    /**
+    *** Returns a GZIP output stream which compresses data written to it, and writes
+    *** the compressed data to the specified OutputStream as it is produced.  The caller
+    *** must call "finish()" on the returned stream after the last write (closing the
+    *** returned stream will also close the wrapped OutputStream).
+    *** @param out  The OutputStream to which the compressed data will be written
+    *** @return The GZIP output stream
+    *** @throws IOException if the GZIP header could not be written
+    **/
+    public static GZIPOutputStream openGZIPOutputStream(OutputStream out)
+        throws IOException
+    {
+        return new GZIPOutputStream(out, 8 * 1024);
+    }
+    
 }